@@ -0,0 +1,145 @@
+package com.evolve.batch;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import com.evolve.warmup.WarmUp;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Gathers lookups by id from concurrent requests into one {@code findAllById}
+ * ({@code IN}) query, in the manner of a DataLoader.
+ *
+ * The first lookup after a query has gone out opens a batch, which is read
+ * {@code window} later, or at once when it holds {@code maxBatch} ids; every
+ * lookup until then joins it. Lookups of an id already in the batch share
+ * its result. An id the query did not return completes empty, and a failed
+ * query fails every lookup in the batch. Callers of the same id get the same
+ * object and must not modify it.
+ *
+ * Each batch records its size in {@value #SIZE} and each id the time it
+ * waited for its query to start in {@value #DELAY}, both tagged by loader.
+ * Lookups made only for {@link WarmUp} are left out, and so is a batch of
+ * nothing else.
+ */
+public class BatchLoader<T> {
+
+    public static final String SIZE = "batch.loader.size";
+    public static final String DELAY = "batch.loader.delay";
+
+    private final Function<List<Long>, Flux<T>> findAllById;
+    private final Function<T, Long> idOf;
+    private final long windowNanos;
+    private final int maxBatch;
+    private final DistributionSummary sizes;
+    private final Timer delays;
+    private final Object lock = new Object();
+    private Batch<T> open;
+
+    public BatchLoader(String name, Function<List<Long>, Flux<T>> findAllById, Function<T, Long> idOf,
+                       Duration window, int maxBatch, MeterRegistry registry) {
+        this.findAllById = findAllById;
+        this.idOf = idOf;
+        this.windowNanos = window.toNanos();
+        this.maxBatch = maxBatch;
+        this.sizes = DistributionSummary.builder(SIZE)
+                .description("Ids read per batched query")
+                .tag("loader", name)
+                .register(registry);
+        this.delays = Timer.builder(DELAY)
+                .description("Time an id waited for its batch to be read")
+                .tag("loader", name)
+                .register(registry);
+    }
+
+    /**
+     * The entity with the given id, or empty if there is none.
+     */
+    public Mono<T> load(Long id) {
+        return Mono.deferContextual(context -> {
+            Batch<T> opened = null;
+            Batch<T> full = null;
+            Sinks.One<T> result;
+            synchronized (lock) {
+                if (open == null) {
+                    open = new Batch<>();
+                    opened = open;
+                }
+                result = open.add(id, WarmUp.isWarmUp(context));
+                if (open.waiting.size() >= maxBatch) {
+                    full = open;
+                    open = null;
+                }
+            }
+            if (full != null) {
+                read(full);
+            } else if (opened != null) {
+                Batch<T> batch = opened;
+                Schedulers.parallel().schedule(() -> readIfOpen(batch), windowNanos, TimeUnit.NANOSECONDS);
+            }
+            return result.asMono();
+        });
+    }
+
+    private void readIfOpen(Batch<T> batch) {
+        synchronized (lock) {
+            // Already read once it filled up
+            if (open != batch) {
+                return;
+            }
+            open = null;
+        }
+        read(batch);
+    }
+
+    private void read(Batch<T> batch) {
+        long now = System.nanoTime();
+        boolean measured = false;
+        for (Waiting<T> waiting : batch.waiting.values()) {
+            if (!waiting.warmUp) {
+                measured = true;
+                delays.record(now - waiting.since, TimeUnit.NANOSECONDS);
+            }
+        }
+        if (measured) {
+            sizes.record(batch.waiting.size());
+        }
+        Flux.defer(() -> findAllById.apply(List.copyOf(batch.waiting.keySet())))
+                .collectMap(idOf)
+                .subscribe(found -> batch.waiting.forEach((id, waiting) -> {
+                    T value = found.get(id);
+                    if (value != null) {
+                        waiting.result.tryEmitValue(value);
+                    } else {
+                        waiting.result.tryEmitEmpty();
+                    }
+                }), error -> batch.waiting.values().forEach(waiting -> waiting.result.tryEmitError(error)));
+    }
+
+    private record Waiting<T>(Sinks.One<T> result, long since, boolean warmUp) {
+    }
+
+    private static final class Batch<T> {
+
+        // Guarded by the loader's lock until the batch is read
+        private final Map<Long, Waiting<T>> waiting = new LinkedHashMap<>();
+
+        Sinks.One<T> add(Long id, boolean warmUp) {
+            // Measured once any lookup of the id is
+            return waiting.compute(id, (key, current) -> current == null
+                    ? new Waiting<>(Sinks.one(), System.nanoTime(), warmUp)
+                    : new Waiting<>(current.result, current.since, current.warmUp && warmUp)).result();
+        }
+    }
+}
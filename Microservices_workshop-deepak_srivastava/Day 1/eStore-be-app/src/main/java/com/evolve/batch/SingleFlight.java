@@ -0,0 +1,105 @@
+package com.evolve.batch;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Component;
+
+import com.evolve.warmup.WarmUp;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Mono;
+
+/**
+ * Collapses identical concurrent reads: while a read of a given repository
+ * and id is in flight, further reads of the same key subscribe to it instead
+ * of running their own query.
+ *
+ * The entry for a key is removed once its query completes, fails, or is
+ * cancelled because every caller waiting on it went away; a caller that
+ * cancels alone leaves the query running for the others. Callers share the
+ * read object and must not modify it.
+ *
+ * Callers that answer with an ETag pass it as the version, so a read that
+ * started before a write is never joined by one holding the tag taken after
+ * it, which would pair the old row with the new tag.
+ *
+ * {@value #READS} counts reads by repository and outcome, {@code executed} or
+ * {@code joined}; joined over the total is the collapse ratio.
+ * {@value #IN_FLIGHT} is the number of keys with a query in flight.
+ * Reads made for {@link WarmUp} are not counted.
+ */
+@Component
+public class SingleFlight {
+
+    public static final String READS = "single.flight.reads";
+    public static final String IN_FLIGHT = "single.flight.in.flight";
+
+    private final MeterRegistry registry;
+    private final Map<Key, Mono<?>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    public SingleFlight(MeterRegistry registry) {
+        this.registry = registry;
+        Gauge.builder(IN_FLIGHT, inFlight, Map::size)
+                .description("Keys with a collapsed read in flight")
+                .register(registry);
+    }
+
+    /**
+     * Runs {@code query} for the key, or joins the one already in flight.
+     */
+    public <T> Mono<T> read(String repository, Long id, Supplier<Mono<T>> query) {
+        return read(repository, id, null, query);
+    }
+
+    /**
+     * As {@link #read(String, Long, Supplier)}, joining only a read made
+     * under the same version.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Mono<T> read(String repository, Long id, String version, Supplier<Mono<T>> query) {
+        return Mono.deferContextual(context -> {
+            Key key = new Key(repository, id, version);
+            boolean[] executed = {false};
+            Mono<T> flight = (Mono<T>) inFlight.computeIfAbsent(key, k -> {
+                executed[0] = true;
+                return share(k, query.get());
+            });
+            if (!WarmUp.isWarmUp(context)) {
+                counter(repository, executed[0] ? "executed" : "joined").increment();
+            }
+            return flight;
+        });
+    }
+
+    private <T> Mono<T> share(Key key, Mono<T> query) {
+        AtomicReference<Mono<T>> self = new AtomicReference<>();
+        // The entry goes before callers see the result, so none joins a finished read;
+        // the query runs while anyone is subscribed and is cancelled when the last caller leaves
+        Mono<T> shared = query
+                .doOnTerminate(() -> inFlight.remove(key, self.get()))
+                .doOnCancel(() -> inFlight.remove(key, self.get()))
+                .flux()
+                .publish()
+                .refCount(1)
+                .singleOrEmpty();
+        self.set(shared);
+        return shared;
+    }
+
+    private Counter counter(String repository, String outcome) {
+        return counters.computeIfAbsent(repository + '|' + outcome, k -> Counter.builder(READS)
+                .description("Reads by whether they ran a query or joined one in flight")
+                .tag("repository", repository)
+                .tag("outcome", outcome)
+                .register(registry));
+    }
+
+    private record Key(String repository, Long id, String version) {
+    }
+}
@@ -0,0 +1,388 @@
+package com.evolve.catalog;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.evolve.model.Product;
+
+/**
+ * Products kept outside the Java heap, in memory-mapped files, so that a
+ * catalog of tens of millions costs the garbage collector almost nothing.
+ *
+ * Records are appended to a data file mapped in segments of
+ * {@code segmentBytes}, never spanning two:
+ * {@code [int length][long id][double price][short name length][name][short description length][description]},
+ * with UTF-8 text and -1 for a null. A product id maps to the offset of its
+ * record through an open-addressing (linear probing) table of
+ * {@code long} pairs in a second mapped file, which doubles when it is 70%
+ * full. A write appends a new record and repoints the id, so replaced and
+ * removed records stay in the data file as garbage until the store is
+ * rebuilt; {@link #garbageBytes()} says how much.
+ *
+ * The files are scratch space, deleted on {@link #close()}; the store is
+ * rebuilt from the database on start. Each lookup decodes a new
+ * {@link Product}. Writes take a write lock; lookups share a read lock.
+ */
+public class OffHeapProductStore implements AutoCloseable {
+
+    private static final long EMPTY = Long.MIN_VALUE;
+    private static final int SLOT_BYTES = 16;
+    private static final int HEADER_BYTES = Integer.BYTES + Long.BYTES + Double.BYTES;
+    private static final double MAX_LOAD = 0.7;
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final FileChannel data;
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private FileChannel indexFile;
+    private MappedByteBuffer index;
+    private int indexGeneration;
+    private long capacity;
+    private long size;
+    private long end;
+    private long garbage;
+
+    public OffHeapProductStore(Path directory, long segmentBytes, long expectedProducts) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        try {
+            Files.createDirectories(directory);
+            this.data = open(directory.resolve("products.dat"));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        long slots = Long.highestOneBit(Math.max(16, (long) (expectedProducts / MAX_LOAD)) * 2 - 1);
+        this.index = newIndex(slots);
+    }
+
+    /**
+     * Adds or replaces the product with the same id.
+     */
+    public void put(Product product) {
+        put(product, true);
+    }
+
+    /**
+     * Adds the product unless one with its id is already held; true if added.
+     */
+    public boolean putIfAbsent(Product product) {
+        return put(product, false);
+    }
+
+    private boolean put(Product product, boolean replace) {
+        byte[] name = bytes(product.getName());
+        byte[] description = bytes(product.getDescription());
+        int length = HEADER_BYTES + Short.BYTES + length(name) + Short.BYTES + length(description);
+        if (length > segmentBytes) {
+            throw new IllegalArgumentException("Product " + product.getId() + " does not fit in a segment");
+        }
+        lock.writeLock().lock();
+        try {
+            if (!replace && indexGet(product.getId()) != EMPTY) {
+                return false;
+            }
+            long offset = reserve(length);
+            MappedByteBuffer segment = segments.get((int) (offset / segmentBytes));
+            int position = (int) (offset % segmentBytes);
+            segment.putInt(position, length);
+            segment.putLong(position + Integer.BYTES, product.getId());
+            segment.putDouble(position + Integer.BYTES + Long.BYTES,
+                    product.getPrice() == null ? Double.NaN : product.getPrice());
+            position = putText(segment, position + HEADER_BYTES, name);
+            putText(segment, position, description);
+            long previous = indexPut(product.getId(), offset);
+            if (previous != EMPTY) {
+                garbage += recordLength(previous);
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * The product with the given id, or null.
+     */
+    public Product get(long id) {
+        lock.readLock().lock();
+        try {
+            long offset = indexGet(id);
+            return offset == EMPTY ? null : read(offset);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean contains(long id) {
+        lock.readLock().lock();
+        try {
+            return indexGet(id) != EMPTY;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            long offset = indexRemove(id);
+            if (offset != EMPTY) {
+                garbage += recordLength(offset);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public long size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Bytes of the data file in use, live records and garbage alike.
+     */
+    public long dataBytes() {
+        lock.readLock().lock();
+        try {
+            return end;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long garbageBytes() {
+        lock.readLock().lock();
+        try {
+            return garbage;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long indexBytes() {
+        lock.readLock().lock();
+        try {
+            return capacity * SLOT_BYTES;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            data.close();
+            indexFile.close();
+            // Mapped pages stay valid until the buffers are collected; the names go now
+            try (var files = Files.list(directory)) {
+                for (Path file : files.toList()) {
+                    Files.deleteIfExists(file);
+                }
+            }
+            Files.deleteIfExists(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private Product read(long offset) {
+        MappedByteBuffer segment = segments.get((int) (offset / segmentBytes));
+        int position = (int) (offset % segmentBytes);
+        Product product = new Product();
+        product.setId(segment.getLong(position + Integer.BYTES));
+        double price = segment.getDouble(position + Integer.BYTES + Long.BYTES);
+        product.setPrice(Double.isNaN(price) ? null : price);
+        position += HEADER_BYTES;
+        short nameLength = segment.getShort(position);
+        product.setName(getText(segment, position + Short.BYTES, nameLength));
+        position += Short.BYTES + Math.max(0, nameLength);
+        product.setDescription(getText(segment, position + Short.BYTES, segment.getShort(position)));
+        return product;
+    }
+
+    private int recordLength(long offset) {
+        return segments.get((int) (offset / segmentBytes)).getInt((int) (offset % segmentBytes));
+    }
+
+    // Where the next record of this length goes, mapping a new segment when the current one is full
+    private long reserve(int length) {
+        long segment = end / segmentBytes;
+        if (segment < segments.size() && end % segmentBytes + length > segmentBytes) {
+            segment++;
+            end = segment * segmentBytes;
+        }
+        if (segment == segments.size()) {
+            try {
+                segments.add(data.map(FileChannel.MapMode.READ_WRITE, segment * segmentBytes, segmentBytes));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        long offset = end;
+        end += length;
+        return offset;
+    }
+
+    private static int length(byte[] text) {
+        return text == null ? 0 : text.length;
+    }
+
+    private static byte[] bytes(String text) {
+        return text == null ? null : text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int putText(MappedByteBuffer segment, int position, byte[] text) {
+        if (text == null) {
+            segment.putShort(position, (short) -1);
+            return position + Short.BYTES;
+        }
+        if (text.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Text of " + text.length + " bytes is too long");
+        }
+        segment.putShort(position, (short) text.length);
+        segment.put(position + Short.BYTES, text);
+        return position + Short.BYTES + text.length;
+    }
+
+    private static String getText(MappedByteBuffer segment, int position, short length) {
+        if (length < 0) {
+            return null;
+        }
+        byte[] text = new byte[length];
+        segment.get(position, text);
+        return new String(text, StandardCharsets.UTF_8);
+    }
+
+    private static FileChannel open(Path file) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    // The id table: slot i holds a key at i * 16 and its record offset at i * 16 + 8
+
+    private MappedByteBuffer newIndex(long slots) {
+        if (slots * SLOT_BYTES > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Product index cannot grow past " + slots / 2 + " slots");
+        }
+        try {
+            FileChannel file = open(directory.resolve("products.idx." + indexGeneration++));
+            MappedByteBuffer table = file.map(FileChannel.MapMode.READ_WRITE, 0, slots * SLOT_BYTES);
+            for (long slot = 0; slot < slots; slot++) {
+                table.putLong((int) (slot * SLOT_BYTES), EMPTY);
+            }
+            if (indexFile != null) {
+                indexFile.close();
+                Files.deleteIfExists(directory.resolve("products.idx." + (indexGeneration - 2)));
+            }
+            indexFile = file;
+            capacity = slots;
+            return table;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private long slotOf(long id) {
+        long hash = id * 0x9E3779B97F4A7C15L;
+        return (hash ^ (hash >>> 32)) & (capacity - 1);
+    }
+
+    private long indexGet(long id) {
+        for (long slot = slotOf(id); ; slot = (slot + 1) & (capacity - 1)) {
+            long key = index.getLong((int) (slot * SLOT_BYTES));
+            if (key == id) {
+                return index.getLong((int) (slot * SLOT_BYTES + Long.BYTES));
+            }
+            if (key == EMPTY) {
+                return EMPTY;
+            }
+        }
+    }
+
+    // Returns the offset the id had, or EMPTY
+    private long indexPut(long id, long offset) {
+        if (size + 1 > capacity * MAX_LOAD) {
+            grow();
+        }
+        for (long slot = slotOf(id); ; slot = (slot + 1) & (capacity - 1)) {
+            int at = (int) (slot * SLOT_BYTES);
+            long key = index.getLong(at);
+            if (key == id) {
+                long previous = index.getLong(at + Long.BYTES);
+                index.putLong(at + Long.BYTES, offset);
+                return previous;
+            }
+            if (key == EMPTY) {
+                index.putLong(at, id);
+                index.putLong(at + Long.BYTES, offset);
+                size++;
+                return EMPTY;
+            }
+        }
+    }
+
+    // Backward-shift deletion keeps every probe chain unbroken without tombstones
+    private long indexRemove(long id) {
+        long slot = slotOf(id);
+        while (true) {
+            long key = index.getLong((int) (slot * SLOT_BYTES));
+            if (key == EMPTY) {
+                return EMPTY;
+            }
+            if (key == id) {
+                break;
+            }
+            slot = (slot + 1) & (capacity - 1);
+        }
+        long removed = index.getLong((int) (slot * SLOT_BYTES + Long.BYTES));
+        long hole = slot;
+        for (long next = (hole + 1) & (capacity - 1); ; next = (next + 1) & (capacity - 1)) {
+            long key = index.getLong((int) (next * SLOT_BYTES));
+            if (key == EMPTY) {
+                break;
+            }
+            long home = slotOf(key);
+            // Move the entry back unless its home lies cyclically in (hole, next]
+            boolean stays = hole <= next ? hole < home && home <= next : hole < home || home <= next;
+            if (!stays) {
+                index.putLong((int) (hole * SLOT_BYTES), key);
+                index.putLong((int) (hole * SLOT_BYTES + Long.BYTES), index.getLong((int) (next * SLOT_BYTES + Long.BYTES)));
+                hole = next;
+            }
+        }
+        index.putLong((int) (hole * SLOT_BYTES), EMPTY);
+        size--;
+        return removed;
+    }
+
+    private void grow() {
+        MappedByteBuffer old = index;
+        long oldCapacity = capacity;
+        index = newIndex(capacity * 2);
+        size = 0;
+        for (long slot = 0; slot < oldCapacity; slot++) {
+            long key = old.getLong((int) (slot * SLOT_BYTES));
+            if (key != EMPTY) {
+                indexPut(key, old.getLong((int) (slot * SLOT_BYTES + Long.BYTES)));
+            }
+        }
+    }
+}
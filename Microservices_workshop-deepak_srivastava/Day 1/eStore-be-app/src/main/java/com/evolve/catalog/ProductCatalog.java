@@ -0,0 +1,216 @@
+package com.evolve.catalog;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import com.evolve.model.Product;
+import com.evolve.repository.ProductRepository;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Optional off-heap copy of the products table ({@code catalog.off-heap.enabled})
+ * for lookups by id, held in an {@link OffHeapProductStore}.
+ *
+ * Like the search index it is loaded once the context is refreshed and then
+ * kept in step by the product handler and the importer on every write. Until
+ * the load has finished, {@link #isReady()} is false and callers read the
+ * database. Rows the load reads never replace a product written meanwhile,
+ * and products deleted meanwhile are not loaded back.
+ *
+ * Writes made through other nodes never reach it, so it is rebuilt from the
+ * database every {@code catalog.off-heap.refresh-interval}, which bounds how
+ * long it can serve a product changed elsewhere. A rebuild fills a second
+ * store while the first keeps serving, then swaps them; it also drops the
+ * garbage replaced records left behind.
+ */
+@Slf4j
+@Service
+public class ProductCatalog {
+
+    private final ProductRepository productRepository;
+    private final boolean enabled;
+    private final Path directory;
+    private final long segmentBytes;
+    private final long expectedProducts;
+    private final Duration refreshInterval;
+    private final AtomicBoolean loading = new AtomicBoolean();
+    private final Set<Long> deletedWhileLoading = ConcurrentHashMap.newKeySet();
+    private int generation;
+    // The store lookups read, and the one a load is filling; swapped under the catalog's lock
+    private volatile OffHeapProductStore store;
+    private OffHeapProductStore filling;
+    private volatile boolean ready;
+    private ScheduledExecutorService ticker;
+
+    public ProductCatalog(ProductRepository productRepository,
+                          @Value("${catalog.off-heap.enabled:false}") boolean enabled,
+                          @Value("${catalog.off-heap.directory:}") String directory,
+                          @Value("${catalog.off-heap.segment-size:1GB}") DataSize segmentSize,
+                          @Value("${catalog.off-heap.expected-products:100000}") long expectedProducts,
+                          @Value("${catalog.off-heap.refresh-interval:5m}") Duration refreshInterval) {
+        this.productRepository = productRepository;
+        this.enabled = enabled;
+        this.directory = directory.isBlank()
+                ? Path.of(System.getProperty("java.io.tmpdir"), "estore-catalog-" + ProcessHandle.current().pid())
+                : Path.of(directory);
+        this.segmentBytes = segmentSize.toBytes();
+        this.expectedProducts = expectedProducts;
+        this.refreshInterval = refreshInterval;
+    }
+
+    @EventListener(ContextRefreshedEvent.class)
+    public void load() {
+        if (!enabled || ticker != null) {
+            return;
+        }
+        ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "catalog-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refresh().subscribe(count -> { }, e -> log.error("Loading the off-heap product catalog failed", e));
+        if (refreshInterval.isPositive()) {
+            ticker.scheduleWithFixedDelay(this::runScheduled, refreshInterval.toMillis(), refreshInterval.toMillis(),
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void runScheduled() {
+        try {
+            refresh().block();
+        } catch (RuntimeException e) {
+            log.error("Refreshing the off-heap product catalog failed", e);
+        }
+    }
+
+    /**
+     * Loads every product into a new store and serves lookups from it once it
+     * is full; emits how many were loaded, or completes empty if a load is
+     * already running.
+     */
+    public Mono<Long> refresh() {
+        return Mono.defer(() -> {
+            if (!enabled || !loading.compareAndSet(false, true)) {
+                return Mono.empty();
+            }
+            long start = System.nanoTime();
+            OffHeapProductStore next;
+            synchronized (this) {
+                next = new OffHeapProductStore(directory.resolve(Integer.toString(++generation)), segmentBytes,
+                        expectedProducts);
+                deletedWhileLoading.clear();
+                filling = next;
+            }
+            return productRepository.findAll()
+                    .filter(product -> loaded(next, product))
+                    .count()
+                    .doOnNext(count -> {
+                        OffHeapProductStore previous;
+                        synchronized (this) {
+                            previous = store;
+                            store = next;
+                            filling = null;
+                            ready = true;
+                        }
+                        // Lookups still reading it see valid pages until its buffers are collected
+                        if (previous != null) {
+                            previous.close();
+                        }
+                        log.info("Loaded {} products off heap ({} MB data, {} MB index) in {} ms", count,
+                                next.dataBytes() >> 20, next.indexBytes() >> 20, (System.nanoTime() - start) / 1_000_000);
+                    })
+                    .doOnError(e -> {
+                        synchronized (this) {
+                            filling = null;
+                        }
+                        next.close();
+                    })
+                    .doFinally(signal -> loading.set(false));
+        });
+    }
+
+    // Rows read by the load yield to writes and deletes made since it started
+    private synchronized boolean loaded(OffHeapProductStore next, Product product) {
+        return !deletedWhileLoading.contains(product.getId()) && next.putIfAbsent(product);
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (!enabled) {
+            return;
+        }
+        if (ticker != null) {
+            ticker.shutdownNow();
+        }
+        ready = false;
+        for (OffHeapProductStore open : new OffHeapProductStore[] {store, filling}) {
+            if (open != null) {
+                open.close();
+            }
+        }
+        try {
+            Files.deleteIfExists(directory);
+        } catch (IOException e) {
+            log.warn("Could not delete {}: {}", directory, e.toString());
+        }
+    }
+
+    /**
+     * True once every product is held off heap and lookups can skip the database.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    public Mono<Product> findById(Long id) {
+        if (!ready) {
+            return productRepository.findById(id);
+        }
+        return Mono.fromSupplier(() -> store.get(id));
+    }
+
+    public Flux<Product> findAllById(Collection<Long> ids) {
+        if (!ready) {
+            return productRepository.findAllById(ids);
+        }
+        return Flux.fromIterable(ids).mapNotNull(store::get);
+    }
+
+    public synchronized void productSaved(Product product) {
+        if (store != null) {
+            store.put(product);
+        }
+        if (filling != null) {
+            filling.put(product);
+        }
+    }
+
+    public synchronized void productDeleted(Long id) {
+        if (store != null) {
+            store.remove(id);
+        }
+        if (filling != null) {
+            deletedWhileLoading.add(id);
+            filling.remove(id);
+        }
+    }
+}
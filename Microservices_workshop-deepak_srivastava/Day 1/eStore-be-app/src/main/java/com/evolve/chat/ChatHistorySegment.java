@@ -0,0 +1,110 @@
+package com.evolve.chat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * One memory-mapped file of the chat history log.
+ *
+ * Records are laid out as {@code [int length][payload][int length]} so the
+ * segment can be walked backwards from its end. The leading length is written
+ * last: a zero length marks the end of the data, which is also what a torn
+ * write leaves behind after a crash.
+ */
+class ChatHistorySegment {
+
+    static final int RECORD_OVERHEAD = Integer.BYTES * 2;
+
+    private final Path file;
+    private final long ordinal;
+    private final MappedByteBuffer buffer;
+    private volatile int writePosition;
+
+    private ChatHistorySegment(Path file, long ordinal, MappedByteBuffer buffer, int writePosition) {
+        this.file = file;
+        this.ordinal = ordinal;
+        this.buffer = buffer;
+        this.writePosition = writePosition;
+    }
+
+    static ChatHistorySegment create(Path dir, long ordinal, int capacity) throws IOException {
+        Path file = dir.resolve(fileName(ordinal));
+        return new ChatHistorySegment(file, ordinal, map(file, capacity), 0);
+    }
+
+    static ChatHistorySegment open(Path file, int capacity) throws IOException {
+        String name = file.getFileName().toString();
+        long ordinal = Long.parseLong(name.substring(0, name.length() - ChatHistoryStore.SEGMENT_SUFFIX.length()));
+        MappedByteBuffer buffer = map(file, Math.max(capacity, (int) Files.size(file)));
+        return new ChatHistorySegment(file, ordinal, buffer, recover(buffer));
+    }
+
+    static String fileName(long ordinal) {
+        return String.format("%020d%s", ordinal, ChatHistoryStore.SEGMENT_SUFFIX);
+    }
+
+    private static MappedByteBuffer map(Path file, int capacity) throws IOException {
+        // The mapping stays valid after the channel is closed
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        }
+    }
+
+    private static int recover(ByteBuffer buffer) {
+        int position = 0;
+        while (position + RECORD_OVERHEAD <= buffer.capacity()) {
+            int length = buffer.getInt(position);
+            int end = position + RECORD_OVERHEAD + length;
+            if (length <= 0 || end > buffer.capacity() || buffer.getInt(end - Integer.BYTES) != length) {
+                break;
+            }
+            position = end;
+        }
+        return position;
+    }
+
+    boolean hasRoomFor(int payloadSize) {
+        return writePosition + RECORD_OVERHEAD + payloadSize <= buffer.capacity();
+    }
+
+    /**
+     * Returns a view of the next {@code payloadSize} bytes for the caller to
+     * encode into; {@link #commit(int)} publishes the record to readers.
+     */
+    ByteBuffer reserve(int payloadSize) {
+        return buffer.slice(writePosition + Integer.BYTES, payloadSize);
+    }
+
+    void commit(int payloadSize) {
+        int position = writePosition;
+        buffer.putInt(position + Integer.BYTES + payloadSize, payloadSize);
+        buffer.putInt(position, payloadSize);
+        writePosition = position + RECORD_OVERHEAD + payloadSize;
+    }
+
+    /**
+     * Read-only view of the committed records; safe to use concurrently with appends.
+     */
+    ByteBuffer readView() {
+        int limit = writePosition;
+        return buffer.asReadOnlyBuffer().limit(limit);
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    Path file() {
+        return file;
+    }
+
+    long ordinal() {
+        return ordinal;
+    }
+}
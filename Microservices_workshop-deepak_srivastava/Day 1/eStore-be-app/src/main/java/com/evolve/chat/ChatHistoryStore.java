@@ -0,0 +1,267 @@
+package com.evolve.chat;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.evolve.grpc.ChatProto;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Append-only chat history shared by the gRPC {@code ChatService} and {@code /ws/chat}.
+ *
+ * Messages are stored in their protobuf encoding in memory-mapped segments.
+ * Appends only copy into the page cache; fsync happens on a background thread
+ * every {@code fsync-batch} records or {@code fsync-interval}, whichever comes
+ * first, so a crash loses at most that window. Replay walks the segments
+ * backwards and only materializes the messages of the requested room.
+ */
+@Slf4j
+@Component
+public class ChatHistoryStore {
+
+    public static final String DEFAULT_ROOM = "general";
+    static final String SEGMENT_SUFFIX = ".seg";
+
+    private final Path dir;
+    private final int segmentBytes;
+    private final int fsyncBatch;
+    private final Duration fsyncInterval;
+    private final int retentionSegments;
+    private final Duration retention;
+    private final int maxReplay;
+
+    private final Object writeLock = new Object();
+    private final AtomicInteger unsynced = new AtomicInteger();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    // Oldest first; replaced on roll so readers can iterate a stable snapshot
+    private volatile List<ChatHistorySegment> segments = List.of();
+    private ChatHistorySegment active;
+    private ScheduledExecutorService flusher;
+
+    public ChatHistoryStore(@Value("${chat.history.dir:data/chat-history}") Path dir,
+                            @Value("${chat.history.segment-bytes:67108864}") int segmentBytes,
+                            @Value("${chat.history.fsync-batch:256}") int fsyncBatch,
+                            @Value("${chat.history.fsync-interval:200ms}") Duration fsyncInterval,
+                            @Value("${chat.history.retention-segments:16}") int retentionSegments,
+                            @Value("${chat.history.retention:7d}") Duration retention,
+                            @Value("${chat.history.max-replay:1000}") int maxReplay) {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.fsyncBatch = fsyncBatch;
+        this.fsyncInterval = fsyncInterval;
+        this.retentionSegments = retentionSegments;
+        this.retention = retention;
+        this.maxReplay = maxReplay;
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        Files.createDirectories(dir);
+        List<ChatHistorySegment> opened = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.filter(f -> f.getFileName().toString().endsWith(SEGMENT_SUFFIX)).sorted().toList()) {
+                opened.add(ChatHistorySegment.open(file, segmentBytes));
+            }
+        }
+        if (opened.isEmpty()) {
+            opened.add(ChatHistorySegment.create(dir, 0, segmentBytes));
+        }
+        synchronized (writeLock) {
+            segments = List.copyOf(opened);
+            active = opened.get(opened.size() - 1);
+            applyRetention();
+        }
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "chat-history-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = fsyncInterval.toMillis();
+        flusher.scheduleWithFixedDelay(this::tick, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        log.info("Chat history opened at {} with {} segment(s)", dir, opened.size());
+    }
+
+    @PreDestroy
+    public void close() {
+        if (flusher != null) {
+            flusher.shutdown();
+        }
+        synchronized (writeLock) {
+            if (active != null) {
+                active.force();
+            }
+        }
+    }
+
+    public void append(ChatProto.ChatMessage message) {
+        if (message.getRoom().isEmpty() || message.getTimestamp() == 0) {
+            ChatProto.ChatMessage.Builder builder = message.toBuilder();
+            if (message.getRoom().isEmpty()) {
+                builder.setRoom(DEFAULT_ROOM);
+            }
+            if (message.getTimestamp() == 0) {
+                builder.setTimestamp(Instant.now().toEpochMilli());
+            }
+            message = builder.build();
+        }
+        int size = message.getSerializedSize();
+        if (size + ChatHistorySegment.RECORD_OVERHEAD > segmentBytes) {
+            throw new IllegalArgumentException("Chat message of " + size + " bytes does not fit in a history segment");
+        }
+        synchronized (writeLock) {
+            if (!active.hasRoomFor(size)) {
+                roll();
+            }
+            try {
+                CodedOutputStream out = CodedOutputStream.newInstance(active.reserve(size));
+                message.writeTo(out);
+                out.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            active.commit(size);
+        }
+        if (unsynced.incrementAndGet() >= fsyncBatch && flushScheduled.compareAndSet(false, true)) {
+            flusher.execute(this::flush);
+        }
+    }
+
+    /**
+     * Streams the last {@code limit} messages of a room, oldest first.
+     */
+    public Flux<ChatProto.ChatMessage> lastMessages(String room, int limit) {
+        String key = room == null || room.isEmpty() ? DEFAULT_ROOM : room;
+        int wanted = Math.max(0, Math.min(limit, maxReplay));
+        // Touching cold pages of a mapped file can block on disk
+        return Flux.defer(() -> {
+                    try {
+                        return Flux.fromIterable(scan(ByteString.copyFromUtf8(key), wanted));
+                    } catch (IOException e) {
+                        return Flux.error(e);
+                    }
+                })
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private ArrayDeque<ChatProto.ChatMessage> scan(ByteString room, int wanted) throws IOException {
+        ArrayDeque<ChatProto.ChatMessage> found = new ArrayDeque<>(wanted);
+        List<ChatHistorySegment> snapshot = segments;
+        for (int i = snapshot.size() - 1; i >= 0 && found.size() < wanted; i--) {
+            ByteBuffer view = snapshot.get(i).readView();
+            int end = view.limit();
+            while (end > 0 && found.size() < wanted) {
+                int length = view.getInt(end - Integer.BYTES);
+                int start = end - Integer.BYTES - length;
+                ByteBuffer payload = view.slice(start, length);
+                if (room.equals(roomOf(payload.duplicate()))) {
+                    found.addFirst(ChatProto.ChatMessage.parseFrom(payload));
+                }
+                end = start - Integer.BYTES;
+            }
+        }
+        return found;
+    }
+
+    // Reads only the room field so other rooms' messages are never materialized
+    private static ByteString roomOf(ByteBuffer payload) throws IOException {
+        CodedInputStream in = CodedInputStream.newInstance(payload);
+        int tag;
+        while ((tag = in.readTag()) != 0) {
+            if (WireFormat.getTagFieldNumber(tag) == ChatProto.ChatMessage.ROOM_FIELD_NUMBER) {
+                return in.readBytes();
+            }
+            in.skipField(tag);
+        }
+        return ByteString.EMPTY;
+    }
+
+    private void roll() {
+        active.force();
+        try {
+            active = ChatHistorySegment.create(dir, active.ordinal() + 1, segmentBytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        List<ChatHistorySegment> next = new ArrayList<>(segments);
+        next.add(active);
+        segments = List.copyOf(next);
+        applyRetention();
+    }
+
+    private void tick() {
+        try {
+            flush();
+            synchronized (writeLock) {
+                applyRetention();
+            }
+        } catch (RuntimeException e) {
+            log.error("Chat history maintenance failed", e);
+        }
+    }
+
+    private void flush() {
+        flushScheduled.set(false);
+        if (unsynced.getAndSet(0) == 0) {
+            return;
+        }
+        ChatHistorySegment current;
+        synchronized (writeLock) {
+            current = active;
+        }
+        // msync may run concurrently with appends to the same mapping
+        current.force();
+    }
+
+    // Caller holds writeLock
+    private void applyRetention() {
+        List<ChatHistorySegment> kept = new ArrayList<>(segments);
+        FileTime cutoff = FileTime.from(Instant.now().minus(retention));
+        while (kept.size() > 1 && (kept.size() > retentionSegments || isOlderThan(kept.get(0), cutoff))) {
+            ChatHistorySegment expired = kept.remove(0);
+            try {
+                // Readers holding an older snapshot keep the mapping until they finish
+                Files.deleteIfExists(expired.file());
+            } catch (IOException e) {
+                log.warn("Could not delete chat history segment {}", expired.file(), e);
+            }
+        }
+        if (kept.size() != segments.size()) {
+            segments = List.copyOf(kept);
+        }
+    }
+
+    private static boolean isOlderThan(ChatHistorySegment segment, FileTime cutoff) {
+        try {
+            return Files.getLastModifiedTime(segment.file()).compareTo(cutoff) < 0;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.evolve.codec;
+
+import java.util.List;
+import java.util.Map;
+
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.cbor.Jackson2CborEncoder;
+import org.springframework.util.MimeType;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * {@link Jackson2CborEncoder} only encodes single values, so every response
+ * body, which reaches an encoder as a publisher, fails with it. This one
+ * writes a {@link Mono} body as its value and a {@link Flux} body as one CBOR
+ * array, the way the JSON encoder writes a JSON array.
+ *
+ * It is only picked for an explicit {@code application/cbor}, so it never
+ * becomes the default over JSON; see
+ * {@link com.evolve.filter.ContentNegotiationFilter}.
+ */
+public class CborEncoder extends Jackson2CborEncoder {
+
+    public CborEncoder(ObjectMapper mapper) {
+        // Without a MIME type the Jackson codecs default to the JSON ones
+        super(mapper, MediaType.APPLICATION_CBOR);
+    }
+
+    @Override
+    public boolean canEncode(ResolvableType elementType, MimeType mimeType) {
+        return mimeType != null && super.canEncode(elementType, mimeType);
+    }
+
+    @Override
+    public Flux<DataBuffer> encode(Publisher<?> inputStream, DataBufferFactory bufferFactory, ResolvableType elementType,
+                                   MimeType mimeType, Map<String, Object> hints) {
+        if (inputStream instanceof Mono<?> mono) {
+            return mono.map(value -> encodeValue(value, bufferFactory, elementType, mimeType, hints)).flux();
+        }
+        ResolvableType listType = ResolvableType.forClassWithGenerics(List.class, elementType);
+        return Flux.from(inputStream)
+                .collectList()
+                .map(list -> encodeValue(list, bufferFactory, listType, mimeType, hints))
+                .flux();
+    }
+}
@@ -0,0 +1,61 @@
+package com.evolve.codec;
+
+import java.util.List;
+import java.util.Map;
+
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.Decoder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.codec.protobuf.ProtobufDecoder;
+import org.springframework.util.MimeType;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reads {@code application/x-protobuf} request bodies into the models mapped
+ * in {@link ProtobufModels}: one message for a single value, length-delimited
+ * messages for a {@link Flux}.
+ */
+public class ProtobufModelDecoder implements Decoder<Object> {
+
+    private final ProtobufDecoder delegate = new ProtobufDecoder();
+
+    @Override
+    public boolean canDecode(ResolvableType elementType, MimeType mimeType) {
+        return mimeType != null && ProtobufModels.PROTOBUF.isCompatibleWith(mimeType)
+                && ProtobufModels.supports(elementType.toClass());
+    }
+
+    @Override
+    public Flux<Object> decode(Publisher<DataBuffer> inputStream, ResolvableType elementType, MimeType mimeType,
+                               Map<String, Object> hints) {
+        Class<?> type = elementType.toClass();
+        return delegate.decode(inputStream, messageType(type), mimeType, hints)
+                .map(message -> ProtobufModels.fromMessage(type, message));
+    }
+
+    @Override
+    public Mono<Object> decodeToMono(Publisher<DataBuffer> inputStream, ResolvableType elementType, MimeType mimeType,
+                                     Map<String, Object> hints) {
+        Class<?> type = elementType.toClass();
+        return delegate.decodeToMono(inputStream, messageType(type), mimeType, hints)
+                .map(message -> ProtobufModels.fromMessage(type, message));
+    }
+
+    @Override
+    public Object decode(DataBuffer buffer, ResolvableType targetType, MimeType mimeType, Map<String, Object> hints) {
+        Class<?> type = targetType.toClass();
+        return ProtobufModels.fromMessage(type, delegate.decode(buffer, messageType(type), mimeType, hints));
+    }
+
+    @Override
+    public List<MimeType> getDecodableMimeTypes() {
+        return List.of(ProtobufModels.PROTOBUF);
+    }
+
+    private static ResolvableType messageType(Class<?> type) {
+        return ResolvableType.forClass(ProtobufModels.messageType(type));
+    }
+}
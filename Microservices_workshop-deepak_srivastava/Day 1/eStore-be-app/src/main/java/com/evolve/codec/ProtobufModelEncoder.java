@@ -0,0 +1,61 @@
+package com.evolve.codec;
+
+import java.util.List;
+import java.util.Map;
+
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.HttpMessageEncoder;
+import org.springframework.http.codec.protobuf.ProtobufEncoder;
+import org.springframework.util.MimeType;
+
+import com.google.protobuf.Message;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Writes the models mapped in {@link ProtobufModels} as
+ * {@code application/x-protobuf}: a single value as one message, a
+ * {@link Flux} as length-delimited messages, as {@link ProtobufEncoder} does.
+ */
+public class ProtobufModelEncoder implements HttpMessageEncoder<Object> {
+
+    private final ProtobufEncoder delegate = new ProtobufEncoder();
+
+    @Override
+    public boolean canEncode(ResolvableType elementType, MimeType mimeType) {
+        return mimeType != null && ProtobufModels.PROTOBUF.isCompatibleWith(mimeType)
+                && ProtobufModels.supports(elementType.toClass());
+    }
+
+    @Override
+    public Flux<DataBuffer> encode(Publisher<?> inputStream, DataBufferFactory bufferFactory, ResolvableType elementType,
+                                   MimeType mimeType, Map<String, Object> hints) {
+        ResolvableType messageType = ResolvableType.forClass(ProtobufModels.messageType(elementType.toClass()));
+        // Mono stays Mono so a single value is written without a length prefix
+        Publisher<Message> messages = inputStream instanceof Mono<?> mono
+                ? mono.map(ProtobufModels::toMessage)
+                : Flux.from(inputStream).map(ProtobufModels::toMessage);
+        return delegate.encode(messages, bufferFactory, messageType, mimeType, hints);
+    }
+
+    @Override
+    public DataBuffer encodeValue(Object value, DataBufferFactory bufferFactory, ResolvableType valueType,
+                                  MimeType mimeType, Map<String, Object> hints) {
+        return delegate.encodeValue(ProtobufModels.toMessage(value), bufferFactory, valueType, mimeType, hints);
+    }
+
+    @Override
+    public List<MimeType> getEncodableMimeTypes() {
+        return List.of(ProtobufModels.PROTOBUF);
+    }
+
+    @Override
+    public List<MediaType> getStreamingMediaTypes() {
+        return List.of(ProtobufModels.PROTOBUF);
+    }
+}
@@ -0,0 +1,272 @@
+package com.evolve.codec;
+
+import java.util.Map;
+import java.util.function.Function;
+
+import org.springframework.http.MediaType;
+
+import com.evolve.dto.CartItemWithProduct;
+import com.evolve.dto.OrderWithItems;
+import com.evolve.model.Cart;
+import com.evolve.model.CartItem;
+import com.evolve.model.Order;
+import com.evolve.model.OrderItem;
+import com.evolve.model.Product;
+import com.evolve.model.Usr;
+import com.google.protobuf.Message;
+
+/**
+ * Maps the REST models to and from their messages in model.proto. Users
+ * follow the same rules as {@link UserSerializer} and
+ * {@link UserDeserializer}: no id is written, and the name and email read
+ * from a request land in each other's field.
+ */
+public final class ProtobufModels {
+
+    public static final MediaType PROTOBUF = MediaType.parseMediaType("application/x-protobuf");
+
+    private record Mapping(Class<? extends Message> messageType,
+                           Function<Object, Message> toMessage,
+                           Function<Message, Object> fromMessage) {
+    }
+
+    private static final Map<Class<?>, Mapping> MAPPINGS = Map.of(
+            Usr.class, mapping(Usr.class, ModelProto.User.class, ProtobufModels::toMessage, ProtobufModels::fromMessage),
+            Product.class, mapping(Product.class, ModelProto.Product.class, ProtobufModels::toMessage, ProtobufModels::fromMessage),
+            Cart.class, mapping(Cart.class, ModelProto.Cart.class, ProtobufModels::toMessage, ProtobufModels::fromMessage),
+            CartItem.class, mapping(CartItem.class, ModelProto.CartItem.class, ProtobufModels::toMessage, ProtobufModels::fromMessage),
+            CartItemWithProduct.class, mapping(CartItemWithProduct.class, ModelProto.CartItemWithProduct.class,
+                    ProtobufModels::toMessage, ProtobufModels::fromMessage),
+            Order.class, mapping(Order.class, ModelProto.Order.class, ProtobufModels::toMessage, ProtobufModels::fromMessage),
+            OrderItem.class, mapping(OrderItem.class, ModelProto.OrderItem.class, ProtobufModels::toMessage, ProtobufModels::fromMessage),
+            OrderWithItems.class, mapping(OrderWithItems.class, ModelProto.OrderWithItems.class,
+                    ProtobufModels::toMessage, ProtobufModels::fromMessage));
+
+    private ProtobufModels() {
+    }
+
+    private static <T, M extends Message> Mapping mapping(Class<T> type, Class<M> messageType,
+                                                          Function<T, M> toMessage, Function<M, T> fromMessage) {
+        return new Mapping(messageType,
+                value -> toMessage.apply(type.cast(value)),
+                message -> fromMessage.apply(messageType.cast(message)));
+    }
+
+    public static boolean supports(Class<?> type) {
+        return MAPPINGS.containsKey(type);
+    }
+
+    public static Class<? extends Message> messageType(Class<?> type) {
+        return mapping(type).messageType();
+    }
+
+    public static Message toMessage(Object value) {
+        return mapping(value.getClass()).toMessage().apply(value);
+    }
+
+    public static Object fromMessage(Class<?> type, Message message) {
+        return mapping(type).fromMessage().apply(message);
+    }
+
+    private static Mapping mapping(Class<?> type) {
+        Mapping mapping = MAPPINGS.get(type);
+        if (mapping == null) {
+            throw new IllegalArgumentException("No protobuf mapping for " + type.getName());
+        }
+        return mapping;
+    }
+
+    static ModelProto.User toMessage(Usr user) {
+        ModelProto.User.Builder builder = ModelProto.User.newBuilder();
+        if (user.getEmail() != null) {
+            builder.setEmail(user.getEmail());
+        }
+        if (user.getName() != null) {
+            builder.setName(user.getName());
+        }
+        return builder.build();
+    }
+
+    static Usr fromMessage(ModelProto.User message) {
+        Usr user = new Usr();
+        user.setEmail(message.hasName() ? message.getName() : null);
+        user.setName(message.hasEmail() ? message.getEmail() : null);
+        return user;
+    }
+
+    static ModelProto.Product toMessage(Product product) {
+        ModelProto.Product.Builder builder = ModelProto.Product.newBuilder();
+        if (product.getId() != null) {
+            builder.setId(product.getId());
+        }
+        if (product.getName() != null) {
+            builder.setName(product.getName());
+        }
+        if (product.getDescription() != null) {
+            builder.setDescription(product.getDescription());
+        }
+        if (product.getPrice() != null) {
+            builder.setPrice(product.getPrice());
+        }
+        return builder.build();
+    }
+
+    static Product fromMessage(ModelProto.Product message) {
+        Product product = new Product();
+        product.setId(message.hasId() ? message.getId() : null);
+        product.setName(message.hasName() ? message.getName() : null);
+        product.setDescription(message.hasDescription() ? message.getDescription() : null);
+        product.setPrice(message.hasPrice() ? message.getPrice() : null);
+        return product;
+    }
+
+    static ModelProto.Cart toMessage(Cart cart) {
+        ModelProto.Cart.Builder builder = ModelProto.Cart.newBuilder();
+        if (cart.getId() != null) {
+            builder.setId(cart.getId());
+        }
+        if (cart.getUserId() != null) {
+            builder.setUserId(cart.getUserId());
+        }
+        if (cart.getStatus() != null) {
+            builder.setStatus(cart.getStatus());
+        }
+        return builder.build();
+    }
+
+    static Cart fromMessage(ModelProto.Cart message) {
+        Cart cart = new Cart();
+        cart.setId(message.hasId() ? message.getId() : null);
+        cart.setUserId(message.hasUserId() ? message.getUserId() : null);
+        cart.setStatus(message.hasStatus() ? message.getStatus() : null);
+        return cart;
+    }
+
+    static ModelProto.CartItem toMessage(CartItem item) {
+        ModelProto.CartItem.Builder builder = ModelProto.CartItem.newBuilder();
+        if (item.getId() != null) {
+            builder.setId(item.getId());
+        }
+        if (item.getCartId() != null) {
+            builder.setCartId(item.getCartId());
+        }
+        if (item.getProductId() != null) {
+            builder.setProductId(item.getProductId());
+        }
+        if (item.getQuantity() != null) {
+            builder.setQuantity(item.getQuantity());
+        }
+        if (item.getVersion() != null) {
+            builder.setVersion(item.getVersion());
+        }
+        return builder.build();
+    }
+
+    static CartItem fromMessage(ModelProto.CartItem message) {
+        CartItem item = new CartItem();
+        item.setId(message.hasId() ? message.getId() : null);
+        item.setCartId(message.hasCartId() ? message.getCartId() : null);
+        item.setProductId(message.hasProductId() ? message.getProductId() : null);
+        item.setQuantity(message.hasQuantity() ? message.getQuantity() : null);
+        item.setVersion(message.hasVersion() ? message.getVersion() : null);
+        return item;
+    }
+
+    static ModelProto.CartItemWithProduct toMessage(CartItemWithProduct item) {
+        ModelProto.CartItemWithProduct.Builder builder = ModelProto.CartItemWithProduct.newBuilder();
+        if (item.getId() != null) {
+            builder.setId(item.getId());
+        }
+        if (item.getCartId() != null) {
+            builder.setCartId(item.getCartId());
+        }
+        if (item.getQuantity() != null) {
+            builder.setQuantity(item.getQuantity());
+        }
+        if (item.getProduct() != null) {
+            builder.setProduct(toMessage(item.getProduct()));
+        }
+        return builder.build();
+    }
+
+    static CartItemWithProduct fromMessage(ModelProto.CartItemWithProduct message) {
+        CartItemWithProduct item = new CartItemWithProduct();
+        item.setId(message.hasId() ? message.getId() : null);
+        item.setCartId(message.hasCartId() ? message.getCartId() : null);
+        item.setQuantity(message.hasQuantity() ? message.getQuantity() : null);
+        item.setProduct(message.hasProduct() ? fromMessage(message.getProduct()) : null);
+        return item;
+    }
+
+    static ModelProto.Order toMessage(Order order) {
+        ModelProto.Order.Builder builder = ModelProto.Order.newBuilder();
+        if (order.getId() != null) {
+            builder.setId(order.getId());
+        }
+        if (order.getStatus() != null) {
+            builder.setStatus(order.getStatus());
+        }
+        if (order.getUserId() != null) {
+            builder.setUserId(order.getUserId());
+        }
+        if (order.getCartId() != null) {
+            builder.setCartId(order.getCartId());
+        }
+        return builder.build();
+    }
+
+    static Order fromMessage(ModelProto.Order message) {
+        Order order = new Order();
+        order.setId(message.hasId() ? message.getId() : null);
+        order.setStatus(message.hasStatus() ? message.getStatus() : null);
+        order.setUserId(message.hasUserId() ? message.getUserId() : null);
+        order.setCartId(message.hasCartId() ? message.getCartId() : null);
+        return order;
+    }
+
+    static ModelProto.OrderItem toMessage(OrderItem item) {
+        ModelProto.OrderItem.Builder builder = ModelProto.OrderItem.newBuilder();
+        if (item.getId() != null) {
+            builder.setId(item.getId());
+        }
+        if (item.getOrderId() != null) {
+            builder.setOrderId(item.getOrderId());
+        }
+        if (item.getProductId() != null) {
+            builder.setProductId(item.getProductId());
+        }
+        if (item.getQuantity() != null) {
+            builder.setQuantity(item.getQuantity());
+        }
+        if (item.getUnitPrice() != null) {
+            builder.setUnitPrice(item.getUnitPrice());
+        }
+        return builder.build();
+    }
+
+    static OrderItem fromMessage(ModelProto.OrderItem message) {
+        OrderItem item = new OrderItem();
+        item.setId(message.hasId() ? message.getId() : null);
+        item.setOrderId(message.hasOrderId() ? message.getOrderId() : null);
+        item.setProductId(message.hasProductId() ? message.getProductId() : null);
+        item.setQuantity(message.hasQuantity() ? message.getQuantity() : null);
+        item.setUnitPrice(message.hasUnitPrice() ? message.getUnitPrice() : null);
+        return item;
+    }
+
+    static ModelProto.OrderWithItems toMessage(OrderWithItems order) {
+        ModelProto.OrderWithItems.Builder builder = ModelProto.OrderWithItems.newBuilder();
+        if (order.getOrder() != null) {
+            builder.setOrder(toMessage(order.getOrder()));
+        }
+        if (order.getItems() != null) {
+            order.getItems().forEach(item -> builder.addItems(toMessage(item)));
+        }
+        return builder.build();
+    }
+
+    static OrderWithItems fromMessage(ModelProto.OrderWithItems message) {
+        return new OrderWithItems(message.hasOrder() ? fromMessage(message.getOrder()) : null,
+                message.getItemsList().stream().map(ProtobufModels::fromMessage).toList());
+    }
+}
@@ -15,7 +15,6 @@ public class UserDeserializer extends JsonDeserializer<Usr> {
         Usr user = new Usr();
         user.setEmail(node.get("name").asText()); // Accept "email" as "username"
         user.setName(node.get("email").asText());
-        System.out.println("Values De-serialized");
         return user;
     }
 }
@@ -13,7 +13,6 @@ public class UserSerializer extends JsonSerializer<Usr> {
         gen.writeStartObject();
         gen.writeStringField("email", user.getEmail()); // Rename "username" to "email"
         gen.writeStringField("name", user.getName());
-        System.out.println("Values Serialized");
         gen.writeEndObject();
     }
 }
@@ -0,0 +1,99 @@
+package com.evolve.concurrency;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A concurrency limit that follows observed latency, after the gradient
+ * algorithm of Netflix's concurrency-limits.
+ *
+ * Two moving averages of request latency are kept: a short one that reacts
+ * within tens of requests and a long one that stands for latency without
+ * queueing, so it only rises over thousands of requests. While the short
+ * average stays within {@code tolerance} of the long one the limit grows by
+ * about its square root per update; once requests start queueing somewhere
+ * downstream the short average rises and the limit shrinks in proportion, by
+ * at most half per update. The limit does not grow while fewer than half of
+ * it are in use, since such samples say nothing about a higher limit.
+ */
+public final class AdaptiveConcurrencyLimit {
+
+    private static final double SHORT_WINDOW = 10;
+    private static final double LONG_WINDOW = 2000;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final double smoothing;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile int limit;
+    // Guarded by this
+    private double estimate;
+    private double shortRtt;
+    private double longRtt;
+
+    public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, double tolerance, double smoothing) {
+        if (minLimit < 1 || minLimit > maxLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Limits must satisfy 1 <= min <= initial <= max");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.smoothing = smoothing;
+        this.limit = initialLimit;
+        this.estimate = initialLimit;
+    }
+
+    /**
+     * Admits a request if fewer than {@code share} of the limit are in
+     * flight; an admitted request must be {@link #release released}.
+     */
+    public boolean tryAcquire(double share) {
+        int allowed = Math.max(1, (int) (limit * share));
+        while (true) {
+            int current = inFlight.get();
+            if (current >= allowed) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Ends an admitted request; {@code rttNanos < 0} releases without a sample.
+     */
+    public void release(long rttNanos) {
+        int wasInFlight = inFlight.getAndDecrement();
+        if (rttNanos >= 0) {
+            sample(rttNanos, wasInFlight);
+        }
+    }
+
+    private synchronized void sample(long rttNanos, int wasInFlight) {
+        if (longRtt == 0) {
+            shortRtt = rttNanos;
+            longRtt = rttNanos;
+            return;
+        }
+        shortRtt += (rttNanos - shortRtt) / SHORT_WINDOW;
+        // Rises slowly, so a queue that builds up gradually is not mistaken for the backend getting slower,
+        // and falls as fast as the short average, so the limit recovers as soon as the queue drains
+        longRtt += (rttNanos - longRtt) / (rttNanos > longRtt ? LONG_WINDOW : SHORT_WINDOW);
+        if (wasInFlight < estimate / 2) {
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, tolerance * longRtt / shortRtt));
+        double next = estimate * gradient + Math.sqrt(estimate);
+        estimate = Math.max(minLimit, Math.min(maxLimit, estimate * (1 - smoothing) + next * smoothing));
+        limit = (int) estimate;
+    }
+
+    public int limit() {
+        return limit;
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+}
@@ -0,0 +1,39 @@
+package com.evolve.config;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.evolve.batch.BatchLoader;
+import com.evolve.model.Cart;
+import com.evolve.model.Product;
+import com.evolve.repository.CartRepository;
+import com.evolve.repository.ProductRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Cart and product lookups by id, gathered across requests into IN queries
+@Configuration
+public class BatchLoaderConfig {
+
+    private final Duration window;
+    private final int maxBatch;
+
+    public BatchLoaderConfig(@Value("${batch-loader.window:1ms}") Duration window,
+                             @Value("${batch-loader.max-batch:100}") int maxBatch) {
+        this.window = window;
+        this.maxBatch = maxBatch;
+    }
+
+    @Bean
+    public BatchLoader<Cart> cartLoader(CartRepository repository, MeterRegistry registry) {
+        return new BatchLoader<>("carts", repository::findAllById, Cart::getId, window, maxBatch, registry);
+    }
+
+    @Bean
+    public BatchLoader<Product> productLoader(ProductRepository repository, MeterRegistry registry) {
+        return new BatchLoader<>("products", repository::findAllById, Product::getId, window, maxBatch, registry);
+    }
+}
@@ -1,12 +1,15 @@
 package com.evolve.config;
 
 import jakarta.annotation.PreDestroy;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Configuration;
 import redis.embedded.RedisServer;
 
 import jakarta.annotation.PostConstruct;
 
+// Only needed for the Redis cart event transport; the in-JVM transport runs without Redis
 @Configuration
+@ConditionalOnProperty(name = "cart.events.transport", havingValue = "redis", matchIfMissing = true)
 public class EmbeddedRedisConfig {
 
     private RedisServer redisServer;
@@ -3,11 +3,18 @@ package com.evolve.config;
 import org.springframework.http.codec.json.Jackson2JsonEncoder;
 import org.springframework.http.codec.json.Jackson2JsonDecoder;
 
+import com.evolve.codec.CborDecoder;
+import com.evolve.codec.CborEncoder;
+import com.evolve.codec.ProtobufModelDecoder;
+import com.evolve.codec.ProtobufModelEncoder;
 import com.evolve.codec.UserDeserializer;
 import com.evolve.codec.UserSerializer;
 import com.evolve.model.Usr;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.codec.ServerCodecConfigurer;
@@ -22,16 +29,33 @@ public class WebFluxConfig implements WebFluxConfigurer {
         ObjectMapper mapper = customObjectMapper();
         configurer.defaultCodecs().jackson2JsonEncoder(new Jackson2JsonEncoder(mapper));
         configurer.defaultCodecs().jackson2JsonDecoder(new Jackson2JsonDecoder(mapper));
+        // Binary formats for callers that ask for them; JSON stays the default
+        ObjectMapper cborMapper = cborObjectMapper();
+        configurer.customCodecs().register(new CborEncoder(cborMapper));
+        configurer.customCodecs().register(new CborDecoder(cborMapper));
+        configurer.customCodecs().register(new ProtobufModelEncoder());
+        configurer.customCodecs().register(new ProtobufModelDecoder());
     }
 
     @Bean
     public ObjectMapper customObjectMapper() {
-        ObjectMapper mapper = new ObjectMapper();
+        return configure(new ObjectMapper());
+    }
+
+    // Not a bean: it would compete with the JSON mapper wherever an ObjectMapper is injected
+    public static ObjectMapper cborObjectMapper() {
+        return configure(new CBORMapper());
+    }
+
+    // The same Usr rules and date format in every Jackson format
+    private static ObjectMapper configure(ObjectMapper mapper) {
         SimpleModule module = new SimpleModule();
         module.addSerializer(Usr.class, new UserSerializer());
         module.addDeserializer(Usr.class, new UserDeserializer());
         mapper.registerModule(module);
+        // java.time values are written as ISO-8601
+        mapper.registerModule(new JavaTimeModule());
+        mapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
         return mapper;
     }
 }
-
@@ -1,26 +1,41 @@
 package com.evolve.controller;
 
+import com.evolve.metrics.CartEventMetrics;
 import com.evolve.model.CartEvent;
+import com.evolve.presence.PresenceTracker;
 import com.evolve.service.CartEventService;
+import com.evolve.transport.CartEventCodec;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
 import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 
 @RestController
 @Slf4j
 public class SseController {
 
+    private static final ThreadLocal<StringBuilder> FRAME = ThreadLocal.withInitial(() -> new StringBuilder(256));
+
     private final CartEventService cartEventService;
     private final ObjectMapper objectMapper;
+    private final PresenceTracker presenceTracker;
+    private final CartEventMetrics cartEventMetrics;
 
-    public SseController(CartEventService cartEventService, ObjectMapper objectMapper) {
+    public SseController(CartEventService cartEventService, ObjectMapper objectMapper,
+                         PresenceTracker presenceTracker, CartEventMetrics cartEventMetrics) {
         this.cartEventService = cartEventService;
         this.objectMapper = objectMapper;
+        this.presenceTracker = presenceTracker;
+        this.cartEventMetrics = cartEventMetrics;
     }
 
     @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
@@ -33,42 +48,59 @@ public class SseController {
     }
 
     @GetMapping(value = "/cart-events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public Flux<String> streamCartEvents() {
-        return cartEventService.subscribeToCartEvents()
-                .map(event -> {
-                    try {
-                        String eventJson = objectMapper.writeValueAsString(event);
-                        log.info("Streaming cart event via SSE: {}", eventJson);
-                        return "data: " + eventJson + "\n\n";
-                    } catch (JsonProcessingException e) {
-                        log.error("Error serializing cart event for SSE", e);
-                        return "data: {\"error\": \"Serialization error\"}\n\n";
-                    }
-                })
-                .onErrorResume(e -> {
-                    log.error("Error in cart events SSE stream", e);
-                    return Flux.just("data: {\"error\": \"Stream error: " + e.getMessage() + "\"}\n\n");
-                });
+    public Mono<Void> streamCartEvents(ServerHttpResponse response) {
+        return write(response, cartEventService.subscribeToCartEvents()
+                .doOnNext(event -> log.debug("Streaming cart event via SSE: {}", event))
+                .doOnError(e -> log.error("Error in cart events SSE stream", e)));
     }
 
     @GetMapping(value = "/cart-events/{userId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public Flux<String> streamUserCartEvents(@PathVariable Long userId) {
-        return cartEventService.subscribeToCartEvents()
-                .filter(event -> event.getUserId().equals(userId))
-                .map(event -> {
+    public Mono<Void> streamUserCartEvents(@PathVariable long userId, ServerHttpResponse response) {
+        return write(response, cartEventService.subscribeToCartEvents()
+                .filter(event -> event.getUserId() == userId)
+                .doOnNext(event -> log.debug("Streaming user cart event via SSE for userId {}: {}", userId, event))
+                .doOnError(e -> log.error("Error in user cart events SSE stream for userId {}", userId, e)));
+    }
+
+    /**
+     * Writes one frame per event, flushing each. A frame is built when the
+     * connection takes it, which for a slow client is after the frames queued
+     * ahead of it, so the client write lag covers that wait.
+     */
+    private Mono<Void> write(ServerHttpResponse response, Flux<CartEvent> events) {
+        response.getHeaders().setContentType(MediaType.TEXT_EVENT_STREAM);
+        DataBufferFactory buffers = response.bufferFactory();
+        return response.writeAndFlushWith(events
+                .map(event -> Mono.fromSupplier(() -> frame(event, buffers))
+                        .doOnSuccess(written -> cartEventMetrics.recordClientWrite(event)))
+                .onErrorResume(e -> Mono.just(Mono.just(errorFrame(e, buffers)))));
+    }
+
+    // Written field by field into this thread's builder, so the only allocations are the frame and its buffer.
+    // Clients read the "data: {...}" text as the event data, as when Spring framed the text itself.
+    private static DataBuffer frame(CartEvent event, DataBufferFactory buffers) {
+        StringBuilder frame = FRAME.get();
+        frame.setLength(0);
+        CartEventCodec.appendJson(event, frame.append("data:data: ")).append("\ndata:\ndata:\n\n");
+        return buffers.wrap(frame.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static DataBuffer errorFrame(Throwable e, DataBufferFactory buffers) {
+        String data = "data: {\"error\": \"Stream error: " + e.getMessage() + "\"}\n\n";
+        return buffers.wrap(("data:" + data.replace("\n", "\ndata:") + "\n\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Each SSE event carries the batch of presence changes of one tick
+    @GetMapping(value = "/presence-events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<String> streamPresenceEvents() {
+        return presenceTracker.changes()
+                .map(batch -> {
                     try {
-                        String eventJson = objectMapper.writeValueAsString(event);
-                        log.info("Streaming user cart event via SSE for userId {}: {}", userId, eventJson);
-                        return "data: " + eventJson + "\n\n";
+                        return "data: " + objectMapper.writeValueAsString(batch) + "\n\n";
                     } catch (JsonProcessingException e) {
-                        log.error("Error serializing cart event for SSE", e);
+                        log.error("Error serializing presence events for SSE", e);
                         return "data: {\"error\": \"Serialization error\"}\n\n";
                     }
-                })
-                .onErrorResume(e -> {
-                    log.error("Error in user cart events SSE stream for userId {}", userId, e);
-                    return Flux.just("data: {\"error\": \"Stream error: " + e.getMessage() + "\"}\n\n");
                 });
     }
 }
-
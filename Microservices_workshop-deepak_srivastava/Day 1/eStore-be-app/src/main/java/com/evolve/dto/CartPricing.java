@@ -0,0 +1,34 @@
+package com.evolve.dto;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartPricing {
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class LinePrice {
+        private Long itemId;
+        private Long productId;
+        private Integer quantity;
+        private BigDecimal unitPrice;
+        private BigDecimal lineTotal;
+    }
+
+    private Long cartId;
+    private String currency;
+    private Long itemCount;
+    private BigDecimal total;
+    // Exact total in minor units (e.g. paise, cents)
+    private Long totalMinor;
+    // Null when only totals were requested
+    private List<LinePrice> lines;
+}
@@ -0,0 +1,17 @@
+package com.evolve.dto;
+
+import java.util.List;
+
+import com.evolve.model.Cart;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartWithItems {
+    private Cart cart;
+    private List<CartItemWithProduct> items;
+}
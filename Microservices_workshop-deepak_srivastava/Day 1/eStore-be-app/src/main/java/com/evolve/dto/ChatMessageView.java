@@ -0,0 +1,22 @@
+package com.evolve.dto;
+
+import com.evolve.grpc.ChatProto;
+
+import lombok.Data;
+
+@Data
+public class ChatMessageView {
+    private String room;
+    private String user;
+    private String text;
+    private long timestamp;
+
+    public static ChatMessageView from(ChatProto.ChatMessage message) {
+        ChatMessageView view = new ChatMessageView();
+        view.setRoom(message.getRoom());
+        view.setUser(message.getUser());
+        view.setText(message.getText());
+        view.setTimestamp(message.getTimestamp());
+        return view;
+    }
+}
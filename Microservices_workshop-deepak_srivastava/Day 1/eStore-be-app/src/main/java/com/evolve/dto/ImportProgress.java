@@ -0,0 +1,33 @@
+package com.evolve.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportProgress {
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Reject {
+        // 1-based line in the input, header included
+        private long line;
+        private String reason;
+    }
+
+    private long parsed;
+    private long inserted;
+    private long rejected;
+    private long batches;
+    private long elapsedMillis;
+    private boolean done;
+    // Set on the final report when the import stopped early, e.g. on a malformed header
+    private String error;
+    // Only on the final report, capped at product-import.max-rejects
+    private List<Reject> rejects;
+}
@@ -0,0 +1,18 @@
+package com.evolve.dto;
+
+import java.util.List;
+
+import com.evolve.model.Order;
+import com.evolve.model.OrderItem;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderWithItems {
+    private Order order;
+    private List<OrderItem> items;
+}
@@ -0,0 +1,31 @@
+package com.evolve.dto;
+
+import java.util.List;
+
+import com.evolve.model.Product;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductSearchResponse {
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ProductHit {
+        private Product product;
+        private double score;
+    }
+
+    private String query;
+    // True when the latency budget ran out before every candidate was ranked
+    private boolean partial;
+    // False while the index is still being built at startup
+    private boolean ready;
+    private long tookMicros;
+    private List<ProductHit> hits;
+}
@@ -0,0 +1,19 @@
+package com.evolve.dto;
+
+import java.util.List;
+
+import com.evolve.model.Order;
+import com.evolve.model.Usr;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserOverview {
+    private Usr user;
+    private List<CartWithItems> carts;
+    private List<Order> orders;
+}
@@ -0,0 +1,122 @@
+package com.evolve.etag;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.evolve.service.CartEventService;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import reactor.core.Disposable;
+import reactor.util.retry.Retry;
+
+/**
+ * ETags for polled resources, so an unchanged one can be answered with 304
+ * before any query runs.
+ *
+ * A resource's tag is a number this node hands out the first time it is
+ * asked for and keeps until {@link #changed} is called, which mutating
+ * handlers do once their write has completed. Handlers take the tag before
+ * reading, so a write racing a read can only cost an extra 200, never a
+ * stale 304. Numbers are never reused, so dropping an entry is always safe:
+ * entries are dropped past {@code etag.max-entries}, and after
+ * {@code etag.max-age}, which bounds how long a change made through another
+ * node can go unnoticed here. Cart and cart item changes from other nodes
+ * also arrive as cart events.
+ */
+@Component
+public class ResourceVersions {
+
+    public static final String USERS = "users";
+    public static final String CARTS = "carts";
+    public static final String CART_ITEMS = "cart-items";
+
+    private record Key(String resource, long id) {
+    }
+
+    private record Version(long value, long createdAt) {
+    }
+
+    private final CartEventService cartEventService;
+    private final long maxAgeMillis;
+    private final int maxEntries;
+    // Tags from before a restart must not match the numbers handed out after it
+    private final String epoch = Long.toString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE, 36);
+    private final AtomicLong sequence = new AtomicLong();
+    private final Map<Key, Version> versions = new ConcurrentHashMap<>();
+    private Disposable eventSubscription;
+
+    public ResourceVersions(CartEventService cartEventService,
+                            @Value("${etag.max-age:30s}") Duration maxAge,
+                            @Value("${etag.max-entries:100000}") int maxEntries) {
+        this.cartEventService = cartEventService;
+        this.maxAgeMillis = maxAge.toMillis();
+        this.maxEntries = maxEntries;
+    }
+
+    @PostConstruct
+    public void start() {
+        eventSubscription = cartEventService.subscribeToCartEvents()
+                .doOnNext(event -> {
+                    changed(CART_ITEMS, event.getCartId());
+                    if (event.getEventType().changesCart()) {
+                        changed(CARTS, event.getCartId());
+                    }
+                })
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1)).maxBackoff(Duration.ofSeconds(30)))
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (eventSubscription != null) {
+            eventSubscription.dispose();
+        }
+    }
+
+    /**
+     * The weak ETag for the resource's current state.
+     */
+    public String etag(String resource, Long id) {
+        Key key = new Key(resource, id);
+        long now = System.currentTimeMillis();
+        Version version = versions.get(key);
+        if (version == null || now - version.createdAt() >= maxAgeMillis) {
+            version = versions.compute(key, (k, current) -> current != null && now - current.createdAt() < maxAgeMillis
+                    ? current : new Version(sequence.incrementAndGet(), now));
+            if (versions.size() > maxEntries) {
+                trim();
+            }
+        }
+        return "W/\"" + epoch + "-" + version.value() + "\"";
+    }
+
+    public void changed(String resource, Long id) {
+        if (id != null) {
+            versions.remove(new Key(resource, id));
+        }
+    }
+
+    /**
+     * For changes that reach every resource of a kind, such as a product
+     * edit showing up in every cart's item list.
+     */
+    public void changedAll(String resource) {
+        versions.keySet().removeIf(key -> key.resource().equals(resource));
+    }
+
+    private void trim() {
+        Iterator<Key> keys = versions.keySet().iterator();
+        while (versions.size() > maxEntries && keys.hasNext()) {
+            keys.next();
+            keys.remove();
+        }
+    }
+}
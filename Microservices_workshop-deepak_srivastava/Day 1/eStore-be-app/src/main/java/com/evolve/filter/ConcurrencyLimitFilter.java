@@ -0,0 +1,225 @@
+package com.evolve.filter;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.ResponseCookie;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.reactive.function.server.HandlerFilterFunction;
+import org.springframework.web.reactive.function.server.HandlerFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ServerWebExchange;
+
+import com.evolve.concurrency.AdaptiveConcurrencyLimit;
+import com.evolve.warmup.WarmUp;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+/**
+ * Sheds load once the routes it wraps have more requests in flight than
+ * {@link AdaptiveConcurrencyLimit} currently allows; one limit is shared by
+ * every router it is applied to, as they share the database and Redis.
+ *
+ * Requests are classed by priority and each class may only fill part of the
+ * limit: reads ({@code GET}/{@code HEAD} and {@code POST .../batch}) up to
+ * {@code concurrency-limit.read-share}, other writes up to
+ * {@code write-share}, and routes marked with {@link #withCritical} such as
+ * checkout up to all of it, so reads are turned away first. A request over
+ * its share gets 503 with {@code Retry-After} at once instead of queueing.
+ * A request holds its slot until its response has been written, as routes
+ * that stream a repository query run it while the body is written, and
+ * that write time is the latency the limit adapts to. Routes marked with
+ * {@link #withLongRunning}, such as a product import that streams progress
+ * for minutes, hold their slot without teaching the limit their latency.
+ *
+ * {@link WarmUp} requests bypass the limit, so they neither take slots nor
+ * teach it the latency of a cold server.
+ */
+@Component
+public class ConcurrencyLimitFilter implements HandlerFilterFunction<ServerResponse, ServerResponse> {
+
+    public static final String METRIC = "concurrency.limit.requests";
+    public static final String LIMIT = "concurrency.limit";
+    public static final String IN_FLIGHT = "concurrency.limit.in.flight";
+
+    public enum Priority {
+        CRITICAL, WRITE, READ
+    }
+
+    private final AdaptiveConcurrencyLimit limit;
+    private final Map<Priority, Double> shares = new EnumMap<>(Priority.class);
+    private final Map<Priority, Counter> admitted = new EnumMap<>(Priority.class);
+    private final Map<Priority, Counter> shed = new EnumMap<>(Priority.class);
+
+    public ConcurrencyLimitFilter(MeterRegistry registry,
+                                  @Value("${concurrency-limit.initial:20}") int initialLimit,
+                                  @Value("${concurrency-limit.min:4}") int minLimit,
+                                  @Value("${concurrency-limit.max:200}") int maxLimit,
+                                  @Value("${concurrency-limit.tolerance:1.5}") double tolerance,
+                                  @Value("${concurrency-limit.smoothing:0.2}") double smoothing,
+                                  @Value("${concurrency-limit.read-share:0.7}") double readShare,
+                                  @Value("${concurrency-limit.write-share:0.9}") double writeShare) {
+        this.limit = new AdaptiveConcurrencyLimit(initialLimit, minLimit, maxLimit, tolerance, smoothing);
+        shares.put(Priority.CRITICAL, 1.0);
+        shares.put(Priority.WRITE, writeShare);
+        shares.put(Priority.READ, readShare);
+        for (Priority priority : Priority.values()) {
+            String tag = priority.name().toLowerCase();
+            admitted.put(priority, Counter.builder(METRIC).description("Requests by priority and outcome")
+                    .tag("priority", tag).tag("outcome", "admitted").register(registry));
+            shed.put(priority, Counter.builder(METRIC).description("Requests by priority and outcome")
+                    .tag("priority", tag).tag("outcome", "shed").register(registry));
+        }
+        Gauge.builder(LIMIT, limit, AdaptiveConcurrencyLimit::limit)
+                .description("Requests allowed in flight at once")
+                .register(registry);
+        Gauge.builder(IN_FLIGHT, limit, AdaptiveConcurrencyLimit::inFlight)
+                .description("Requests in flight under the concurrency limit")
+                .register(registry);
+    }
+
+    @Override
+    public Mono<ServerResponse> filter(ServerRequest request, HandlerFunction<ServerResponse> next) {
+        return Mono.defer(() -> limited(request, next, priorityOf(request), true));
+    }
+
+    /**
+     * The same limit, with requests to {@code method} and the route template
+     * {@code pattern} shed last. Matched on the template the router already
+     * resolved, as re-testing a path predicate would nest its pattern.
+     */
+    public HandlerFilterFunction<ServerResponse, ServerResponse> withCritical(HttpMethod method, String pattern) {
+        return (request, next) -> Mono.defer(() -> limited(request, next,
+                matches(request, method, pattern) ? Priority.CRITICAL : priorityOf(request), true));
+    }
+
+    /**
+     * The same limit, with requests to {@code method} and {@code pattern}
+     * released without a latency sample. Their responses last as long as the
+     * work they stream, so one would read as minutes of queueing and drive
+     * the limit down for the requests after it.
+     */
+    public HandlerFilterFunction<ServerResponse, ServerResponse> withLongRunning(HttpMethod method, String pattern) {
+        return (request, next) -> Mono.defer(() -> limited(request, next, priorityOf(request),
+                !matches(request, method, pattern)));
+    }
+
+    private static boolean matches(ServerRequest request, HttpMethod method, String pattern) {
+        return method.equals(request.method()) && request.attribute(RouterFunctions.MATCHING_PATTERN_ATTRIBUTE)
+                .map(Object::toString)
+                .filter(pattern::equals)
+                .isPresent();
+    }
+
+    private Mono<ServerResponse> limited(ServerRequest request, HandlerFunction<ServerResponse> next, Priority priority,
+                                         boolean sampled) {
+        if (WarmUp.isWarmUp(request)) {
+            return next.handle(request);
+        }
+        if (!limit.tryAcquire(shares.get(priority))) {
+            shed.get(priority).increment();
+            return ServerResponse.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .bodyValue("Server is busy; retry shortly");
+        }
+        admitted.get(priority).increment();
+        Permit permit = new Permit(sampled);
+        // Once the response is handed on, the permit is its to release; a later cancel here is not the request's
+        return next.handle(request)
+                .<ServerResponse>map(response -> new PermitResponse(response, permit.handOver()))
+                .doOnSuccess(response -> {
+                    if (response == null) {
+                        permit.release(SignalType.ON_COMPLETE);
+                    }
+                })
+                .doOnError(e -> permit.release(SignalType.ON_ERROR))
+                .doOnCancel(() -> {
+                    if (!permit.handedOver) {
+                        permit.release(SignalType.CANCEL);
+                    }
+                });
+    }
+
+    private static Priority priorityOf(ServerRequest request) {
+        HttpMethod method = request.method();
+        if (HttpMethod.GET.equals(method) || HttpMethod.HEAD.equals(method)) {
+            return Priority.READ;
+        }
+        // Multi-gets take their ids in a POST body but are reads
+        boolean batchRead = HttpMethod.POST.equals(method) && request.attribute(RouterFunctions.MATCHING_PATTERN_ATTRIBUTE)
+                .map(Object::toString)
+                .filter(pattern -> pattern.endsWith("/batch"))
+                .isPresent();
+        return batchRead ? Priority.READ : Priority.WRITE;
+    }
+
+    public int currentLimit() {
+        return limit.limit();
+    }
+
+    private final class Permit {
+
+        private final long start = System.nanoTime();
+        private final boolean sampled;
+        private final AtomicBoolean held = new AtomicBoolean(true);
+        private volatile boolean handedOver;
+
+        Permit(boolean sampled) {
+            this.sampled = sampled;
+        }
+
+        Permit handOver() {
+            handedOver = true;
+            return this;
+        }
+
+        void release(SignalType signal) {
+            if (held.compareAndSet(true, false)) {
+                // A cancelled request says nothing about latency
+                limit.release(!sampled || signal == SignalType.CANCEL ? -1 : System.nanoTime() - start);
+            }
+        }
+    }
+
+    private record PermitResponse(ServerResponse delegate, Permit permit) implements ServerResponse {
+
+        @Override
+        public HttpStatusCode statusCode() {
+            return delegate.statusCode();
+        }
+
+        @Override
+        @Deprecated
+        public int rawStatusCode() {
+            return delegate.statusCode().value();
+        }
+
+        @Override
+        public HttpHeaders headers() {
+            return delegate.headers();
+        }
+
+        @Override
+        public MultiValueMap<String, ResponseCookie> cookies() {
+            return delegate.cookies();
+        }
+
+        @Override
+        public Mono<Void> writeTo(ServerWebExchange exchange, Context context) {
+            return delegate.writeTo(exchange, context).doFinally(permit::release);
+        }
+    }
+}
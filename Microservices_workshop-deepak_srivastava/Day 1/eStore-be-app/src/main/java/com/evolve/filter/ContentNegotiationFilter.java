@@ -0,0 +1,120 @@
+package com.evolve.filter;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseCookie;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.reactive.function.UnsupportedMediaTypeException;
+import org.springframework.web.reactive.function.server.EntityResponse;
+import org.springframework.web.reactive.function.server.HandlerFilterFunction;
+import org.springframework.web.reactive.function.server.HandlerFunction;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ServerWebExchange;
+
+import com.evolve.codec.ProtobufModels;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Lets callers ask for CBOR or protobuf bodies with {@code Accept} on the
+ * functional routes it is applied to.
+ *
+ * Functional handlers do not negotiate: a response without a content type is
+ * written by the first writer that can write its type at all, which is JSON.
+ * When the caller prefers {@code application/cbor} or
+ * {@code application/x-protobuf} over JSON, this sets that content type
+ * before the body is written so the matching writer is picked. A body the
+ * preferred format cannot carry, such as a type with no protobuf mapping,
+ * falls back to the next one the caller accepts and finally to JSON.
+ * Responses that set their own content type and plain text bodies are left
+ * alone.
+ */
+@Component
+public class ContentNegotiationFilter implements HandlerFilterFunction<ServerResponse, ServerResponse> {
+
+    private static final List<MediaType> BINARY = List.of(MediaType.APPLICATION_CBOR, ProtobufModels.PROTOBUF);
+
+    @Override
+    public Mono<ServerResponse> filter(ServerRequest request, HandlerFunction<ServerResponse> next) {
+        List<MediaType> preferred = preferredBinary(request.headers().accept());
+        return next.handle(request).map(response -> response.headers().getContentType() != null
+                ? response : new NegotiatedResponse(response, preferred));
+    }
+
+    /**
+     * The binary types the caller ranks above JSON, best first. Empty when
+     * JSON, or a wildcard covering it, is at least as preferred.
+     */
+    static List<MediaType> preferredBinary(List<MediaType> accept) {
+        List<MediaType> preferred = new ArrayList<>();
+        List<MediaType> ranked = accept.stream()
+                .filter(type -> type.getQualityValue() > 0)
+                .sorted(Comparator.comparingDouble(MediaType::getQualityValue).reversed())
+                .toList();
+        for (MediaType type : ranked) {
+            if (type.includes(MediaType.APPLICATION_JSON)) {
+                break;
+            }
+            for (MediaType binary : BINARY) {
+                if (type.includes(binary) && !preferred.contains(binary)) {
+                    preferred.add(binary);
+                }
+            }
+        }
+        return preferred;
+    }
+
+    private record NegotiatedResponse(ServerResponse delegate, List<MediaType> preferred) implements ServerResponse {
+
+        @Override
+        public HttpStatusCode statusCode() {
+            return delegate.statusCode();
+        }
+
+        @Override
+        @Deprecated
+        public int rawStatusCode() {
+            return delegate.statusCode().value();
+        }
+
+        @Override
+        public HttpHeaders headers() {
+            return delegate.headers();
+        }
+
+        @Override
+        public MultiValueMap<String, ResponseCookie> cookies() {
+            return delegate.cookies();
+        }
+
+        @Override
+        public Mono<Void> writeTo(ServerWebExchange exchange, Context context) {
+            // The representation depends on Accept, so caches must key on it
+            exchange.getResponse().getHeaders().add(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+            if (preferred.isEmpty() || !(delegate instanceof EntityResponse<?> entity)
+                    || entity.entity() instanceof CharSequence) {
+                return delegate.writeTo(exchange, context);
+            }
+            return writeAs(0, exchange, context);
+        }
+
+        // Nothing is written when no writer matches, so the next type can be tried
+        private Mono<Void> writeAs(int index, ServerWebExchange exchange, Context context) {
+            HttpHeaders headers = exchange.getResponse().getHeaders();
+            if (index == preferred.size()) {
+                headers.remove(HttpHeaders.CONTENT_TYPE);
+                return delegate.writeTo(exchange, context);
+            }
+            headers.setContentType(preferred.get(index));
+            return delegate.writeTo(exchange, context)
+                    .onErrorResume(UnsupportedMediaTypeException.class, e -> writeAs(index + 1, exchange, context));
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package com.evolve.filter;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.EntityResponse;
+import org.springframework.web.reactive.function.server.HandlerFilterFunction;
+import org.springframework.web.reactive.function.server.HandlerFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+/**
+ * Makes the routes it wraps safe to retry with an {@code Idempotency-Key} header.
+ *
+ * The first request with a key runs the handler and stores its response in
+ * Redis for {@code idempotency.ttl}; a retry with the same key and body gets
+ * that response back without reaching the handler. A retry that arrives while
+ * the original is still running on this node waits for it through a local
+ * in-flight map; one that hits another node's in-flight original gets 409
+ * with {@code Retry-After}. Reusing a key with a different body is a 422.
+ *
+ * The original runs detached from its client, so a client that timed out and
+ * retried joins the still running execution instead of starting a second one.
+ * 5xx responses are not stored. When Redis is unavailable the filter fails
+ * open and only the local in-flight map deduplicates. Replays are JSON
+ * whatever the original caller negotiated.
+ */
+@Slf4j
+@Component
+public class IdempotencyFilter implements HandlerFilterFunction<ServerResponse, ServerResponse> {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String METRIC = "idempotency.requests";
+    static final String KEY_PREFIX = "idempotency:";
+    private static final int MAX_KEY_LENGTH = 255;
+
+    /**
+     * What is kept in Redis for a key: a pending marker while the original runs, then its response.
+     */
+    record StoredResponse(String fingerprint, boolean pending, int status, String contentType, String body) {
+
+        static StoredResponse pendingMarker(String fingerprint) {
+            return new StoredResponse(fingerprint, true, 0, null, null);
+        }
+    }
+
+    // The original's own response plus what joiners and retries replay; stored is null if not replayable
+    private record Outcome(ServerResponse response, StoredResponse stored) {
+    }
+
+    private record InFlight(String fingerprint, Mono<Outcome> outcome) {
+    }
+
+    private record CounterKey(String path, String outcome) {
+    }
+
+    private final ReactiveRedisTemplate<String, String> redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry registry;
+    private final Duration ttl;
+    private final Duration pendingTtl;
+    private final Duration redisTimeout;
+    private final Map<String, InFlight> inFlight = new ConcurrentHashMap<>();
+    private final Map<CounterKey, Counter> counters = new ConcurrentHashMap<>();
+
+    public IdempotencyFilter(ReactiveRedisTemplate<String, String> redisTemplate, ObjectMapper objectMapper,
+                             MeterRegistry registry,
+                             @Value("${idempotency.ttl:24h}") Duration ttl,
+                             @Value("${idempotency.pending-ttl:30s}") Duration pendingTtl,
+                             @Value("${idempotency.redis-timeout:200ms}") Duration redisTimeout) {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.registry = registry;
+        this.ttl = ttl;
+        this.pendingTtl = pendingTtl;
+        this.redisTimeout = redisTimeout;
+    }
+
+    @Override
+    public Mono<ServerResponse> filter(ServerRequest request, HandlerFunction<ServerResponse> next) {
+        String key = request.headers().firstHeader(HEADER);
+        if (key == null) {
+            return next.handle(request);
+        }
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            return ServerResponse.badRequest().bodyValue(HEADER + " must be 1-" + MAX_KEY_LENGTH + " characters");
+        }
+        String id = KEY_PREFIX + request.method().name() + ":" + request.path() + ":" + key;
+        // The body is read once here so it can be fingerprinted and handed to the detached handler;
+        // as bytes, since a CBOR or protobuf body does not survive a round trip through a String
+        return request.bodyToMono(byte[].class)
+                .defaultIfEmpty(new byte[0])
+                .flatMap(body -> {
+                    ServerRequest buffered = ServerRequest.from(request)
+                            .body(Flux.defer(() -> Flux.just(DefaultDataBufferFactory.sharedInstance.wrap(body))))
+                            .build();
+                    return handle(id, fingerprint(body), buffered, next);
+                });
+    }
+
+    private Mono<ServerResponse> handle(String id, String fingerprint, ServerRequest request,
+                                        HandlerFunction<ServerResponse> next) {
+        Sinks.One<Outcome> sink = Sinks.one();
+        InFlight running = inFlight.putIfAbsent(id, new InFlight(fingerprint, sink.asMono()));
+        if (running != null) {
+            return join(request, running, fingerprint);
+        }
+        return claim(id, fingerprint)
+                .flatMap(existing -> {
+                    inFlight.remove(id);
+                    // Joiners that arrived meanwhile replay the same record
+                    if (existing.pending() || !existing.fingerprint().equals(fingerprint)) {
+                        sink.tryEmitEmpty();
+                    } else {
+                        sink.tryEmitValue(new Outcome(null, existing));
+                    }
+                    return fromExisting(request, existing, fingerprint);
+                })
+                .switchIfEmpty(Mono.defer(() -> {
+                    execute(id, fingerprint, request, next, sink);
+                    return sink.asMono()
+                            .map(Outcome::response)
+                            .switchIfEmpty(Mono.defer(() -> conflict(request)));
+                }));
+    }
+
+    /**
+     * Sets the pending marker. Empty when this request owns the key (or Redis
+     * is unavailable); otherwise the record another request left behind.
+     */
+    private Mono<StoredResponse> claim(String id, String fingerprint) {
+        return redisTemplate.opsForValue()
+                .setIfAbsent(id, write(StoredResponse.pendingMarker(fingerprint)), pendingTtl)
+                .flatMap(claimed -> claimed
+                        ? Mono.<StoredResponse>empty()
+                        : redisTemplate.opsForValue().get(id).map(this::read))
+                .timeout(redisTimeout)
+                .onErrorResume(e -> {
+                    log.warn("Idempotency store unavailable, executing without it: {}", e.toString());
+                    return Mono.empty();
+                });
+    }
+
+    private void execute(String id, String fingerprint, ServerRequest request, HandlerFunction<ServerResponse> next,
+                         Sinks.One<Outcome> sink) {
+        Mono.defer(() -> next.handle(request))
+                .flatMap(response -> capture(response, fingerprint).flatMap(stored -> store(id, stored)
+                        .thenReturn(new Outcome(response, stored))))
+                .doOnSuccess(outcome -> count(request, "executed"))
+                .onErrorResume(e -> release(id).then(Mono.error(e)))
+                // Leave the map before waiters are signalled so a later retry goes through Redis
+                .doOnTerminate(() -> inFlight.remove(id))
+                .subscribe(sink::tryEmitValue, sink::tryEmitError, sink::tryEmitEmpty);
+    }
+
+    // A null body marks a response that cannot be replayed: 5xx, streamed or unserializable
+    private Mono<StoredResponse> capture(ServerResponse response, String fingerprint) {
+        int status = response.statusCode().value();
+        if (status >= 500) {
+            return Mono.just(new StoredResponse(fingerprint, false, status, null, null));
+        }
+        if (!(response instanceof EntityResponse<?> entityResponse)) {
+            // Bodiless responses such as 204 replay as status only
+            return Mono.just(new StoredResponse(fingerprint, false, status, null, ""));
+        }
+        Object entity = entityResponse.entity();
+        if (entity instanceof Publisher<?>) {
+            return Mono.just(new StoredResponse(fingerprint, false, status, null, null));
+        }
+        try {
+            String body = entity instanceof CharSequence text ? text.toString() : objectMapper.writeValueAsString(entity);
+            MediaType contentType = entity instanceof CharSequence ? MediaType.TEXT_PLAIN : MediaType.APPLICATION_JSON;
+            return Mono.just(new StoredResponse(fingerprint, false, status, contentType.toString(), body));
+        } catch (JsonProcessingException e) {
+            return Mono.just(new StoredResponse(fingerprint, false, status, null, null));
+        }
+    }
+
+    private Mono<StoredResponse> store(String id, StoredResponse stored) {
+        if (stored.body() == null) {
+            return release(id).thenReturn(stored);
+        }
+        return redisTemplate.opsForValue().set(id, write(stored), ttl)
+                .timeout(redisTimeout)
+                .onErrorResume(e -> {
+                    log.warn("Could not store idempotent response: {}", e.toString());
+                    return Mono.just(false);
+                })
+                .thenReturn(stored);
+    }
+
+    // Lets the next retry run the handler again
+    private Mono<Void> release(String id) {
+        return redisTemplate.delete(id)
+                .timeout(redisTimeout)
+                .onErrorResume(e -> Mono.just(0L))
+                .then();
+    }
+
+    private Mono<ServerResponse> join(ServerRequest request, InFlight running, String fingerprint) {
+        if (!running.fingerprint().equals(fingerprint)) {
+            return mismatch(request);
+        }
+        return running.outcome()
+                .flatMap(outcome -> outcome.stored() == null || outcome.stored().body() == null
+                        ? conflict(request)
+                        : replay(request, outcome.stored(), "joined"))
+                .switchIfEmpty(Mono.defer(() -> conflict(request)));
+    }
+
+    private Mono<ServerResponse> fromExisting(ServerRequest request, StoredResponse existing, String fingerprint) {
+        if (!existing.fingerprint().equals(fingerprint)) {
+            return mismatch(request);
+        }
+        return existing.pending() ? conflict(request) : replay(request, existing, "replayed");
+    }
+
+    private Mono<ServerResponse> replay(ServerRequest request, StoredResponse stored, String outcome) {
+        count(request, outcome);
+        ServerResponse.BodyBuilder builder = ServerResponse.status(stored.status()).header(HEADER + "-Replayed", "true");
+        if (stored.contentType() == null || stored.body().isEmpty()) {
+            return builder.build();
+        }
+        return builder.contentType(MediaType.parseMediaType(stored.contentType())).bodyValue(stored.body());
+    }
+
+    private Mono<ServerResponse> conflict(ServerRequest request) {
+        count(request, "conflict");
+        return ServerResponse.status(HttpStatus.CONFLICT)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .bodyValue("A request with this " + HEADER + " is still in progress");
+    }
+
+    private Mono<ServerResponse> mismatch(ServerRequest request) {
+        count(request, "mismatch");
+        return ServerResponse.status(HttpStatus.UNPROCESSABLE_ENTITY)
+                .bodyValue(HEADER + " was already used with a different request body");
+    }
+
+    private void count(ServerRequest request, String outcome) {
+        // Tagged with the route template, not the concrete path, to keep cardinality bounded
+        String route = request.attribute(RouterFunctions.MATCHING_PATTERN_ATTRIBUTE)
+                .map(Object::toString)
+                .orElse("UNKNOWN");
+        counters.computeIfAbsent(new CounterKey(route, outcome), k -> Counter.builder(METRIC)
+                .description("Requests carrying an Idempotency-Key by outcome")
+                .tag("route", k.path())
+                .tag("outcome", k.outcome())
+                .register(registry)).increment();
+    }
+
+    private String write(StoredResponse stored) {
+        try {
+            return objectMapper.writeValueAsString(stored);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private StoredResponse read(String json) {
+        try {
+            return objectMapper.readValue(json, StoredResponse.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String fingerprint(byte[] body) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(body));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
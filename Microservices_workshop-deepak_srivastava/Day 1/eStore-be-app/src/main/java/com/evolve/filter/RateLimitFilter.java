@@ -0,0 +1,176 @@
+package com.evolve.filter;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.HandlerFilterFunction;
+import org.springframework.web.reactive.function.server.HandlerFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+import com.evolve.ratelimit.TokenBuckets;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+/**
+ * Limits each client of the routes it wraps to {@code rate-limit.rate}
+ * requests per second with bursts of up to {@code rate-limit.capacity}; all
+ * wrapped routes draw on the same budget. Requests over the limit get 429
+ * with {@code Retry-After}.
+ *
+ * Clients are told apart by remote address, or behind
+ * {@code rate-limit.trusted-proxies} proxies by the {@code X-Forwarded-For}
+ * hop the outermost of them appended, counting from the right. Hops left of
+ * it are whatever the caller sent and are ignored, so a client cannot get a
+ * fresh budget by making them up. Budgets are kept per node in
+ * {@link TokenBuckets}. With {@code rate-limit.redis.enabled} a request this
+ * node admits must also fit a budget shared by all nodes in Redis; if Redis
+ * does not answer within {@code rate-limit.redis.timeout} the node's own
+ * budget decides.
+ */
+@Slf4j
+@Component
+public class RateLimitFilter implements HandlerFilterFunction<ServerResponse, ServerResponse> {
+
+    public static final String METRIC = "rate.limit.requests";
+    public static final String KEYS = "rate.limit.keys";
+    static final String KEY_PREFIX = "rate-limit:";
+
+    // Same algorithm as TokenBuckets, in microseconds of the caller's clock; returns {granted, wait}
+    private static final RedisScript<List> SHARED_BUDGET = RedisScript.of("""
+            local now = tonumber(ARGV[1])
+            local interval = tonumber(ARGV[2])
+            local tolerance = tonumber(ARGV[3])
+            local full_at = tonumber(redis.call('GET', KEYS[1]) or now)
+            if full_at < now then full_at = now end
+            local ahead = full_at + interval - now
+            if ahead > tolerance then
+                return {0, ahead - tolerance}
+            end
+            redis.call('SET', KEYS[1], string.format('%d', full_at + interval), 'PX', math.ceil(ahead / 1000))
+            return {1, 0}
+            """, List.class);
+
+    private record CounterKey(String route, String outcome) {
+    }
+
+    private final TokenBuckets buckets;
+    private final ReactiveRedisTemplate<String, String> redisTemplate;
+    private final MeterRegistry registry;
+    private final int trustedProxies;
+    private final boolean redisEnabled;
+    private final Duration redisTimeout;
+    private final long intervalMicros;
+    private final long toleranceMicros;
+    private final Map<CounterKey, Counter> counters = new ConcurrentHashMap<>();
+
+    public RateLimitFilter(ReactiveRedisTemplate<String, String> redisTemplate, MeterRegistry registry,
+                           @Value("${rate-limit.rate:10}") double rate,
+                           @Value("${rate-limit.capacity:20}") int capacity,
+                           @Value("${rate-limit.max-keys:100000}") int maxKeys,
+                           @Value("${rate-limit.stripes:0}") int stripes,
+                           @Value("${rate-limit.trusted-proxies:0}") int trustedProxies,
+                           @Value("${rate-limit.redis.enabled:false}") boolean redisEnabled,
+                           @Value("${rate-limit.redis.timeout:50ms}") Duration redisTimeout) {
+        this.buckets = new TokenBuckets(rate, capacity, maxKeys, stripes);
+        this.redisTemplate = redisTemplate;
+        this.registry = registry;
+        this.trustedProxies = trustedProxies;
+        this.redisEnabled = redisEnabled;
+        this.redisTimeout = redisTimeout;
+        this.intervalMicros = Math.max(1, (long) (1_000_000 / rate));
+        this.toleranceMicros = intervalMicros * capacity;
+        Gauge.builder(KEYS, buckets, TokenBuckets::size)
+                .description("Clients with a rate limit bucket on this node")
+                .register(registry);
+    }
+
+    @Override
+    public Mono<ServerResponse> filter(ServerRequest request, HandlerFunction<ServerResponse> next) {
+        String client = client(request);
+        long wait = buckets.acquire(client, System.nanoTime());
+        if (wait > 0) {
+            return limited(request, wait, "limited");
+        }
+        if (!redisEnabled) {
+            count(request, "allowed");
+            return next.handle(request);
+        }
+        return shared(client).flatMap(sharedWait -> {
+            if (sharedWait > 0) {
+                return limited(request, sharedWait, "limited_shared");
+            }
+            count(request, "allowed");
+            return next.handle(request);
+        });
+    }
+
+    // Nanoseconds to wait for the shared budget; 0 when granted or when Redis cannot say
+    private Mono<Long> shared(String client) {
+        long nowMicros = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+        return redisTemplate.execute(SHARED_BUDGET, List.of(KEY_PREFIX + client),
+                        List.of(Long.toString(nowMicros), Long.toString(intervalMicros), Long.toString(toleranceMicros)))
+                .next()
+                .map(result -> ((Number) result.get(0)).longValue() == 1
+                        ? 0L : TimeUnit.MICROSECONDS.toNanos(((Number) result.get(1)).longValue()))
+                .timeout(redisTimeout)
+                .onErrorResume(e -> {
+                    log.warn("Shared rate limit unavailable, using this node's: {}", e.toString());
+                    return Mono.just(0L);
+                })
+                .defaultIfEmpty(0L);
+    }
+
+    private Mono<ServerResponse> limited(ServerRequest request, long waitNanos, String outcome) {
+        count(request, outcome);
+        long seconds = Math.max(1, (waitNanos + 999_999_999L) / 1_000_000_000L);
+        return ServerResponse.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(seconds))
+                .bodyValue("Too many requests; retry in " + seconds + "s");
+    }
+
+    private String client(ServerRequest request) {
+        if (trustedProxies > 0) {
+            String forwarded = String.join(",", request.headers().header("X-Forwarded-For"));
+            if (!forwarded.isBlank()) {
+                // The trustedProxies-th hop from the right, or the leftmost when there are fewer
+                int end = forwarded.length();
+                int comma = forwarded.lastIndexOf(',');
+                for (int hop = 1; hop < trustedProxies && comma >= 0; hop++) {
+                    end = comma;
+                    comma = forwarded.lastIndexOf(',', end - 1);
+                }
+                return forwarded.substring(comma + 1, end).trim();
+            }
+        }
+        return request.remoteAddress()
+                .map(address -> address.getAddress() != null ? address.getAddress().getHostAddress() : address.getHostString())
+                .orElse("unknown");
+    }
+
+    private void count(ServerRequest request, String outcome) {
+        // Tagged with the route template, not the concrete path, to keep cardinality bounded
+        String route = request.attribute(RouterFunctions.MATCHING_PATTERN_ATTRIBUTE)
+                .map(Object::toString)
+                .orElse("UNKNOWN");
+        counters.computeIfAbsent(new CounterKey(route, outcome), k -> Counter.builder(METRIC)
+                .description("Rate limited routes' requests by outcome")
+                .tag("route", k.route())
+                .tag("outcome", k.outcome())
+                .register(registry)).increment();
+    }
+}
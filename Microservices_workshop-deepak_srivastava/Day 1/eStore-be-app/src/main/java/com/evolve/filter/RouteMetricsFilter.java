@@ -0,0 +1,138 @@
+package com.evolve.filter;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.ResponseCookie;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.reactive.function.server.HandlerFilterFunction;
+import org.springframework.web.reactive.function.server.HandlerFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.pattern.PathPattern;
+
+import com.evolve.warmup.WarmUp;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+/**
+ * Records {@code http.route.requests} with a percentile histogram per route
+ * template, method and status for the functional routes it is applied to.
+ *
+ * Timers are cached per tag combination so the hot path is one map lookup
+ * and one histogram update; percentiles are computed by Prometheus from the
+ * buckets, not in the application. The timer stops once the response has
+ * been written, as routes that stream a repository query run it while the
+ * body is written.
+ *
+ * {@link WarmUp} requests are not recorded; they are marked in the Reactor
+ * context instead, so meters further in can leave them out as well.
+ */
+@Component
+public class RouteMetricsFilter implements HandlerFilterFunction<ServerResponse, ServerResponse> {
+
+    public static final String METRIC = "http.route.requests";
+
+    private record TimerKey(String route, String method, String status) {
+    }
+
+    private final MeterRegistry registry;
+    private final Map<TimerKey, Timer> timers = new ConcurrentHashMap<>();
+
+    public RouteMetricsFilter(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public Mono<ServerResponse> filter(ServerRequest request, HandlerFunction<ServerResponse> next) {
+        if (WarmUp.isWarmUp(request)) {
+            return next.handle(request).contextWrite(WarmUp::mark);
+        }
+        long start = System.nanoTime();
+        // Once the response is handed on, writing it records the request; a later cancel here is not the request's
+        AtomicBoolean handedOver = new AtomicBoolean();
+        return next.handle(request)
+                .<ServerResponse>map(response -> {
+                    handedOver.set(true);
+                    return new TimedResponse(response, signal -> record(request,
+                            signal == SignalType.CANCEL ? "CANCELLED" : statusOf(response), start));
+                })
+                .doOnError(e -> record(request, e instanceof ResponseStatusException rse
+                        ? String.valueOf(rse.getStatusCode().value()) : "500", start))
+                .doOnCancel(() -> {
+                    if (!handedOver.get()) {
+                        record(request, "CANCELLED", start);
+                    }
+                });
+    }
+
+    private void record(ServerRequest request, String status, long start) {
+        long elapsed = System.nanoTime() - start;
+        Object pattern = request.attributes().get(RouterFunctions.MATCHING_PATTERN_ATTRIBUTE);
+        String route = pattern instanceof PathPattern pathPattern ? pathPattern.getPatternString() : "UNKNOWN";
+        TimerKey key = new TimerKey(route, request.method().name(), status);
+        Timer timer = timers.get(key);
+        if (timer == null) {
+            timer = timers.computeIfAbsent(key, this::register);
+        }
+        timer.record(elapsed, TimeUnit.NANOSECONDS);
+    }
+
+    private Timer register(TimerKey key) {
+        return Timer.builder(METRIC)
+                .description("Latency of functional route handlers")
+                .tag("route", key.route())
+                .tag("method", key.method())
+                .tag("status", key.status())
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofSeconds(30))
+                .register(registry);
+    }
+
+    private static String statusOf(ServerResponse response) {
+        return String.valueOf(response.statusCode().value());
+    }
+
+    private record TimedResponse(ServerResponse delegate, Consumer<SignalType> written) implements ServerResponse {
+
+        @Override
+        public HttpStatusCode statusCode() {
+            return delegate.statusCode();
+        }
+
+        @Override
+        @Deprecated
+        public int rawStatusCode() {
+            return delegate.statusCode().value();
+        }
+
+        @Override
+        public HttpHeaders headers() {
+            return delegate.headers();
+        }
+
+        @Override
+        public MultiValueMap<String, ResponseCookie> cookies() {
+            return delegate.cookies();
+        }
+
+        @Override
+        public Mono<Void> writeTo(ServerWebExchange exchange, Context context) {
+            return delegate.writeTo(exchange, context).doFinally(written);
+        }
+    }
+}
@@ -5,23 +5,46 @@ import net.devh.boot.grpc.server.service.GrpcService;
 
 import java.time.Instant;
 
+import com.evolve.chat.ChatHistoryStore;
+import com.evolve.presence.PresenceTracker;
+
 @GrpcService
 public class ChatServiceImpl extends ChatServiceGrpc.ChatServiceImplBase {
 
+    private static final int DEFAULT_HISTORY_LIMIT = 50;
+
+    private final ChatHistoryStore historyStore;
+    private final PresenceTracker presenceTracker;
+
+    public ChatServiceImpl(ChatHistoryStore historyStore, PresenceTracker presenceTracker) {
+        this.historyStore = historyStore;
+        this.presenceTracker = presenceTracker;
+    }
+
     @Override
     public StreamObserver<ChatProto.ChatMessage> chat(
             StreamObserver<ChatProto.ChatMessage> responseObserver) {
 
         return new StreamObserver<>() {
+            // The user is only known once the first message arrives
+            private PresenceTracker.Connection presence;
+
             @Override
             public void onNext(ChatProto.ChatMessage request) {
                 System.out.println("Received: " + request.getUser() + ": " + request.getText());
+                if (presence == null) {
+                    presence = presenceTracker.connect(request.getUser());
+                } else {
+                    presenceTracker.heartbeat(presence);
+                }
+                historyStore.append(request);
 
                 // Echo message back
                 ChatProto.ChatMessage reply = ChatProto.ChatMessage.newBuilder()
                         .setUser("Server")
                         .setText("Echo: " + request.getText())
                         .setTimestamp(Instant.now().toEpochMilli())
+                        .setRoom(request.getRoom())
                         .build();
                 responseObserver.onNext(reply);
             }
@@ -29,12 +52,28 @@ public class ChatServiceImpl extends ChatServiceGrpc.ChatServiceImplBase {
             @Override
             public void onError(Throwable t) {
                 t.printStackTrace();
+                leave();
             }
 
             @Override
             public void onCompleted() {
+                leave();
                 responseObserver.onCompleted();
             }
+
+            private void leave() {
+                if (presence != null) {
+                    presenceTracker.disconnect(presence);
+                }
+            }
         };
     }
+
+    @Override
+    public void history(ChatProto.HistoryRequest request,
+                        StreamObserver<ChatProto.ChatMessage> responseObserver) {
+        int limit = request.getLimit() > 0 ? request.getLimit() : DEFAULT_HISTORY_LIMIT;
+        historyStore.lastMessages(request.getRoom(), limit)
+                .subscribe(responseObserver::onNext, responseObserver::onError, responseObserver::onCompleted);
+    }
 }
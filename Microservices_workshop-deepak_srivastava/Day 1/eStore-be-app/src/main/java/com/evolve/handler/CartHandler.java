@@ -1,9 +1,13 @@
 package com.evolve.handler;
 
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.reactive.TransactionalOperator;
 import org.springframework.web.reactive.function.server.*;
 
+import com.evolve.batch.SingleFlight;
+import com.evolve.etag.ResourceVersions;
 import com.evolve.model.Cart;
+import com.evolve.repository.CartItemRepository;
 import com.evolve.repository.CartRepository;
 import com.evolve.service.CartEventService;
 
@@ -13,22 +17,42 @@ import reactor.core.publisher.Mono;
 public class CartHandler {
 
     private final CartRepository cartRepository;
+    private final CartItemRepository cartItemRepository;
     private final CartEventService cartEventService;
+    private final TransactionalOperator transactionalOperator;
+    private final ResourceVersions versions;
+    private final MultiGet multiGet;
+    private final SingleFlight singleFlight;
 
-    public CartHandler(CartRepository cartRepository, CartEventService cartEventService) {
+    public CartHandler(CartRepository cartRepository, CartItemRepository cartItemRepository,
+                       CartEventService cartEventService, TransactionalOperator transactionalOperator,
+                       ResourceVersions versions, MultiGet multiGet, SingleFlight singleFlight) {
         this.cartRepository = cartRepository;
+        this.cartItemRepository = cartItemRepository;
         this.cartEventService = cartEventService;
+        this.transactionalOperator = transactionalOperator;
+        this.versions = versions;
+        this.multiGet = multiGet;
+        this.singleFlight = singleFlight;
     }
 
     public Mono<ServerResponse> getAll(ServerRequest req) {
         return ServerResponse.ok().body(cartRepository.findAll(), Cart.class);
     }
 
+    // GET /carts?ids=1,2,3 or POST /carts/batch with [1,2,3]; in the order given
+    public Mono<ServerResponse> getByIds(ServerRequest req) {
+        return multiGet.respond(req, Cart.class, cartRepository::findAllById, Cart::getId);
+    }
+
+    // Concurrent reads of the same cart under the same tag share a query
     public Mono<ServerResponse> getById(ServerRequest req) {
         Long id = Long.parseLong(req.pathVariable("id"));
-        return cartRepository.findById(id)
-                .flatMap(cart -> ServerResponse.ok().bodyValue(cart))
-                .switchIfEmpty(ServerResponse.notFound().build());
+        String etag = versions.etag(ResourceVersions.CARTS, id);
+        return req.checkNotModified(etag)
+                .switchIfEmpty(Mono.defer(() -> singleFlight.read("carts", id, etag, () -> cartRepository.findById(id))
+                        .flatMap(cart -> ServerResponse.ok().eTag(etag).bodyValue(cart))
+                        .switchIfEmpty(ServerResponse.notFound().build())));
     }
 
     public Mono<ServerResponse> getByUserId(ServerRequest req) {
@@ -57,6 +81,7 @@ public class CartHandler {
             cartRepository.findById(id).flatMap(existing -> {
                 existing.setStatus(incoming.getStatus());
                 return cartRepository.save(existing)
+                        .doOnNext(updated -> versions.changed(ResourceVersions.CARTS, id))
                         .flatMap(updated -> {
                             // Publish cart update event
                             return cartEventService.publishUpdateCartEvent(updated.getId(), updated.getUserId(), updated.getStatus())
@@ -72,7 +97,14 @@ public class CartHandler {
                 .flatMap(cart -> {
                     // Publish cart deletion event before deleting
                     return cartEventService.publishClearCartEvent(cart.getId(), cart.getUserId())
-                            .then(cartRepository.deleteById(id))
+                            // The cart's items go with it; a failure leaves both in place
+                            .then(cartItemRepository.deleteByCartId(id)
+                                    .then(cartRepository.deleteById(id))
+                                    .as(transactionalOperator::transactional))
+                            .then(Mono.fromRunnable(() -> {
+                                versions.changed(ResourceVersions.CARTS, id);
+                                versions.changed(ResourceVersions.CART_ITEMS, id);
+                            }))
                             .then(ServerResponse.noContent().build());
                 })
                 .switchIfEmpty(ServerResponse.notFound().build());
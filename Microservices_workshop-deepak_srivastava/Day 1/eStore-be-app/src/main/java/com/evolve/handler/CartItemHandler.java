@@ -3,12 +3,17 @@ package com.evolve.handler;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.server.*;
 
+import com.evolve.batch.BatchLoader;
+import com.evolve.catalog.ProductCatalog;
 import com.evolve.dto.CartItemWithProduct;
+import com.evolve.etag.ResourceVersions;
+import com.evolve.model.Cart;
 import com.evolve.model.CartItem;
+import com.evolve.model.Product;
+import com.evolve.pricing.CartPricingService;
 import com.evolve.repository.CartItemRepository;
-import com.evolve.repository.CartRepository;
-import com.evolve.repository.ProductRepository;
 import com.evolve.service.CartEventService;
+import com.evolve.writebehind.CartItemWriteBuffer;
 
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -17,24 +22,40 @@ import reactor.core.publisher.Mono;
 public class CartItemHandler {
 
     private final CartItemRepository cartItemRepo;
-    private final ProductRepository productRepo;
-    private final CartRepository cartRepository;
+    // Lookups by id from concurrent requests share IN queries
+    private final BatchLoader<Product> productLoader;
+    private final BatchLoader<Cart> cartLoader;
+    private final ProductCatalog catalog;
     private final CartEventService cartEventService;
+    private final CartPricingService cartPricingService;
+    private final CartItemWriteBuffer writeBuffer;
+    private final ResourceVersions versions;
 
-    public CartItemHandler(CartItemRepository cartItemRepo, ProductRepository productRepo, 
-                          CartRepository cartRepository, CartEventService cartEventService) {
+    public CartItemHandler(CartItemRepository cartItemRepo, BatchLoader<Product> productLoader,
+                          BatchLoader<Cart> cartLoader, CartEventService cartEventService,
+                          CartPricingService cartPricingService, CartItemWriteBuffer writeBuffer,
+                          ResourceVersions versions, ProductCatalog catalog) {
         this.cartItemRepo = cartItemRepo;
-        this.productRepo = productRepo;
-        this.cartRepository = cartRepository;
+        this.productLoader = productLoader;
+        this.cartLoader = cartLoader;
         this.cartEventService = cartEventService;
+        this.cartPricingService = cartPricingService;
+        this.writeBuffer = writeBuffer;
+        this.versions = versions;
+        this.catalog = catalog;
     }
 
     public Mono<ServerResponse> list(ServerRequest req) {
         Long cartId = Long.parseLong(req.pathVariable("cartId"));
+        String etag = versions.etag(ResourceVersions.CART_ITEMS, cartId);
+        return req.checkNotModified(etag).switchIfEmpty(Mono.defer(() -> list(cartId, etag)));
+    }
 
+    private Mono<ServerResponse> list(Long cartId, String etag) {
         Flux<CartItemWithProduct> enrichedItems = cartItemRepo.findAllByCartId(cartId)
+            .map(writeBuffer::overlay)
             .flatMap(item ->
-                productRepo.findById(item.getProductId())
+                product(item.getProductId())
                     .switchIfEmpty(Mono.error(new RuntimeException("Product not found: " + item.getProductId())))
                     .map(product -> {
                         CartItemWithProduct dto = new CartItemWithProduct();
@@ -46,31 +67,63 @@ public class CartItemHandler {
                     })
             );
 
-            return ServerResponse.ok().body(enrichedItems, CartItemWithProduct.class)
+            return ServerResponse.ok().eTag(etag).body(enrichedItems, CartItemWithProduct.class)
             .onErrorResume(e -> {
                 e.printStackTrace();
                 return ServerResponse.status(500).bodyValue("Internal error: " + e.getMessage());
             });
     }
 
+    // From the off-heap catalog once it is loaded, else batched with other requests' lookups
+    private Mono<Product> product(Long id) {
+        return catalog.isReady() ? catalog.findById(id) : productLoader.load(id);
+    }
+
+    public Mono<ServerResponse> pricing(ServerRequest req) {
+        Long cartId = Long.parseLong(req.pathVariable("cartId"));
+        boolean withLines = req.queryParam("lines").map(Boolean::parseBoolean).orElse(true);
+        return cartPricingService.price(cartId, withLines)
+                .flatMap(pricing -> ServerResponse.ok().bodyValue(pricing));
+    }
+
     public Mono<ServerResponse> add(ServerRequest req) {
         Long cartId = Long.parseLong(req.pathVariable("cartId"));
         return req.bodyToMono(CartItem.class)
-                .map(item -> {
-                    item.setCartId(cartId);
-                    return item;
-                })
-                .flatMap(cartItemRepo::save)
-                .flatMap(saved -> {
-                    // Get cart to find userId for event publishing
-                    return cartRepository.findById(cartId)
-                            .flatMap(cart -> {
-                                // Publish add item event
-                                return cartEventService.publishAddItemEvent(
-                                        cartId, cart.getUserId(), saved.getProductId(), saved.getQuantity())
-                                        .then(ServerResponse.ok().bodyValue(saved));
-                            })
-                            .switchIfEmpty(ServerResponse.status(500).bodyValue("Cart not found"));
+                .flatMap(item -> {
+                    if (item.getProductId() == null || item.getQuantity() == null || item.getQuantity() <= 0) {
+                        return ServerResponse.badRequest().bodyValue("productId and a positive quantity are required");
+                    }
+                    // Adding a product already in the cart increases its line rather than adding another
+                    return writeBuffer.add(cartId, item.getProductId(), item.getQuantity())
+                            .doOnNext(saved -> versions.changed(ResourceVersions.CART_ITEMS, cartId))
+                            .flatMap(saved -> cartPricingService.itemAdded(saved).thenReturn(saved))
+                            .flatMap(saved -> {
+                                // Get cart to find userId for event publishing
+                                return cartLoader.load(cartId)
+                                        .flatMap(cart -> {
+                                            // Publish add item event with the quantity added
+                                            return cartEventService.publishAddItemEvent(
+                                                    cartId, cart.getUserId(), saved.getProductId(), item.getQuantity())
+                                                    .then(ServerResponse.ok().bodyValue(saved));
+                                        })
+                                        .switchIfEmpty(ServerResponse.status(500).bodyValue("Cart not found"));
+                            });
+                });
+    }
+
+    // PUT /carts/items/{itemId} with {"quantity": n}; buffered when cart.write-behind.enabled
+    public Mono<ServerResponse> updateQuantity(ServerRequest req) {
+        Long itemId = Long.parseLong(req.pathVariable("itemId"));
+        return req.bodyToMono(CartItem.class)
+                .flatMap(body -> {
+                    if (body.getQuantity() == null || body.getQuantity() <= 0) {
+                        return ServerResponse.badRequest().bodyValue("quantity must be positive; DELETE the item to remove it");
+                    }
+                    return writeBuffer.updateQuantity(itemId, body.getQuantity())
+                            .doOnNext(updated -> versions.changed(ResourceVersions.CART_ITEMS, updated.getCartId()))
+                            .flatMap(updated -> cartPricingService.itemUpdated(updated).thenReturn(updated))
+                            .flatMap(updated -> ServerResponse.ok().bodyValue(updated))
+                            .switchIfEmpty(ServerResponse.notFound().build());
                 });
     }
 
@@ -79,12 +132,15 @@ public class CartItemHandler {
         return cartItemRepo.findById(itemId)
                 .flatMap(item -> {
                     // Get cart to find userId for event publishing
-                    return cartRepository.findById(item.getCartId())
+                    return cartLoader.load(item.getCartId())
                             .flatMap(cart -> {
                                 // Publish remove item event before deleting
                                 return cartEventService.publishRemoveItemEvent(
                                         item.getCartId(), cart.getUserId(), item.getProductId())
                                         .then(cartItemRepo.deleteById(itemId))
+                                        .then(Mono.fromRunnable(() -> writeBuffer.discard(itemId)))
+                                        .then(Mono.fromRunnable(() -> versions.changed(ResourceVersions.CART_ITEMS, item.getCartId())))
+                                        .then(Mono.fromRunnable(() -> cartPricingService.itemRemoved(item)))
                                         .then(ServerResponse.noContent().build());
                             })
                             .switchIfEmpty(ServerResponse.status(500).bodyValue("Cart not found"));
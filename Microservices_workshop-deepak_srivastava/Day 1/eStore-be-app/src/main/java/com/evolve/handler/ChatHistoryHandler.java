@@ -0,0 +1,29 @@
+package com.evolve.handler;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.*;
+
+import com.evolve.chat.ChatHistoryStore;
+import com.evolve.dto.ChatMessageView;
+
+import reactor.core.publisher.Mono;
+
+@Component
+public class ChatHistoryHandler {
+
+    private static final int DEFAULT_LIMIT = 50;
+
+    private final ChatHistoryStore historyStore;
+
+    public ChatHistoryHandler(ChatHistoryStore historyStore) {
+        this.historyStore = historyStore;
+    }
+
+    // GET /chat/rooms/{room}/history?limit=50
+    public Mono<ServerResponse> history(ServerRequest req) {
+        String room = req.pathVariable("room");
+        int limit = req.queryParam("limit").map(Integer::parseInt).orElse(DEFAULT_LIMIT);
+        return ServerResponse.ok().body(
+                historyStore.lastMessages(room, limit).map(ChatMessageView::from), ChatMessageView.class);
+    }
+}
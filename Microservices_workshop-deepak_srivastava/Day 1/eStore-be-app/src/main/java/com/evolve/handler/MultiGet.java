@@ -0,0 +1,102 @@
+package com.evolve.handler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reads many resources by id in one request, for {@code GET /x?ids=1,2,3}
+ * and {@code POST /x/batch} with a JSON array of ids.
+ *
+ * Repeated ids are read once, in {@code findAllById} queries of at most
+ * {@code multi-get.batch-size} ids each, which Spring Data runs as a single
+ * {@code IN} query. The response lists what was found in the order the ids
+ * were given; ids that matched nothing are left out and named in the
+ * {@value #MISSING_HEADER} header, since not every model writes its id.
+ * More than {@code multi-get.max-ids} ids is a 400.
+ */
+@Component
+public class MultiGet {
+
+    public static final String IDS = "ids";
+    public static final String MISSING_HEADER = "Missing-Ids";
+
+    private final int batchSize;
+    private final int maxIds;
+
+    public MultiGet(@Value("${multi-get.batch-size:100}") int batchSize,
+                    @Value("${multi-get.max-ids:500}") int maxIds) {
+        this.batchSize = batchSize;
+        this.maxIds = maxIds;
+    }
+
+    public <T> Mono<ServerResponse> respond(ServerRequest request, Class<T> type,
+                                            Function<List<Long>, Flux<T>> findAllById, Function<T, Long> idOf) {
+        return ids(request)
+                .flatMap(ids -> {
+                    if (ids.size() > maxIds) {
+                        return ServerResponse.badRequest().bodyValue("At most " + maxIds + " ids per request");
+                    }
+                    return find(ids, findAllById, idOf).flatMap(found -> {
+                        List<T> ordered = ids.stream().map(found::get).filter(Objects::nonNull).toList();
+                        ServerResponse.BodyBuilder response = ServerResponse.ok();
+                        String missing = ids.stream()
+                                .filter(id -> !found.containsKey(id))
+                                .map(String::valueOf)
+                                .collect(Collectors.joining(","));
+                        if (!missing.isEmpty()) {
+                            response.header(MISSING_HEADER, missing);
+                        }
+                        return response.body(Flux.fromIterable(ordered), type);
+                    });
+                })
+                .onErrorResume(NumberFormatException.class, e -> ServerResponse.badRequest()
+                        .bodyValue(IDS + " must be a comma-separated list of numbers"));
+    }
+
+    private <T> Mono<Map<Long, T>> find(List<Long> ids, Function<List<Long>, Flux<T>> findAllById, Function<T, Long> idOf) {
+        List<List<Long>> batches = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += batchSize) {
+            batches.add(ids.subList(from, Math.min(ids.size(), from + batchSize)));
+        }
+        return Flux.fromIterable(batches)
+                .concatMap(findAllById)
+                .collectMap(idOf);
+    }
+
+    // Distinct, in the order first given
+    private static Mono<List<Long>> ids(ServerRequest request) {
+        if (HttpMethod.GET.equals(request.method())) {
+            return Mono.fromCallable(() -> {
+                LinkedHashSet<Long> ids = new LinkedHashSet<>();
+                for (String value : request.queryParams().getOrDefault(IDS, List.of())) {
+                    for (String id : value.split(",")) {
+                        if (!id.isBlank()) {
+                            ids.add(Long.parseLong(id.trim()));
+                        }
+                    }
+                }
+                return List.copyOf(ids);
+            });
+        }
+        return request.bodyToMono(Long[].class)
+                .map(ids -> List.copyOf(Arrays.stream(ids)
+                        .filter(Objects::nonNull)
+                        .collect(Collectors.toCollection(LinkedHashSet::new))))
+                .defaultIfEmpty(List.of());
+    }
+}
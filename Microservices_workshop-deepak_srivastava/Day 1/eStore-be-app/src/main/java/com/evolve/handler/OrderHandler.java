@@ -1,15 +1,15 @@
 package com.evolve.handler;
 
-
-import java.io.IOException;
-
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.reactive.function.server.*;
 
 import com.evolve.exception.OrderException;
 import com.evolve.model.Order;
+import com.evolve.model.OrderItem;
+import com.evolve.repository.OrderItemRepository;
 import com.evolve.repository.OrderRepository;
+import com.evolve.service.CheckoutService;
 
 import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Mono;
@@ -19,15 +19,27 @@ import reactor.core.publisher.Mono;
 public class OrderHandler {
 
     private final OrderRepository orderRepository;
+    private final OrderItemRepository orderItemRepository;
+    private final CheckoutService checkoutService;
+    private final MultiGet multiGet;
 
-    public OrderHandler(OrderRepository orderRepository) {
+    public OrderHandler(OrderRepository orderRepository, OrderItemRepository orderItemRepository,
+                        CheckoutService checkoutService, MultiGet multiGet) {
         this.orderRepository = orderRepository;
+        this.orderItemRepository = orderItemRepository;
+        this.checkoutService = checkoutService;
+        this.multiGet = multiGet;
     }
 
     public Mono<ServerResponse> getAll(ServerRequest request) {
         return ServerResponse.ok().body(orderRepository.findAll(), Order.class);
     }
 
+    // GET /orders?ids=1,2,3 or POST /orders/batch with [1,2,3]; in the order given
+    public Mono<ServerResponse> getByIds(ServerRequest request) {
+        return multiGet.respond(request, Order.class, orderRepository::findAllById, Order::getId);
+    }
+
     public Mono<ServerResponse> getById(ServerRequest request) {
         Long id = Long.parseLong(request.pathVariable("id"));
         return orderRepository.findById(id)
@@ -39,19 +51,23 @@ public class OrderHandler {
         Long userId = Long.parseLong(request.pathVariable("userId"));
         return ServerResponse.ok().body(orderRepository.findAllByUserId(userId), Order.class);
     }
-    @Transactional(rollbackFor = IOException.class)
+
+    public Mono<ServerResponse> getItems(ServerRequest request) {
+        Long id = Long.parseLong(request.pathVariable("id"));
+        return ServerResponse.ok().body(orderItemRepository.findAllByOrderId(id), OrderItem.class);
+    }
+
+    // Checks out the user's active cart; the transaction lives in CheckoutService
     public Mono<ServerResponse> create(ServerRequest request) {
         Long userId = Long.parseLong(request.pathVariable("userId"));
-        return request.bodyToMono(Order.class)
-                .map(order -> {
-                    order.setUserId(userId);
-                    return order;
+        return checkoutService.checkout(userId)
+                .flatMap(placed -> {
+                    log.info("Placed order {} for user {} with {} line(s)",
+                            placed.getOrder().getId(), userId, placed.getItems().size());
+                    return ServerResponse.ok().bodyValue(placed);
                 })
-                .flatMap(orderRepository::save).flatMap(saved -> {
-                            log.info("Validating Order-User {}", userId);
-                            return Mono.error(new OrderException("Simulated checked exception"));
-                        })
-                .flatMap(saved -> ServerResponse.ok().bodyValue(saved));
+                .onErrorResume(OrderException.class, e -> ServerResponse.status(HttpStatus.CONFLICT)
+                        .bodyValue("Order Exception: " + e.getMessage()));
     }
 
     public Mono<ServerResponse> update(ServerRequest request) {
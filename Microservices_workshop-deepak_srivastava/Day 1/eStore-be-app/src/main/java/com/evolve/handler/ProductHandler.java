@@ -0,0 +1,168 @@
+package com.evolve.handler;
+
+import java.util.Objects;
+import java.util.Optional;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.*;
+
+import com.evolve.batch.SingleFlight;
+import com.evolve.catalog.ProductCatalog;
+import com.evolve.dto.ImportProgress;
+import com.evolve.etag.ResourceVersions;
+import com.evolve.model.Product;
+import com.evolve.pricing.CartPricingService;
+import com.evolve.repository.ProductRepository;
+import com.evolve.search.ProductSearchService;
+import com.evolve.service.ProductImportService;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@Component
+public class ProductHandler {
+
+    private static final int DEFAULT_LIMIT = 20;
+    private static final MediaType TEXT_CSV = MediaType.parseMediaType("text/csv");
+
+    private final ProductRepository productRepository;
+    private final ProductSearchService searchService;
+    private final CartPricingService cartPricingService;
+    private final ProductImportService importService;
+    private final ResourceVersions versions;
+    private final MultiGet multiGet;
+    private final SingleFlight singleFlight;
+    private final ProductCatalog catalog;
+
+    public ProductHandler(ProductRepository productRepository, ProductSearchService searchService,
+                          CartPricingService cartPricingService, ProductImportService importService,
+                          ResourceVersions versions, MultiGet multiGet, SingleFlight singleFlight,
+                          ProductCatalog catalog) {
+        this.productRepository = productRepository;
+        this.searchService = searchService;
+        this.cartPricingService = cartPricingService;
+        this.importService = importService;
+        this.versions = versions;
+        this.multiGet = multiGet;
+        this.singleFlight = singleFlight;
+        this.catalog = catalog;
+    }
+
+    public Mono<ServerResponse> getAll(ServerRequest req) {
+        return ServerResponse.ok().body(productRepository.findAll(), Product.class);
+    }
+
+    // GET /products?ids=1,2,3 or POST /products/batch with [1,2,3]; in the order given
+    public Mono<ServerResponse> getByIds(ServerRequest req) {
+        return multiGet.respond(req, Product.class, productRepository::findAllById, Product::getId);
+    }
+
+    // Concurrent reads of the same product share a query
+    public Mono<ServerResponse> getById(ServerRequest req) {
+        Long id = Long.parseLong(req.pathVariable("id"));
+        return singleFlight.read("products", id, () -> productRepository.findById(id))
+                .flatMap(product -> ServerResponse.ok().bodyValue(product))
+                .switchIfEmpty(ServerResponse.notFound().build());
+    }
+
+    // GET /products/search?q=mac+book&limit=20
+    public Mono<ServerResponse> search(ServerRequest req) {
+        String query = req.queryParam("q").orElse("");
+        int limit = req.queryParam("limit").map(Integer::parseInt).orElse(DEFAULT_LIMIT);
+        return searchService.search(query, limit)
+                .flatMap(result -> ServerResponse.ok().bodyValue(result));
+    }
+
+    // POST /products/import with a text/csv or application/x-ndjson body,
+    // or POST /products/import?file=catalog.csv[&format=csv] for a file in product-import.directory
+    public Mono<ServerResponse> importProducts(ServerRequest req) {
+        Flux<ImportProgress> progress;
+        try {
+            ProductImportService.Format format = req.queryParam("format").map(ProductImportService.Format::of).orElse(null);
+            Optional<String> file = req.queryParam("file");
+            if (file.isPresent()) {
+                progress = importService.importFile(file.get(), format);
+            } else {
+                if (format == null) {
+                    format = bodyFormat(req.headers().contentType().orElse(null));
+                }
+                if (format == null) {
+                    return ServerResponse.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE)
+                            .bodyValue("Send text/csv or application/x-ndjson");
+                }
+                progress = importService.importProducts(req.bodyToFlux(DataBuffer.class), format);
+            }
+        } catch (IllegalArgumentException e) {
+            return ServerResponse.badRequest().bodyValue(e.getMessage());
+        }
+        // Cart item lists embed products, so their ETags go stale with the catalog
+        progress = progress.doFinally(signal -> versions.changedAll(ResourceVersions.CART_ITEMS));
+        return ServerResponse.ok().contentType(MediaType.APPLICATION_NDJSON).body(progress, ImportProgress.class);
+    }
+
+    private static ProductImportService.Format bodyFormat(MediaType contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        if (TEXT_CSV.isCompatibleWith(contentType)) {
+            return ProductImportService.Format.CSV;
+        }
+        if (MediaType.APPLICATION_NDJSON.isCompatibleWith(contentType) || MediaType.APPLICATION_JSON.isCompatibleWith(contentType)) {
+            return ProductImportService.Format.NDJSON;
+        }
+        return null;
+    }
+
+    public Mono<ServerResponse> create(ServerRequest req) {
+        return req.bodyToMono(Product.class)
+                .flatMap(productRepository::save)
+                .flatMap(saved -> {
+                    searchService.productCreated(saved);
+                    catalog.productSaved(saved);
+                    return ServerResponse.ok().bodyValue(saved);
+                });
+    }
+
+    public Mono<ServerResponse> update(ServerRequest req) {
+        Long id = Long.parseLong(req.pathVariable("id"));
+        return req.bodyToMono(Product.class).flatMap(incoming ->
+            productRepository.findById(id).flatMap(existing -> {
+                String oldName = existing.getName();
+                String oldDescription = existing.getDescription();
+                boolean repriced = !Objects.equals(existing.getPrice(), incoming.getPrice());
+                existing.setName(incoming.getName());
+                existing.setDescription(incoming.getDescription());
+                existing.setPrice(incoming.getPrice());
+                return productRepository.save(existing)
+                        .flatMap(updated -> {
+                            searchService.productUpdated(id, oldName, oldDescription, updated);
+                            catalog.productSaved(updated);
+                            versions.changedAll(ResourceVersions.CART_ITEMS);
+                            if (repriced) {
+                                // Cached cart totals hold the old unit price
+                                cartPricingService.evictAll();
+                            }
+                            return ServerResponse.ok().bodyValue(updated);
+                        });
+            }).switchIfEmpty(ServerResponse.notFound().build())
+        );
+    }
+
+    public Mono<ServerResponse> delete(ServerRequest req) {
+        Long id = Long.parseLong(req.pathVariable("id"));
+        return productRepository.findById(id)
+                .flatMap(product -> productRepository.delete(product)
+                        .then(Mono.fromRunnable(() -> {
+                            searchService.productDeleted(product);
+                            catalog.productDeleted(product.getId());
+                            versions.changedAll(ResourceVersions.CART_ITEMS);
+                            // Cached cart totals still price its lines
+                            cartPricingService.evictAll();
+                        }))
+                        .then(ServerResponse.noContent().build()))
+                .switchIfEmpty(ServerResponse.notFound().build());
+    }
+}
@@ -4,8 +4,11 @@ import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.reactive.function.server.*;
 
+import com.evolve.batch.SingleFlight;
+import com.evolve.etag.ResourceVersions;
 import com.evolve.model.Usr;
 import com.evolve.repository.UserRepository;
+import com.evolve.service.UserOverviewService;
 
 import reactor.core.publisher.Mono;
 
@@ -13,20 +16,44 @@ import reactor.core.publisher.Mono;
 public class UserHandler {
 
     private final UserRepository repository;
+    private final ResourceVersions versions;
+    private final MultiGet multiGet;
+    private final UserOverviewService overviewService;
+    private final SingleFlight singleFlight;
 
-    public UserHandler(UserRepository repository) {
+    public UserHandler(UserRepository repository, ResourceVersions versions, MultiGet multiGet,
+                       UserOverviewService overviewService, SingleFlight singleFlight) {
         this.repository = repository;
+        this.versions = versions;
+        this.multiGet = multiGet;
+        this.overviewService = overviewService;
+        this.singleFlight = singleFlight;
     }
 
     public Mono<ServerResponse> getAll(ServerRequest req) {
         return ServerResponse.ok().body(repository.findAll(),Usr.class);
     }
 
-    // GET /users/{id}
+    // GET /users?ids=1,2,3 or POST /users/batch with [1,2,3]; in the order given
+    public Mono<ServerResponse> getByIds(ServerRequest request) {
+        return multiGet.respond(request, Usr.class, repository::findAllById, Usr::getId);
+    }
+
+    // GET /users/{id}; 304 for a matching If-None-Match without reading the user, concurrent reads under the same tag share a query
     public Mono<ServerResponse> getById(ServerRequest request) {
         Long id = Long.parseLong(request.pathVariable("id"));
-        return repository.findById(id)
-                .flatMap(user -> ServerResponse.ok().bodyValue(user))
+        String etag = versions.etag(ResourceVersions.USERS, id);
+        return request.checkNotModified(etag)
+                .switchIfEmpty(Mono.defer(() -> singleFlight.read("users", id, etag, () -> repository.findById(id))
+                        .flatMap(user -> ServerResponse.ok().eTag(etag).bodyValue(user))
+                        .switchIfEmpty(ServerResponse.notFound().build())));
+    }
+
+    // GET /users/{id}/overview; the user with their carts, cart items and orders
+    public Mono<ServerResponse> getOverview(ServerRequest request) {
+        Long id = Long.parseLong(request.pathVariable("id"));
+        return overviewService.overview(id)
+                .flatMap(overview -> ServerResponse.ok().bodyValue(overview))
                 .switchIfEmpty(ServerResponse.notFound().build());
     }
 
@@ -51,6 +78,7 @@ public class UserHandler {
                     return oldUser;
                 })
                 .flatMap(repository::save)
+                .doOnNext(updated -> versions.changed(ResourceVersions.USERS, id))
                 .flatMap(updated -> ServerResponse.ok().bodyValue(updated))
                 .switchIfEmpty(ServerResponse.notFound().build());
     }
@@ -60,7 +88,9 @@ public class UserHandler {
         Long id = Long.parseLong(request.pathVariable("id"));
         return repository.findById(id)
                 .flatMap(user ->
-                        repository.delete(user).then(ServerResponse.noContent().build()))
+                        repository.delete(user)
+                                .then(Mono.fromRunnable(() -> versions.changed(ResourceVersions.USERS, id)))
+                                .then(ServerResponse.noContent().build()))
                 .switchIfEmpty(ServerResponse.notFound().build());
     }
 }
@@ -0,0 +1,92 @@
+package com.evolve.logging;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Marker;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+
+/**
+ * Caps INFO and lower output of hot-path loggers to {@code eventsPerSecond}
+ * per logger; WARN and ERROR always pass.
+ *
+ * Turbo filters run before the event is created, so a denied call costs one
+ * map lookup and one CAS and never formats its arguments. They also run
+ * before the level check, so calls below the logger's level are left to it
+ * without spending the budget. Configured in logback.xml with one
+ * {@code <logger>} element per logger name prefix.
+ */
+public class RateLimitingTurboFilter extends TurboFilter {
+
+    private static final class Window {
+        // Upper bits: second of the window, lower 20 bits: events let through in it
+        private final AtomicLong state = new AtomicLong();
+        private final AtomicLong suppressed = new AtomicLong();
+    }
+
+    private static final Window UNLIMITED = new Window();
+    private static final int COUNT_BITS = 20;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+
+    private final List<String> loggers = new ArrayList<>();
+    private final Map<String, Window> windows = new ConcurrentHashMap<>();
+    private int eventsPerSecond = 10;
+
+    public void addLogger(String logger) {
+        loggers.add(logger);
+    }
+
+    public void setEventsPerSecond(int eventsPerSecond) {
+        this.eventsPerSecond = (int) Math.min(eventsPerSecond, COUNT_MASK);
+    }
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        if (!isStarted() || level == null || level.isGreaterOrEqual(Level.WARN)
+                || !level.isGreaterOrEqual(logger.getEffectiveLevel())) {
+            return FilterReply.NEUTRAL;
+        }
+        Window window = windows.computeIfAbsent(logger.getName(), this::windowFor);
+        if (window == UNLIMITED) {
+            return FilterReply.NEUTRAL;
+        }
+        long second = System.currentTimeMillis() / 1000;
+        while (true) {
+            long current = window.state.get();
+            long next = (current >>> COUNT_BITS) == second
+                    ? current + 1
+                    : (second << COUNT_BITS) | 1;
+            if ((next & COUNT_MASK) > eventsPerSecond) {
+                window.suppressed.incrementAndGet();
+                return FilterReply.DENY;
+            }
+            if (window.state.compareAndSet(current, next)) {
+                return FilterReply.NEUTRAL;
+            }
+        }
+    }
+
+    /**
+     * Events dropped so far for a logger name, for diagnostics.
+     */
+    public long suppressed(String loggerName) {
+        Window window = windows.get(loggerName);
+        return window == null ? 0 : window.suppressed.get();
+    }
+
+    private Window windowFor(String loggerName) {
+        for (String prefix : loggers) {
+            if (loggerName.equals(prefix) || loggerName.startsWith(prefix + ".")) {
+                return new Window();
+            }
+        }
+        return UNLIMITED;
+    }
+}
@@ -0,0 +1,288 @@
+package com.evolve.maintenance;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.BooleanSupplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+
+import com.evolve.etag.ResourceVersions;
+import com.evolve.service.CartEventService;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.spi.ConnectionFactory;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+/**
+ * Background cleanup of carts ({@code maintenance.cart-sweep.*}).
+ *
+ * Every {@code interval} a sweep walks {@code carts} and then
+ * {@code cart_items} in primary key order, {@code chunk-size} ids at a time,
+ * resuming each chunk after the last id of the previous one rather than at an
+ * offset. Per chunk, one UPDATE marks active carts abandoned when neither the
+ * cart nor any of its items changed within {@code abandon-after}, and one
+ * DELETE removes items whose cart no longer exists.
+ *
+ * Up to {@code concurrency} chunks run at once. After each chunk the sweep
+ * rests long enough to hold a connection at most {@code duty-cycle} of the
+ * time, and it waits while foreground requests are queued for a pooled
+ * connection.
+ *
+ * Abandoned carts' ETags are invalidated once their chunk's UPDATE has
+ * completed, before the cart events are published, so this node stops
+ * answering 304 for them even if an event is lost.
+ */
+@Slf4j
+@Component
+public class CartSweeper {
+
+    public static final String SCANNED = "cart.sweep.scanned";
+    public static final String ABANDONED = "cart.sweep.abandoned";
+    public static final String ORPHANS_DELETED = "cart.sweep.orphans.deleted";
+    public static final String YIELDS = "cart.sweep.yields";
+    public static final String CHUNKS = "cart.sweep.chunks";
+    public static final String PROGRESS = "cart.sweep.progress";
+
+    private static final String ABANDONED_STATUS = "abandoned";
+
+    private static final String ABANDON = """
+            SELECT id, user_id FROM FINAL TABLE (
+                UPDATE carts c SET status = :abandoned
+                WHERE c.id > :after AND c.id <= :upper AND c.status = 'active' AND c.updated_at < :cutoff
+                AND NOT EXISTS (SELECT 1 FROM cart_items i WHERE i.cart_id = c.id AND i.updated_at >= :cutoff)
+            )""";
+    private static final String DELETE_ORPHANS = """
+            DELETE FROM cart_items i
+            WHERE i.id > :after AND i.id <= :upper
+            AND NOT EXISTS (SELECT 1 FROM carts c WHERE c.id = i.cart_id)""";
+
+    // Ids in (after, upper]; rows is how many of them exist
+    record Range(long after, Long upper, long rows) {
+    }
+
+    private final DatabaseClient databaseClient;
+    private final CartEventService cartEventService;
+    private final ResourceVersions versions;
+    private final BooleanSupplier foregroundWaiting;
+    private final boolean enabled;
+    private final Duration interval;
+    private final Duration abandonAfter;
+    private final int chunkSize;
+    private final int concurrency;
+    private final double dutyCycle;
+    private final Duration busyBackoff;
+    private final AtomicBoolean running = new AtomicBoolean();
+    // Keyset position of the pass in progress, for the progress gauge
+    private final AtomicLong position = new AtomicLong();
+    private final AtomicLong passEnd = new AtomicLong();
+    private final Counter cartsScanned;
+    private final Counter itemsScanned;
+    private final Counter abandoned;
+    private final Counter orphansDeleted;
+    private final Counter yields;
+    private final Timer chunks;
+    private ScheduledExecutorService ticker;
+
+    public CartSweeper(DatabaseClient databaseClient, ConnectionFactory connectionFactory,
+                       CartEventService cartEventService, ResourceVersions versions, MeterRegistry registry,
+                       @Value("${maintenance.cart-sweep.enabled:true}") boolean enabled,
+                       @Value("${maintenance.cart-sweep.interval:10m}") Duration interval,
+                       @Value("${maintenance.cart-sweep.abandon-after:24h}") Duration abandonAfter,
+                       @Value("${maintenance.cart-sweep.chunk-size:500}") int chunkSize,
+                       @Value("${maintenance.cart-sweep.concurrency:2}") int concurrency,
+                       @Value("${maintenance.cart-sweep.duty-cycle:0.25}") double dutyCycle,
+                       @Value("${maintenance.cart-sweep.busy-backoff:200ms}") Duration busyBackoff) {
+        if (dutyCycle <= 0 || dutyCycle > 1) {
+            throw new IllegalArgumentException("maintenance.cart-sweep.duty-cycle must be in (0, 1]");
+        }
+        this.databaseClient = databaseClient;
+        this.cartEventService = cartEventService;
+        this.versions = versions;
+        this.foregroundWaiting = connectionFactory instanceof ConnectionPool pool
+                ? () -> pool.getMetrics().map(metrics -> metrics.pendingAcquireSize() > 0).orElse(false)
+                : () -> false;
+        this.enabled = enabled;
+        this.interval = interval;
+        this.abandonAfter = abandonAfter;
+        this.chunkSize = chunkSize;
+        this.concurrency = concurrency;
+        this.dutyCycle = dutyCycle;
+        this.busyBackoff = busyBackoff;
+        this.cartsScanned = Counter.builder(SCANNED).description("Rows examined by the cart sweep")
+                .tag("table", "carts").register(registry);
+        this.itemsScanned = Counter.builder(SCANNED).description("Rows examined by the cart sweep")
+                .tag("table", "cart_items").register(registry);
+        this.abandoned = Counter.builder(ABANDONED).description("Carts marked abandoned").register(registry);
+        this.orphansDeleted = Counter.builder(ORPHANS_DELETED).description("Cart items deleted because their cart is gone")
+                .register(registry);
+        this.yields = Counter.builder(YIELDS).description("Times the cart sweep waited for foreground requests")
+                .register(registry);
+        this.chunks = Timer.builder(CHUNKS).description("Cart sweep chunks").register(registry);
+        Gauge.builder(PROGRESS, this, sweeper -> sweeper.progress())
+                .description("Share of the current cart sweep pass done; 1 when idle")
+                .register(registry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "cart-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleWithFixedDelay(this::runScheduled, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+        }
+    }
+
+    private void runScheduled() {
+        try {
+            sweep().block();
+        } catch (RuntimeException e) {
+            log.error("Cart sweep failed", e);
+        }
+    }
+
+    /**
+     * Runs one sweep; completes empty if one is already running.
+     */
+    public Mono<Void> sweep() {
+        return Mono.defer(() -> {
+            if (!running.compareAndSet(false, true)) {
+                return Mono.empty();
+            }
+            long start = System.nanoTime();
+            double abandonedBefore = abandoned.count();
+            double deletedBefore = orphansDeleted.count();
+            // The database's clock, so updated_at and the cutoff agree
+            return whenForegroundIdle()
+                    .then(databaseClient.sql("SELECT LOCALTIMESTAMP AS now")
+                            .map(row -> row.get("now", LocalDateTime.class))
+                            .one())
+                    .map(now -> now.minus(abandonAfter))
+                    .flatMap(cutoff -> pass("carts", (range, c) -> abandon(range, c), cutoff))
+                    .then(pass("cart_items", (range, unused) -> deleteOrphans(range), null))
+                    .doOnSuccess(done -> log.info("Cart sweep abandoned {} cart(s) and deleted {} orphaned item(s) in {} ms",
+                            (long) (abandoned.count() - abandonedBefore), (long) (orphansDeleted.count() - deletedBefore),
+                            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)))
+                    .doFinally(signal -> {
+                        position.set(0);
+                        passEnd.set(0);
+                        running.set(false);
+                    });
+        });
+    }
+
+    private Mono<Void> pass(String table, BiFunction<Range, LocalDateTime, Mono<Long>> work, LocalDateTime cutoff) {
+        return databaseClient.sql("SELECT COALESCE(MAX(id), 0) AS max_id FROM " + table)
+                .map(row -> row.get("max_id", Long.class))
+                .one()
+                .flatMapMany(maxId -> {
+                    position.set(0);
+                    passEnd.set(maxId);
+                    // Rows added after the pass started are left for the next sweep
+                    return nextRange(table, 0, maxId).expand(range -> nextRange(table, range.upper(), maxId));
+                })
+                .flatMap(range -> throttled(work.apply(range, cutoff))
+                        .doOnSuccess(done -> position.accumulateAndGet(range.upper(), Math::max)), concurrency)
+                .then();
+    }
+
+    private Mono<Range> nextRange(String table, long after, long maxId) {
+        if (after >= maxId) {
+            return Mono.empty();
+        }
+        return databaseClient.sql("SELECT MAX(id) AS upper, COUNT(*) AS n FROM (SELECT id FROM " + table
+                        + " WHERE id > :after AND id <= :maxId ORDER BY id LIMIT :limit)")
+                .bind("after", after)
+                .bind("maxId", maxId)
+                .bind("limit", chunkSize)
+                .map(row -> new Range(after, row.get("upper", Long.class), row.get("n", Long.class)))
+                .one()
+                .filter(range -> range.upper() != null);
+    }
+
+    private Mono<Long> abandon(Range range, LocalDateTime cutoff) {
+        cartsScanned.increment(range.rows());
+        return databaseClient.sql(ABANDON)
+                .bind("abandoned", ABANDONED_STATUS)
+                .bind("after", range.after())
+                .bind("upper", range.upper())
+                .bind("cutoff", cutoff)
+                .map(row -> new long[] {row.get("id", Long.class), row.get("user_id", Long.class)})
+                .all()
+                // The statement has committed once every row is in
+                .collectList()
+                .doOnNext(carts -> carts.forEach(cart -> versions.changed(ResourceVersions.CARTS, cart[0])))
+                .flatMapIterable(carts -> carts)
+                .concatMap(cart -> cartEventService.publishUpdateCartEvent(cart[0], cart[1], ABANDONED_STATUS)
+                        .onErrorResume(e -> {
+                            log.warn("Publishing abandonment of cart {} failed: {}", cart[0], e.toString());
+                            return Mono.empty();
+                        })
+                        .thenReturn(cart))
+                .count()
+                .doOnNext(abandoned::increment);
+    }
+
+    private Mono<Long> deleteOrphans(Range range) {
+        itemsScanned.increment(range.rows());
+        return databaseClient.sql(DELETE_ORPHANS)
+                .bind("after", range.after())
+                .bind("upper", range.upper())
+                .fetch()
+                .rowsUpdated()
+                .doOnNext(orphansDeleted::increment);
+    }
+
+    private Mono<Long> throttled(Mono<Long> chunk) {
+        return whenForegroundIdle().then(Mono.defer(() -> {
+            long start = System.nanoTime();
+            return chunk.flatMap(count -> {
+                long elapsed = System.nanoTime() - start;
+                chunks.record(elapsed, TimeUnit.NANOSECONDS);
+                long rest = (long) (elapsed * (1 - dutyCycle) / dutyCycle);
+                return Mono.delay(Duration.ofNanos(rest)).thenReturn(count);
+            });
+        }));
+    }
+
+    // Requests queued for a connection go first
+    private Mono<Void> whenForegroundIdle() {
+        return Mono.defer(() -> {
+            if (!foregroundWaiting.getAsBoolean()) {
+                return Mono.empty();
+            }
+            yields.increment();
+            return Mono.delay(busyBackoff).then(whenForegroundIdle());
+        });
+    }
+
+    private double progress() {
+        long end = passEnd.get();
+        return end == 0 ? 1.0 : Math.min(1.0, (double) position.get() / end);
+    }
+}
@@ -0,0 +1,87 @@
+package com.evolve.metrics;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.stereotype.Component;
+
+import com.evolve.model.CartEvent;
+import com.evolve.model.CartEventType;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Latency of a cart event along its path, tagged by event type:
+ * <ul>
+ *   <li>{@code cart.events.publish.rtt} - publish call until the transport acknowledged it</li>
+ *   <li>{@code cart.events.delivery.lag} - {@link CartEvent#getTimestamp()} until a node received it</li>
+ *   <li>{@code cart.events.client.write.lag} - node receipt until the SSE frame was written to the
+ *       connection, including the time it waited behind a slow client</li>
+ *   <li>{@code cart.events.end.to.end.lag} - {@link CartEvent#getTimestamp()} until the SSE frame was
+ *       written; the SLO signal for real-time cart updates</li>
+ * </ul>
+ * Lags measured against the event timestamp compare wall clocks, so across
+ * nodes they include clock skew.
+ */
+@Component
+public class CartEventMetrics {
+
+    public static final String PUBLISH_RTT = "cart.events.publish.rtt";
+    public static final String DELIVERY_LAG = "cart.events.delivery.lag";
+    public static final String CLIENT_WRITE_LAG = "cart.events.client.write.lag";
+    public static final String END_TO_END_LAG = "cart.events.end.to.end.lag";
+
+    private static final Duration[] SLOS = {Duration.ofMillis(50), Duration.ofMillis(250), Duration.ofSeconds(1)};
+
+    private final MeterRegistry registry;
+    // Per metric, one timer for each event type by ordinal, registered on first use
+    private final Map<String, Timer[]> timers = new ConcurrentHashMap<>();
+
+    public CartEventMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public void recordPublish(CartEvent event, long elapsedNanos) {
+        timer(PUBLISH_RTT, event).record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordDelivery(CartEvent event) {
+        recordSince(DELIVERY_LAG, event);
+    }
+
+    public void recordClientWrite(CartEvent event) {
+        if (event.getReceivedNanos() != 0) {
+            timer(CLIENT_WRITE_LAG, event).record(System.nanoTime() - event.getReceivedNanos(), TimeUnit.NANOSECONDS);
+        }
+        recordSince(END_TO_END_LAG, event);
+    }
+
+    private void recordSince(String metric, CartEvent event) {
+        if (event.getTimestamp() != 0) {
+            long lag = CartEvent.nowMicros() - event.getTimestamp();
+            // Negative lags are clock skew between nodes; count them as zero
+            timer(metric, event).record(Math.max(0, lag), TimeUnit.MICROSECONDS);
+        }
+    }
+
+    private Timer timer(String metric, CartEvent event) {
+        Timer[] byType = timers.computeIfAbsent(metric, key -> new Timer[CartEventType.values().length]);
+        CartEventType type = event.getEventType();
+        Timer timer = byType[type.ordinal()];
+        if (timer == null) {
+            // A racing registration finds the same timer in the registry
+            timer = Timer.builder(metric)
+                    .tag("type", type.name())
+                    .publishPercentileHistogram()
+                    .serviceLevelObjectives(SLOS)
+                    .minimumExpectedValue(Duration.ofNanos(10_000))
+                    .maximumExpectedValue(Duration.ofSeconds(10))
+                    .register(registry);
+            byType[type.ordinal()] = timer;
+        }
+        return timer;
+    }
+}
@@ -1,39 +1,49 @@
 package com.evolve.model;
 
 import lombok.Data;
-import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 
 import java.time.Instant;
 
+/**
+ * A cart change as published to every node. Ids and quantity are primitives
+ * and 0 when the event has none (ids start at 1); there is no message text,
+ * {@code CartEventCodec} derives one for SSE clients.
+ */
 @Data
-@AllArgsConstructor
 @NoArgsConstructor
 public class CartEvent {
-    private String eventType; // ADD_ITEM, REMOVE_ITEM, UPDATE_CART, CLEAR_CART
-    private Long cartId;
-    private Long userId;
-    private Long productId;
-    private Integer quantity;
-    private String cartStatus;
-    private Instant timestamp;
-    private String message;
-    
-    public CartEvent(String eventType, Long cartId, Long userId, String message) {
-        this.eventType = eventType;
-        this.cartId = cartId;
-        this.userId = userId;
-        this.message = message;
-        this.timestamp = Instant.now();
+    private CartEventType eventType;
+    private long cartId;
+    private long userId;
+    private long productId;
+    private int quantity;
+    private String cartStatus; // UPDATE_CART only: active, abandoned, checked_out
+    private long timestamp; // microseconds since the epoch
+    // System.nanoTime() when this node received it, 0 before; never sent
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private long receivedNanos;
+
+    public CartEvent(CartEventType eventType, long cartId, long userId, long productId, int quantity, String cartStatus) {
+        this(eventType, cartId, userId, productId, quantity, cartStatus, nowMicros());
     }
-    
-    public CartEvent(String eventType, Long cartId, Long userId, Long productId, Integer quantity, String message) {
+
+    public CartEvent(CartEventType eventType, long cartId, long userId, long productId, int quantity, String cartStatus,
+                     long timestamp) {
         this.eventType = eventType;
         this.cartId = cartId;
         this.userId = userId;
         this.productId = productId;
         this.quantity = quantity;
-        this.message = message;
-        this.timestamp = Instant.now();
+        this.cartStatus = cartStatus;
+        this.timestamp = timestamp;
+    }
+
+    public static long nowMicros() {
+        Instant now = Instant.now();
+        return now.getEpochSecond() * 1_000_000 + now.getNano() / 1_000;
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,45 @@
+package com.evolve.model;
+
+/**
+ * What a {@link CartEvent} reports. The code is the event's type byte in
+ * {@code CartEventCodec}; append new types, never renumber.
+ */
+public enum CartEventType {
+    ADD_ITEM(1),
+    REMOVE_ITEM(2),
+    UPDATE_ITEM(3),
+    UPDATE_CART(4),
+    CLEAR_CART(5);
+
+    private static final CartEventType[] BY_CODE = new CartEventType[6];
+
+    static {
+        for (CartEventType type : values()) {
+            BY_CODE[type.code] = type;
+        }
+    }
+
+    private final byte code;
+
+    CartEventType(int code) {
+        this.code = (byte) code;
+    }
+
+    public byte code() {
+        return code;
+    }
+
+    /**
+     * The type with the given code, or null for one this node does not know.
+     */
+    public static CartEventType of(byte code) {
+        return code > 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+    }
+
+    /**
+     * True for the events that change the cart row itself, not only its items.
+     */
+    public boolean changesCart() {
+        return this == UPDATE_CART || this == CLEAR_CART;
+    }
+}
@@ -1,6 +1,7 @@
 package com.evolve.model;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
 import org.springframework.data.relational.core.mapping.Table;
 
 import lombok.Data;
@@ -15,5 +16,9 @@ public class CartItem {
     private Long productId;
     private Integer quantity;
 
+    // Bumped by every write, so saving a stale copy fails instead of overwriting
+    @Version
+    private Long version;
+
     // Getters and Setters
 }
@@ -16,4 +16,7 @@ public class Order {
 
     @Column("user_id")
     private Long userId;
+
+    @Column("cart_id")
+    private Long cartId;
 }
\ No newline at end of file
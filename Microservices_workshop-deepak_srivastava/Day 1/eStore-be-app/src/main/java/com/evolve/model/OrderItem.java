@@ -0,0 +1,19 @@
+package com.evolve.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+import lombok.Data;
+
+@Data
+@Table("order_items")
+public class OrderItem {
+    @Id
+    private Long id;
+
+    private Long orderId;
+    private Long productId;
+    private Integer quantity;
+    // Product price at checkout time
+    private Double unitPrice;
+}
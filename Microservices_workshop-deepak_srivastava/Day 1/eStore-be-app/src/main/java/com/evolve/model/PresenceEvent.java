@@ -0,0 +1,17 @@
+package com.evolve.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PresenceEvent {
+    public static final String ONLINE = "online";
+    public static final String OFFLINE = "offline";
+
+    private String user;
+    private String status; // online, offline
+    private long timestamp;
+}
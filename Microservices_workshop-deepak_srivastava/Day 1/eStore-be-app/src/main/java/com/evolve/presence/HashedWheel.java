@@ -0,0 +1,99 @@
+package com.evolve.presence;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hashed timing wheel with intrusive nodes.
+ *
+ * Scheduling, rescheduling and cancelling only relink a node in a slot list,
+ * so they are O(1) and allocation free; a node is its own timer handle. Each
+ * {@link #advance()} visits a single slot. Deadlines further out than one
+ * revolution stay in their slot until their round comes up.
+ */
+public class HashedWheel {
+
+    public static class Node {
+        private Node prev;
+        private Node next;
+        private long deadline;
+        private boolean scheduled;
+
+        public boolean isScheduled() {
+            return scheduled;
+        }
+    }
+
+    private final Node[] slots;
+    private final int mask;
+    private long tick;
+
+    public HashedWheel(int slotCount) {
+        int size = Integer.highestOneBit(Math.max(2, slotCount) - 1) << 1;
+        this.slots = new Node[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Schedules the node to expire {@code ticks} advances from now, replacing any previous deadline.
+     */
+    public synchronized void schedule(Node node, long ticks) {
+        if (node.scheduled) {
+            unlink(node);
+        }
+        node.deadline = tick + Math.max(1, ticks);
+        int slot = (int) (node.deadline & mask);
+        node.prev = null;
+        node.next = slots[slot];
+        if (node.next != null) {
+            node.next.prev = node;
+        }
+        slots[slot] = node;
+        node.scheduled = true;
+    }
+
+    public synchronized boolean cancel(Node node) {
+        if (!node.scheduled) {
+            return false;
+        }
+        unlink(node);
+        return true;
+    }
+
+    /**
+     * Moves the wheel one tick forward and returns the nodes that expired.
+     */
+    public List<Node> advance() {
+        List<Node> expired = List.of();
+        synchronized (this) {
+            long now = ++tick;
+            Node node = slots[(int) (now & mask)];
+            while (node != null) {
+                Node next = node.next;
+                if (node.deadline <= now) {
+                    unlink(node);
+                    if (expired.isEmpty()) {
+                        expired = new ArrayList<>();
+                    }
+                    expired.add(node);
+                }
+                node = next;
+            }
+        }
+        return expired;
+    }
+
+    private void unlink(Node node) {
+        if (node.prev != null) {
+            node.prev.next = node.next;
+        } else {
+            slots[(int) (node.deadline & mask)] = node.next;
+        }
+        if (node.next != null) {
+            node.next.prev = node.prev;
+        }
+        node.prev = null;
+        node.next = null;
+        node.scheduled = false;
+    }
+}
@@ -0,0 +1,200 @@
+package com.evolve.presence;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.evolve.model.PresenceEvent;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+/**
+ * Online/offline presence for chat users across {@code /ws/chat} and gRPC chat.
+ *
+ * Every connection is a node in a striped {@link HashedWheel}; a heartbeat
+ * relinks it, so there is no scheduled task per connection. A user is online
+ * while at least one of their connections has heartbeated within
+ * {@code presence.timeout}. Transitions are coalesced per user and published
+ * to subscribers as one batch per tick.
+ */
+@Slf4j
+@Component
+public class PresenceTracker {
+
+    /**
+     * Handle for one chat connection; keep it for the lifetime of the connection.
+     */
+    public static final class Connection extends HashedWheel.Node {
+        private final String user;
+        private final HashedWheel wheel;
+        private boolean counted;
+        private boolean closed;
+
+        private Connection(String user, HashedWheel wheel) {
+            this.user = user;
+            this.wheel = wheel;
+        }
+
+        public String getUser() {
+            return user;
+        }
+    }
+
+    private final HashedWheel[] wheels;
+    private final long timeoutTicks;
+    private final Duration tick;
+    private final Map<String, Integer> connectionsPerUser = new ConcurrentHashMap<>();
+    // Last transition per user since the previous batch
+    private final Map<String, String> pending = new ConcurrentHashMap<>();
+    private final Sinks.Many<List<PresenceEvent>> sink = Sinks.many().multicast().directBestEffort();
+    private ScheduledExecutorService ticker;
+
+    public PresenceTracker(@Value("${presence.timeout:30s}") Duration timeout,
+                           @Value("${presence.tick:100ms}") Duration tick,
+                           @Value("${presence.stripes:0}") int stripes) {
+        this.tick = tick;
+        this.timeoutTicks = Math.max(1, timeout.toMillis() / tick.toMillis());
+        int count = stripes > 0 ? stripes : Runtime.getRuntime().availableProcessors() * 4;
+        this.wheels = new HashedWheel[count];
+        for (int i = 0; i < count; i++) {
+            // One revolution covers the timeout, so expiry never rescans a node
+            wheels[i] = new HashedWheel((int) Math.min(timeoutTicks + 1, 1 << 16));
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "presence-ticker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(this::advance, tick.toMillis(), tick.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+        }
+        sink.tryEmitComplete();
+    }
+
+    public Connection connect(String user) {
+        HashedWheel wheel = wheels[(user.hashCode() & 0x7fffffff) % wheels.length];
+        Connection connection = new Connection(user, wheel);
+        heartbeat(connection);
+        return connection;
+    }
+
+    public void heartbeat(Connection connection) {
+        synchronized (connection) {
+            if (connection.closed) {
+                return;
+            }
+            connection.wheel.schedule(connection, timeoutTicks);
+            if (!connection.counted) {
+                connection.counted = true;
+                increment(connection.user);
+            }
+        }
+    }
+
+    public void disconnect(Connection connection) {
+        synchronized (connection) {
+            if (connection.closed) {
+                return;
+            }
+            connection.closed = true;
+            connection.wheel.cancel(connection);
+            if (connection.counted) {
+                connection.counted = false;
+                decrement(connection.user);
+            }
+        }
+    }
+
+    public boolean isOnline(String user) {
+        return connectionsPerUser.containsKey(user);
+    }
+
+    public Flux<List<PresenceEvent>> changes() {
+        return sink.asFlux();
+    }
+
+    /**
+     * Moves every wheel one tick and publishes the batch of transitions; driven
+     * by the ticker thread and exposed for benchmarks.
+     */
+    public void advance() {
+        try {
+            for (HashedWheel wheel : wheels) {
+                for (HashedWheel.Node node : wheel.advance()) {
+                    expire((Connection) node);
+                }
+            }
+            publishPending();
+        } catch (RuntimeException e) {
+            log.error("Presence tick failed", e);
+        }
+    }
+
+    private void expire(Connection connection) {
+        synchronized (connection) {
+            // A heartbeat may have rescheduled it after the wheel released it
+            if (!connection.closed && connection.counted && !connection.isScheduled()) {
+                connection.counted = false;
+                decrement(connection.user);
+            }
+        }
+    }
+
+    private void increment(String user) {
+        connectionsPerUser.compute(user, (u, count) -> {
+            if (count == null) {
+                pending.put(u, PresenceEvent.ONLINE);
+                return 1;
+            }
+            return count + 1;
+        });
+    }
+
+    private void decrement(String user) {
+        connectionsPerUser.computeIfPresent(user, (u, count) -> {
+            if (count == 1) {
+                pending.put(u, PresenceEvent.OFFLINE);
+                return null;
+            }
+            return count - 1;
+        });
+    }
+
+    private void publishPending() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        List<PresenceEvent> batch = new ArrayList<>(pending.size());
+        for (String user : pending.keySet()) {
+            String status = pending.remove(user);
+            if (status != null) {
+                batch.add(new PresenceEvent(user, status, now));
+            }
+        }
+        if (!batch.isEmpty()) {
+            sink.tryEmitNext(batch);
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.evolve.pricing;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.evolve.dto.CartPricing;
+import com.evolve.model.CartItem;
+import com.evolve.model.Product;
+import com.evolve.repository.CartItemRepository;
+import com.evolve.repository.ProductRepository;
+import com.evolve.service.CartEventService;
+import com.evolve.writebehind.CartItemWriteBuffer;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+/**
+ * Prices carts from exact minor-unit totals that are kept up to date as
+ * items are added and removed, instead of summing every line per request.
+ *
+ * A cart's totals are built from the database on first read and then only
+ * adjusted by {@link #itemAdded} and {@link #itemRemoved}. They are dropped on
+ * UPDATE_CART and CLEAR_CART events, when a product's price changes or it is
+ * deleted, and after {@code pricing.ttl}, which bounds how long item changes
+ * made through other nodes stay invisible here.
+ */
+@Slf4j
+@Service
+public class CartPricingService {
+
+    private static final int GENERATION_STRIPES = 1024;
+
+    private final CartItemRepository cartItemRepository;
+    private final ProductRepository productRepository;
+    private final CartEventService cartEventService;
+    private final CartItemWriteBuffer writeBuffer;
+    private final String currency;
+    private final int fractionDigits;
+    private final long ttlMillis;
+    private final Map<Long, CartTotals> totals = new ConcurrentHashMap<>();
+    // Bumped by every mutation; a build only caches if its stripe did not move meanwhile
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+    private Disposable eventSubscription;
+
+    public CartPricingService(CartItemRepository cartItemRepository, ProductRepository productRepository,
+                              CartEventService cartEventService, CartItemWriteBuffer writeBuffer,
+                              @Value("${pricing.currency:INR}") String currency,
+                              @Value("${pricing.fraction-digits:2}") int fractionDigits,
+                              @Value("${pricing.ttl:60s}") Duration ttl) {
+        this.cartItemRepository = cartItemRepository;
+        this.productRepository = productRepository;
+        this.cartEventService = cartEventService;
+        this.writeBuffer = writeBuffer;
+        this.currency = currency;
+        this.fractionDigits = fractionDigits;
+        this.ttlMillis = ttl.toMillis();
+    }
+
+    @PostConstruct
+    public void start() {
+        eventSubscription = cartEventService.subscribeToCartEvents()
+                .filter(event -> event.getEventType().changesCart())
+                .doOnNext(event -> evict(event.getCartId()))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1)).maxBackoff(Duration.ofSeconds(30)))
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (eventSubscription != null) {
+            eventSubscription.dispose();
+        }
+    }
+
+    /**
+     * Prices a cart; {@code withLines=false} returns only the totals.
+     */
+    public Mono<CartPricing> price(Long cartId, boolean withLines) {
+        return totalsFor(cartId).map(cart -> toPricing(cartId, cart, withLines));
+    }
+
+    public Mono<Void> itemAdded(CartItem item) {
+        bump(item.getCartId());
+        CartTotals cart = totals.get(item.getCartId());
+        if (cart == null) {
+            return Mono.empty();
+        }
+        return productRepository.findById(item.getProductId())
+                .doOnNext(product -> cart.add(item.getId(), product.getId(), item.getQuantity(), toMinorUnits(product.getPrice())))
+                .switchIfEmpty(Mono.fromRunnable(() -> evict(item.getCartId())))
+                .then();
+    }
+
+    /**
+     * A quantity change replaces the item's line.
+     */
+    public Mono<Void> itemUpdated(CartItem item) {
+        return itemAdded(item);
+    }
+
+    public void itemRemoved(CartItem item) {
+        bump(item.getCartId());
+        CartTotals cart = totals.get(item.getCartId());
+        if (cart != null) {
+            cart.remove(item.getId());
+        }
+    }
+
+    public void evict(Long cartId) {
+        bump(cartId);
+        totals.remove(cartId);
+    }
+
+    /**
+     * Drops every cached cart; used when a product is repriced or deleted.
+     */
+    public void evictAll() {
+        for (Long cartId : totals.keySet()) {
+            evict(cartId);
+        }
+    }
+
+    private Mono<CartTotals> totalsFor(Long cartId) {
+        CartTotals cached = totals.get(cartId);
+        long now = System.currentTimeMillis();
+        if (cached != null && now - cached.createdAt() < ttlMillis) {
+            return Mono.just(cached);
+        }
+        long generation = generations.get(stripe(cartId));
+        return cartItemRepository.findAllByCartId(cartId)
+                .map(writeBuffer::overlay)
+                .collectList()
+                .flatMap(items -> build(items, now))
+                .doOnNext(built -> {
+                    if (generations.get(stripe(cartId)) == generation) {
+                        totals.put(cartId, built);
+                    }
+                });
+    }
+
+    private Mono<CartTotals> build(List<CartItem> items, long now) {
+        List<Long> productIds = items.stream().map(CartItem::getProductId).distinct().toList();
+        return productRepository.findAllById(productIds)
+                .collectMap(Product::getId, Function.identity())
+                .map(products -> {
+                    CartTotals cart = new CartTotals(now);
+                    for (CartItem item : items) {
+                        Product product = products.get(item.getProductId());
+                        // Lines whose product is gone are not priced
+                        if (product != null) {
+                            cart.add(item.getId(), product.getId(), item.getQuantity(), toMinorUnits(product.getPrice()));
+                        }
+                    }
+                    return cart;
+                });
+    }
+
+    private CartPricing toPricing(Long cartId, CartTotals cart, boolean withLines) {
+        List<CartPricing.LinePrice> lines = !withLines ? null : cart.lines().stream()
+                .map(line -> new CartPricing.LinePrice(line.itemId(), line.productId(), line.quantity(),
+                        toAmount(line.unitPriceMinor()), toAmount(line.lineTotalMinor())))
+                .toList();
+        long totalMinor = cart.totalMinor();
+        return new CartPricing(cartId, currency, cart.itemCount(), toAmount(totalMinor), totalMinor, lines);
+    }
+
+    /**
+     * Converts a stored price to minor units via its shortest decimal form, so
+     * 0.1 becomes exactly 10 rather than 10.000000000000000555.
+     */
+    public long toMinorUnits(Double price) {
+        return BigDecimal.valueOf(price)
+                .setScale(fractionDigits, RoundingMode.HALF_EVEN)
+                .unscaledValue()
+                .longValueExact();
+    }
+
+    public BigDecimal toAmount(long minorUnits) {
+        return BigDecimal.valueOf(minorUnits, fractionDigits);
+    }
+
+    private void bump(Long cartId) {
+        generations.incrementAndGet(stripe(cartId));
+    }
+
+    private static int stripe(Long cartId) {
+        return (Long.hashCode(cartId) & 0x7fffffff) % GENERATION_STRIPES;
+    }
+}
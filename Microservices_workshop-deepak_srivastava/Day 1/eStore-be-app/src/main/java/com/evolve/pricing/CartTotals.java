@@ -0,0 +1,71 @@
+package com.evolve.pricing;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Running totals of one cart in minor currency units.
+ *
+ * Adding or removing a line adjusts the total by that line only, so reading
+ * the total never walks the cart. All arithmetic is on longs and fails
+ * loudly on overflow instead of wrapping.
+ */
+public class CartTotals {
+
+    public record Line(long itemId, long productId, int quantity, long unitPriceMinor, long lineTotalMinor) {
+    }
+
+    private final Map<Long, Line> lines = new LinkedHashMap<>();
+    private final long createdAt;
+    private long totalMinor;
+    private long itemCount;
+
+    public CartTotals(long createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public synchronized void add(long itemId, long productId, int quantity, long unitPriceMinor) {
+        Line line = new Line(itemId, productId, quantity, unitPriceMinor,
+                Math.multiplyExact(unitPriceMinor, (long) quantity));
+        Line previous = lines.put(itemId, line);
+        if (previous != null) {
+            subtract(previous);
+        }
+        totalMinor = Math.addExact(totalMinor, line.lineTotalMinor());
+        itemCount += quantity;
+    }
+
+    public synchronized void remove(long itemId) {
+        Line removed = lines.remove(itemId);
+        if (removed != null) {
+            subtract(removed);
+        }
+    }
+
+    private void subtract(Line line) {
+        totalMinor = Math.subtractExact(totalMinor, line.lineTotalMinor());
+        itemCount -= line.quantity();
+    }
+
+    public synchronized long totalMinor() {
+        return totalMinor;
+    }
+
+    public synchronized long itemCount() {
+        return itemCount;
+    }
+
+    public synchronized int lineCount() {
+        return lines.size();
+    }
+
+    public synchronized List<Line> lines() {
+        return new ArrayList<>(lines.values());
+    }
+
+    long createdAt() {
+        return createdAt;
+    }
+}
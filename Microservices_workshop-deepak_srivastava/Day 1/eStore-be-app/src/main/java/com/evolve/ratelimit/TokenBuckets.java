@@ -0,0 +1,119 @@
+package com.evolve.ratelimit;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-key token buckets that hold at most {@code capacity} tokens and refill
+ * at {@code ratePerSecond}.
+ *
+ * Each bucket is a single long, the time at which it will be full again
+ * (the generic cell rate algorithm), updated with compare-and-set, so taking
+ * a token never locks. Keys are spread over stripes, each bounded to its
+ * share of {@code maxKeys}. A full bucket carries no state, so when a stripe
+ * runs out of room its full buckets are dropped without changing any
+ * client's budget. If none are full, new keys in that stripe share one
+ * overflow bucket until room frees up; memory stays bounded even under a
+ * flood of distinct keys.
+ *
+ * Times are {@link System#nanoTime()} values supplied by the caller.
+ */
+public final class TokenBuckets {
+
+    // Time at which the bucket is full again; at or before now means full
+    private static final class Bucket extends AtomicLong {
+        Bucket(long fullAt) {
+            super(fullAt);
+        }
+    }
+
+    private static final class Stripe {
+        final ConcurrentHashMap<String, Bucket> buckets = new ConcurrentHashMap<>();
+        final Bucket overflow;
+        final AtomicLong lastSweep;
+
+        Stripe(long now) {
+            overflow = new Bucket(now);
+            lastSweep = new AtomicLong(now);
+        }
+    }
+
+    private final long interval;
+    private final long tolerance;
+    private final int stripeCapacity;
+    private final Stripe[] stripes;
+
+    public TokenBuckets(double ratePerSecond, int capacity, int maxKeys, int stripes) {
+        if (ratePerSecond <= 0 || capacity < 1 || maxKeys < 1) {
+            throw new IllegalArgumentException("rate, capacity and max keys must be positive");
+        }
+        int count = Integer.highestOneBit(Math.max(1, Math.min(stripes > 0 ? stripes
+                : Runtime.getRuntime().availableProcessors() * 4, maxKeys)));
+        this.interval = Math.max(1, (long) (1_000_000_000L / ratePerSecond));
+        this.tolerance = interval * capacity;
+        this.stripeCapacity = Math.max(1, maxKeys / count);
+        this.stripes = new Stripe[count];
+        long now = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            this.stripes[i] = new Stripe(now);
+        }
+    }
+
+    /**
+     * Takes a token from the key's bucket. Returns 0 when one was taken,
+     * otherwise the nanoseconds until one will be available.
+     */
+    public long acquire(String key, long now) {
+        Bucket bucket = bucket(key, now);
+        while (true) {
+            long fullAt = bucket.get();
+            long next = (fullAt - now > 0 ? fullAt : now) + interval;
+            long ahead = next - now;
+            if (ahead > tolerance) {
+                return ahead - tolerance;
+            }
+            if (bucket.compareAndSet(fullAt, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Keys currently tracked, not counting those sharing an overflow bucket.
+     */
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.buckets.size();
+        }
+        return size;
+    }
+
+    private Bucket bucket(String key, long now) {
+        Stripe stripe = stripes[spread(key.hashCode()) & (stripes.length - 1)];
+        Bucket bucket = stripe.buckets.get(key);
+        if (bucket != null) {
+            return bucket;
+        }
+        if (stripe.buckets.size() >= stripeCapacity && !sweep(stripe, now)) {
+            return stripe.overflow;
+        }
+        bucket = new Bucket(now);
+        Bucket raced = stripe.buckets.putIfAbsent(key, bucket);
+        return raced != null ? raced : bucket;
+    }
+
+    // Drops the stripe's full buckets; true if that made room
+    private boolean sweep(Stripe stripe, long now) {
+        long last = stripe.lastSweep.get();
+        // At most one scan per refill interval, so a key flood cannot turn every request into a scan
+        if (now - last >= interval && stripe.lastSweep.compareAndSet(last, now)) {
+            stripe.buckets.values().removeIf(bucket -> bucket.get() - now <= 0);
+        }
+        return stripe.buckets.size() < stripeCapacity;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
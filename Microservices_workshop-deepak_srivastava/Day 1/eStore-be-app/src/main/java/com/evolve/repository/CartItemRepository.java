@@ -1,12 +1,50 @@
 package com.evolve.repository;
 
+import java.util.Collection;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 
 import com.evolve.model.CartItem;
 
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
 
 public interface CartItemRepository extends ReactiveCrudRepository<CartItem, Long> {
     Flux<CartItem> findAllByCartId(Long cartId);
-}
 
+    // The lines of several carts in one IN query
+    Flux<CartItem> findAllByCartIdIn(Collection<Long> cartIds);
+
+    Mono<Integer> deleteByCartId(Long cartId);
+
+    // Increments the (cart, product) line in one statement, creating it on the first add
+    @Query("""
+            SELECT * FROM FINAL TABLE (
+                MERGE INTO cart_items t
+                USING (VALUES (CAST(:cartId AS BIGINT), CAST(:productId AS BIGINT), CAST(:quantity AS INT)))
+                    AS s (cart_id, product_id, quantity)
+                ON t.cart_id = s.cart_id AND t.product_id = s.product_id
+                WHEN MATCHED THEN UPDATE SET quantity = t.quantity + s.quantity, version = t.version + 1
+                WHEN NOT MATCHED THEN INSERT (cart_id, product_id, quantity, version)
+                    VALUES (s.cart_id, s.product_id, s.quantity, 0)
+            )""")
+    Mono<CartItem> mergeQuantity(Long cartId, Long productId, int quantity);
+
+    // Sets the quantity whatever it was; emits the number of rows updated
+    @Modifying
+    @Query("UPDATE cart_items SET quantity = :quantity, version = version + 1 WHERE id = :id")
+    Mono<Integer> updateQuantity(Long id, int quantity);
+
+    /**
+     * Adds to the cart's line for the product and returns the line as stored.
+     */
+    default Mono<CartItem> addQuantity(Long cartId, Long productId, int quantity) {
+        // Two first adds can both miss the line; the one that loses the insert finds it on retry
+        return mergeQuantity(cartId, productId, quantity)
+                .retryWhen(Retry.max(3).filter(DuplicateKeyException.class::isInstance));
+    }
+}
@@ -5,7 +5,10 @@ import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 import com.evolve.model.Cart;
 
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 public interface CartRepository extends ReactiveCrudRepository<Cart, Long> {
     Flux<Cart> findAllByUserId(Long userId);
+
+    Mono<Cart> findFirstByUserIdAndStatusOrderByIdDesc(Long userId, String status);
 }
@@ -0,0 +1,11 @@
+package com.evolve.repository;
+
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+
+import com.evolve.model.OrderItem;
+
+import reactor.core.publisher.Flux;
+
+public interface OrderItemRepository extends ReactiveCrudRepository<OrderItem, Long> {
+    Flux<OrderItem> findAllByOrderId(Long orderId);
+}
@@ -4,16 +4,29 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.reactive.function.server.*;
 
+import com.evolve.filter.ConcurrencyLimitFilter;
+import com.evolve.filter.ContentNegotiationFilter;
+import com.evolve.filter.IdempotencyFilter;
+import com.evolve.filter.RateLimitFilter;
+import com.evolve.filter.RouteMetricsFilter;
 import com.evolve.handler.CartItemHandler;
 
 @Configuration
 public class CartItemRouter {
 
     @Bean
-    public RouterFunction<ServerResponse> cartItemRoutes(CartItemHandler handler) {
+    public RouterFunction<ServerResponse> cartItemRoutes(CartItemHandler handler, RouteMetricsFilter routeMetrics,
+                                                         ConcurrencyLimitFilter concurrencyLimit,
+                                                         IdempotencyFilter idempotency, RateLimitFilter rateLimit,
+                                                         ContentNegotiationFilter contentNegotiation) {
         return RouterFunctions
                 .route(RequestPredicates.GET("/carts/{cartId}/items"), handler::list)
-                .andRoute(RequestPredicates.POST("/carts/{cartId}/items"), handler::add)
-                .andRoute(RequestPredicates.DELETE("/carts/items/{itemId}"), handler::remove);
+                .andRoute(RequestPredicates.GET("/carts/{cartId}/pricing"), handler::pricing)
+                .andRoute(RequestPredicates.POST("/carts/{cartId}/items"), rateLimit.andThen(idempotency).apply(handler::add))
+                .andRoute(RequestPredicates.PUT("/carts/items/{itemId}"), handler::updateQuantity)
+                .andRoute(RequestPredicates.DELETE("/carts/items/{itemId}"), handler::remove)
+                .filter(contentNegotiation)
+                .filter(concurrencyLimit)
+                .filter(routeMetrics);
     }
 }
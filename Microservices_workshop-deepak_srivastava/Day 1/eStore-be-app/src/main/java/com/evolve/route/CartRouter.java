@@ -4,19 +4,31 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.reactive.function.server.*;
 
+import com.evolve.filter.ConcurrencyLimitFilter;
+import com.evolve.filter.ContentNegotiationFilter;
+import com.evolve.filter.RateLimitFilter;
+import com.evolve.filter.RouteMetricsFilter;
 import com.evolve.handler.CartHandler;
+import com.evolve.handler.MultiGet;
 
 @Configuration
 public class CartRouter {
 
     @Bean
-    public RouterFunction<ServerResponse> cartRoutes(CartHandler handler) {
+    public RouterFunction<ServerResponse> cartRoutes(CartHandler handler, RouteMetricsFilter routeMetrics,
+                                                     ConcurrencyLimitFilter concurrencyLimit, RateLimitFilter rateLimit,
+                                                     ContentNegotiationFilter contentNegotiation) {
         return RouterFunctions
-                .route(RequestPredicates.GET("/carts"), handler::getAll)
+                .route(RequestPredicates.GET("/carts").and(RequestPredicates.queryParam(MultiGet.IDS, ids -> true)), handler::getByIds)
+                .andRoute(RequestPredicates.GET("/carts"), handler::getAll)
+                .andRoute(RequestPredicates.POST("/carts/batch"), handler::getByIds)
                 .andRoute(RequestPredicates.GET("/carts/{id}"), handler::getById)
                 .andRoute(RequestPredicates.GET("/carts/user/{userId}"), handler::getByUserId)
                 .andRoute(RequestPredicates.POST("/carts/user/{userId}"), handler::create)
-                .andRoute(RequestPredicates.PUT("/carts/{id}"), handler::update)
-                .andRoute(RequestPredicates.DELETE("/carts/{id}"), handler::delete);
+                .andRoute(RequestPredicates.PUT("/carts/{id}"), rateLimit.apply(handler::update))
+                .andRoute(RequestPredicates.DELETE("/carts/{id}"), handler::delete)
+                .filter(contentNegotiation)
+                .filter(concurrencyLimit)
+                .filter(routeMetrics);
     }
 }
\ No newline at end of file
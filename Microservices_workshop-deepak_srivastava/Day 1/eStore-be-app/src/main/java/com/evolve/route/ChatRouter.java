@@ -0,0 +1,22 @@
+package com.evolve.route;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.function.server.*;
+
+import com.evolve.filter.ContentNegotiationFilter;
+import com.evolve.filter.RouteMetricsFilter;
+import com.evolve.handler.ChatHistoryHandler;
+
+@Configuration
+public class ChatRouter {
+
+    @Bean
+    public RouterFunction<ServerResponse> chatRoutes(ChatHistoryHandler handler, RouteMetricsFilter routeMetrics,
+                                                     ContentNegotiationFilter contentNegotiation) {
+        return RouterFunctions
+                .route(RequestPredicates.GET("/chat/rooms/{room}/history"), handler::history)
+                .filter(contentNegotiation)
+                .filter(routeMetrics);
+    }
+}
@@ -2,22 +2,36 @@ package com.evolve.route;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
 import org.springframework.web.reactive.function.server.*;
 
+import com.evolve.filter.ConcurrencyLimitFilter;
+import com.evolve.filter.ContentNegotiationFilter;
+import com.evolve.filter.IdempotencyFilter;
+import com.evolve.filter.RouteMetricsFilter;
+import com.evolve.handler.MultiGet;
 import com.evolve.handler.OrderHandler;
 
 @Configuration
 public class OrderRouter {
 
     @Bean
-    public RouterFunction<ServerResponse> orderRoutes(OrderHandler handler) {
+    public RouterFunction<ServerResponse> orderRoutes(OrderHandler handler, RouteMetricsFilter routeMetrics,
+                                                      ConcurrencyLimitFilter concurrencyLimit, IdempotencyFilter idempotency,
+                                                      ContentNegotiationFilter contentNegotiation) {
         return RouterFunctions
-                .route(RequestPredicates.GET("/orders"), handler::getAll)
+                .route(RequestPredicates.GET("/orders").and(RequestPredicates.queryParam(MultiGet.IDS, ids -> true)), handler::getByIds)
+                .andRoute(RequestPredicates.GET("/orders"), handler::getAll)
+                .andRoute(RequestPredicates.POST("/orders/batch"), handler::getByIds)
                 .andRoute(RequestPredicates.GET("/orders/{id}"), handler::getById)
+                .andRoute(RequestPredicates.GET("/orders/{id}/items"), handler::getItems)
                 .andRoute(RequestPredicates.GET("/orders/user/{userId}"), handler::getByUserId)
-                .andRoute(RequestPredicates.POST("/orders/user/{userId}"), handler::create)
+                .andRoute(RequestPredicates.POST("/orders/user/{userId}"), idempotency.apply(handler::create))
                 .andRoute(RequestPredicates.PUT("/orders/{id}"), handler::update)
-                .andRoute(RequestPredicates.DELETE("/orders/{id}"), handler::delete);
+                .andRoute(RequestPredicates.DELETE("/orders/{id}"), handler::delete)
+                .filter(contentNegotiation)
+                .filter(concurrencyLimit.withCritical(HttpMethod.POST, "/orders/user/{userId}"))
+                .filter(routeMetrics);
     }
 }
 
@@ -0,0 +1,35 @@
+package com.evolve.route;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.reactive.function.server.*;
+
+import com.evolve.filter.ConcurrencyLimitFilter;
+import com.evolve.filter.ContentNegotiationFilter;
+import com.evolve.filter.RouteMetricsFilter;
+import com.evolve.handler.MultiGet;
+import com.evolve.handler.ProductHandler;
+
+@Configuration
+public class ProductRouter {
+
+    @Bean
+    public RouterFunction<ServerResponse> productRoutes(ProductHandler handler, RouteMetricsFilter routeMetrics,
+                                                        ConcurrencyLimitFilter concurrencyLimit,
+                                                        ContentNegotiationFilter contentNegotiation) {
+        return RouterFunctions
+                .route(RequestPredicates.GET("/products").and(RequestPredicates.queryParam(MultiGet.IDS, ids -> true)), handler::getByIds)
+                .andRoute(RequestPredicates.GET("/products"), handler::getAll)
+                .andRoute(RequestPredicates.POST("/products/batch"), handler::getByIds)
+                .andRoute(RequestPredicates.GET("/products/search"), handler::search)
+                .andRoute(RequestPredicates.GET("/products/{id}"), handler::getById)
+                .andRoute(RequestPredicates.POST("/products/import"), handler::importProducts)
+                .andRoute(RequestPredicates.POST("/products"), handler::create)
+                .andRoute(RequestPredicates.PUT("/products/{id}"), handler::update)
+                .andRoute(RequestPredicates.DELETE("/products/{id}"), handler::delete)
+                .filter(contentNegotiation)
+                .filter(concurrencyLimit.withLongRunning(HttpMethod.POST, "/products/import"))
+                .filter(routeMetrics);
+    }
+}
@@ -7,15 +7,17 @@ import org.springframework.web.reactive.function.server.RouterFunctions;
 import org.springframework.web.reactive.function.server.ServerResponse;
 import org.springframework.web.reactive.function.server.RequestPredicates;
 
+import com.evolve.filter.RouteMetricsFilter;
 import com.evolve.handler.SessionHandler;
 
 @Configuration
 public class SessionRouter {
     @Bean
-    public RouterFunction<ServerResponse> sessionRoutes(SessionHandler handler) {
+    public RouterFunction<ServerResponse> sessionRoutes(SessionHandler handler, RouteMetricsFilter routeMetrics) {
         return RouterFunctions
             .route(RequestPredicates.GET("/login"), handler::login)
             .andRoute(RequestPredicates.GET("/profile"), handler::profile)
-            .andRoute(RequestPredicates.POST("/logout"), handler::logout);
+            .andRoute(RequestPredicates.POST("/logout"), handler::logout)
+            .filter(routeMetrics);
     }
 }
@@ -9,19 +9,31 @@ import org.springframework.web.reactive.function.server.RouterFunction;
 import org.springframework.web.reactive.function.server.RouterFunctions;
 import org.springframework.web.reactive.function.server.ServerResponse;
 
+import com.evolve.filter.ConcurrencyLimitFilter;
+import com.evolve.filter.ContentNegotiationFilter;
+import com.evolve.filter.RouteMetricsFilter;
+import com.evolve.handler.MultiGet;
 import com.evolve.handler.UserHandler;
 
 @Configuration
 public class UserRouter {
 
    @Bean(name="userRoutes")
-    public RouterFunction<ServerResponse> route(UserHandler handler) {
+    public RouterFunction<ServerResponse> route(UserHandler handler, RouteMetricsFilter routeMetrics,
+                                                ConcurrencyLimitFilter concurrencyLimit,
+                                                ContentNegotiationFilter contentNegotiation) {
         return RouterFunctions
-            .route(RequestPredicates.GET("/users"), handler::getAll)
+            .route(RequestPredicates.GET("/users").and(RequestPredicates.queryParam(MultiGet.IDS, ids -> true)), handler::getByIds)
+            .andRoute(RequestPredicates.GET("/users"), handler::getAll)
+            .andRoute(RequestPredicates.POST("/users/batch"), handler::getByIds)
             .andRoute(RequestPredicates.GET("/users/{id}"), handler::getById)
+            .andRoute(RequestPredicates.GET("/users/{id}/overview"), handler::getOverview)
             .andRoute(RequestPredicates.POST("/users"), handler::create)
             .andRoute(RequestPredicates.PUT("/users/{id}"), handler::update)
-            .andRoute(RequestPredicates.DELETE("/users/{id}"), handler::delete);
+            .andRoute(RequestPredicates.DELETE("/users/{id}"), handler::delete)
+            .filter(contentNegotiation)
+            .filter(concurrencyLimit)
+            .filter(routeMetrics);
     }
 }
 
@@ -0,0 +1,66 @@
+package com.evolve.search;
+
+import java.util.Arrays;
+
+/**
+ * Sorted product ids for one term in one field, kept sorted so lists can be
+ * merged and probed with binary search without any per-query maps.
+ */
+final class Postings {
+
+    private int[] ids = new int[2];
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    int id(int index) {
+        return ids[index];
+    }
+
+    void add(int id) {
+        // Ids usually arrive in increasing order, so this is normally an append
+        if (size > 0 && ids[size - 1] >= id) {
+            int at = find(id);
+            if (at < 0) {
+                insertAt(-at - 1, id);
+            }
+            return;
+        }
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size + (size >> 1) + 1);
+        }
+        ids[size++] = id;
+    }
+
+    boolean remove(int id) {
+        int at = find(id);
+        if (at < 0) {
+            return false;
+        }
+        System.arraycopy(ids, at + 1, ids, at, size - at - 1);
+        size--;
+        return true;
+    }
+
+    boolean contains(int id) {
+        return find(id) >= 0;
+    }
+
+    /**
+     * Index of {@code id}, or {@code -(insertion point) - 1}.
+     */
+    int find(int id) {
+        return Arrays.binarySearch(ids, 0, size, id);
+    }
+
+    private void insertAt(int at, int id) {
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size + (size >> 1) + 1);
+        }
+        System.arraycopy(ids, at, ids, at + 1, size - at);
+        ids[at] = id;
+        size++;
+    }
+}
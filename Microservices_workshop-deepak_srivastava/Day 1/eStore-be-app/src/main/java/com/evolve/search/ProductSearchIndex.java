@@ -0,0 +1,425 @@
+package com.evolve.search;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index over product names and descriptions.
+ *
+ * Terms live in a sorted dictionary, so the last query word also matches
+ * as a prefix ("mac" finds "macbook"). Words with no exact match fall back to
+ * terms one edit away, found through a deletion neighbourhood: every term of
+ * {@code minFuzzyLength} or more characters is also filed under each of its
+ * single-character deletions, so candidates come from a few hash lookups
+ * instead of a scan of the dictionary.
+ *
+ * All query words must match. One word drives the search, normally the
+ * rarest, and every candidate it yields is probed in the other words'
+ * postings by binary search. Each term keeps separate name and description
+ * postings, and the driving word's lists are walked from the highest
+ * possible score down; once the best hits found so far cannot be beaten by
+ * anything left, the search stops, so a common word costs about
+ * {@code limit} candidates rather than a walk over every product containing
+ * it. Searches also stop at their deadline and return the best hits found so
+ * far, flagged as partial.
+ *
+ * Product ids must fit in an int. Updates take a write lock; searches share
+ * a read lock.
+ */
+public class ProductSearchIndex {
+
+    public record Hit(long productId, double score) {
+    }
+
+    public record Result(List<Hit> hits, boolean partial, int candidates) {
+    }
+
+    private static final double EXACT = 3;
+    private static final double PREFIX = 2;
+    private static final double FUZZY = 1;
+    private static final double IN_NAME = 2;
+    private static final double IN_DESCRIPTION = 1;
+    private static final int MAX_QUERY_TERMS = 8;
+    private static final int DEADLINE_CHECK_INTERVAL = 256;
+
+    // A product is in exactly one of the two lists of a term
+    private static final class Term {
+        private final Postings name = new Postings();
+        private final Postings description = new Postings();
+
+        private int size() {
+            return name.size() + description.size();
+        }
+    }
+
+    // One dictionary term a query word matched and how much a match through it is worth
+    private record Expansion(Term term, double weight) {
+    }
+
+    // One postings list of the driving word; every product in it scores exactly bound for that word
+    private record Tier(Postings postings, double bound) {
+    }
+
+    private static final class Cursor {
+        private final Postings postings;
+        private int position;
+
+        private Cursor(Postings postings) {
+            this.postings = postings;
+        }
+
+        private int id() {
+            return postings.id(position);
+        }
+    }
+
+    private final NavigableMap<String, Term> terms = new TreeMap<>();
+    private final Map<String, List<String>> deletions = new HashMap<>();
+    private final BitSet documents = new BitSet();
+    private int documentCount;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final int maxExpansions;
+    private final int minPrefixLength;
+    private final int minFuzzyLength;
+
+    public ProductSearchIndex(int maxExpansions, int minPrefixLength, int minFuzzyLength) {
+        this.maxExpansions = maxExpansions;
+        this.minPrefixLength = minPrefixLength;
+        this.minFuzzyLength = minFuzzyLength;
+    }
+
+    public void add(long productId, String name, String description) {
+        int id = toDocId(productId);
+        Set<String> nameTerms = new LinkedHashSet<>(Tokenizer.tokenize(name));
+        Set<String> allTerms = new LinkedHashSet<>(nameTerms);
+        allTerms.addAll(Tokenizer.tokenize(description));
+        lock.writeLock().lock();
+        try {
+            for (String word : allTerms) {
+                Term term = terms.get(word);
+                if (term == null) {
+                    term = new Term();
+                    terms.put(word, term);
+                    addDeletions(word);
+                }
+                if (nameTerms.contains(word)) {
+                    term.description.remove(id);
+                    term.name.add(id);
+                } else if (!term.name.contains(id)) {
+                    term.description.add(id);
+                }
+            }
+            if (!documents.get(id)) {
+                documents.set(id);
+                documentCount++;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a product; the text must be what it was indexed with.
+     */
+    public void remove(long productId, String name, String description) {
+        int id = toDocId(productId);
+        Set<String> allTerms = new LinkedHashSet<>(Tokenizer.tokenize(name));
+        allTerms.addAll(Tokenizer.tokenize(description));
+        lock.writeLock().lock();
+        try {
+            for (String word : allTerms) {
+                Term term = terms.get(word);
+                if (term != null && (term.name.remove(id) | term.description.remove(id)) && term.size() == 0) {
+                    terms.remove(word);
+                    removeDeletions(word);
+                }
+            }
+            if (documents.get(id)) {
+                documents.clear(id);
+                documentCount--;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documentCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int termCount() {
+        lock.readLock().lock();
+        try {
+            return terms.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Result search(String query, int limit, Duration budget) {
+        long deadline = System.nanoTime() + budget.toNanos();
+        List<String> words = new ArrayList<>(new LinkedHashSet<>(Tokenizer.tokenize(query)));
+        if (words.isEmpty() || limit <= 0) {
+            return new Result(List.of(), false, 0);
+        }
+        if (words.size() > MAX_QUERY_TERMS) {
+            words = words.subList(0, MAX_QUERY_TERMS);
+        }
+        lock.readLock().lock();
+        try {
+            List<List<Expansion>> perWord = new ArrayList<>(words.size());
+            for (int i = 0; i < words.size(); i++) {
+                List<Expansion> expansions = expand(words.get(i), i == words.size() - 1);
+                if (expansions.isEmpty()) {
+                    return new Result(List.of(), false, 0);
+                }
+                perWord.add(expansions);
+            }
+            return rank(perWord, limit, deadline);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<Expansion> expand(String word, boolean last) {
+        List<Expansion> expansions = new ArrayList<>();
+        Term exact = terms.get(word);
+        if (exact != null) {
+            expansions.add(new Expansion(exact, EXACT * idf(exact)));
+        }
+        if (last && word.length() >= minPrefixLength) {
+            for (Term term : terms.subMap(word, false, word + Character.MAX_VALUE, false).values()) {
+                if (expansions.size() >= maxExpansions) {
+                    break;
+                }
+                expansions.add(new Expansion(term, PREFIX * idf(term)));
+            }
+        }
+        if (expansions.isEmpty() && word.length() >= minFuzzyLength) {
+            for (String candidate : oneEditAway(word)) {
+                expansions.add(new Expansion(terms.get(candidate), FUZZY * idf(terms.get(candidate))));
+            }
+        }
+        return expansions;
+    }
+
+    private Result rank(List<List<Expansion>> perWord, int limit, long deadline) {
+        double[] best = new double[perWord.size()];
+        long[] sizes = new long[perWord.size()];
+        long lists = 0;
+        for (int i = 0; i < perWord.size(); i++) {
+            for (Expansion expansion : perWord.get(i)) {
+                sizes[i] += expansion.term().size();
+                if (expansion.term().name.size() > 0) {
+                    best[i] = Math.max(best[i], expansion.weight() * IN_NAME);
+                }
+                if (expansion.term().description.size() > 0) {
+                    best[i] = Math.max(best[i], expansion.weight() * IN_DESCRIPTION);
+                }
+            }
+            lists += 2L * perWord.get(i).size();
+        }
+        // The driver is the word whose candidates are cheapest to check: every one of its
+        // products is probed in both lists of every expansion of the other words
+        int driver = 0;
+        double cheapest = Double.MAX_VALUE;
+        for (int i = 0; i < perWord.size(); i++) {
+            double cost = (double) sizes[i] * Math.max(1, lists - 2L * perWord.get(i).size());
+            if (cost < cheapest) {
+                cheapest = cost;
+                driver = i;
+            }
+        }
+
+        List<Tier> tiers = new ArrayList<>();
+        for (Expansion expansion : perWord.get(driver)) {
+            if (expansion.term().name.size() > 0) {
+                tiers.add(new Tier(expansion.term().name, expansion.weight() * IN_NAME));
+            }
+            if (expansion.term().description.size() > 0) {
+                tiers.add(new Tier(expansion.term().description, expansion.weight() * IN_DESCRIPTION));
+            }
+        }
+        tiers.sort(Comparator.comparingDouble(Tier::bound).reversed());
+        // A product can sit in lists of several expansions; it is scored through the first, highest one
+        BitSet scored = perWord.get(driver).size() > 1 ? new BitSet() : null;
+
+        PriorityQueue<Hit> top = new PriorityQueue<>(limit + 1, Comparator.comparingDouble(Hit::score)
+                .thenComparing(Comparator.comparingLong(Hit::productId).reversed()));
+        PriorityQueue<Cursor> cursors = new PriorityQueue<>(Comparator.comparingInt(Cursor::id));
+        int candidates = 0;
+        boolean partial = false;
+        int next = 0;
+        search:
+        while (next < tiers.size()) {
+            // Lists with the same bound are merged so their products come in id order
+            double bound = tiers.get(next).bound();
+            while (next < tiers.size() && tiers.get(next).bound() == bound) {
+                cursors.add(new Cursor(tiers.get(next++).postings()));
+            }
+            double ceiling = bound;
+            for (int i = 0; i < perWord.size(); i++) {
+                if (i != driver) {
+                    ceiling += best[i];
+                }
+            }
+            while (!cursors.isEmpty()) {
+                if (++candidates % DEADLINE_CHECK_INTERVAL == 0 && System.nanoTime() > deadline) {
+                    partial = true;
+                    break search;
+                }
+                int id = cursors.peek().id();
+                while (!cursors.isEmpty() && cursors.peek().id() == id) {
+                    Cursor cursor = cursors.poll();
+                    if (++cursor.position < cursor.postings.size()) {
+                        cursors.add(cursor);
+                    }
+                }
+                // Nothing from here on can outrank the worst kept hit: later lists have lower
+                // bounds, and later products in these lists have higher ids, which lose ties
+                if (top.size() == limit) {
+                    Hit worst = top.peek();
+                    if (worst.score() > ceiling || (worst.score() == ceiling && worst.productId() < id)) {
+                        break search;
+                    }
+                }
+                if (scored != null) {
+                    if (scored.get(id)) {
+                        continue;
+                    }
+                    scored.set(id);
+                }
+                double score = bound;
+                for (int i = 0; i < perWord.size() && score > 0; i++) {
+                    if (i != driver) {
+                        double wordScore = probe(perWord.get(i), id);
+                        score = wordScore == 0 ? 0 : score + wordScore;
+                    }
+                }
+                if (score > 0) {
+                    top.add(new Hit(id, score));
+                    if (top.size() > limit) {
+                        top.poll();
+                    }
+                }
+            }
+        }
+
+        List<Hit> hits = new ArrayList<>(top);
+        hits.sort(Comparator.comparingDouble(Hit::score).reversed().thenComparingLong(Hit::productId));
+        return new Result(hits, partial, candidates);
+    }
+
+    private static double probe(List<Expansion> expansions, int id) {
+        double best = 0;
+        for (Expansion expansion : expansions) {
+            if (expansion.term().name.contains(id)) {
+                best = Math.max(best, expansion.weight() * IN_NAME);
+            } else if (expansion.term().description.contains(id)) {
+                best = Math.max(best, expansion.weight() * IN_DESCRIPTION);
+            }
+        }
+        return best;
+    }
+
+    private double idf(Term term) {
+        return Math.log(1 + (double) Math.max(1, documentCount) / Math.max(1, term.size()));
+    }
+
+    private List<String> oneEditAway(String word) {
+        Set<String> candidates = new LinkedHashSet<>();
+        // word is a deletion of the term: the term has one extra character
+        candidates.addAll(deletions.getOrDefault(word, List.of()));
+        for (int i = 0; i < word.length(); i++) {
+            String deleted = word.substring(0, i) + word.substring(i + 1);
+            // The term is a deletion of word: word has one extra character
+            if (terms.containsKey(deleted)) {
+                candidates.add(deleted);
+            }
+            // Both lose one character: substitution or adjacent transposition
+            candidates.addAll(deletions.getOrDefault(deleted, List.of()));
+        }
+        List<String> verified = new ArrayList<>();
+        for (String candidate : candidates) {
+            if (verified.size() >= maxExpansions) {
+                break;
+            }
+            if (!candidate.equals(word) && withinOneEdit(word, candidate)) {
+                verified.add(candidate);
+            }
+        }
+        return verified;
+    }
+
+    // Optimal string alignment distance <= 1
+    static boolean withinOneEdit(String a, String b) {
+        int lengthDifference = a.length() - b.length();
+        if (Math.abs(lengthDifference) > 1) {
+            return false;
+        }
+        int i = 0;
+        while (i < a.length() && i < b.length() && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        if (lengthDifference > 0) {
+            return a.regionMatches(i + 1, b, i, b.length() - i);
+        }
+        if (lengthDifference < 0) {
+            return b.regionMatches(i + 1, a, i, a.length() - i);
+        }
+        if (i >= a.length() - 1) {
+            return true;
+        }
+        return a.regionMatches(i + 1, b, i + 1, a.length() - i - 1)
+                || (a.charAt(i) == b.charAt(i + 1) && a.charAt(i + 1) == b.charAt(i)
+                    && a.regionMatches(i + 2, b, i + 2, a.length() - i - 2));
+    }
+
+    private void addDeletions(String term) {
+        if (term.length() < minFuzzyLength) {
+            return;
+        }
+        for (int i = 0; i < term.length(); i++) {
+            deletions.computeIfAbsent(term.substring(0, i) + term.substring(i + 1), k -> new ArrayList<>(1)).add(term);
+        }
+    }
+
+    private void removeDeletions(String term) {
+        if (term.length() < minFuzzyLength) {
+            return;
+        }
+        for (int i = 0; i < term.length(); i++) {
+            String deleted = term.substring(0, i) + term.substring(i + 1);
+            List<String> owners = deletions.get(deleted);
+            if (owners != null) {
+                owners.remove(term);
+                if (owners.isEmpty()) {
+                    deletions.remove(deleted);
+                }
+            }
+        }
+    }
+
+    private static int toDocId(long productId) {
+        if (productId < 0 || productId > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Product id out of indexable range: " + productId);
+        }
+        return (int) productId;
+    }
+}
@@ -0,0 +1,113 @@
+package com.evolve.search;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import com.evolve.dto.ProductSearchResponse;
+import com.evolve.model.Product;
+import com.evolve.repository.ProductRepository;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Keeps {@link ProductSearchIndex} in step with the products table and
+ * serves searches from it.
+ *
+ * The index is loaded once the context is refreshed (the blocking Netty runner
+ * means ApplicationReadyEvent never fires) and updated by the product
+ * handler on every write. Ranking runs on the parallel scheduler within
+ * {@code search.budget}; the hits' products are then read in one query so
+ * results always show current data.
+ */
+@Slf4j
+@Service
+public class ProductSearchService {
+
+    private record Timed(ProductSearchIndex.Result result, long nanos) {
+    }
+
+    private final ProductRepository productRepository;
+    private final ProductSearchIndex index;
+    private final Duration budget;
+    private final int maxLimit;
+    private final AtomicBoolean loading = new AtomicBoolean();
+    private volatile boolean ready;
+
+    public ProductSearchService(ProductRepository productRepository,
+                                @Value("${search.budget:25ms}") Duration budget,
+                                @Value("${search.max-limit:100}") int maxLimit,
+                                @Value("${search.max-expansions:64}") int maxExpansions,
+                                @Value("${search.min-prefix-length:2}") int minPrefixLength,
+                                @Value("${search.min-fuzzy-length:4}") int minFuzzyLength) {
+        this.productRepository = productRepository;
+        this.budget = budget;
+        this.maxLimit = maxLimit;
+        this.index = new ProductSearchIndex(maxExpansions, minPrefixLength, minFuzzyLength);
+    }
+
+    @EventListener(ContextRefreshedEvent.class)
+    public void load() {
+        if (!loading.compareAndSet(false, true)) {
+            return;
+        }
+        long start = System.nanoTime();
+        productRepository.findAll()
+                .doOnNext(this::productCreated)
+                .count()
+                .subscribe(count -> {
+                    ready = true;
+                    log.info("Indexed {} products ({} terms) in {} ms",
+                            count, index.termCount(), (System.nanoTime() - start) / 1_000_000);
+                }, e -> log.error("Building the product search index failed", e));
+    }
+
+    public Mono<ProductSearchResponse> search(String query, int limit) {
+        int capped = Math.max(1, Math.min(limit, maxLimit));
+        return Mono.fromCallable(() -> {
+                    long start = System.nanoTime();
+                    return new Timed(index.search(query, capped, budget), System.nanoTime() - start);
+                })
+                .subscribeOn(Schedulers.parallel())
+                .flatMap(timed -> hydrate(query, timed));
+    }
+
+    private Mono<ProductSearchResponse> hydrate(String query, Timed timed) {
+        List<ProductSearchIndex.Hit> hits = timed.result().hits();
+        if (hits.isEmpty()) {
+            return Mono.just(response(query, timed, List.of()));
+        }
+        return productRepository.findAllById(hits.stream().map(ProductSearchIndex.Hit::productId).toList())
+                .collectMap(Product::getId, Function.identity())
+                .map(products -> response(query, timed, hits.stream()
+                        // A product deleted since ranking is dropped
+                        .filter(hit -> products.containsKey(hit.productId()))
+                        .map(hit -> new ProductSearchResponse.ProductHit(products.get(hit.productId()), hit.score()))
+                        .toList()));
+    }
+
+    private ProductSearchResponse response(String query, Timed timed, List<ProductSearchResponse.ProductHit> hits) {
+        return new ProductSearchResponse(query, timed.result().partial(), ready, timed.nanos() / 1_000, hits);
+    }
+
+    public void productCreated(Product product) {
+        index.add(product.getId(), product.getName(), product.getDescription());
+    }
+
+    public void productUpdated(Long id, String oldName, String oldDescription, Product updated) {
+        index.remove(id, oldName, oldDescription);
+        productCreated(updated);
+    }
+
+    public void productDeleted(Product product) {
+        index.remove(product.getId(), product.getName(), product.getDescription());
+    }
+}
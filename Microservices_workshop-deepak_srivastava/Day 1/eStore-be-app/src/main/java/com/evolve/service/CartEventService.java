@@ -1,11 +1,10 @@
 package com.evolve.service;
 
+import com.evolve.metrics.CartEventMetrics;
 import com.evolve.model.CartEvent;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.evolve.model.CartEventType;
+import com.evolve.transport.CartEventTransport;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.redis.core.ReactiveRedisTemplate;
-import org.springframework.data.redis.listener.ChannelTopic;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -14,63 +13,69 @@ import reactor.core.publisher.Mono;
 @Slf4j
 public class CartEventService {
     
-    private final ReactiveRedisTemplate<String, String> redisTemplate;
-    private final ObjectMapper objectMapper;
-    private static final String CART_EVENTS_CHANNEL = "cart:events";
+    private final CartEventTransport transport;
+    private final CartEventMetrics metrics;
+    // One transport subscription per node, so each delivery is recorded once however many consumers there are
+    private final Flux<CartEvent> events;
     
-    public CartEventService(ReactiveRedisTemplate<String, String> redisTemplate, ObjectMapper objectMapper) {
-        this.redisTemplate = redisTemplate;
-        this.objectMapper = objectMapper;
+    public CartEventService(CartEventTransport transport, CartEventMetrics metrics) {
+        this.transport = transport;
+        this.metrics = metrics;
+        this.events = transport.subscribe()
+                .doOnNext(event -> {
+                    event.setReceivedNanos(System.nanoTime());
+                    metrics.recordDelivery(event);
+                    log.debug("Received cart event: {}", event);
+                })
+                .publish()
+                .refCount(1);
     }
     
     public Mono<Void> publishCartEvent(CartEvent event) {
-        try {
-            String eventJson = objectMapper.writeValueAsString(event);
-            log.info("Publishing cart event: {}", eventJson);
-            return redisTemplate.convertAndSend(CART_EVENTS_CHANNEL, eventJson).then();
-        } catch (JsonProcessingException e) {
-            log.error("Error serializing cart event", e);
-            return Mono.error(e);
-        }
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return transport.publish(event)
+                    .doOnSuccess(done -> metrics.recordPublish(event, System.nanoTime() - start));
+        });
     }
     
+    /**
+     * Events received by this node. Consumers share one subscription to the
+     * transport, opened with the first and closed with the last; one that
+     * cannot keep up misses events instead of holding back the others.
+     */
     public Flux<CartEvent> subscribeToCartEvents() {
-        return redisTemplate.listenTo(ChannelTopic.of(CART_EVENTS_CHANNEL))
-                .map(message -> {
-                    try {
-                        return objectMapper.readValue(message.getMessage(), CartEvent.class);
-                    } catch (JsonProcessingException e) {
-                        log.error("Error deserializing cart event", e);
-                        return null;
-                    }
-                })
-                .filter(event -> event != null)
-                .doOnNext(event -> log.info("Received cart event: {}", event));
+        return events.onBackpressureDrop();
     }
     
-    // Convenience methods for different event types
+    // Convenience methods for different event types; a missing id or quantity is sent as 0
     public Mono<Void> publishAddItemEvent(Long cartId, Long userId, Long productId, Integer quantity) {
-        CartEvent event = new CartEvent("ADD_ITEM", cartId, userId, productId, quantity, 
-            "Item added to cart: productId=" + productId + ", quantity=" + quantity);
-        return publishCartEvent(event);
+        return publishCartEvent(new CartEvent(CartEventType.ADD_ITEM, id(cartId), id(userId), id(productId),
+            quantity(quantity), null));
     }
     
     public Mono<Void> publishRemoveItemEvent(Long cartId, Long userId, Long productId) {
-        CartEvent event = new CartEvent("REMOVE_ITEM", cartId, userId, productId, null, 
-            "Item removed from cart: productId=" + productId);
-        return publishCartEvent(event);
+        return publishCartEvent(new CartEvent(CartEventType.REMOVE_ITEM, id(cartId), id(userId), id(productId), 0, null));
+    }
+    
+    public Mono<Void> publishUpdateItemEvent(Long cartId, Long userId, Long productId, Integer quantity) {
+        return publishCartEvent(new CartEvent(CartEventType.UPDATE_ITEM, id(cartId), id(userId), id(productId),
+            quantity(quantity), null));
     }
     
     public Mono<Void> publishUpdateCartEvent(Long cartId, Long userId, String status) {
-        CartEvent event = new CartEvent("UPDATE_CART", cartId, userId, 
-            "Cart updated: status=" + status);
-        event.setCartStatus(status);
-        return publishCartEvent(event);
+        return publishCartEvent(new CartEvent(CartEventType.UPDATE_CART, id(cartId), id(userId), 0, 0, status));
     }
     
     public Mono<Void> publishClearCartEvent(Long cartId, Long userId) {
-        CartEvent event = new CartEvent("CLEAR_CART", cartId, userId, 
-            "Cart cleared");
-        return publishCartEvent(event);
+        return publishCartEvent(new CartEvent(CartEventType.CLEAR_CART, id(cartId), id(userId), 0, 0, null));
+    }
+
+    private static long id(Long id) {
+        return id == null ? 0 : id;
+    }
+
+    private static int quantity(Integer quantity) {
+        return quantity == null ? 0 : quantity;
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,191 @@
+package com.evolve.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+import com.evolve.dto.OrderWithItems;
+import com.evolve.etag.ResourceVersions;
+import com.evolve.exception.OrderException;
+import com.evolve.model.Cart;
+import com.evolve.model.CartItem;
+import com.evolve.model.Order;
+import com.evolve.model.OrderItem;
+import com.evolve.model.Product;
+import com.evolve.repository.CartItemRepository;
+import com.evolve.repository.CartRepository;
+import com.evolve.repository.OrderRepository;
+import com.evolve.repository.ProductRepository;
+import com.evolve.writebehind.CartItemWriteBuffer;
+
+import io.r2dbc.spi.Statement;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Turns a user's active cart into an order.
+ *
+ * Claiming the cart, inserting the order and inserting its lines run in one
+ * R2DBC transaction. The cart is claimed first with a conditional UPDATE, so
+ * of two concurrent checkouts of the same cart exactly one proceeds and the
+ * other fails before writing anything. Order lines go to the database as one
+ * batched statement rather than one round trip per line.
+ *
+ * A second checkout of the same user on this node is rejected up front: H2
+ * executes on the calling thread, so letting it wait on the cart's row lock
+ * would stall an event loop until the first checkout commits.
+ *
+ * Once the order commits, the cart's ETag is invalidated here before the
+ * checkout event goes out, so a poll answered by this node never gets a 304
+ * for the cart it still saw as active.
+ */
+@Service
+public class CheckoutService {
+
+    static final String ACTIVE = "active";
+    static final String CHECKED_OUT = "checked_out";
+    static final String PLACED = "PLACED";
+
+    private static final String INSERT_ORDER_ITEM =
+            "INSERT INTO order_items (order_id, product_id, quantity, unit_price) VALUES ($1, $2, $3, $4)";
+
+    private final CartRepository cartRepository;
+    private final CartItemRepository cartItemRepository;
+    private final ProductRepository productRepository;
+    private final OrderRepository orderRepository;
+    private final DatabaseClient databaseClient;
+    private final TransactionalOperator transactionalOperator;
+    private final CartEventService cartEventService;
+    private final CartItemWriteBuffer writeBuffer;
+    private final ResourceVersions versions;
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+
+    public CheckoutService(CartRepository cartRepository, CartItemRepository cartItemRepository,
+                           ProductRepository productRepository, OrderRepository orderRepository,
+                           DatabaseClient databaseClient, TransactionalOperator transactionalOperator,
+                           CartEventService cartEventService, CartItemWriteBuffer writeBuffer,
+                           ResourceVersions versions) {
+        this.cartRepository = cartRepository;
+        this.cartItemRepository = cartItemRepository;
+        this.productRepository = productRepository;
+        this.orderRepository = orderRepository;
+        this.databaseClient = databaseClient;
+        this.transactionalOperator = transactionalOperator;
+        this.cartEventService = cartEventService;
+        this.writeBuffer = writeBuffer;
+        this.versions = versions;
+    }
+
+    /**
+     * Checks out the most recent active cart of a user. Fails with
+     * {@link OrderException} when there is no active cart, the cart is empty,
+     * or another checkout claimed it first.
+     */
+    public Mono<OrderWithItems> checkout(Long userId) {
+        return Mono.defer(() -> {
+            if (!inFlight.add(userId)) {
+                return Mono.error(new OrderException("Checkout already in progress for user " + userId));
+            }
+            return placeAndPublish(userId).doFinally(signal -> inFlight.remove(userId));
+        });
+    }
+
+    private Mono<OrderWithItems> placeAndPublish(Long userId) {
+        Mono<OrderWithItems> placed = cartRepository.findFirstByUserIdAndStatusOrderByIdDesc(userId, ACTIVE)
+                .switchIfEmpty(Mono.error(() -> new OrderException("No active cart for user " + userId)))
+                .flatMap(this::placeOrder)
+                .as(transactionalOperator::transactional);
+
+        // Subscribers only hear about the checkout once it is committed
+        return placed.doOnNext(result -> versions.changed(ResourceVersions.CARTS, result.getOrder().getCartId()))
+                .flatMap(result -> cartEventService
+                .publishUpdateCartEvent(result.getOrder().getCartId(), userId, CHECKED_OUT)
+                .thenReturn(result));
+    }
+
+    private Mono<OrderWithItems> placeOrder(Cart cart) {
+        // Quantities still in the write-behind buffer are what the user last chose
+        return cartItemRepository.findAllByCartId(cart.getId())
+                .map(writeBuffer::overlay)
+                .collectList()
+                .flatMap(items -> items.isEmpty()
+                        ? Mono.error(new OrderException("Cart " + cart.getId() + " is empty"))
+                        : claim(cart).then(priceLines(items)))
+                .flatMap(lines -> {
+                    Order order = new Order();
+                    order.setUserId(cart.getUserId());
+                    order.setCartId(cart.getId());
+                    order.setStatus(PLACED);
+                    return orderRepository.save(order)
+                            .flatMap(saved -> insertLines(saved.getId(), lines)
+                                    .thenReturn(new OrderWithItems(saved, lines)));
+                });
+    }
+
+    private Mono<Void> claim(Cart cart) {
+        return databaseClient.sql("UPDATE carts SET status = :checkedOut WHERE id = :id AND status = :active")
+                .bind("checkedOut", CHECKED_OUT)
+                .bind("id", cart.getId())
+                .bind("active", ACTIVE)
+                .fetch()
+                .rowsUpdated()
+                .flatMap(updated -> updated == 1
+                        ? Mono.<Void>empty()
+                        : Mono.error(new OrderException("Cart " + cart.getId() + " was already checked out")));
+    }
+
+    private Mono<List<OrderItem>> priceLines(List<CartItem> items) {
+        List<Long> productIds = items.stream().map(CartItem::getProductId).distinct().toList();
+        return productRepository.findAllById(productIds)
+                .collectMap(Product::getId, Function.identity())
+                .flatMap(products -> {
+                    List<OrderItem> lines = new ArrayList<>(items.size());
+                    for (CartItem item : items) {
+                        Product product = products.get(item.getProductId());
+                        if (product == null) {
+                            return Mono.error(new OrderException("Product not found: " + item.getProductId()));
+                        }
+                        lines.add(line(item, product));
+                    }
+                    return Mono.just(lines);
+                });
+    }
+
+    private static OrderItem line(CartItem item, Product product) {
+        OrderItem line = new OrderItem();
+        line.setProductId(product.getId());
+        line.setQuantity(item.getQuantity());
+        line.setUnitPrice(product.getPrice());
+        return line;
+    }
+
+    // One statement with a binding set per line; runs on the transaction's connection
+    private Mono<Void> insertLines(Long orderId, List<OrderItem> lines) {
+        return databaseClient.inConnection(connection -> {
+            Statement statement = connection.createStatement(INSERT_ORDER_ITEM).returnGeneratedValues("id");
+            for (int i = 0; i < lines.size(); i++) {
+                if (i > 0) {
+                    statement.add();
+                }
+                OrderItem line = lines.get(i);
+                line.setOrderId(orderId);
+                statement.bind(0, orderId)
+                        .bind(1, line.getProductId())
+                        .bind(2, line.getQuantity())
+                        .bind(3, line.getUnitPrice());
+            }
+            // One result per binding set, in binding order
+            return Flux.from(statement.execute())
+                    .concatMap(result -> result.map((row, metadata) -> row.get("id", Long.class)))
+                    .index()
+                    .doOnNext(generated -> lines.get(generated.getT1().intValue()).setId(generated.getT2()))
+                    .then();
+        });
+    }
+}
@@ -0,0 +1,388 @@
+package com.evolve.service;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.StringDecoder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+import com.evolve.catalog.ProductCatalog;
+import com.evolve.dto.ImportProgress;
+import com.evolve.model.Product;
+import com.evolve.search.ProductSearchService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.r2dbc.spi.Statement;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Streams products from CSV or NDJSON into the products table.
+ *
+ * Input is split into lines as it arrives and each line is parsed on its own,
+ * so memory depends on the batch size and concurrency, never on the input
+ * size. Valid rows are inserted in batches of {@code product-import.batch-size},
+ * each batch one multi-binding statement in its own transaction, with at most
+ * {@code product-import.concurrency} batches in flight. Rejected rows are
+ * counted; only the first {@code product-import.max-rejects} are kept.
+ * Inserted products are added to the search index batch by batch.
+ *
+ * CSV needs a header with {@code name} and {@code price} columns
+ * ({@code description} is optional, other columns are ignored); quoted fields
+ * may contain commas and doubled quotes but not line breaks. NDJSON takes one
+ * object per line with the same fields.
+ */
+@Slf4j
+@Service
+public class ProductImportService {
+
+    public enum Format {
+        CSV, NDJSON;
+
+        public static Format of(String name) {
+            for (Format format : values()) {
+                if (format.name().equalsIgnoreCase(name)) {
+                    return format;
+                }
+            }
+            throw new IllegalArgumentException("Unknown import format " + name + "; use csv or ndjson");
+        }
+
+        public static Format fromFileName(String fileName) {
+            String lower = fileName.toLowerCase(Locale.ROOT);
+            if (lower.endsWith(".csv")) {
+                return CSV;
+            }
+            if (lower.endsWith(".ndjson") || lower.endsWith(".jsonl")) {
+                return NDJSON;
+            }
+            throw new IllegalArgumentException("Cannot tell the format of " + fileName + "; pass format=csv|ndjson");
+        }
+    }
+
+    private static final String INSERT_PRODUCT = "INSERT INTO products (name, description, price) VALUES ($1, $2, $3)";
+    private static final int MAX_NAME_LENGTH = 100;
+    private static final int MAX_DESCRIPTION_LENGTH = 255;
+    private static final int FILE_READ_BUFFER = 64 * 1024;
+
+    // A parsed line: either a product or the reason it was rejected
+    private record Row(long line, Product product, String error) {
+    }
+
+    private static final class Job {
+        private final long start = System.nanoTime();
+        private final AtomicLong parsed = new AtomicLong();
+        private final AtomicLong inserted = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+        private final AtomicLong batches = new AtomicLong();
+        private final Queue<ImportProgress.Reject> rejects = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger kept = new AtomicInteger();
+        private final int maxRejects;
+
+        private Job(int maxRejects) {
+            this.maxRejects = maxRejects;
+        }
+
+        private void reject(long line, String reason) {
+            rejected.incrementAndGet();
+            if (kept.incrementAndGet() <= maxRejects) {
+                rejects.add(new ImportProgress.Reject(line, reason));
+            }
+        }
+
+        private ImportProgress snapshot(boolean done, String error) {
+            List<ImportProgress.Reject> sorted = null;
+            if (done) {
+                sorted = new ArrayList<>(rejects);
+                sorted.sort(Comparator.comparingLong(ImportProgress.Reject::getLine));
+            }
+            return new ImportProgress(parsed.get(), inserted.get(), rejected.get(), batches.get(),
+                    (System.nanoTime() - start) / 1_000_000, done, error, sorted);
+        }
+    }
+
+    private final DatabaseClient databaseClient;
+    private final TransactionalOperator transactionalOperator;
+    private final ProductSearchService searchService;
+    private final ProductCatalog catalog;
+    private final ObjectMapper objectMapper;
+    private final StringDecoder lineDecoder;
+    private final int batchSize;
+    private final int concurrency;
+    private final int maxRejects;
+    private final Duration progressInterval;
+    private final Path directory;
+
+    public ProductImportService(DatabaseClient databaseClient, TransactionalOperator transactionalOperator,
+                                ProductSearchService searchService, ProductCatalog catalog, ObjectMapper objectMapper,
+                                @Value("${product-import.batch-size:500}") int batchSize,
+                                @Value("${product-import.concurrency:4}") int concurrency,
+                                @Value("${product-import.max-rejects:100}") int maxRejects,
+                                @Value("${product-import.max-line-bytes:65536}") int maxLineBytes,
+                                @Value("${product-import.progress-interval:1s}") Duration progressInterval,
+                                @Value("${product-import.directory:}") String directory) {
+        this.databaseClient = databaseClient;
+        this.transactionalOperator = transactionalOperator;
+        this.searchService = searchService;
+        this.catalog = catalog;
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+        this.concurrency = concurrency;
+        this.maxRejects = maxRejects;
+        this.progressInterval = progressInterval;
+        this.directory = directory.isBlank() ? null : Path.of(directory).toAbsolutePath().normalize();
+        this.lineDecoder = StringDecoder.allMimeTypes();
+        this.lineDecoder.setMaxInMemorySize(maxLineBytes);
+    }
+
+    /**
+     * Imports from a request body or any other buffer stream. Emits a progress
+     * report every {@code product-import.progress-interval} and a final one
+     * with {@code done=true} and the kept rejects.
+     */
+    public Flux<ImportProgress> importProducts(Publisher<DataBuffer> content, Format format) {
+        return importLines(lines(content), format);
+    }
+
+    /**
+     * Imports a file from {@code product-import.directory}; the name may not
+     * point outside it. The format defaults to the file's extension. Throws
+     * {@link IllegalArgumentException} up front, before anything is streamed.
+     */
+    public Flux<ImportProgress> importFile(String fileName, Format format) {
+        if (directory == null) {
+            throw new IllegalArgumentException("File imports are disabled; set product-import.directory");
+        }
+        Path file = directory.resolve(fileName).normalize();
+        if (!file.startsWith(directory) || !Files.isRegularFile(file)) {
+            throw new IllegalArgumentException("No such file in the import directory: " + fileName);
+        }
+        Format resolved = format != null ? format : Format.fromFileName(file.getFileName().toString());
+        return importProducts(DataBufferUtils.read(file, DefaultDataBufferFactory.sharedInstance, FILE_READ_BUFFER), resolved);
+    }
+
+    Flux<ImportProgress> importLines(Flux<String> lines, Format format) {
+        return Flux.defer(() -> {
+            Job job = new Job(maxRejects);
+            Flux<Row> rows = format == Format.CSV ? parseCsv(lines) : parseNdjson(lines);
+            Mono<ImportProgress> done = rows
+                    .doOnNext(row -> {
+                        job.parsed.incrementAndGet();
+                        if (row.error() != null) {
+                            job.reject(row.line(), row.error());
+                        }
+                    })
+                    .filter(row -> row.error() == null)
+                    .buffer(batchSize)
+                    .flatMap(batch -> insert(batch, job), concurrency)
+                    .then(Mono.fromSupplier(() -> job.snapshot(true, null)))
+                    .onErrorResume(e -> {
+                        log.warn("Product import stopped: {}", e.toString());
+                        return Mono.just(job.snapshot(true, e.getMessage()));
+                    })
+                    .doOnNext(report -> log.info("Imported {} products, rejected {}, in {} ms",
+                            report.getInserted(), report.getRejected(), report.getElapsedMillis()))
+                    .cache();
+            return Flux.interval(progressInterval)
+                    .map(tick -> job.snapshot(false, null))
+                    .onBackpressureLatest()
+                    .takeUntilOther(done)
+                    .concatWith(done);
+        });
+    }
+
+    private Flux<String> lines(Publisher<DataBuffer> content) {
+        return lineDecoder.decode(content, ResolvableType.forClass(String.class), null, null);
+    }
+
+    private Mono<Void> insert(List<Row> batch, Job job) {
+        return databaseClient.inConnection(connection -> {
+                    Statement statement = connection.createStatement(INSERT_PRODUCT).returnGeneratedValues("id");
+                    for (int i = 0; i < batch.size(); i++) {
+                        if (i > 0) {
+                            statement.add();
+                        }
+                        Product product = batch.get(i).product();
+                        statement.bind(0, product.getName());
+                        if (product.getDescription() == null) {
+                            statement.bindNull(1, String.class);
+                        } else {
+                            statement.bind(1, product.getDescription());
+                        }
+                        statement.bind(2, product.getPrice());
+                    }
+                    return Flux.from(statement.execute())
+                            .concatMap(result -> result.map((row, metadata) -> row.get("id", Long.class)))
+                            .index()
+                            .doOnNext(generated -> batch.get(generated.getT1().intValue()).product().setId(generated.getT2()))
+                            .then();
+                })
+                .as(transactionalOperator::transactional)
+                .doOnSuccess(ignored -> {
+                    job.batches.incrementAndGet();
+                    job.inserted.addAndGet(batch.size());
+                    for (Row row : batch) {
+                        searchService.productCreated(row.product());
+                        catalog.productSaved(row.product());
+                    }
+                })
+                // A failed batch rolls back as a whole; its rows are rejected and the import goes on
+                .onErrorResume(e -> {
+                    job.batches.incrementAndGet();
+                    for (Row row : batch) {
+                        job.reject(row.line(), "Batch insert failed: " + e.getMessage());
+                    }
+                    return Mono.empty();
+                });
+    }
+
+    private Flux<Row> parseCsv(Flux<String> lines) {
+        return lines.index()
+                .filter(line -> !line.getT2().isBlank())
+                .switchOnFirst((first, all) -> {
+                    if (!first.hasValue()) {
+                        return all.thenMany(Flux.empty());
+                    }
+                    Map<String, Integer> columns = header(first.get().getT2());
+                    return all.skip(1).map(line -> csvRow(line.getT1() + 1, line.getT2(), columns));
+                });
+    }
+
+    private static Map<String, Integer> header(String line) {
+        List<String> names = splitCsv(line.startsWith("\uFEFF") ? line.substring(1) : line);
+        if (names == null) {
+            throw new IllegalArgumentException("Malformed CSV header");
+        }
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            columns.putIfAbsent(names.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+        if (!columns.containsKey("name") || !columns.containsKey("price")) {
+            throw new IllegalArgumentException("CSV header needs name and price columns, got: " + line);
+        }
+        return columns;
+    }
+
+    private static Row csvRow(long line, String text, Map<String, Integer> columns) {
+        List<String> fields = splitCsv(text);
+        if (fields == null) {
+            return new Row(line, null, "Unterminated quoted field");
+        }
+        Integer description = columns.get("description");
+        return validate(line, field(fields, columns.get("name")),
+                description == null ? null : field(fields, description),
+                field(fields, columns.get("price")));
+    }
+
+    private static String field(List<String> fields, int column) {
+        return column < fields.size() ? fields.get(column) : null;
+    }
+
+    /**
+     * Splits one CSV line; null when a quoted field is not closed on it.
+     */
+    static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            return null;
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private Flux<Row> parseNdjson(Flux<String> lines) {
+        return lines.index()
+                .filter(line -> !line.getT2().isBlank())
+                .map(line -> ndjsonRow(line.getT1() + 1, line.getT2()));
+    }
+
+    private Row ndjsonRow(long line, String text) {
+        JsonNode node;
+        try {
+            node = objectMapper.readTree(text);
+        } catch (JsonProcessingException e) {
+            return new Row(line, null, "Malformed JSON: " + e.getOriginalMessage());
+        }
+        if (!node.isObject()) {
+            return new Row(line, null, "Expected a JSON object");
+        }
+        return validate(line, text(node.get("name")), text(node.get("description")), text(node.get("price")));
+    }
+
+    private static String text(JsonNode node) {
+        return node == null || node.isNull() ? null : node.asText();
+    }
+
+    private static Row validate(long line, String name, String description, String price) {
+        if (name == null || name.isBlank()) {
+            return new Row(line, null, "Missing name");
+        }
+        if (name.length() > MAX_NAME_LENGTH) {
+            return new Row(line, null, "Name longer than " + MAX_NAME_LENGTH + " characters");
+        }
+        if (description != null && description.length() > MAX_DESCRIPTION_LENGTH) {
+            return new Row(line, null, "Description longer than " + MAX_DESCRIPTION_LENGTH + " characters");
+        }
+        if (price == null || price.isBlank()) {
+            return new Row(line, null, "Missing price");
+        }
+        double value;
+        try {
+            value = Double.parseDouble(price.trim());
+        } catch (NumberFormatException e) {
+            return new Row(line, null, "Invalid price: " + price);
+        }
+        if (!Double.isFinite(value) || value < 0) {
+            return new Row(line, null, "Invalid price: " + price);
+        }
+        Product product = new Product();
+        product.setName(name.trim());
+        product.setDescription(description == null || description.isBlank() ? null : description.trim());
+        product.setPrice(value);
+        return new Row(line, product, null);
+    }
+}
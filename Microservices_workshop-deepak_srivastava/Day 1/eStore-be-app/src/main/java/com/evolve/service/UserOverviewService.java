@@ -0,0 +1,122 @@
+package com.evolve.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.evolve.dto.CartItemWithProduct;
+import com.evolve.dto.CartWithItems;
+import com.evolve.dto.UserOverview;
+import com.evolve.model.Cart;
+import com.evolve.model.CartItem;
+import com.evolve.model.Product;
+import com.evolve.repository.CartItemRepository;
+import com.evolve.repository.CartRepository;
+import com.evolve.repository.OrderRepository;
+import com.evolve.repository.ProductRepository;
+import com.evolve.repository.UserRepository;
+import com.evolve.writebehind.CartItemWriteBuffer;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Assembles the account page: a user with their carts, each cart's items
+ * with their products, and their orders.
+ *
+ * The user, cart and order reads are independent and run at the same time.
+ * Items are then read for all of the user's carts together and products for
+ * all of those items together, in {@code IN} queries of at most
+ * {@code user-overview.batch-size} ids, with at most
+ * {@code user-overview.concurrency} of them in flight. So an overview takes
+ * three round trips end to end however many carts and items there are,
+ * where the client makes three calls and one more per cart, in turn.
+ *
+ * As with cart pricing, lines whose product is gone are left out.
+ */
+@Service
+public class UserOverviewService {
+
+    private final UserRepository userRepository;
+    private final CartRepository cartRepository;
+    private final CartItemRepository cartItemRepository;
+    private final ProductRepository productRepository;
+    private final OrderRepository orderRepository;
+    private final CartItemWriteBuffer writeBuffer;
+    private final int batchSize;
+    private final int concurrency;
+
+    public UserOverviewService(UserRepository userRepository, CartRepository cartRepository,
+                               CartItemRepository cartItemRepository, ProductRepository productRepository,
+                               OrderRepository orderRepository, CartItemWriteBuffer writeBuffer,
+                               @Value("${user-overview.batch-size:100}") int batchSize,
+                               @Value("${user-overview.concurrency:4}") int concurrency) {
+        this.userRepository = userRepository;
+        this.cartRepository = cartRepository;
+        this.cartItemRepository = cartItemRepository;
+        this.productRepository = productRepository;
+        this.orderRepository = orderRepository;
+        this.writeBuffer = writeBuffer;
+        this.batchSize = batchSize;
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Empty when there is no such user.
+     */
+    public Mono<UserOverview> overview(Long userId) {
+        return Mono.zip(
+                        userRepository.findById(userId),
+                        cartRepository.findAllByUserId(userId).collectList().flatMap(this::withItems),
+                        orderRepository.findAllByUserId(userId).collectList())
+                .map(parts -> new UserOverview(parts.getT1(), parts.getT2(), parts.getT3()));
+    }
+
+    private Mono<List<CartWithItems>> withItems(List<Cart> carts) {
+        if (carts.isEmpty()) {
+            return Mono.just(List.of());
+        }
+        List<Long> cartIds = carts.stream().map(Cart::getId).toList();
+        return inBatches(cartIds, cartItemRepository::findAllByCartIdIn)
+                .map(writeBuffer::overlay)
+                .collectList()
+                .flatMap(items -> {
+                    List<Long> productIds = items.stream().map(CartItem::getProductId).distinct().toList();
+                    return inBatches(productIds, productRepository::findAllById)
+                            .collectMap(Product::getId, Function.identity())
+                            .map(products -> assemble(carts, items, products));
+                });
+    }
+
+    private static List<CartWithItems> assemble(List<Cart> carts, List<CartItem> items, Map<Long, Product> products) {
+        Map<Long, List<CartItemWithProduct>> byCart = new LinkedHashMap<>();
+        for (Cart cart : carts) {
+            byCart.put(cart.getId(), new ArrayList<>());
+        }
+        for (CartItem item : items) {
+            Product product = products.get(item.getProductId());
+            if (product != null) {
+                CartItemWithProduct line = new CartItemWithProduct();
+                line.setId(item.getId());
+                line.setCartId(item.getCartId());
+                line.setQuantity(item.getQuantity());
+                line.setProduct(product);
+                byCart.get(item.getCartId()).add(line);
+            }
+        }
+        return carts.stream().map(cart -> new CartWithItems(cart, byCart.get(cart.getId()))).toList();
+    }
+
+    private <T> Flux<T> inBatches(List<Long> ids, Function<List<Long>, Flux<T>> find) {
+        List<List<Long>> batches = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += batchSize) {
+            batches.add(ids.subList(from, Math.min(ids.size(), from + batchSize)));
+        }
+        return Flux.fromIterable(batches).flatMap(find, concurrency);
+    }
+}
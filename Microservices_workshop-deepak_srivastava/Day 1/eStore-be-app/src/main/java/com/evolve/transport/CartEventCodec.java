@@ -0,0 +1,182 @@
+package com.evolve.transport;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+
+import com.evolve.model.CartEvent;
+import com.evolve.model.CartEventType;
+
+/**
+ * Writes a {@link CartEvent} into a caller's buffer, with no intermediate
+ * objects: a fixed binary record for Redis, and the JSON of an SSE frame.
+ *
+ * The binary record is
+ * {@code [byte version][byte type][long cartId][long userId][long productId][int quantity][long timestamp][short status length][status]},
+ * big-endian, with UTF-8 status text and -1 for none. Known cart statuses
+ * decode to shared strings, so decoding allocates only the event.
+ *
+ * The JSON keeps the shape SSE clients already read: absent ids, quantity
+ * and status are null, the timestamp is ISO-8601, and {@code message} is
+ * built from the other fields as it is written.
+ */
+public final class CartEventCodec {
+
+    public static final byte VERSION = 1;
+    /**
+     * Bytes of a record without its status.
+     */
+    public static final int FIXED_BYTES = 2 + 3 * Long.BYTES + Integer.BYTES + Long.BYTES + Short.BYTES;
+
+    private static final String[] KNOWN_STATUSES = {"active", "abandoned", "checked_out"};
+    private static final byte[][] KNOWN_STATUS_BYTES = new byte[KNOWN_STATUSES.length][];
+
+    static {
+        for (int i = 0; i < KNOWN_STATUSES.length; i++) {
+            KNOWN_STATUS_BYTES[i] = KNOWN_STATUSES[i].getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    private CartEventCodec() {
+    }
+
+    /**
+     * Bytes {@link #encode} writes for the event.
+     */
+    public static int size(CartEvent event) {
+        return FIXED_BYTES + (event.getCartStatus() == null ? 0 : statusBytes(event.getCartStatus()).length);
+    }
+
+    /**
+     * Writes the event at the buffer's position, advancing it.
+     */
+    public static void encode(CartEvent event, ByteBuffer into) {
+        into.put(VERSION)
+                .put(event.getEventType().code())
+                .putLong(event.getCartId())
+                .putLong(event.getUserId())
+                .putLong(event.getProductId())
+                .putInt(event.getQuantity())
+                .putLong(event.getTimestamp());
+        String status = event.getCartStatus();
+        if (status == null) {
+            into.putShort((short) -1);
+        } else {
+            byte[] bytes = statusBytes(status);
+            into.putShort((short) bytes.length).put(bytes);
+        }
+    }
+
+    /**
+     * Reads an event from the buffer's position, or null for a record of
+     * another version or an unknown type, as a newer node may send, or one
+     * cut short.
+     */
+    public static CartEvent decode(ByteBuffer from) {
+        if (from.remaining() < FIXED_BYTES || from.get() != VERSION) {
+            return null;
+        }
+        CartEventType type = CartEventType.of(from.get());
+        if (type == null) {
+            return null;
+        }
+        CartEvent event = new CartEvent(type, from.getLong(), from.getLong(), from.getLong(), from.getInt(), null,
+                from.getLong());
+        short length = from.getShort();
+        if (length > from.remaining()) {
+            return null;
+        }
+        if (length >= 0) {
+            event.setCartStatus(status(from, length));
+        }
+        return event;
+    }
+
+    /**
+     * Appends the event's JSON.
+     */
+    public static StringBuilder appendJson(CartEvent event, StringBuilder into) {
+        into.append("{\"eventType\":\"").append(event.getEventType().name()).append('"');
+        appendId(into.append(",\"cartId\":"), event.getCartId());
+        appendId(into.append(",\"userId\":"), event.getUserId());
+        appendId(into.append(",\"productId\":"), event.getProductId());
+        appendId(into.append(",\"quantity\":"), event.getQuantity());
+        into.append(",\"cartStatus\":");
+        if (event.getCartStatus() == null) {
+            into.append("null");
+        } else {
+            appendString(into.append('"'), event.getCartStatus()).append('"');
+        }
+        into.append(",\"timestamp\":");
+        if (event.getTimestamp() == 0) {
+            into.append("null");
+        } else {
+            long micros = event.getTimestamp();
+            Instant timestamp = Instant.ofEpochSecond(Math.floorDiv(micros, 1_000_000), Math.floorMod(micros, 1_000_000) * 1_000);
+            DateTimeFormatter.ISO_INSTANT.formatTo(timestamp, into.append('"'));
+            into.append('"');
+        }
+        return appendMessage(into.append(",\"message\":\""), event).append("\"}");
+    }
+
+    private static StringBuilder appendMessage(StringBuilder into, CartEvent event) {
+        return switch (event.getEventType()) {
+            case ADD_ITEM -> into.append("Item added to cart: productId=").append(event.getProductId())
+                    .append(", quantity=").append(event.getQuantity());
+            case REMOVE_ITEM -> into.append("Item removed from cart: productId=").append(event.getProductId());
+            case UPDATE_ITEM -> into.append("Item quantity changed: productId=").append(event.getProductId())
+                    .append(", quantity=").append(event.getQuantity());
+            case UPDATE_CART -> appendString(into.append("Cart updated: status="), String.valueOf(event.getCartStatus()));
+            case CLEAR_CART -> into.append("Cart cleared");
+        };
+    }
+
+    private static void appendId(StringBuilder into, long value) {
+        if (value == 0) {
+            into.append("null");
+        } else {
+            into.append(value);
+        }
+    }
+
+    private static StringBuilder appendString(StringBuilder into, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                into.append('\\').append(c);
+            } else if (c < 0x20) {
+                into.append(String.format("\\u%04x", (int) c));
+            } else {
+                into.append(c);
+            }
+        }
+        return into;
+    }
+
+    private static byte[] statusBytes(String status) {
+        for (int i = 0; i < KNOWN_STATUSES.length; i++) {
+            if (KNOWN_STATUSES[i].equals(status)) {
+                return KNOWN_STATUS_BYTES[i];
+            }
+        }
+        byte[] bytes = status.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Cart status of " + bytes.length + " bytes is too long");
+        }
+        return bytes;
+    }
+
+    private static String status(ByteBuffer from, int length) {
+        for (int i = 0; i < KNOWN_STATUS_BYTES.length; i++) {
+            if (KNOWN_STATUS_BYTES[i].length == length
+                    && from.slice(from.position(), length).equals(ByteBuffer.wrap(KNOWN_STATUS_BYTES[i]))) {
+                from.position(from.position() + length);
+                return KNOWN_STATUSES[i];
+            }
+        }
+        byte[] bytes = new byte[length];
+        from.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,20 @@
+package com.evolve.transport;
+
+import com.evolve.model.CartEvent;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Fan-out of cart events to every subscriber on every node.
+ *
+ * Selected with {@code cart.events.transport}: {@code redis} (default) uses
+ * Redis pub/sub, {@code in-jvm} multicasts within the process for
+ * single-node deployments.
+ */
+public interface CartEventTransport {
+
+    Mono<Void> publish(CartEvent event);
+
+    Flux<CartEvent> subscribe();
+}
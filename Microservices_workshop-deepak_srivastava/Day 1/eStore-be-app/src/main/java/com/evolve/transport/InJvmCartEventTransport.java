@@ -0,0 +1,44 @@
+package com.evolve.transport;
+
+import java.time.Duration;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.evolve.model.CartEvent;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+/**
+ * Multicasts the event instance itself: no serialization and no network hop.
+ *
+ * Like Redis pub/sub it is fire-and-forget: a subscriber that cannot keep up
+ * misses events instead of holding back the others.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "cart.events.transport", havingValue = "in-jvm")
+public class InJvmCartEventTransport implements CartEventTransport {
+
+    // Publishers on different event-loop threads race for the sink; spin briefly instead of failing
+    private static final Sinks.EmitFailureHandler RETRY_CONCURRENT_EMIT =
+            Sinks.EmitFailureHandler.busyLooping(Duration.ofMillis(100));
+
+    private final Sinks.Many<CartEvent> sink = Sinks.many().multicast().directBestEffort();
+
+    @Override
+    public Mono<Void> publish(CartEvent event) {
+        return Mono.fromRunnable(() -> {
+            log.debug("Publishing cart event: {}", event);
+            sink.emitNext(event, RETRY_CONCURRENT_EMIT);
+        });
+    }
+
+    @Override
+    public Flux<CartEvent> subscribe() {
+        return sink.asFlux();
+    }
+}
@@ -0,0 +1,95 @@
+package com.evolve.transport;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+
+import com.evolve.model.CartEvent;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Sends cart events as {@link CartEventCodec} binary records. The template
+ * passes ByteBuffers through untouched, so an event is encoded straight into
+ * a pooled buffer and decoded straight from the one Lettuce received.
+ *
+ * A buffer goes back to the pool once Redis has answered the PUBLISH, when
+ * Lettuce is done with it. If the publish is cancelled first the buffer is
+ * left to the GC, since it may still be written; when the pool is empty a
+ * new buffer is allocated.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "cart.events.transport", havingValue = "redis", matchIfMissing = true)
+public class RedisCartEventTransport implements CartEventTransport {
+
+    private static final String CART_EVENTS_CHANNEL = "cart:events";
+    private static final int POOLED_BUFFERS = 64;
+    private static final int BUFFER_BYTES = 128;
+
+    private final ReactiveRedisTemplate<String, ByteBuffer> redisTemplate;
+    private final BlockingQueue<ByteBuffer> buffers = new ArrayBlockingQueue<>(POOLED_BUFFERS);
+
+    public RedisCartEventTransport(ReactiveRedisConnectionFactory connectionFactory) {
+        this.redisTemplate = new ReactiveRedisTemplate<>(connectionFactory,
+                RedisSerializationContext.<String, ByteBuffer>newSerializationContext(RedisSerializer.string())
+                        .value(RedisSerializationContext.SerializationPair.byteBuffer())
+                        .build());
+    }
+
+    @Override
+    public Mono<Void> publish(CartEvent event) {
+        return Mono.defer(() -> {
+            ByteBuffer buffer = buffer(CartEventCodec.size(event));
+            CartEventCodec.encode(event, buffer);
+            buffer.flip();
+            return redisTemplate.convertAndSend(CART_EVENTS_CHANNEL, buffer)
+                    .doOnTerminate(() -> release(buffer))
+                    .then();
+        });
+    }
+
+    @Override
+    public Flux<CartEvent> subscribe() {
+        return redisTemplate.listenTo(ChannelTopic.of(CART_EVENTS_CHANNEL))
+                .mapNotNull(message -> {
+                    // One bad message must not end the subscription
+                    CartEvent event;
+                    try {
+                        event = CartEventCodec.decode(message.getMessage());
+                    } catch (RuntimeException e) {
+                        log.warn("Dropping cart event that failed to decode ({} bytes): {}",
+                                message.getMessage().limit(), e.toString());
+                        return null;
+                    }
+                    if (event == null) {
+                        log.warn("Dropping cart event of an unknown format ({} bytes)", message.getMessage().limit());
+                    }
+                    return event;
+                });
+    }
+
+    private ByteBuffer buffer(int size) {
+        if (size > BUFFER_BYTES) {
+            return ByteBuffer.allocate(size);
+        }
+        ByteBuffer buffer = buffers.poll();
+        return buffer != null ? buffer : ByteBuffer.allocate(BUFFER_BYTES);
+    }
+
+    private void release(ByteBuffer buffer) {
+        if (buffer.capacity() == BUFFER_BYTES) {
+            buffers.offer(buffer.clear());
+        }
+    }
+}
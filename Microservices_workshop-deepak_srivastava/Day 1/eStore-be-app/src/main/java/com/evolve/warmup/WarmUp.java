@@ -0,0 +1,265 @@
+package com.evolve.warmup;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.boot.web.reactive.context.ReactiveWebServerInitializedEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.Decoder;
+import org.springframework.core.codec.Encoder;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.DecoderHttpMessageReader;
+import org.springframework.http.codec.EncoderHttpMessageWriter;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.server.ServerRequest;
+
+import com.evolve.codec.ProtobufModels;
+import com.evolve.model.Cart;
+import com.evolve.model.CartItem;
+import com.evolve.model.Order;
+import com.evolve.model.Product;
+import com.evolve.model.Usr;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+/**
+ * Runs the hot paths before the readiness probe reports UP, so the first
+ * real requests after a deploy do not pay for class loading, JIT compilation
+ * and cold caches.
+ *
+ * Once the server is listening, readiness is set to refusing traffic and
+ * {@code warm-up.requests} synthetic GETs for {@code warm-up.paths} go
+ * through the server over loopback, {@code warm-up.concurrency} at a time,
+ * asking in turn for JSON, CBOR and protobuf, so router predicates, filters,
+ * handlers, R2DBC mapping and the response encoders all run. Meanwhile
+ * {@code warm-up.codec-rounds} rounds encode and decode sample models with
+ * every codec from {@code WebFluxConfig}, which covers request bodies
+ * without writing anything. Responses are drained; their statuses are only
+ * counted for the log.
+ *
+ * The synthetic requests carry {@value #HEADER}, set to a token of this JVM
+ * so clients cannot send it. {@code RouteMetricsFilter} and
+ * {@code ConcurrencyLimitFilter} leave them out, and the former marks them
+ * in the Reactor context so {@code SingleFlight} and {@code BatchLoader}
+ * leave them out of their meters too.
+ *
+ * Readiness is then set to accepting traffic, also when the warm-up is
+ * disabled, fails or runs past {@code warm-up.timeout}. This is the only
+ * place that happens: the blocking Netty runner means ApplicationReadyEvent,
+ * which would otherwise do it, never fires.
+ */
+@Slf4j
+@Component
+public class WarmUp {
+
+    public static final String HEADER = "X-Warm-Up";
+
+    private static final String TOKEN = UUID.randomUUID().toString();
+    private static final List<MediaType> ACCEPT = List.of(
+            MediaType.APPLICATION_JSON, MediaType.APPLICATION_CBOR, ProtobufModels.PROTOBUF);
+
+    private record Sample(Object value, ResolvableType type, MediaType mediaType,
+                          Encoder<Object> encoder, Decoder<?> decoder) {
+    }
+
+    private final ApplicationEventPublisher publisher;
+    private final ServerCodecConfigurer codecs;
+    private final boolean enabled;
+    private final List<String> paths;
+    private final int requests;
+    private final int concurrency;
+    private final int codecRounds;
+    private final Duration timeout;
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    public WarmUp(ApplicationEventPublisher publisher, ServerCodecConfigurer codecs,
+                  @Value("${warm-up.enabled:true}") boolean enabled,
+                  @Value("${warm-up.paths:/products/1,/products,/products?ids=1,/products/search?q=mac,/users?ids=1,/carts/user/1,/carts?ids=1,/carts/1/items,/carts/1/pricing,/orders/user/1}") List<String> paths,
+                  @Value("${warm-up.requests:5000}") int requests,
+                  @Value("${warm-up.concurrency:4}") int concurrency,
+                  @Value("${warm-up.codec-rounds:2000}") int codecRounds,
+                  @Value("${warm-up.timeout:60s}") Duration timeout) {
+        this.publisher = publisher;
+        this.codecs = codecs;
+        this.enabled = enabled;
+        this.paths = paths;
+        this.requests = requests;
+        this.concurrency = concurrency;
+        this.codecRounds = codecRounds;
+        this.timeout = timeout;
+    }
+
+    @EventListener
+    public void serverStarted(ReactiveWebServerInitializedEvent event) {
+        if (!started.compareAndSet(false, true)) {
+            return;
+        }
+        if (!enabled) {
+            ready();
+            return;
+        }
+        AvailabilityChangeEvent.publish(publisher, this, ReadinessState.REFUSING_TRAFFIC);
+        warmUp(event.getWebServer().getPort()).subscribe();
+    }
+
+    /**
+     * Warms up against the server listening on the port, then reports ready.
+     */
+    public Mono<Void> warmUp(int port) {
+        long start = System.nanoTime();
+        WebClient client = WebClient.create("http://localhost:" + port);
+        Map<String, LongAdder> statuses = Map.of("2xx", new LongAdder(), "4xx", new LongAdder(), "failed", new LongAdder());
+        LongAdder rounds = new LongAdder();
+        Mono<Void> traffic = Flux.range(0, requests)
+                .flatMap(i -> request(client, i).doOnNext(status -> statuses.get(status).increment()), concurrency)
+                .then();
+        Mono<Void> codecWork = Mono.fromCallable(this::samples)
+                .flatMapMany(samples -> Flux.range(0, codecRounds)
+                        .concatMap(round -> Flux.fromIterable(samples).concatMap(this::roundTrip)
+                                .then(Mono.fromRunnable(rounds::increment))))
+                .then()
+                .subscribeOn(Schedulers.boundedElastic());
+        return Mono.when(traffic, codecWork)
+                .timeout(timeout, Mono.fromRunnable(() -> log.warn("Warm-up still running after {}; reporting ready", timeout)))
+                .doOnError(e -> log.warn("Warm-up failed; reporting ready", e))
+                .onErrorComplete()
+                .then(Mono.fromRunnable(() -> {
+                    log.info("Warm-up: {} 2xx, {} 4xx and {} 5xx or failed requests and {} codec rounds in {} ms",
+                            statuses.get("2xx").sum(), statuses.get("4xx").sum(), statuses.get("failed").sum(),
+                            rounds.sum(), (System.nanoTime() - start) / 1_000_000);
+                    ready();
+                }));
+    }
+
+    /**
+     * Marks a request as part of the warm-up.
+     */
+    public static void mark(HttpHeaders headers) {
+        headers.set(HEADER, TOKEN);
+    }
+
+    public static boolean isWarmUp(ServerRequest request) {
+        return TOKEN.equals(request.headers().firstHeader(HEADER));
+    }
+
+    /**
+     * Marks the work of a warm-up request, for meters that do not see the request.
+     */
+    public static Context mark(Context context) {
+        return context.put(WarmUp.class, Boolean.TRUE);
+    }
+
+    public static boolean isWarmUp(ContextView context) {
+        return context.hasKey(WarmUp.class);
+    }
+
+    private void ready() {
+        AvailabilityChangeEvent.publish(publisher, this, ReadinessState.ACCEPTING_TRAFFIC);
+    }
+
+    private Mono<String> request(WebClient client, int i) {
+        return client.get()
+                .uri(paths.get(i % paths.size()))
+                .accept(ACCEPT.get(i / paths.size() % ACCEPT.size()))
+                .headers(WarmUp::mark)
+                .exchangeToMono(response -> response.releaseBody().thenReturn(
+                        response.statusCode().is2xxSuccessful() ? "2xx"
+                                : response.statusCode().is4xxClientError() ? "4xx" : "failed"))
+                .onErrorReturn("failed");
+    }
+
+    // Each sample model paired with the encoder and decoder the server picks for each format
+    @SuppressWarnings("unchecked")
+    private List<Sample> samples() {
+        List<Sample> samples = new ArrayList<>();
+        for (Object value : List.of(product(), cart(), cartItem(), user(), order())) {
+            ResolvableType type = ResolvableType.forInstance(value);
+            for (MediaType mediaType : ACCEPT) {
+                Encoder<?> encoder = codecs.getWriters().stream()
+                        .filter(writer -> writer instanceof EncoderHttpMessageWriter<?>
+                                && writer.canWrite(type, mediaType))
+                        .map(writer -> ((EncoderHttpMessageWriter<?>) writer).getEncoder())
+                        .findFirst().orElse(null);
+                Decoder<?> decoder = codecs.getReaders().stream()
+                        .filter(reader -> reader instanceof DecoderHttpMessageReader<?>
+                                && reader.canRead(type, mediaType))
+                        .map(reader -> ((DecoderHttpMessageReader<?>) reader).getDecoder())
+                        .findFirst().orElse(null);
+                if (encoder != null && decoder != null) {
+                    samples.add(new Sample(value, type, mediaType, (Encoder<Object>) encoder, decoder));
+                }
+            }
+        }
+        return samples;
+    }
+
+    private Mono<?> roundTrip(Sample sample) {
+        return DataBufferUtils.join(sample.encoder().encode(Mono.just(sample.value()),
+                        DefaultDataBufferFactory.sharedInstance, sample.type(), sample.mediaType(), Map.of()))
+                .flatMap(body -> sample.decoder().decodeToMono(Mono.just(body), sample.type(), sample.mediaType(), Map.of()));
+    }
+
+    private static Product product() {
+        Product product = new Product();
+        product.setId(1L);
+        product.setName("Warm-up product");
+        product.setDescription("Not stored");
+        product.setPrice(1.0);
+        return product;
+    }
+
+    private static Cart cart() {
+        Cart cart = new Cart();
+        cart.setId(1L);
+        cart.setUserId(1L);
+        cart.setStatus("active");
+        return cart;
+    }
+
+    private static CartItem cartItem() {
+        CartItem item = new CartItem();
+        item.setId(1L);
+        item.setCartId(1L);
+        item.setProductId(1L);
+        item.setQuantity(1);
+        item.setVersion(0L);
+        return item;
+    }
+
+    private static Usr user() {
+        Usr user = new Usr();
+        user.setId(1L);
+        user.setName("Warm-up user");
+        user.setEmail("warm-up@example.com");
+        return user;
+    }
+
+    private static Order order() {
+        Order order = new Order();
+        order.setId(1L);
+        order.setUserId(1L);
+        order.setCartId(1L);
+        order.setStatus("PLACED");
+        return order;
+    }
+}
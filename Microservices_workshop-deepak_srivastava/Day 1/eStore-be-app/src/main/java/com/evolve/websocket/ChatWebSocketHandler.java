@@ -1,19 +1,49 @@
 package com.evolve.websocket;
 
+import java.util.Optional;
+
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.socket.WebSocketHandler;
 import org.springframework.web.reactive.socket.WebSocketSession;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import com.evolve.chat.ChatHistoryStore;
+import com.evolve.grpc.ChatProto;
+import com.evolve.presence.PresenceTracker;
 
 import reactor.core.publisher.Mono;
 
 @Component
 public class ChatWebSocketHandler implements WebSocketHandler {
 
+    private final ChatHistoryStore historyStore;
+    private final PresenceTracker presenceTracker;
+
+    public ChatWebSocketHandler(ChatHistoryStore historyStore, PresenceTracker presenceTracker) {
+        this.historyStore = historyStore;
+        this.presenceTracker = presenceTracker;
+    }
+
     @Override
     public Mono<Void> handle(WebSocketSession session) {
+        // ws://host/ws/chat?room=general&user=alice
+        var params = UriComponentsBuilder.fromUri(session.getHandshakeInfo().getUri()).build().getQueryParams();
+        String room = Optional.ofNullable(params.getFirst("room")).orElse(ChatHistoryStore.DEFAULT_ROOM);
+        String user = Optional.ofNullable(params.getFirst("user")).orElse(session.getId());
+        PresenceTracker.Connection presence = presenceTracker.connect(user);
+
         return session.send(
             session.receive()
-                   .map(msg -> session.textMessage("Echo: " + msg.getPayloadAsText()))
-        );
+                   .doOnNext(msg -> presenceTracker.heartbeat(presence))
+                   .map(msg -> {
+                       String text = msg.getPayloadAsText();
+                       historyStore.append(ChatProto.ChatMessage.newBuilder()
+                               .setUser(user)
+                               .setText(text)
+                               .setRoom(room)
+                               .build());
+                       return session.textMessage("Echo: " + text);
+                   })
+        ).doFinally(signal -> presenceTracker.disconnect(presence));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,405 @@
+package com.evolve.writebehind;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+import com.evolve.model.CartItem;
+import com.evolve.repository.CartItemRepository;
+import com.evolve.repository.CartRepository;
+import com.evolve.service.CartEventService;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.r2dbc.spi.R2dbcDataIntegrityViolationException;
+import io.r2dbc.spi.Result;
+import io.r2dbc.spi.Statement;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+/**
+ * Optional write-behind for cart item quantity changes
+ * ({@code cart.write-behind.enabled}).
+ *
+ * A change only replaces the item's entry in memory; repeated changes to the
+ * same item coalesce into one. Entries are written with one batched UPDATE
+ * every {@code cart.write-behind.flush-interval}, or as soon as
+ * {@code cart.write-behind.max-pending} items are waiting, and each written
+ * item publishes a single UPDATE_ITEM event. Reads go through
+ * {@link #overlay(CartItem)} so they see buffered quantities.
+ *
+ * Durability: a crash loses the changes buffered since the last flush, which
+ * are at most one flush interval old and, since changes beyond twice
+ * {@code max-pending} are written through, at most that many items. Shutdown
+ * flushes everything. A batch that fails on a constraint is retried row by
+ * row and the offending rows are dropped; any other failure puts the batch
+ * back, behind newer changes to the same items.
+ *
+ * Adds go through {@link #add} and never write a cart line while a flush is
+ * writing it: an add waits for the flush to finish with the line, and a flush
+ * leaves a line an add is writing for the next flush. Otherwise an add could
+ * commit just before a flush overwrote the line with the quantity it took
+ * earlier, and find nothing left to fold into once the flush was done.
+ */
+@Slf4j
+@Component
+public class CartItemWriteBuffer {
+
+    public static final String PENDING = "cart.writebehind.pending";
+    public static final String CHANGES = "cart.writebehind.changes";
+
+    private static final Duration SHUTDOWN_TIMEOUT = Duration.ofSeconds(10);
+    private static final String UPDATE_QUANTITY = "UPDATE cart_items SET quantity = $1, version = version + 1 WHERE id = $2";
+
+    // A cart line, as an add knows it before it has the item's id
+    private record Line(long cartId, long productId) {
+    }
+
+    // Everything a flush needs, so changes after the first never touch the database
+    record Pending(long itemId, long cartId, long productId, Long userId, int quantity) {
+
+        Line line() {
+            return new Line(cartId, productId);
+        }
+
+        CartItem toItem() {
+            CartItem item = new CartItem();
+            item.setId(itemId);
+            item.setCartId(cartId);
+            item.setProductId(productId);
+            item.setQuantity(quantity);
+            return item;
+        }
+
+        Pending withQuantity(int quantity) {
+            return new Pending(itemId, cartId, productId, userId, quantity);
+        }
+    }
+
+    private final CartItemRepository cartItemRepository;
+    private final CartRepository cartRepository;
+    private final CartEventService cartEventService;
+    private final DatabaseClient databaseClient;
+    private final TransactionalOperator transactionalOperator;
+    private final boolean enabled;
+    private final Duration flushInterval;
+    private final int maxPending;
+    private final int maxBatch;
+    private final Map<Long, Pending> pending = new ConcurrentHashMap<>();
+    // Taken by a running flush; still visible to reads until committed
+    private final Map<Long, Pending> flushing = new ConcurrentHashMap<>();
+    // Lines an add or a flush is writing, each completed when it is done with them
+    private final Map<Line, Sinks.Empty<Void>> writingLines = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushRunning = new AtomicBoolean();
+    private final Counter buffered;
+    private final Counter coalesced;
+    private final Counter writtenThrough;
+    private final Counter flushed;
+    private final Counter dropped;
+    private ScheduledExecutorService ticker;
+
+    public CartItemWriteBuffer(CartItemRepository cartItemRepository, CartRepository cartRepository,
+                               CartEventService cartEventService, DatabaseClient databaseClient,
+                               TransactionalOperator transactionalOperator, MeterRegistry registry,
+                               @Value("${cart.write-behind.enabled:false}") boolean enabled,
+                               @Value("${cart.write-behind.flush-interval:200ms}") Duration flushInterval,
+                               @Value("${cart.write-behind.max-pending:1000}") int maxPending,
+                               @Value("${cart.write-behind.max-batch:500}") int maxBatch) {
+        this.cartItemRepository = cartItemRepository;
+        this.cartRepository = cartRepository;
+        this.cartEventService = cartEventService;
+        this.databaseClient = databaseClient;
+        this.transactionalOperator = transactionalOperator;
+        this.enabled = enabled;
+        this.flushInterval = flushInterval;
+        this.maxPending = maxPending;
+        this.maxBatch = maxBatch;
+        Gauge.builder(PENDING, this, buffer -> buffer.pending.size() + buffer.flushing.size())
+                .description("Cart item changes not yet written to the database")
+                .register(registry);
+        this.buffered = changes(registry, "buffered");
+        this.coalesced = changes(registry, "coalesced");
+        this.writtenThrough = changes(registry, "written_through");
+        this.flushed = changes(registry, "flushed");
+        this.dropped = changes(registry, "dropped");
+    }
+
+    private static Counter changes(MeterRegistry registry, String outcome) {
+        return Counter.builder(CHANGES)
+                .description("Cart item quantity changes by what became of them")
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "cart-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleWithFixedDelay(this::triggerFlush, flushInterval.toMillis(), flushInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+        }
+        long deadline = System.nanoTime() + SHUTDOWN_TIMEOUT.toNanos();
+        while (pendingCount() > 0 && System.nanoTime() < deadline) {
+            // Runs after, never alongside, a flush the ticker had already started
+            if (flushRunning.compareAndSet(false, true)) {
+                try {
+                    flush().block(SHUTDOWN_TIMEOUT);
+                } catch (RuntimeException e) {
+                    log.error("Flushing cart item changes on shutdown failed", e);
+                } finally {
+                    flushRunning.set(false);
+                }
+            }
+            if (pendingCount() > 0) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(50));
+            }
+        }
+        if (pendingCount() > 0) {
+            log.error("{} cart item change(s) were not written before shutdown", pendingCount());
+        }
+    }
+
+    /**
+     * Sets an item's quantity. Empty when the item or its cart does not exist.
+     */
+    public Mono<CartItem> updateQuantity(Long itemId, int quantity) {
+        Pending known = pending.getOrDefault(itemId, flushing.get(itemId));
+        Mono<Pending> target = known != null
+                ? Mono.just(known)
+                : cartItemRepository.findById(itemId).flatMap(item -> cartRepository.findById(item.getCartId())
+                        .map(cart -> new Pending(item.getId(), item.getCartId(), item.getProductId(),
+                                cart.getUserId(), item.getQuantity())));
+        return target.flatMap(current -> {
+            Pending next = current.withQuantity(quantity);
+            if (!enabled) {
+                return writeThrough(next);
+            }
+            Pending replaced = pending.get(itemId);
+            // Bounds what a crash can lose; past it the caller pays for its own write
+            if (replaced == null && pending.size() >= 2 * maxPending) {
+                writtenThrough.increment();
+                return writeThrough(next);
+            }
+            pending.put(itemId, next);
+            (replaced == null ? buffered : coalesced).increment();
+            if (pending.size() >= maxPending) {
+                triggerFlush();
+            }
+            return Mono.just(next.toItem());
+        });
+    }
+
+    /**
+     * Applies a buffered quantity to an item read from the database.
+     */
+    public CartItem overlay(CartItem item) {
+        if (!enabled || item.getId() == null) {
+            return item;
+        }
+        Pending buffered = pending.getOrDefault(item.getId(), flushing.get(item.getId()));
+        if (buffered != null) {
+            item.setQuantity(buffered.quantity());
+        }
+        return item;
+    }
+
+    /**
+     * Adds to the cart's line for the product and returns the line as reads
+     * will see it.
+     */
+    public Mono<CartItem> add(Long cartId, Long productId, int quantity) {
+        if (!enabled) {
+            return cartItemRepository.addQuantity(cartId, productId, quantity);
+        }
+        return Mono.defer(() -> {
+            Line line = new Line(cartId, productId);
+            Sinks.Empty<Void> held = writingLines.putIfAbsent(line, Sinks.empty());
+            if (held != null) {
+                return held.asMono().then(add(cartId, productId, quantity));
+            }
+            return cartItemRepository.addQuantity(cartId, productId, quantity)
+                    .map(merged -> added(merged, quantity))
+                    .doFinally(signal -> release(line));
+        });
+    }
+
+    // Folds an add, already applied to the row, into a buffered quantity so the next flush does not
+    // overwrite it; no flush holds the line, so a change taken by one is already written
+    private CartItem added(CartItem item, int quantity) {
+        pending.computeIfPresent(item.getId(), (itemId, current) -> current.withQuantity(current.quantity() + quantity));
+        return overlay(item);
+    }
+
+    private void release(Line line) {
+        Sinks.Empty<Void> done = writingLines.remove(line);
+        if (done != null) {
+            done.tryEmitEmpty();
+        }
+    }
+
+    /**
+     * Forgets a buffered change; called once the item has been deleted. A
+     * flush already writing the change updates no row and announces nothing,
+     * and a failed one does not put it back.
+     */
+    public void discard(Long itemId) {
+        pending.remove(itemId);
+        flushing.remove(itemId);
+    }
+
+    int pendingCount() {
+        return pending.size() + flushing.size();
+    }
+
+    // Same last-writer-wins update a flush makes; a quantity change is a set, not an increment
+    private Mono<CartItem> writeThrough(Pending change) {
+        return cartItemRepository.updateQuantity(change.itemId(), change.quantity())
+                .filter(rowsUpdated -> rowsUpdated > 0)
+                .flatMap(rowsUpdated -> publish(change).thenReturn(change.toItem()));
+    }
+
+    private void triggerFlush() {
+        if (!flushRunning.compareAndSet(false, true)) {
+            return;
+        }
+        flush().doFinally(signal -> flushRunning.set(false))
+                .subscribe(count -> { }, e -> log.error("Flushing cart item changes failed", e));
+    }
+
+    /**
+     * Writes every buffered change; emits how many rows were updated.
+     */
+    public Mono<Integer> flush() {
+        return Mono.defer(() -> {
+            List<Pending> taken = new ArrayList<>(pending.size());
+            for (Long itemId : pending.keySet()) {
+                Pending next = pending.get(itemId);
+                // A line an add is writing waits for the next flush
+                if (next == null || writingLines.putIfAbsent(next.line(), Sinks.empty()) != null) {
+                    continue;
+                }
+                Pending change = pending.remove(itemId);
+                if (change == null) {
+                    release(next.line());
+                    continue;
+                }
+                flushing.put(itemId, change);
+                taken.add(change);
+            }
+            if (taken.isEmpty()) {
+                return Mono.just(0);
+            }
+            List<List<Pending>> batches = new ArrayList<>();
+            for (int from = 0; from < taken.size(); from += maxBatch) {
+                batches.add(taken.subList(from, Math.min(taken.size(), from + maxBatch)));
+            }
+            return Flux.fromIterable(batches)
+                    .concatMap(batch -> writeBatch(batch)
+                            .doFinally(signal -> batch.forEach(change -> release(change.line()))))
+                    .reduce(0, Integer::sum);
+        });
+    }
+
+    private Mono<Integer> writeBatch(List<Pending> batch) {
+        return update(batch)
+                .as(transactionalOperator::transactional)
+                .flatMap(rowsUpdated -> written(batch, rowsUpdated))
+                .onErrorResume(CartItemWriteBuffer::isConstraintViolation, e -> batch.size() == 1
+                        ? drop(batch.get(0), e)
+                        // Isolate the offending rows instead of holding back the whole batch
+                        : Flux.fromIterable(batch).concatMap(change -> writeBatch(List.of(change))).reduce(0, Integer::sum))
+                .onErrorResume(e -> {
+                    log.warn("Writing {} cart item change(s) failed, will retry: {}", batch.size(), e.toString());
+                    for (Pending change : batch) {
+                        // A change made during the flush is newer and wins; a discarded one stays gone
+                        if (flushing.get(change.itemId()) == change) {
+                            pending.putIfAbsent(change.itemId(), change);
+                        }
+                        flushing.remove(change.itemId(), change);
+                    }
+                    return Mono.just(0);
+                });
+    }
+
+    private Mono<Integer> written(List<Pending> batch, List<Long> rowsUpdated) {
+        flushed.increment(batch.size());
+        int updated = 0;
+        List<Pending> changed = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            Pending change = batch.get(i);
+            flushing.remove(change.itemId(), change);
+            // No row means the item was deleted meanwhile; nothing to announce
+            if (i < rowsUpdated.size() && rowsUpdated.get(i) > 0) {
+                updated++;
+                changed.add(change);
+            }
+        }
+        return Flux.fromIterable(changed).concatMap(this::publish).then(Mono.just(updated));
+    }
+
+    // One count per binding, in binding order
+    private Mono<List<Long>> update(List<Pending> batch) {
+        return databaseClient.inConnection(connection -> {
+            Statement statement = connection.createStatement(UPDATE_QUANTITY);
+            for (int i = 0; i < batch.size(); i++) {
+                if (i > 0) {
+                    statement.add();
+                }
+                statement.bind(0, batch.get(i).quantity()).bind(1, batch.get(i).itemId());
+            }
+            return Flux.from(statement.execute())
+                    .concatMap(Result::getRowsUpdated)
+                    .collectList();
+        });
+    }
+
+    private static boolean isConstraintViolation(Throwable e) {
+        return e instanceof DataIntegrityViolationException || e instanceof R2dbcDataIntegrityViolationException;
+    }
+
+    private Mono<Integer> drop(Pending change, Throwable e) {
+        log.error("Dropping cart item change {} rejected by the database: {}", change, e.getMessage());
+        flushing.remove(change.itemId(), change);
+        dropped.increment();
+        return Mono.just(0);
+    }
+
+    private Mono<Void> publish(Pending change) {
+        return cartEventService.publishUpdateItemEvent(change.cartId(), change.userId(), change.productId(),
+                        change.quantity())
+                .onErrorResume(e -> {
+                    log.warn("Publishing UPDATE_ITEM for item {} failed: {}", change.itemId(), e.toString());
+                    return Mono.empty();
+                });
+    }
+}
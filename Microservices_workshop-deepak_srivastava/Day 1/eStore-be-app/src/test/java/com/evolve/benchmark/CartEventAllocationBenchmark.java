@@ -0,0 +1,123 @@
+package com.evolve.benchmark;
+
+import com.evolve.config.WebFluxConfig;
+import com.evolve.controller.SseController;
+import com.evolve.metrics.CartEventMetrics;
+import com.evolve.service.CartEventService;
+import com.evolve.transport.CartEventTransport;
+import com.evolve.transport.InJvmCartEventTransport;
+import com.evolve.transport.RedisCartEventTransport;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.mock.http.server.reactive.MockServerHttpResponse;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import redis.embedded.RedisServer;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bytes allocated per cart event from the {@link CartEventService} publish
+ * call through delivery to two plain subscribers (as {@code ResourceVersions}
+ * and {@code CartPricingService} subscribe), and then also to an SSE stream
+ * that renders each event as a frame. Counts allocation on every thread of
+ * the JVM, so Lettuce and Netty work is included for Redis. Events cycle
+ * through the five types with changing ids and are published one after
+ * another, as handlers chain them.
+ *
+ * Run with: java -cp target/classes:target/test-classes:$(deps) com.evolve.benchmark.CartEventAllocationBenchmark [events]
+ */
+public class CartEventAllocationBenchmark {
+
+    private static final int REDIS_PORT = 6391;
+
+    public static void main(String[] args) throws Exception {
+        int events = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+
+        run("in-jvm", new InJvmCartEventTransport(), events);
+
+        RedisServer redisServer = new RedisServer(REDIS_PORT);
+        redisServer.start();
+        LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory("localhost", REDIS_PORT);
+        connectionFactory.afterPropertiesSet();
+        try {
+            run("redis", new RedisCartEventTransport(connectionFactory), events);
+        } finally {
+            connectionFactory.destroy();
+            redisServer.stop();
+        }
+    }
+
+    private static void run(String name, CartEventTransport transport, int events) throws InterruptedException {
+        ObjectMapper mapper = new WebFluxConfig().customObjectMapper();
+        CartEventService service = new CartEventService(transport, new CartEventMetrics(new SimpleMeterRegistry()));
+        SseController sse = new SseController(service, mapper, null, new CartEventMetrics(new SimpleMeterRegistry()));
+        AtomicLong delivered = new AtomicLong();
+        List<Disposable> subscriptions = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            subscriptions.add(service.subscribeToCartEvents().subscribe(event -> delivered.incrementAndGet()));
+        }
+        // Redis SUBSCRIBE completes asynchronously
+        Thread.sleep(500);
+
+        publish(service, delivered, 2, events);
+        System.out.printf("%-7s to 2 subscribers:          %,6.0f bytes/event%n", name,
+                (double) publish(service, delivered, 2, events) / events);
+
+        AtomicLong frameBytes = new AtomicLong();
+        MockServerHttpResponse response = new MockServerHttpResponse();
+        response.setWriteHandler(frames -> frames
+                .doOnNext(frame -> {
+                    frameBytes.addAndGet(frame.readableByteCount());
+                    delivered.incrementAndGet();
+                })
+                .then());
+        subscriptions.add(sse.streamCartEvents(response).subscribe());
+        Thread.sleep(500);
+        publish(service, delivered, 3, events);
+        frameBytes.set(0);
+        System.out.printf("%-7s to 2 subscribers and SSE:  %,6.0f bytes/event (%.0f bytes/frame)%n", name,
+                (double) publish(service, delivered, 3, events) / events, (double) frameBytes.get() / events);
+        subscriptions.forEach(Disposable::dispose);
+    }
+
+    // Bytes allocated by all threads while publishing the events and delivering them to every subscriber
+    private static long publish(CartEventService service, AtomicLong delivered, int subscribers, int events)
+            throws InterruptedException {
+        long expected = delivered.get() + (long) subscribers * events;
+        long before = allocatedBytes();
+        Flux.range(0, events)
+                .concatMap(i -> event(service, i))
+                .blockLast();
+        while (delivered.get() < expected) {
+            Thread.sleep(1);
+        }
+        return allocatedBytes() - before;
+    }
+
+    private static Mono<Void> event(CartEventService service, int i) {
+        long cartId = i % 1000 + 1;
+        long userId = i % 100 + 1;
+        return switch (i % 5) {
+            case 0 -> service.publishAddItemEvent(cartId, userId, (long) i % 500 + 1, i % 5 + 1);
+            case 1 -> service.publishUpdateItemEvent(cartId, userId, (long) i % 500 + 1, i % 7 + 1);
+            case 2 -> service.publishRemoveItemEvent(cartId, userId, (long) i % 500 + 1);
+            case 3 -> service.publishUpdateCartEvent(cartId, userId, "active");
+            default -> service.publishClearCartEvent(cartId, userId);
+        };
+    }
+
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long total = 0;
+        for (long bytes : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            total += Math.max(0, bytes);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,87 @@
+package com.evolve.benchmark;
+
+import com.evolve.model.CartEvent;
+import com.evolve.model.CartEventType;
+import com.evolve.transport.CartEventTransport;
+import com.evolve.transport.InJvmCartEventTransport;
+import com.evolve.transport.RedisCartEventTransport;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import redis.embedded.RedisServer;
+
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publish-to-delivery latency and throughput of the Redis and in-JVM cart event transports.
+ *
+ * Run with: java -cp target/classes:target/test-classes:$(deps) com.evolve.benchmark.CartEventTransportBenchmark [events]
+ */
+public class CartEventTransportBenchmark {
+
+    private static final int REDIS_PORT = 6390;
+
+    public static void main(String[] args) throws Exception {
+        int events = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+
+        RedisServer redisServer = new RedisServer(REDIS_PORT);
+        redisServer.start();
+        LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory("localhost", REDIS_PORT);
+        connectionFactory.afterPropertiesSet();
+        try {
+            run("redis", new RedisCartEventTransport(connectionFactory), events);
+            run("in-jvm", new InJvmCartEventTransport(), events);
+        } finally {
+            connectionFactory.destroy();
+            redisServer.stop();
+        }
+    }
+
+    private static void run(String name, CartEventTransport transport, int events) throws InterruptedException {
+        BlockingQueue<CartEvent> received = new ArrayBlockingQueue<>(events);
+        Disposable subscription = transport.subscribe().subscribe(received::offer);
+        // Redis SUBSCRIBE completes asynchronously
+        Thread.sleep(500);
+
+        int warmup = Math.min(2_000, events);
+        latencies(transport, received, warmup);
+        long[] latencies = latencies(transport, received, events);
+        Arrays.sort(latencies);
+
+        CountDownLatch delivered = new CountDownLatch(events);
+        subscription.dispose();
+        subscription = transport.subscribe().subscribe(event -> delivered.countDown());
+        Thread.sleep(500);
+        long start = System.nanoTime();
+        Flux.range(0, events)
+                .flatMap(i -> transport.publish(event(i)), 64)
+                .blockLast();
+        delivered.await(60, TimeUnit.SECONDS);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        subscription.dispose();
+
+        System.out.printf("%-7s latency p50=%,d ns p99=%,d ns max=%,d ns | throughput=%,.0f events/s%n", name,
+                latencies[latencies.length / 2], latencies[(int) (latencies.length * 0.99)],
+                latencies[latencies.length - 1], (events - delivered.getCount()) / seconds);
+    }
+
+    private static long[] latencies(CartEventTransport transport, BlockingQueue<CartEvent> received, int count)
+            throws InterruptedException {
+        long[] latencies = new long[count];
+        for (int i = 0; i < count; i++) {
+            long start = System.nanoTime();
+            transport.publish(event(i)).block();
+            received.poll(5, TimeUnit.SECONDS);
+            latencies[i] = System.nanoTime() - start;
+        }
+        return latencies;
+    }
+
+    private static CartEvent event(int i) {
+        return new CartEvent(CartEventType.ADD_ITEM, i, 1L, 101L, 2, null);
+    }
+}
@@ -0,0 +1,78 @@
+package com.evolve.benchmark;
+
+import com.evolve.pricing.CartTotals;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Pricing a large cart: summing every line per read (BigDecimal from the
+ * stored Double price, as a straightforward server-side total would) against
+ * reading the incrementally maintained {@link CartTotals}, plus the cost of
+ * keeping them up to date on add/remove.
+ *
+ * Run with: java -cp target/classes:target/test-classes:$(deps) com.evolve.benchmark.CartPricingBenchmark
+ */
+public class CartPricingBenchmark {
+
+    private static volatile long sink;
+
+    public static void main(String[] args) {
+        for (int lines : new int[]{100, 1_000, 10_000, 100_000}) {
+            double[] prices = new double[lines];
+            int[] quantities = new int[lines];
+            CartTotals totals = new CartTotals(0);
+            for (int i = 0; i < lines; i++) {
+                prices[i] = ThreadLocalRandom.current().nextInt(1, 1_000_000) / 100.0;
+                quantities[i] = ThreadLocalRandom.current().nextInt(1, 10);
+                totals.add(i, i, quantities[i], minor(prices[i]));
+            }
+            int reads = Math.max(20, 2_000_000 / lines);
+
+            for (int round = 0; round < 2; round++) {
+                long start = System.nanoTime();
+                for (int r = 0; r < reads; r++) {
+                    sink += recompute(prices, quantities);
+                }
+                long recompute = (System.nanoTime() - start) / reads;
+
+                start = System.nanoTime();
+                for (int r = 0; r < reads * 100; r++) {
+                    sink += totals.totalMinor();
+                }
+                long incremental = (System.nanoTime() - start) / (reads * 100L);
+
+                start = System.nanoTime();
+                for (int r = 0; r < reads * 100; r++) {
+                    totals.add(lines + 1, 1, 2, 1999);
+                    totals.remove(lines + 1);
+                }
+                long delta = (System.nanoTime() - start) / (reads * 100L);
+
+                if (round == 1) {
+                    System.out.printf("%,7d lines: recompute per read=%,10d ns  incremental read=%3d ns  add+remove delta=%3d ns%n",
+                            lines, recompute, incremental, delta);
+                }
+            }
+            double naive = 0;
+            for (int i = 0; i < lines; i++) {
+                naive += prices[i] * quantities[i];
+            }
+            System.out.printf("         double sum=%s  exact=%s%n",
+                    naive, BigDecimal.valueOf(totals.totalMinor(), 2));
+        }
+    }
+
+    private static long recompute(double[] prices, int[] quantities) {
+        BigDecimal total = BigDecimal.ZERO;
+        for (int i = 0; i < prices.length; i++) {
+            total = total.add(BigDecimal.valueOf(prices[i]).multiply(BigDecimal.valueOf(quantities[i])));
+        }
+        return total.setScale(2, RoundingMode.HALF_EVEN).unscaledValue().longValueExact();
+    }
+
+    private static long minor(double price) {
+        return BigDecimal.valueOf(price).setScale(2, RoundingMode.HALF_EVEN).unscaledValue().longValueExact();
+    }
+}
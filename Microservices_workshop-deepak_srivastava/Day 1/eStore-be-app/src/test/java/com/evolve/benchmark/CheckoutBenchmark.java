@@ -0,0 +1,90 @@
+package com.evolve.benchmark;
+
+import org.springframework.http.HttpStatusCode;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Concurrent checkout throughput against a running instance.
+ *
+ * Creates one cart with {@code items} lines per user, then checks every cart
+ * out twice at once ({@code concurrency} requests in flight). Exactly one of
+ * each pair must succeed; the other must be rejected with 409.
+ *
+ * Run the app, then: java -cp target/classes:target/test-classes:$(deps) com.evolve.benchmark.CheckoutBenchmark [baseUrl] [users] [items] [concurrency]
+ */
+public class CheckoutBenchmark {
+
+    public static void main(String[] args) {
+        String baseUrl = args.length > 0 ? args[0] : "http://localhost:8080";
+        int users = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+        int items = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        int concurrency = args.length > 3 ? Integer.parseInt(args[3]) : 64;
+        // Keep clear of user ids created by earlier runs against the same instance
+        long firstUser = System.currentTimeMillis() % 1_000_000 * 1_000;
+        WebClient client = WebClient.create(baseUrl);
+
+        long setupStart = System.nanoTime();
+        Flux.range(0, users)
+                .flatMap(i -> prepareCart(client, firstUser + i, items), concurrency)
+                .blockLast(Duration.ofMinutes(10));
+        System.out.printf("prepared %d carts with %d lines in %d ms%n",
+                users, items, (System.nanoTime() - setupStart) / 1_000_000);
+
+        AtomicInteger placed = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        long[] latencies = new long[users * 2];
+        AtomicInteger next = new AtomicInteger();
+        long start = System.nanoTime();
+        Flux.range(0, users * 2)
+                .flatMap(i -> Mono.defer(() -> {
+                    long sent = System.nanoTime();
+                    return client.post().uri("/orders/user/{userId}", firstUser + i / 2)
+                            .exchangeToMono(response -> response.releaseBody().thenReturn(response.statusCode()))
+                            .doOnNext(status -> {
+                                latencies[next.getAndIncrement()] = System.nanoTime() - sent;
+                                count(status, placed, rejected);
+
+                            });
+                }), concurrency)
+                .blockLast(Duration.ofMinutes(10));
+        long elapsed = System.nanoTime() - start;
+
+        Arrays.sort(latencies);
+        System.out.printf("checkouts: %d placed, %d rejected, %d other%n",
+                placed.get(), rejected.get(), users * 2 - placed.get() - rejected.get());
+        // The first requests also pay connection setup and JIT warm-up, so max is not reported
+        System.out.printf("throughput=%,d checkout requests/s  p50=%.1f ms  p99=%.1f ms  p99.9=%.1f ms%n",
+                (long) users * 2 * 1_000_000_000L / elapsed,
+                latencies[latencies.length / 2] / 1e6,
+                latencies[(int) (latencies.length * 0.99)] / 1e6,
+                latencies[(int) (latencies.length * 0.999)] / 1e6);
+    }
+
+    private static Mono<Void> prepareCart(WebClient client, long userId, int items) {
+        return client.post().uri("/carts/user/{userId}", userId)
+                .bodyValue(Map.of("status", "active"))
+                .retrieve()
+                .bodyToMono(Map.class)
+                .flatMapMany(cart -> Flux.range(0, items)
+                        .concatMap(i -> client.post().uri("/carts/{cartId}/items", cart.get("id"))
+                                .bodyValue(Map.of("productId", 1, "quantity", i + 1))
+                                .retrieve()
+                                .toBodilessEntity()))
+                .then();
+    }
+
+    private static void count(HttpStatusCode status, AtomicInteger placed, AtomicInteger rejected) {
+        if (status.is2xxSuccessful()) {
+            placed.incrementAndGet();
+        } else if (status.value() == 409) {
+            rejected.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.evolve.benchmark;
+
+import com.evolve.codec.CborDecoder;
+import com.evolve.codec.CborEncoder;
+import com.evolve.codec.ProtobufModelDecoder;
+import com.evolve.codec.ProtobufModelEncoder;
+import com.evolve.config.WebFluxConfig;
+import com.evolve.dto.CartItemWithProduct;
+import com.evolve.dto.OrderWithItems;
+import com.evolve.model.Cart;
+import com.evolve.model.Order;
+import com.evolve.model.OrderItem;
+import com.evolve.model.Product;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.Decoder;
+import org.springframework.core.codec.Encoder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.util.MimeType;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Payload size and encode/decode time of the list responses service callers
+ * read most, carts, orders with their items and cart items with their
+ * products, in JSON, CBOR and protobuf. Each list goes through the codecs
+ * the server registers, as a {@link Flux} body does, and is decoded back
+ * into the models as a caller's WebClient would.
+ *
+ * Run with: java -cp target/classes:target/test-classes:$(deps) com.evolve.benchmark.CodecBenchmark [iterations]
+ */
+public class CodecBenchmark {
+
+    private record Format(String name, MimeType mimeType, Encoder<?> encoder, Decoder<?> decoder) {
+    }
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+        WebFluxConfig config = new WebFluxConfig();
+        List<Format> formats = List.of(
+                new Format("json", MediaType.APPLICATION_JSON, new Jackson2JsonEncoder(config.customObjectMapper()),
+                        new Jackson2JsonDecoder(config.customObjectMapper())),
+                new Format("cbor", MediaType.APPLICATION_CBOR, new CborEncoder(WebFluxConfig.cborObjectMapper()),
+                        new CborDecoder(WebFluxConfig.cborObjectMapper())),
+                new Format("protobuf", MediaType.parseMediaType("application/x-protobuf"), new ProtobufModelEncoder(),
+                        new ProtobufModelDecoder()));
+
+        System.out.printf("iterations=%d%n", iterations);
+        System.out.printf("%-26s %-9s %12s %12s %12s%n", "payload", "format", "bytes", "encode us", "decode us");
+        run("1000 carts", carts(1000), Cart.class, formats, iterations);
+        run("200 orders x 5 items", orders(200, 5), OrderWithItems.class, formats, iterations);
+        run("500 items with product", itemsWithProduct(500), CartItemWithProduct.class, formats, iterations);
+    }
+
+    private static void run(String name, List<?> values, Class<?> type, List<Format> formats, int iterations) {
+        ResolvableType elementType = ResolvableType.forClass(type);
+        for (Format format : formats) {
+            byte[] encoded = encode(format, values, elementType);
+            if (!decode(format, encoded, elementType).equals(values)) {
+                throw new IllegalStateException(format.name() + " did not round-trip " + name);
+            }
+            // Warm up, then measure
+            for (int i = 0; i < iterations; i++) {
+                encode(format, values, elementType);
+                decode(format, encoded, elementType);
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                encode(format, values, elementType);
+            }
+            long encodeNanos = (System.nanoTime() - start) / iterations;
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                decode(format, encoded, elementType);
+            }
+            long decodeNanos = (System.nanoTime() - start) / iterations;
+            System.out.printf("%-26s %-9s %,12d %,12d %,12d%n", name, format.name(), encoded.length,
+                    encodeNanos / 1_000, decodeNanos / 1_000);
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static byte[] encode(Format format, List<?> values, ResolvableType elementType) {
+        Flux<DataBuffer> buffers = ((Encoder) format.encoder()).encode(Flux.fromIterable(values),
+                DefaultDataBufferFactory.sharedInstance, elementType, format.mimeType(), Map.of());
+        DataBuffer joined = DataBufferUtils.join(buffers).block();
+        byte[] bytes = new byte[joined.readableByteCount()];
+        joined.read(bytes);
+        return bytes;
+    }
+
+    private static List<?> decode(Format format, byte[] encoded, ResolvableType elementType) {
+        return format.decoder().decode(Flux.just(DefaultDataBufferFactory.sharedInstance.wrap(encoded)),
+                elementType, format.mimeType(), Map.of()).collectList().block();
+    }
+
+    private static List<Cart> carts(int count) {
+        List<Cart> carts = new ArrayList<>();
+        for (long id = 1; id <= count; id++) {
+            Cart cart = new Cart();
+            cart.setId(id);
+            cart.setUserId(10_000 + id);
+            cart.setStatus(id % 4 == 0 ? "checked_out" : "active");
+            carts.add(cart);
+        }
+        return carts;
+    }
+
+    private static List<OrderWithItems> orders(int count, int itemsPerOrder) {
+        List<OrderWithItems> orders = new ArrayList<>();
+        for (long id = 1; id <= count; id++) {
+            Order order = new Order();
+            order.setId(id);
+            order.setStatus("CREATED");
+            order.setUserId(10_000 + id);
+            order.setCartId(20_000 + id);
+            List<OrderItem> items = new ArrayList<>();
+            for (long i = 1; i <= itemsPerOrder; i++) {
+                OrderItem item = new OrderItem();
+                item.setId(id * 100 + i);
+                item.setOrderId(id);
+                item.setProductId(1_000 + i);
+                item.setQuantity((int) i);
+                item.setUnitPrice(99.5 * i);
+                items.add(item);
+            }
+            orders.add(new OrderWithItems(order, items));
+        }
+        return orders;
+    }
+
+    private static List<CartItemWithProduct> itemsWithProduct(int count) {
+        List<CartItemWithProduct> items = new ArrayList<>();
+        for (long id = 1; id <= count; id++) {
+            Product product = new Product();
+            product.setId(1_000 + id % 50);
+            product.setName("Product " + id % 50);
+            product.setDescription("A product in the catalogue, described in a sentence or two");
+            product.setPrice(49.99 + id % 50);
+            CartItemWithProduct item = new CartItemWithProduct();
+            item.setId(id);
+            item.setCartId(1 + id / 5);
+            item.setQuantity((int) (1 + id % 3));
+            item.setProduct(product);
+            items.add(item);
+        }
+        return items;
+    }
+}
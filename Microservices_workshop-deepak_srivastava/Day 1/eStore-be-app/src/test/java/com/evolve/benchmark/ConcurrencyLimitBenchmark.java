@@ -0,0 +1,147 @@
+package com.evolve.benchmark;
+
+import com.evolve.filter.ConcurrencyLimitFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.http.HttpMethod;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.reactive.function.server.HandlerFilterFunction;
+import org.springframework.web.reactive.function.server.HandlerFunction;
+import org.springframework.web.reactive.function.server.HandlerStrategies;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.util.pattern.PathPatternParser;
+import reactor.core.publisher.Hooks;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Open-loop load test of {@link ConcurrencyLimitFilter}: requests arrive at a
+ * fixed rate whether or not earlier ones have finished, as they do from many
+ * independent clients, against a backend that can serve {@value #WORKERS}
+ * requests at a time in about {@value #SERVICE_MILLIS}ms each, much like a
+ * small connection pool. Each rate is run with and without the filter, with
+ * half the requests reads and half checkouts, and reports the latency of
+ * responses served during the run, goodput, and how many of each kind were
+ * shed.
+ *
+ * Run with: java -cp target/classes:target/test-classes:$(deps) com.evolve.benchmark.ConcurrencyLimitBenchmark [seconds]
+ */
+public class ConcurrencyLimitBenchmark {
+
+    private static final int WORKERS = 8;
+    private static final int SERVICE_MILLIS = 5;
+
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        // Stopping the backend between runs interrupts requests still in it
+        Hooks.onErrorDropped(e -> {
+        });
+        run(1, WORKERS * 1000 / SERVICE_MILLIS, true, 2, false);
+        int capacity = WORKERS * 1000 / SERVICE_MILLIS;
+        System.out.printf("cores=%d capacity=~%d req/s%n", Runtime.getRuntime().availableProcessors(), capacity);
+        System.out.printf("%-6s %-9s %9s %9s %9s %11s %9s %11s%n",
+                "load", "limiter", "p50 ms", "p99 ms", "max ms", "served/s", "limit", "shed r/c %");
+        for (double load : new double[] {0.5, 1, 2, 4}) {
+            for (boolean limited : new boolean[] {false, true}) {
+                run(load, (int) (capacity * load), limited, seconds, true);
+            }
+        }
+        System.exit(0);
+    }
+
+    private static void run(double load, int rate, boolean limited, int seconds, boolean print) throws InterruptedException {
+        // The filter only reads the request, so two are reused rather than building one per arrival
+        ServerRequest read = request(HttpMethod.GET, "/carts/{id}", "/carts/1");
+        ServerRequest checkout = request(HttpMethod.POST, "/orders/user/{userId}", "/orders/user/1");
+        ExecutorService pool = Executors.newFixedThreadPool(WORKERS);
+        Scheduler backend = Schedulers.fromExecutorService(pool);
+        HandlerFunction<ServerResponse> handler = request -> Mono.fromCallable(() -> {
+            Thread.sleep(SERVICE_MILLIS);
+            return true;
+        }).subscribeOn(backend).then(ServerResponse.ok().build());
+        ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(new SimpleMeterRegistry(), 20, 4, 200, 1.5, 0.2, 0.7, 0.9);
+        HandlerFilterFunction<ServerResponse, ServerResponse> chain = limited
+                ? filter.withCritical(HttpMethod.POST, "/orders/user/{userId}")
+                : (request, next) -> next.handle(request);
+
+        Recorder recorder = new Recorder(3);
+        LongAdder served = new LongAdder();
+        LongAdder[] sent = {new LongAdder(), new LongAdder()};
+        LongAdder[] shed = {new LongAdder(), new LongAdder()};
+        boolean[] measuring = {false};
+
+        // Arrivals are issued every millisecond in batches, so the rate does not depend on how fast responses come back
+        ScheduledExecutorService arrivals = Executors.newSingleThreadScheduledExecutor();
+        double perTick = rate / 1000.0;
+        double[] owed = {0};
+        long[] issued = {0};
+        arrivals.scheduleAtFixedRate(() -> {
+            owed[0] += perTick;
+            while (owed[0] >= 1) {
+                owed[0] -= 1;
+                int kind = (int) (issued[0]++ & 1);
+                ServerRequest request = kind == 0 ? read : checkout;
+                long start = System.nanoTime();
+                if (measuring[0]) {
+                    sent[kind].increment();
+                }
+                // Counted when the response comes back, so requests still queued when the run ends are not hidden
+                chain.filter(request, handler).subscribe(response -> {
+                    if (!measuring[0]) {
+                        return;
+                    }
+                    if (response.statusCode().is2xxSuccessful()) {
+                        served.increment();
+                        recorder.recordValue((System.nanoTime() - start) / 1_000);
+                    } else {
+                        shed[kind].increment();
+                    }
+                });
+            }
+        }, 0, 1, TimeUnit.MILLISECONDS);
+
+        // Let the limit settle before measuring
+        Thread.sleep(2_000);
+        recorder.reset();
+        measuring[0] = true;
+        Thread.sleep(seconds * 1_000L);
+        measuring[0] = false;
+        arrivals.shutdownNow();
+        Histogram histogram = recorder.getIntervalHistogram();
+        pool.shutdownNow();
+        if (!print) {
+            return;
+        }
+        System.out.printf("%-6s %-9s %9.1f %9.1f %9.1f %,11.0f %9s %5.0f/%-5.0f%n",
+                load + "x", limited ? "adaptive" : "none",
+                histogram.getValueAtPercentile(50) / 1000.0,
+                histogram.getValueAtPercentile(99) / 1000.0,
+                histogram.getMaxValue() / 1000.0,
+                served.sum() / (double) seconds,
+                limited ? Integer.toString(filter.currentLimit()) : "-",
+                percent(shed[0], sent[0]), percent(shed[1], sent[1]));
+    }
+
+    private static double percent(LongAdder part, LongAdder whole) {
+        return whole.sum() == 0 ? 0 : 100.0 * part.sum() / whole.sum();
+    }
+
+    // As routed: with the route template the router matched
+    private static ServerRequest request(HttpMethod method, String pattern, String path) {
+        MockServerHttpRequest httpRequest = MockServerHttpRequest.method(method, path).build();
+        ServerRequest request = ServerRequest.create(MockServerWebExchange.from(httpRequest), HandlerStrategies.withDefaults().messageReaders());
+        request.attributes().put(RouterFunctions.MATCHING_PATTERN_ATTRIBUTE, PathPatternParser.defaultInstance.parse(pattern));
+        return request;
+    }
+}
@@ -0,0 +1,193 @@
+package com.evolve.benchmark;
+
+import com.evolve.batch.BatchLoader;
+import com.evolve.batch.SingleFlight;
+import com.evolve.catalog.ProductCatalog;
+import com.evolve.etag.ResourceVersions;
+import com.evolve.handler.CartHandler;
+import com.evolve.handler.CartItemHandler;
+import com.evolve.handler.MultiGet;
+import com.evolve.handler.UserHandler;
+import com.evolve.metrics.CartEventMetrics;
+import com.evolve.model.Cart;
+import com.evolve.model.Product;
+import com.evolve.pricing.CartPricingService;
+import com.evolve.repository.CartItemRepository;
+import com.evolve.repository.CartRepository;
+import com.evolve.repository.ProductRepository;
+import com.evolve.repository.UserRepository;
+import com.evolve.service.CartEventService;
+import com.evolve.springbootapp.TestDatabase;
+import com.evolve.transport.InJvmCartEventTransport;
+import com.evolve.writebehind.CartItemWriteBuffer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.r2dbc.h2.H2ConnectionFactory;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import org.reactivestreams.Publisher;
+import org.springframework.data.r2dbc.repository.support.R2dbcRepositoryFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.test.web.reactive.server.EntityExchangeResult;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.reactive.function.server.RequestPredicates;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A polling workload against the user, cart and cart item reads, with and
+ * without {@code If-None-Match}: each client polls its user, its cart and
+ * the cart's items every round while a few carts change between rounds.
+ * Reports response body bytes, SQL statements run for the polls, and time.
+ * Handlers run in process over H2, behind the real WebFlux codecs.
+ *
+ * Run with: java -cp target/classes:target/test-classes:$(deps) com.evolve.benchmark.ConditionalGetBenchmark [clients] [rounds] [changes per round]
+ */
+public class ConditionalGetBenchmark {
+
+    private static final int ITEMS_PER_CART = 4;
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int changes = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+        System.out.printf("clients=%d rounds=%d cart changes/round=%d%n", clients, rounds, changes);
+        System.out.printf("%-12s %10s %12s %12s %14s %10s%n",
+                "mode", "polls", "200s", "body bytes", "statements", "ms");
+        for (boolean conditional : new boolean[] {false, true, false, true}) {
+            run(clients, rounds, changes, conditional);
+        }
+        System.exit(0);
+    }
+
+    private static void run(int clients, int rounds, int changes, boolean conditional) throws Exception {
+        LongAdder statements = new LongAdder();
+        ConnectionFactory connectionFactory = counting(H2ConnectionFactory.inMemory("etag-" + System.nanoTime()), statements);
+        TestDatabase database = TestDatabase.create(connectionFactory);
+        DatabaseClient databaseClient = database.client();
+        R2dbcRepositoryFactory repositories = database.repositories();
+        UserRepository users = repositories.getRepository(UserRepository.class);
+        CartRepository carts = repositories.getRepository(CartRepository.class);
+        CartItemRepository cartItems = repositories.getRepository(CartItemRepository.class);
+        ProductRepository products = repositories.getRepository(ProductRepository.class);
+        TransactionalOperator transactionalOperator = TransactionalOperator.create(new R2dbcTransactionManager(connectionFactory));
+        CartEventService events = new CartEventService(new InJvmCartEventTransport(), new CartEventMetrics(new SimpleMeterRegistry()));
+        ResourceVersions versions = new ResourceVersions(events, Duration.ofMinutes(5), 100_000);
+        versions.start();
+        CartItemWriteBuffer writeThrough = new CartItemWriteBuffer(cartItems, carts, events, databaseClient,
+                transactionalOperator, new SimpleMeterRegistry(), false, Duration.ofMinutes(1), 1000, 500);
+        CartPricingService pricing = new CartPricingService(cartItems, products, events, writeThrough, "INR", 2, Duration.ofMinutes(5));
+        UserHandler userHandler = new UserHandler(users, versions, new MultiGet(100, 500), null,
+                new SingleFlight(new SimpleMeterRegistry()));
+        CartHandler cartHandler = new CartHandler(carts, cartItems, events, transactionalOperator, versions,
+                new MultiGet(100, 500), new SingleFlight(new SimpleMeterRegistry()));
+        CartItemHandler itemHandler = new CartItemHandler(cartItems,
+                new BatchLoader<>("products", products::findAllById, Product::getId, Duration.ofMillis(1), 100, new SimpleMeterRegistry()),
+                new BatchLoader<>("carts", carts::findAllById, Cart::getId, Duration.ofMillis(1), 100, new SimpleMeterRegistry()),
+                events, pricing, writeThrough, versions, new ProductCatalog(products, false, "", DataSize.ofMegabytes(1), 1000, Duration.ZERO));
+        WebTestClient client = WebTestClient.bindToRouterFunction(RouterFunctions
+                        .route(RequestPredicates.GET("/users/{id}"), userHandler::getById)
+                        .andRoute(RequestPredicates.GET("/carts/{id}"), cartHandler::getById)
+                        .andRoute(RequestPredicates.GET("/carts/{cartId}/items"), itemHandler::list)
+                        .andRoute(RequestPredicates.PUT("/carts/items/{itemId}"), itemHandler::updateQuantity))
+                .configureClient()
+                .responseTimeout(Duration.ofMinutes(1))
+                .build();
+
+        for (int p = 1; p <= ITEMS_PER_CART; p++) {
+            databaseClient.sql("INSERT INTO products (id, name, description, price) VALUES (" + (1000 + p)
+                    + ", 'Product " + p + "', 'A product polled in every cart', " + (100 * p) + ")").then().block();
+        }
+        for (int c = 1; c <= clients; c++) {
+            databaseClient.sql("INSERT INTO users (id, name, email) VALUES (" + c + ", 'User " + c + "', 'user" + c + "@example.com')")
+                    .then().block();
+            databaseClient.sql("INSERT INTO carts (id, user_id, status) VALUES (" + c + ", " + c + ", 'active')").then().block();
+            for (int p = 1; p <= ITEMS_PER_CART; p++) {
+                cartItems.addQuantity((long) c, 1000L + p, 1).block();
+            }
+        }
+        List<Long> itemIds = cartItems.findAll().map(item -> item.getId()).collectList().block();
+
+        Map<String, String> etags = new HashMap<>();
+        Random random = new Random(42);
+        long polls = 0;
+        long ok = 0;
+        long bytes = 0;
+        long pollStatements = 0;
+        long start = System.nanoTime();
+        for (int round = 0; round < rounds; round++) {
+            for (int c = 1; c <= clients; c++) {
+                for (String uri : new String[] {"/users/" + c, "/carts/" + c, "/carts/" + c + "/items"}) {
+                    long before = statements.sum();
+                    WebTestClient.RequestHeadersSpec<?> request = client.get().uri(uri);
+                    String etag = etags.get(uri);
+                    if (conditional && etag != null) {
+                        request = request.header(HttpHeaders.IF_NONE_MATCH, etag);
+                    }
+                    EntityExchangeResult<byte[]> result = request.exchange().expectBody().returnResult();
+                    pollStatements += statements.sum() - before;
+                    polls++;
+                    if (result.getStatus().value() == 200) {
+                        ok++;
+                        byte[] body = result.getResponseBody();
+                        bytes += body == null ? 0 : body.length;
+                        etags.put(uri, result.getResponseHeaders().getETag());
+                    }
+                }
+            }
+            for (int i = 0; i < changes; i++) {
+                long itemId = itemIds.get(random.nextInt(itemIds.size()));
+                client.put().uri("/carts/items/" + itemId).bodyValue(Map.of("quantity", 1 + random.nextInt(5)))
+                        .exchange().expectStatus().isOk();
+            }
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        versions.stop();
+        Mono.from(connectionFactory.create()).flatMap(connection -> Mono.from(connection.createStatement("SHUTDOWN").execute())
+                .then(Mono.from(connection.close()))).onErrorResume(e -> Mono.empty()).block();
+
+        System.out.printf("%-12s %,10d %,12d %,12d %,14d %,10d%n",
+                conditional ? "conditional" : "plain", polls, ok, bytes, pollStatements, millis);
+    }
+
+    // Counts statements created on connections from the factory
+    private static ConnectionFactory counting(ConnectionFactory delegate, LongAdder statements) {
+        return (ConnectionFactory) Proxy.newProxyInstance(ConnectionFactory.class.getClassLoader(),
+                new Class<?>[] {ConnectionFactory.class}, (proxy, method, args) -> {
+                    Object result = invoke(delegate, method, args);
+                    if (!method.getName().equals("create")) {
+                        return result;
+                    }
+                    @SuppressWarnings("unchecked")
+                    Publisher<Connection> connections = (Publisher<Connection>) result;
+                    return Mono.from(connections).map(connection -> (Connection) Proxy.newProxyInstance(
+                            Connection.class.getClassLoader(), new Class<?>[] {Connection.class}, (p, m, a) -> {
+                                if (m.getName().equals("createStatement")) {
+                                    statements.increment();
+                                }
+                                return invoke(connection, m, a);
+                            }));
+                });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
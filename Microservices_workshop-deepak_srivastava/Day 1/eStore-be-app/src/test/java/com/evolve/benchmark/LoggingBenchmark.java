@@ -0,0 +1,118 @@
+package com.evolve.benchmark;
+
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.joran.JoranConfigurator;
+import ch.qos.logback.core.joran.spi.JoranException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileOutputStream;
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Caller-side cost of one hot-path INFO log line (what an event loop pays) with
+ * the JSON console encoder written synchronously, behind an {@code AsyncAppender},
+ * and behind the async appender plus the rate-limiting turbo filter.
+ *
+ * stdout is redirected to /dev/null, so real terminals and log shippers only make
+ * the synchronous case worse.
+ *
+ * Run with: java -cp target/classes:target/test-classes:$(deps) com.evolve.benchmark.LoggingBenchmark [threads] [eventsPerThread]
+ */
+public class LoggingBenchmark {
+
+    private static final String ENCODER = """
+            <appender name="STDOUT" class="ch.qos.logback.core.ConsoleAppender">
+              <encoder class="net.logstash.logback.encoder.LoggingEventCompositeJsonEncoder">
+                <providers>
+                  <timestamp/>
+                  <loggerName/>
+                  <pattern><pattern>{"level": "%level", "thread": "%thread", "message": "%message", "context": "%mdc"}</pattern></pattern>
+                </providers>
+              </encoder>
+            </appender>
+            """;
+    private static final String ASYNC = """
+            <appender name="ASYNC" class="ch.qos.logback.classic.AsyncAppender">
+              <queueSize>8192</queueSize>
+              <discardingThreshold>1024</discardingThreshold>
+              <neverBlock>true</neverBlock>
+              <appender-ref ref="STDOUT"/>
+            </appender>
+            """;
+    private static final String TURBO = """
+            <turboFilter class="com.evolve.logging.RateLimitingTurboFilter">
+              <logger>com.evolve.service.CartEventService</logger>
+              <eventsPerSecond>10</eventsPerSecond>
+            </turboFilter>
+            """;
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int events = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+        System.setOut(new PrintStream(new FileOutputStream("/dev/null"), false));
+        PrintStream report = System.err;
+
+        for (int round = 0; round < 2; round++) {
+            report.println("round " + round);
+            run(report, "sync json", configure(ENCODER + root("STDOUT")), threads, events);
+            run(report, "async json", configure(ENCODER + ASYNC + root("ASYNC")), threads, events);
+            run(report, "async + rate limit", configure(TURBO + ENCODER + ASYNC + root("ASYNC")), threads, events);
+        }
+    }
+
+    private static void run(PrintStream report, String name, LoggerContext context, int threads, int events)
+            throws InterruptedException {
+        Logger log = context.getLogger("com.evolve.service.CartEventService");
+        long[][] samples = new long[threads][events];
+        CountDownLatch done = new CountDownLatch(threads);
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            long[] mine = samples[t];
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < events; i++) {
+                    long before = System.nanoTime();
+                    log.info("Received cart event: {}", new Event(i));
+                    mine[i] = System.nanoTime() - before;
+                }
+                done.countDown();
+            }, "reactor-http-nio-" + t);
+            thread.start();
+        }
+        done.await();
+        long elapsed = System.nanoTime() - start;
+        context.stop();
+
+        long[] all = Arrays.stream(samples).flatMapToLong(Arrays::stream).sorted().toArray();
+        report.printf("  %-20s mean=%5d ns  p50=%5d ns  p99=%6d ns  p99.9=%7d ns  throughput=%,d logs/s%n",
+                name, Arrays.stream(all).sum() / all.length, all[all.length / 2],
+                all[(int) (all.length * 0.99)], all[(int) (all.length * 0.999)],
+                (long) all.length * 1_000_000_000L / elapsed);
+    }
+
+    private static String root(String appender) {
+        return "<root level=\"INFO\"><appender-ref ref=\"" + appender + "\"/></root>";
+    }
+
+    private static LoggerContext configure(String body) throws JoranException, FileNotFoundException {
+        LoggerContext context = new LoggerContext();
+        JoranConfigurator configurator = new JoranConfigurator();
+        configurator.setContext(context);
+        configurator.doConfigure(new ByteArrayInputStream(
+                ("<configuration>" + body + "</configuration>").getBytes(StandardCharsets.UTF_8)));
+        return context;
+    }
+
+    // Stands in for CartEvent; toString is only paid when the line is actually formatted
+    private record Event(long cartId) {
+        @Override
+        public String toString() {
+            return "CartEvent(eventType=ADD_ITEM, cartId=" + cartId + ", userId=7, productId=42, quantity=1)";
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.evolve.benchmark;
+
+import com.evolve.batch.SingleFlight;
+import com.evolve.etag.ResourceVersions;
+import com.evolve.handler.CartHandler;
+import com.evolve.handler.MultiGet;
+import com.evolve.handler.UserHandler;
+import com.evolve.metrics.CartEventMetrics;
+import com.evolve.repository.CartItemRepository;
+import com.evolve.repository.CartRepository;
+import com.evolve.repository.UserRepository;
+import com.evolve.service.CartEventService;
+import com.evolve.springbootapp.TestDatabase;
+import com.evolve.transport.InJvmCartEventTransport;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.HdrHistogram.Histogram;
+import org.springframework.data.r2dbc.repository.support.R2dbcRepositoryFactory;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.web.reactive.function.server.RequestPredicates;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+/**
+ * Latency of loading the users and carts behind a page of order rows, one
+ * {@code GET /users/{id}} and {@code GET /carts/{id}} per row in turn, as the
+ * client does today, against one {@code ?ids=} multi-get of each. Handlers
+ * run in process over H2 behind the real WebFlux codecs; each HTTP call can
+ * be given a simulated network round trip, since in process a call costs
+ * almost nothing beyond its query.
+ *
+ * Run with: java -cp target/classes:target/test-classes:$(deps) com.evolve.benchmark.MultiGetBenchmark [pages] [rtt ms]
+ */
+public class MultiGetBenchmark {
+
+    private static final int USERS = 5_000;
+
+    public static void main(String[] args) throws Exception {
+        int pages = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int rttMillis = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+        TestDatabase database = TestDatabase.create("multi-get");
+        DatabaseClient databaseClient = database.client();
+        for (int from = 1; from <= USERS; from += 500) {
+            int to = Math.min(USERS, from + 499);
+            databaseClient.sql("INSERT INTO users (id, name, email) SELECT x, 'User ' || x, 'user' || x || '@example.com'"
+                    + " FROM SYSTEM_RANGE(" + from + ", " + to + ")").then().block();
+            databaseClient.sql("INSERT INTO carts (id, user_id, status) SELECT x, x, 'active' FROM SYSTEM_RANGE("
+                    + from + ", " + to + ")").then().block();
+        }
+        R2dbcRepositoryFactory repositories = database.repositories();
+        UserRepository users = repositories.getRepository(UserRepository.class);
+        CartRepository carts = repositories.getRepository(CartRepository.class);
+        CartItemRepository cartItems = repositories.getRepository(CartItemRepository.class);
+        CartEventService events = new CartEventService(new InJvmCartEventTransport(), new CartEventMetrics(new SimpleMeterRegistry()));
+        ResourceVersions versions = new ResourceVersions(events, Duration.ofMinutes(5), 100_000);
+        MultiGet multiGet = new MultiGet(100, 500);
+        UserHandler userHandler = new UserHandler(users, versions, multiGet, null, new SingleFlight(new SimpleMeterRegistry()));
+        CartHandler cartHandler = new CartHandler(carts, cartItems, events,
+                TransactionalOperator.create(new R2dbcTransactionManager(database.connectionFactory())),
+                versions, multiGet, new SingleFlight(new SimpleMeterRegistry()));
+        Duration rtt = Duration.ofMillis(rttMillis);
+        WebTestClient client = WebTestClient.bindToRouterFunction(RouterFunctions
+                        .route(RequestPredicates.GET("/users").and(RequestPredicates.queryParam(MultiGet.IDS, ids -> true)),
+                                userHandler::getByIds)
+                        .andRoute(RequestPredicates.GET("/users/{id}"), userHandler::getById)
+                        .andRoute(RequestPredicates.GET("/carts").and(RequestPredicates.queryParam(MultiGet.IDS, ids -> true)),
+                                cartHandler::getByIds)
+                        .andRoute(RequestPredicates.GET("/carts/{id}"), cartHandler::getById)
+                        // Stands in for the network round trip of each call
+                        .filter((request, next) -> rtt.isZero()
+                                ? next.handle(request) : Mono.delay(rtt).then(next.handle(request))))
+                .configureClient()
+                .responseTimeout(Duration.ofMinutes(1))
+                .build();
+
+        System.out.printf("pages=%d rtt=%dms users=%d%n", pages, rttMillis, USERS);
+        System.out.printf("%-6s %-10s %10s %10s %10s %8s%n", "rows", "mode", "p50 ms", "p99 ms", "max ms", "calls");
+        for (int rows : new int[] {10, 50, 200}) {
+            for (boolean batched : new boolean[] {false, true}) {
+                run(client, rows, batched, pages / 4, false);
+                run(client, rows, batched, pages, true);
+            }
+        }
+        System.exit(0);
+    }
+
+    private static void run(WebTestClient client, int rows, boolean batched, int pages, boolean print) {
+        Random random = new Random(rows);
+        Histogram histogram = new Histogram(3);
+        int calls = 0;
+        for (int page = 0; page < pages; page++) {
+            List<Long> ids = new ArrayList<>();
+            for (int row = 0; row < rows; row++) {
+                ids.add(1L + random.nextInt(USERS));
+            }
+            long start = System.nanoTime();
+            if (batched) {
+                String list = ids.stream().map(String::valueOf).collect(Collectors.joining(","));
+                client.get().uri("/users?ids=" + list).exchange().expectStatus().isOk().expectBody().returnResult();
+                client.get().uri("/carts?ids=" + list).exchange().expectStatus().isOk().expectBody().returnResult();
+                calls = 2;
+            } else {
+                for (Long id : ids) {
+                    client.get().uri("/users/" + id).exchange().expectStatus().isOk().expectBody().returnResult();
+                    client.get().uri("/carts/" + id).exchange().expectStatus().isOk().expectBody().returnResult();
+                }
+                calls = 2 * rows;
+            }
+            histogram.recordValue((System.nanoTime() - start) / 1_000);
+        }
+        if (print) {
+            System.out.printf("%-6d %-10s %10.2f %10.2f %10.2f %8d%n", rows, batched ? "multi-get" : "singles",
+                    histogram.getValueAtPercentile(50) / 1000.0, histogram.getValueAtPercentile(99) / 1000.0,
+                    histogram.getMaxValue() / 1000.0, calls);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.evolve.benchmark;
+
+import com.evolve.catalog.OffHeapProductStore;
+import com.evolve.model.Product;
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongFunction;
+
+/**
+ * Holds a generated catalog (10M products by default) either on heap, in a
+ * {@code HashMap<Long, Product>}, or in an {@link OffHeapProductStore}, then
+ * reports the heap left after a full GC, how long that full GC took, and the
+ * GC pauses seen while serving random lookups by id. Each lookup also
+ * allocates a little request garbage, as a handler would.
+ *
+ * Run each mode in its own JVM, with the same heap limit:
+ * java -Xmx3g -cp target/classes:target/test-classes:$(deps) com.evolve.benchmark.OffHeapCatalogBenchmark heap|offheap [products] [lookups]
+ */
+public class OffHeapCatalogBenchmark {
+
+    private static final AtomicLong pauses = new AtomicLong();
+    private static final AtomicLong pauseMillis = new AtomicLong();
+    private static final AtomicLong maxPauseMillis = new AtomicLong();
+
+    public static void main(String[] args) throws IOException {
+        String mode = args.length > 0 ? args[0] : "offheap";
+        int products = args.length > 1 ? Integer.parseInt(args[1]) : 10_000_000;
+        int lookups = args.length > 2 ? Integer.parseInt(args[2]) : 20_000_000;
+        watchPauses();
+
+        long start = System.nanoTime();
+        LongFunction<Product> catalog;
+        OffHeapProductStore store = null;
+        if (mode.equals("heap")) {
+            Map<Long, Product> map = new HashMap<>(products * 4 / 3 + 1);
+            for (long id = 1; id <= products; id++) {
+                map.put(id, product(id));
+            }
+            catalog = map::get;
+        } else {
+            store = new OffHeapProductStore(Files.createTempDirectory("offheap-catalog"), 1L << 30, products);
+            for (long id = 1; id <= products; id++) {
+                store.put(product(id));
+            }
+            catalog = store::get;
+        }
+        System.out.printf("%s: %,d products loaded in %.1f s%n", mode, products, (System.nanoTime() - start) / 1e9);
+        if (store != null) {
+            System.out.printf("  off heap: %,d MB data, %,d MB index%n", store.dataBytes() >> 20, store.indexBytes() >> 20);
+        }
+
+        long gcStart = System.nanoTime();
+        System.gc();
+        System.out.printf("  full GC %,d ms, heap used after %,d MB%n", (System.nanoTime() - gcStart) / 1_000_000,
+                ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() >> 20);
+
+        pauses.set(0);
+        pauseMillis.set(0);
+        maxPauseMillis.set(0);
+        long collections = collections();
+        long sink = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < lookups; i++) {
+            Product product = catalog.apply(ThreadLocalRandom.current().nextLong(1, products + 1));
+            byte[] response = new byte[256];
+            response[i & 255] = (byte) product.getName().length();
+            sink += response[i & 255];
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("  %,d lookups in %.1f s = %,.0f /s%n", lookups, seconds, lookups / seconds);
+        System.out.printf("  %,d collections, %,d pauses: %,d ms total, %,d ms max (%d)%n", collections() - collections,
+                pauses.get(), pauseMillis.get(), maxPauseMillis.get(), sink & 1);
+        if (store != null) {
+            store.close();
+        }
+    }
+
+    private static Product product(long id) {
+        Product product = new Product();
+        product.setId(id);
+        product.setName("Product " + id);
+        product.setDescription("Description " + id);
+        product.setPrice(9.99 + id % 100);
+        return product;
+    }
+
+    private static long collections() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionCount)
+                .sum();
+    }
+
+    // Stop-the-world pauses only; concurrent cycles are reported separately and skipped
+    private static void watchPauses() {
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            ((NotificationEmitter) collector).addNotificationListener((notification, handback) -> {
+                GarbageCollectionNotificationInfo info =
+                        GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+                if (info.getGcName().contains("Concurrent")) {
+                    return;
+                }
+                long millis = info.getGcInfo().getDuration();
+                pauses.incrementAndGet();
+                pauseMillis.addAndGet(millis);
+                maxPauseMillis.accumulateAndGet(millis, Math::max);
+            }, notification -> notification.getType().equals(GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION), null);
+        }
+    }
+}
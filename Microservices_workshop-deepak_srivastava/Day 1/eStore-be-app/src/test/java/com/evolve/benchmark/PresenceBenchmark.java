@@ -0,0 +1,94 @@
+package com.evolve.benchmark;
+
+import com.evolve.presence.PresenceTracker;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Memory per connection and timer overhead of {@link PresenceTracker}, compared
+ * with one {@link ScheduledThreadPoolExecutor} timeout per connection.
+ *
+ * Run with: java -cp target/classes:target/test-classes:$(deps) com.evolve.benchmark.PresenceBenchmark [connections]
+ */
+public class PresenceBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+
+        PresenceTracker tracker = new PresenceTracker(Duration.ofSeconds(30), Duration.ofMillis(100), 0);
+        String[] users = new String[connections];
+        for (int i = 0; i < connections; i++) {
+            users[i] = "user-" + (i % (connections / 2));
+        }
+        long before = usedHeap();
+        PresenceTracker.Connection[] handles = new PresenceTracker.Connection[connections];
+        for (int i = 0; i < connections; i++) {
+            handles[i] = tracker.connect(users[i]);
+        }
+        long wheelBytes = usedHeap() - before;
+        tracker.advance();
+
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1);
+        executor.setRemoveOnCancelPolicy(true);
+        before = usedHeap();
+        ScheduledFuture<?>[] futures = new ScheduledFuture<?>[connections];
+        for (int i = 0; i < connections; i++) {
+            futures[i] = executor.schedule(() -> { }, 30, TimeUnit.SECONDS);
+        }
+        long executorBytes = usedHeap() - before;
+
+        System.out.printf("connections=%d%n", connections);
+        System.out.printf("memory/connection: wheel=%d B (incl. per-user counts), scheduled-task=%d B (timer only)%n",
+                wheelBytes / connections, executorBytes / connections);
+
+        int rounds = 20;
+        for (int warmup = 0; warmup < 3; warmup++) {
+            heartbeatAll(tracker, handles);
+            rescheduleAll(executor, futures);
+        }
+        long start = System.nanoTime();
+        for (int r = 0; r < rounds; r++) {
+            heartbeatAll(tracker, handles);
+        }
+        long wheelNanos = (System.nanoTime() - start) / ((long) rounds * connections);
+        start = System.nanoTime();
+        for (int r = 0; r < rounds; r++) {
+            rescheduleAll(executor, futures);
+        }
+        long executorNanos = (System.nanoTime() - start) / ((long) rounds * connections);
+        System.out.printf("heartbeat: wheel=%d ns, cancel+schedule=%d ns%n", wheelNanos, executorNanos);
+
+        start = System.nanoTime();
+        int ticks = 1_000;
+        for (int i = 0; i < ticks; i++) {
+            tracker.advance();
+        }
+        System.out.printf("tick with %d live connections: %d ns%n", connections, (System.nanoTime() - start) / ticks);
+        executor.shutdownNow();
+    }
+
+    private static void heartbeatAll(PresenceTracker tracker, PresenceTracker.Connection[] handles) {
+        for (PresenceTracker.Connection handle : handles) {
+            tracker.heartbeat(handle);
+        }
+    }
+
+    private static void rescheduleAll(ScheduledThreadPoolExecutor executor, ScheduledFuture<?>[] futures) {
+        for (int i = 0; i < futures.length; i++) {
+            futures[i].cancel(false);
+            futures[i] = executor.schedule(() -> { }, 30, TimeUnit.SECONDS);
+        }
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
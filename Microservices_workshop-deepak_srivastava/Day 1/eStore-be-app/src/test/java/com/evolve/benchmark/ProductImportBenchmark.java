@@ -0,0 +1,119 @@
+package com.evolve.benchmark;
+
+import com.evolve.catalog.ProductCatalog;
+import com.evolve.dto.ImportProgress;
+import com.evolve.repository.ProductRepository;
+import com.evolve.search.ProductSearchService;
+import com.evolve.service.ProductImportService;
+import com.evolve.springbootapp.TestDatabase;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.r2dbc.h2.H2ConnectionConfiguration;
+import io.r2dbc.h2.H2ConnectionFactory;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Random;
+
+/**
+ * Imports a generated CSV catalog (1M rows by default) from a file into a
+ * file-backed H2 database, so table data does not sit on the heap, and
+ * reports throughput and the heap left after a full GC as the import
+ * progresses. Also times single-row inserts on a slice of the input for
+ * comparison.
+ *
+ * Run with: java -Xmx512m -cp target/classes:target/test-classes:$(deps) com.evolve.benchmark.ProductImportBenchmark [rows]
+ */
+public class ProductImportBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Path work = Files.createTempDirectory("product-import");
+        Path csv = work.resolve("catalog.csv");
+        writeCatalog(csv, rows);
+        System.out.printf("catalog: %,d rows, %,d MB%n", rows, Files.size(csv) >> 20);
+
+        single(work, 20_000);
+        for (int concurrency : new int[] {1, 4}) {
+            batched(work, csv, 500, concurrency, rows);
+        }
+    }
+
+    private static void single(Path work, int rows) throws IOException {
+        Database database = Database.create(work.resolve("single"));
+        long start = System.nanoTime();
+        Flux.range(0, rows)
+                .concatMap(i -> database.client.sql("INSERT INTO products (name, description, price) VALUES (:n, :d, :p)")
+                        .bind("n", "Product " + i)
+                        .bind("d", "Description " + i)
+                        .bind("p", 9.99)
+                        .then())
+                .blockLast();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("single-row inserts: %,d rows in %.1f s = %,.0f rows/s%n", rows, seconds, rows / seconds);
+        database.pool.dispose();
+    }
+
+    private static void batched(Path work, Path csv, int batchSize, int concurrency, int rows) throws IOException {
+        Database database = Database.create(work.resolve("batched-" + concurrency));
+        ProductSearchService search = new ProductSearchService(database.products, Duration.ofMillis(25), 100, 64, 2, 4);
+        ProductImportService importer = new ProductImportService(database.client,
+                TransactionalOperator.create(new R2dbcTransactionManager(database.pool)), search,
+                new ProductCatalog(database.products, false, "", DataSize.ofMegabytes(1), 1000, Duration.ZERO), new ObjectMapper(),
+                batchSize, concurrency, 100, 65536, Duration.ofSeconds(2), work.toString());
+
+        System.out.printf("batch %d, concurrency %d:%n", batchSize, concurrency);
+        ImportProgress last = importer.importFile(csv.getFileName().toString(), null)
+                .doOnNext(progress -> System.out.printf("  %,9d inserted  heap after GC %,4d MB%n",
+                        progress.getInserted(), heapAfterGc() >> 20))
+                .blockLast();
+        double seconds = last.getElapsedMillis() / 1e3;
+        System.out.printf("  done: %,d inserted, %,d rejected in %.1f s = %,.0f rows/s%n",
+                last.getInserted(), last.getRejected(), seconds, last.getInserted() / seconds);
+        database.pool.dispose();
+    }
+
+    private static void writeCatalog(Path csv, int rows) throws IOException {
+        String[] words = {"desk", "lamp", "mug", "cable", "adapter", "sleeve", "stand", "chair", "pen", "case"};
+        String[] colors = {"black", "white", "oak", "steel", "blue", "red"};
+        Random random = new Random(7);
+        try (BufferedWriter writer = Files.newBufferedWriter(csv, StandardCharsets.UTF_8)) {
+            writer.write("name,description,price\n");
+            for (int i = 0; i < rows; i++) {
+                writer.write(colors[random.nextInt(colors.length)] + " " + words[random.nextInt(words.length)]
+                        + " " + words[random.nextInt(words.length)] + ",\"Sturdy, light "
+                        + colors[random.nextInt(colors.length)] + " finish\"," + (random.nextInt(100_000) / 100.0) + "\n");
+            }
+        }
+    }
+
+    private static long heapAfterGc() {
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private record Database(ConnectionPool pool, DatabaseClient client, ProductRepository products) {
+
+        static Database create(Path file) throws IOException {
+            ConnectionPool pool = new ConnectionPool(ConnectionPoolConfiguration.builder(new H2ConnectionFactory(
+                            H2ConnectionConfiguration.builder().file(file.toString()).username("sa").build()))
+                    .maxSize(8)
+                    .build());
+            TestDatabase database = TestDatabase.create(pool);
+            DatabaseClient client = database.client();
+            ProductRepository products = database.repositories().getRepository(ProductRepository.class);
+            return new Database(pool, client, products);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.evolve.benchmark;
+
+import com.evolve.search.ProductSearchIndex;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+import java.util.function.IntFunction;
+
+/**
+ * Builds {@link ProductSearchIndex} over a synthetic catalog (1M products by
+ * default, Zipf-distributed vocabulary) and measures query latency for exact,
+ * multi-word, prefix and misspelled queries, against a substring scan that
+ * stands in for {@code LIKE '%x%'}.
+ *
+ * Run with: java -Xmx2g -cp target/classes:target/test-classes:$(deps) com.evolve.benchmark.ProductSearchBenchmark [products]
+ */
+public class ProductSearchBenchmark {
+
+    private static final String[] SYLLABLES = {"ka", "lo", "mi", "ne", "ru", "ta", "vo", "zen", "pri", "stra",
+            "ex", "on", "ul", "ba", "co", "di", "fu", "ga", "hi", "jo", "ki", "le", "mo", "nu", "pa", "qui"};
+    private static final Duration BUDGET = Duration.ofMillis(25);
+
+    public static void main(String[] args) {
+        int products = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Random random = new Random(42);
+        String[] vocabulary = vocabulary(random, 30_000);
+        String[] names = new String[products];
+        String[] descriptions = new String[products];
+        for (int i = 0; i < products; i++) {
+            names[i] = sentence(random, vocabulary, 3 + random.nextInt(3));
+            descriptions[i] = sentence(random, vocabulary, 8 + random.nextInt(8));
+        }
+
+        ProductSearchIndex index = new ProductSearchIndex(64, 2, 4);
+        long heapBefore = usedHeap();
+        long start = System.nanoTime();
+        for (int i = 0; i < products; i++) {
+            index.add(i + 1, names[i], descriptions[i]);
+        }
+        long buildMillis = (System.nanoTime() - start) / 1_000_000;
+        long heapAfter = usedHeap();
+        System.out.printf("indexed %,d products, %,d terms in %,d ms, index heap ~%,d MB%n",
+                index.size(), index.termCount(), buildMillis, (heapAfter - heapBefore) >> 20);
+
+        int queries = 2_000;
+        for (int round = 0; round < 2; round++) {
+            System.out.println("round " + round);
+            run(index, "1 word", queries, q -> word(names[random.nextInt(products)], random));
+            run(index, "2 words", queries, q -> {
+                String name = names[random.nextInt(products)];
+                return word(name, random) + " " + word(name, random);
+            });
+            run(index, "prefix", queries, q -> {
+                String w = word(names[random.nextInt(products)], random);
+                return w.substring(0, Math.min(w.length(), 3));
+            });
+            run(index, "typo", queries, q -> typo(word(names[random.nextInt(products)], random), random));
+            run(index, "name + prefix", queries, q -> {
+                String name = names[random.nextInt(products)];
+                String last = word(name, random);
+                return word(name, random) + " " + last.substring(0, Math.min(last.length(), 3));
+            });
+        }
+
+        long[] scans = new long[10];
+        for (int q = 0; q < scans.length; q++) {
+            String needle = word(names[random.nextInt(products)], random);
+            long scanStart = System.nanoTime();
+            int found = 0;
+            for (int i = 0; i < products; i++) {
+                if (names[i].toLowerCase(Locale.ROOT).contains(needle)
+                        || descriptions[i].toLowerCase(Locale.ROOT).contains(needle)) {
+                    found++;
+                }
+            }
+            scans[q] = System.nanoTime() - scanStart + (found == -1 ? 1 : 0);
+        }
+        Arrays.sort(scans);
+        System.out.printf("substring scan (LIKE '%%x%%' stand-in, in memory): p50=%,d us%n", scans[scans.length / 2] / 1_000);
+    }
+
+    private static void run(ProductSearchIndex index, String label, int queries, IntFunction<String> query) {
+        long[] latencies = new long[queries];
+        int partial = 0;
+        long hits = 0;
+        for (int q = 0; q < queries; q++) {
+            String text = query.apply(q);
+            long start = System.nanoTime();
+            ProductSearchIndex.Result result = index.search(text, 20, BUDGET);
+            latencies[q] = System.nanoTime() - start;
+            partial += result.partial() ? 1 : 0;
+            hits += result.hits().size();
+        }
+        Arrays.sort(latencies);
+        System.out.printf("  %-14s p50=%,7d us  p99=%,7d us  max=%,7d us  partial=%d/%d  avg hits=%.1f%n",
+                label, latencies[queries / 2] / 1_000, latencies[queries * 99 / 100] / 1_000,
+                latencies[queries - 1] / 1_000, partial, queries, (double) hits / queries);
+    }
+
+    private static String[] vocabulary(Random random, int size) {
+        String[] words = new String[size];
+        for (int i = 0; i < size; i++) {
+            StringBuilder word = new StringBuilder();
+            int syllables = 2 + random.nextInt(3);
+            for (int s = 0; s < syllables; s++) {
+                word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+            }
+            words[i] = word.toString();
+        }
+        return words;
+    }
+
+    // Zipf-like: low ranks are far more common, as in real catalogs
+    private static String sentence(Random random, String[] vocabulary, int length) {
+        StringBuilder sentence = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            int rank = (int) Math.min(vocabulary.length - 1, Math.pow(vocabulary.length, random.nextDouble()) - 1);
+            if (i > 0) {
+                sentence.append(' ');
+            }
+            sentence.append(vocabulary[rank]);
+        }
+        return sentence.toString();
+    }
+
+    private static String word(String text, Random random) {
+        String[] words = text.split(" ");
+        return words[random.nextInt(words.length)];
+    }
+
+    private static String typo(String word, Random random) {
+        if (word.length() < 5) {
+            return word;
+        }
+        int at = 1 + random.nextInt(word.length() - 2);
+        char[] chars = word.toCharArray();
+        char swap = chars[at];
+        chars[at] = chars[at + 1];
+        chars[at + 1] = swap;
+        return new String(chars);
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,103 @@
+package com.evolve.benchmark;
+
+import com.evolve.ratelimit.TokenBuckets;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Throughput of {@link TokenBuckets} against a token bucket map behind one
+ * lock, for 1 to N threads taking tokens from one hot key and from many keys.
+ * The rate is set high enough that every acquire succeeds, so each one is a
+ * write and the CAS path is what is measured.
+ *
+ * Run with: java -cp target/classes:target/test-classes:$(deps) com.evolve.benchmark.RateLimitBenchmark [maxThreads]
+ */
+public class RateLimitBenchmark {
+
+    private interface Limiter {
+        long acquire(String key, long now);
+    }
+
+    // The straightforward version: refill-on-read buckets in a HashMap, all under one monitor
+    private static final class LockedBuckets implements Limiter {
+        private final Map<String, double[]> buckets = new HashMap<>();
+        private final double perNano;
+        private final double capacity;
+
+        LockedBuckets(double ratePerSecond, int capacity) {
+            this.perNano = ratePerSecond / 1e9;
+            this.capacity = capacity;
+        }
+
+        @Override
+        public synchronized long acquire(String key, long now) {
+            double[] bucket = buckets.computeIfAbsent(key, k -> new double[] {capacity, now});
+            bucket[0] = Math.min(capacity, bucket[0] + (now - bucket[1]) * perNano);
+            bucket[1] = now;
+            if (bucket[0] >= 1) {
+                bucket[0] -= 1;
+                return 0;
+            }
+            return (long) ((1 - bucket[0]) / perNano);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Math.max(8, Runtime.getRuntime().availableProcessors() * 2);
+        String[] keys = new String[10_000];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = "10.0." + (i >> 8) + "." + (i & 255);
+        }
+        System.out.printf("cores=%d%n", Runtime.getRuntime().availableProcessors());
+        System.out.printf("%-8s %-10s %14s %14s%n", "threads", "keys", "lock-free/s", "locked/s");
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            for (int keyCount : new int[] {1, keys.length}) {
+                double lockFree = run(new TokenBuckets(1e9, 1_000, 100_000, 0)::acquire, keys, keyCount, threads);
+                double locked = run(new LockedBuckets(1e9, 1_000)::acquire, keys, keyCount, threads);
+                System.out.printf("%-8d %-10d %,14.0f %,14.0f%n", threads, keyCount, lockFree, locked);
+            }
+        }
+    }
+
+    private static double run(Limiter limiter, String[] keys, int keyCount, int threads) throws InterruptedException {
+        // Warm up, then measure for a fixed time
+        measure(limiter, keys, keyCount, threads, 300);
+        return measure(limiter, keys, keyCount, threads, 1_000);
+    }
+
+    private static double measure(Limiter limiter, String[] keys, int keyCount, int threads, long millis)
+            throws InterruptedException {
+        LongAdder operations = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        long[] deadline = new long[1];
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int offset = t * 7919;
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long done = 0;
+                int i = offset;
+                while ((done & 1023) != 0 || System.nanoTime() < deadline[0]) {
+                    limiter.acquire(keys[i++ % keyCount], System.nanoTime());
+                    done++;
+                }
+                operations.add(done);
+            });
+            workers[t].start();
+        }
+        deadline[0] = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return operations.sum() * 1000.0 / millis;
+    }
+}
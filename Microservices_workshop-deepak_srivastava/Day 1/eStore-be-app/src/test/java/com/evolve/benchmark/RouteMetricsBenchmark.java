@@ -0,0 +1,91 @@
+package com.evolve.benchmark;
+
+import com.evolve.filter.RouteMetricsFilter;
+import io.micrometer.prometheusmetrics.PrometheusConfig;
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.codec.HttpMessageWriter;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.reactive.function.server.HandlerFunction;
+import org.springframework.web.reactive.function.server.HandlerStrategies;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.reactive.result.view.ViewResolver;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Per-request overhead of {@link RouteMetricsFilter} against a Prometheus registry.
+ * Each request gets a fresh exchange and its response is written, as the filter
+ * records once the body has been written.
+ *
+ * Run with: java -cp target/classes:target/test-classes:$(deps) com.evolve.benchmark.RouteMetricsBenchmark [requests]
+ */
+public class RouteMetricsBenchmark {
+
+    private static final HandlerStrategies STRATEGIES = HandlerStrategies.withDefaults();
+
+    private static final ServerResponse.Context CONTEXT = new ServerResponse.Context() {
+        @Override
+        public List<HttpMessageWriter<?>> messageWriters() {
+            return STRATEGIES.messageWriters();
+        }
+
+        @Override
+        public List<ViewResolver> viewResolvers() {
+            return List.of();
+        }
+    };
+
+    public static void main(String[] args) {
+        int requests = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        RouteMetricsFilter filter = new RouteMetricsFilter(new PrometheusMeterRegistry(PrometheusConfig.DEFAULT));
+
+        List<Supplier<ServerRequest>> routes = List.of(
+                route(HttpMethod.GET, "/carts/{id}", "/carts/1"),
+                route(HttpMethod.GET, "/carts/{cartId}/items", "/carts/1/items"),
+                route(HttpMethod.POST, "/carts/{cartId}/items", "/carts/1/items"),
+                route(HttpMethod.GET, "/users/{id}", "/users/7"));
+        Mono<ServerResponse> ok = ServerResponse.ok().build().cache();
+        HandlerFunction<ServerResponse> handler = request -> ok;
+
+        for (int round = 0; round < 3; round++) {
+            long bare = run(routes, requests, request -> handler.handle(request));
+            long filtered = run(routes, requests, request -> filter.filter(request, handler));
+            System.out.printf("round %d: bare=%d ns/req, filtered=%d ns/req, overhead=%d ns/req%n",
+                    round, bare, filtered, filtered - bare);
+        }
+    }
+
+    private static long run(List<Supplier<ServerRequest>> routes, int requests, HandlerFunction<ServerResponse> handler) {
+        long start = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            ServerRequest request = routes.get(i & 3).get();
+            try {
+                handler.handle(request)
+                        .flatMap(response -> response.writeTo(request.exchange(), CONTEXT))
+                        .block();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return (System.nanoTime() - start) / requests;
+    }
+
+    // A new request per call, as exchanges are not reused, with the template already parsed
+    private static Supplier<ServerRequest> route(HttpMethod method, String pattern, String path) {
+        PathPattern template = PathPatternParser.defaultInstance.parse(pattern);
+        return () -> {
+            ServerRequest request = ServerRequest.create(MockServerWebExchange.from(MockServerHttpRequest.method(method, path)),
+                    STRATEGIES.messageReaders());
+            request.attributes().put(RouterFunctions.MATCHING_PATTERN_ATTRIBUTE, template);
+            return request;
+        };
+    }
+}
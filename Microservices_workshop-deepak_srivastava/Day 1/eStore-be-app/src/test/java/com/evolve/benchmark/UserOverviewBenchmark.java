@@ -0,0 +1,189 @@
+package com.evolve.benchmark;
+
+import com.evolve.batch.BatchLoader;
+import com.evolve.batch.SingleFlight;
+import com.evolve.catalog.ProductCatalog;
+import com.evolve.etag.ResourceVersions;
+import com.evolve.handler.CartHandler;
+import com.evolve.handler.CartItemHandler;
+import com.evolve.handler.MultiGet;
+import com.evolve.handler.OrderHandler;
+import com.evolve.handler.UserHandler;
+import com.evolve.metrics.CartEventMetrics;
+import com.evolve.model.Cart;
+import com.evolve.model.Product;
+import com.evolve.pricing.CartPricingService;
+import com.evolve.repository.CartItemRepository;
+import com.evolve.repository.CartRepository;
+import com.evolve.repository.OrderItemRepository;
+import com.evolve.repository.OrderRepository;
+import com.evolve.repository.ProductRepository;
+import com.evolve.repository.UserRepository;
+import com.evolve.service.CartEventService;
+import com.evolve.service.UserOverviewService;
+import com.evolve.springbootapp.TestDatabase;
+import com.evolve.transport.InJvmCartEventTransport;
+import com.evolve.writebehind.CartItemWriteBuffer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.HdrHistogram.Histogram;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.data.r2dbc.repository.support.R2dbcRepositoryFactory;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.reactive.function.server.RequestPredicates;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Latency of loading the account page as the client does today, one call
+ * after another to {@code /users/{id}}, {@code /carts/user/{userId}},
+ * {@code /carts/{cartId}/items} per cart and {@code /orders/user/{userId}},
+ * against one {@code GET /users/{id}/overview}. Handlers run in process over
+ * H2 behind the real WebFlux codecs. Each HTTP call can be given a simulated
+ * network round trip and each repository query a simulated database round
+ * trip, since in process both cost almost nothing.
+ *
+ * Run with: java -cp target/classes:target/test-classes:$(deps) com.evolve.benchmark.UserOverviewBenchmark [loads] [rtt ms] [db ms]
+ */
+public class UserOverviewBenchmark {
+
+    private static final int USERS = 200;
+    private static final int PRODUCTS = 500;
+    private static final int ITEMS_PER_CART = 5;
+    private static final int ORDERS_PER_USER = 3;
+
+    public static void main(String[] args) throws Exception {
+        int loads = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int rttMillis = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+        int dbMillis = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+        System.out.printf("loads=%d rtt=%dms db=%dms items/cart=%d%n", loads, rttMillis, dbMillis, ITEMS_PER_CART);
+        System.out.printf("%-6s %-10s %10s %10s %10s %8s%n", "carts", "mode", "p50 ms", "p99 ms", "max ms", "calls");
+        for (int cartsPerUser : new int[] {1, 3, 10}) {
+            WebTestClient client = client(cartsPerUser, Duration.ofMillis(rttMillis), Duration.ofMillis(dbMillis));
+            for (boolean aggregated : new boolean[] {false, true}) {
+                run(client, cartsPerUser, aggregated, loads / 4, false);
+                run(client, cartsPerUser, aggregated, loads, true);
+            }
+        }
+        System.exit(0);
+    }
+
+    private static WebTestClient client(int cartsPerUser, Duration rtt, Duration db) throws Exception {
+        TestDatabase database = TestDatabase.create("overview-" + cartsPerUser);
+        DatabaseClient databaseClient = database.client();
+        databaseClient.sql("DELETE FROM products").then().block();
+        databaseClient.sql("INSERT INTO products (id, name, description, price) SELECT x, 'Product ' || x,"
+                + " 'A product on the account page', 10 * x FROM SYSTEM_RANGE(1, " + PRODUCTS + ")").then().block();
+        databaseClient.sql("INSERT INTO users (id, name, email) SELECT x, 'User ' || x, 'user' || x || '@example.com'"
+                + " FROM SYSTEM_RANGE(1, " + USERS + ")").then().block();
+        // Cart c belongs to user (c - 1) / cartsPerUser + 1 and holds products c, c + 1, ...
+        databaseClient.sql("INSERT INTO carts (id, user_id, status) SELECT x, (x - 1) / " + cartsPerUser + " + 1, 'abandoned'"
+                + " FROM SYSTEM_RANGE(1, " + USERS * cartsPerUser + ")").then().block();
+        databaseClient.sql("INSERT INTO cart_items (cart_id, product_id, quantity) SELECT c.x, MOD(c.x + p.x, "
+                + PRODUCTS + ") + 1, 1 FROM SYSTEM_RANGE(1, " + USERS * cartsPerUser + ") c, SYSTEM_RANGE(0, "
+                + (ITEMS_PER_CART - 1) + ") p").then().block();
+        databaseClient.sql("INSERT INTO orders (user_id, status) SELECT u.x, 'PLACED' FROM SYSTEM_RANGE(1, "
+                + USERS + ") u, SYSTEM_RANGE(1, " + ORDERS_PER_USER + ") o").then().block();
+
+        R2dbcRepositoryFactory repositories = database.repositories();
+        UserRepository users = slowed(UserRepository.class, repositories.getRepository(UserRepository.class), db);
+        CartRepository carts = slowed(CartRepository.class, repositories.getRepository(CartRepository.class), db);
+        CartItemRepository cartItems = slowed(CartItemRepository.class, repositories.getRepository(CartItemRepository.class), db);
+        ProductRepository products = slowed(ProductRepository.class, repositories.getRepository(ProductRepository.class), db);
+        OrderRepository orders = slowed(OrderRepository.class, repositories.getRepository(OrderRepository.class), db);
+        OrderItemRepository orderItems = repositories.getRepository(OrderItemRepository.class);
+        TransactionalOperator transactionalOperator = TransactionalOperator.create(new R2dbcTransactionManager(database.connectionFactory()));
+        CartEventService events = new CartEventService(new InJvmCartEventTransport(), new CartEventMetrics(new SimpleMeterRegistry()));
+        ResourceVersions versions = new ResourceVersions(events, Duration.ofMinutes(5), 100_000);
+        CartItemWriteBuffer writeThrough = new CartItemWriteBuffer(cartItems, carts, events, databaseClient,
+                transactionalOperator, new SimpleMeterRegistry(), false, Duration.ofMinutes(1), 1000, 500);
+        CartPricingService pricing = new CartPricingService(cartItems, products, events, writeThrough, "INR", 2, Duration.ofMinutes(5));
+        MultiGet multiGet = new MultiGet(100, 500);
+        UserOverviewService overviews = new UserOverviewService(users, carts, cartItems, products, orders, writeThrough, 100, 4);
+        UserHandler userHandler = new UserHandler(users, versions, multiGet, overviews, new SingleFlight(new SimpleMeterRegistry()));
+        CartHandler cartHandler = new CartHandler(carts, cartItems, events, transactionalOperator, versions, multiGet,
+                new SingleFlight(new SimpleMeterRegistry()));
+        CartItemHandler itemHandler = new CartItemHandler(cartItems,
+                new BatchLoader<>("products", products::findAllById, Product::getId, Duration.ofMillis(1), 100, new SimpleMeterRegistry()),
+                new BatchLoader<>("carts", carts::findAllById, Cart::getId, Duration.ofMillis(1), 100, new SimpleMeterRegistry()),
+                events, pricing, writeThrough, versions, new ProductCatalog(products, false, "", DataSize.ofMegabytes(1), 1000, Duration.ZERO));
+        OrderHandler orderHandler = new OrderHandler(orders, orderItems, null, multiGet);
+        return WebTestClient.bindToRouterFunction(RouterFunctions
+                        .route(RequestPredicates.GET("/users/{id}"), userHandler::getById)
+                        .andRoute(RequestPredicates.GET("/users/{id}/overview"), userHandler::getOverview)
+                        .andRoute(RequestPredicates.GET("/carts/user/{userId}"), cartHandler::getByUserId)
+                        .andRoute(RequestPredicates.GET("/carts/{cartId}/items"), itemHandler::list)
+                        .andRoute(RequestPredicates.GET("/orders/user/{userId}"), orderHandler::getByUserId)
+                        // Stands in for the network round trip of each call
+                        .filter((request, next) -> rtt.isZero()
+                                ? next.handle(request) : Mono.delay(rtt).then(next.handle(request))))
+                .configureClient()
+                .responseTimeout(Duration.ofMinutes(1))
+                .build();
+    }
+
+    // Delays every query the repository runs by the given database round trip
+    @SuppressWarnings("unchecked")
+    private static <T> T slowed(Class<T> type, T repository, Duration latency) {
+        if (latency.isZero()) {
+            return repository;
+        }
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, (proxy, method, args) -> {
+            Object result;
+            try {
+                result = method.invoke(repository, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (result instanceof Mono<?> mono) {
+                return Mono.delay(latency).then(mono);
+            }
+            if (result instanceof Flux<?> flux) {
+                return Mono.delay(latency).thenMany(flux);
+            }
+            return result;
+        });
+    }
+
+    private static void run(WebTestClient client, int cartsPerUser, boolean aggregated, int loads, boolean print) {
+        Random random = new Random(cartsPerUser);
+        Histogram histogram = new Histogram(3);
+        int calls = 0;
+        for (int load = 0; load < loads; load++) {
+            long userId = 1 + random.nextInt(USERS);
+            long start = System.nanoTime();
+            if (aggregated) {
+                client.get().uri("/users/" + userId + "/overview").exchange().expectStatus().isOk().expectBody().returnResult();
+                calls = 1;
+            } else {
+                client.get().uri("/users/" + userId).exchange().expectStatus().isOk().expectBody().returnResult();
+                List<Cart> userCarts = client.get().uri("/carts/user/" + userId).exchange().expectStatus().isOk()
+                        .expectBody(new ParameterizedTypeReference<List<Cart>>() {
+                        })
+                        .returnResult().getResponseBody();
+                for (Cart cart : userCarts) {
+                    client.get().uri("/carts/" + cart.getId() + "/items").exchange().expectStatus().isOk()
+                            .expectBody().returnResult();
+                }
+                client.get().uri("/orders/user/" + userId).exchange().expectStatus().isOk().expectBody().returnResult();
+                calls = 3 + userCarts.size();
+            }
+            histogram.recordValue((System.nanoTime() - start) / 1_000);
+        }
+        if (print) {
+            System.out.printf("%-6d %-10s %10.2f %10.2f %10.2f %8d%n", cartsPerUser, aggregated ? "overview" : "sequence",
+                    histogram.getValueAtPercentile(50) / 1000.0, histogram.getValueAtPercentile(99) / 1000.0,
+                    histogram.getMaxValue() / 1000.0, calls);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.evolve.benchmark;
+
+import org.HdrHistogram.Histogram;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+
+/**
+ * Measures the first requests a freshly started server answers once its
+ * readiness probe is UP: waits for {@code /actuator/health/readiness}, then
+ * sends {@code requests} (10k by default) GETs one at a time over the main
+ * read routes and reports latency for each block of 1k and overall. Start
+ * the app with {@code --warm-up.enabled=false} and then with it on, and run
+ * this against each.
+ *
+ * The client is warmed up first against a local stub server, so its own cold
+ * start does not count against the app.
+ *
+ * Run with: java -cp target/classes:target/test-classes:$(deps) com.evolve.benchmark.WarmUpBenchmark [base url] [requests]
+ */
+public class WarmUpBenchmark {
+
+    private static final List<String> PATHS = List.of("/products/1", "/products", "/products/search?q=apple",
+            "/users/1", "/users/1/overview", "/carts/user/1", "/carts/1", "/carts/1/items", "/carts/1/pricing",
+            "/orders/user/1", "/products?ids=1", "/orders/1");
+    private static final int BLOCK = 1000;
+
+    public static void main(String[] args) throws Exception {
+        String base = args.length > 0 ? args[0] : "http://localhost:8080";
+        int requests = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        warmClient(client);
+        awaitReady(client, base);
+
+        Histogram total = new Histogram(60_000_000_000L, 3);
+        Histogram block = new Histogram(60_000_000_000L, 3);
+        int errors = 0;
+        System.out.printf("%-13s %9s %9s %9s %9s%n", "requests", "p50 ms", "p99 ms", "max ms", "mean ms");
+        for (int i = 0; i < requests; i++) {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(base + PATHS.get(i % PATHS.size())))
+                    .header("Accept", "application/json")
+                    .build();
+            long start = System.nanoTime();
+            int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+            long nanos = System.nanoTime() - start;
+            errors += status >= 500 ? 1 : 0;
+            total.recordValue(nanos);
+            block.recordValue(nanos);
+            if ((i + 1) % BLOCK == 0) {
+                print((i + 1 - BLOCK + 1) + "-" + (i + 1), block);
+                block.reset();
+            }
+        }
+        print("all " + requests, total);
+        System.out.printf("5xx: %d%n", errors);
+    }
+
+    private static void print(String label, Histogram histogram) {
+        System.out.printf("%-13s %9.2f %9.2f %9.2f %9.2f%n", label,
+                histogram.getValueAtPercentile(50) / 1e6, histogram.getValueAtPercentile(99) / 1e6,
+                histogram.getMaxValue() / 1e6, histogram.getMean() / 1e6);
+    }
+
+    private static void warmClient(HttpClient client) throws IOException, InterruptedException {
+        DisposableServer stub = HttpServer.create()
+                .host("localhost")
+                .port(0)
+                .handle((request, response) -> response.sendString(Mono.just("{}")))
+                .bindNow();
+        URI uri = URI.create("http://localhost:" + stub.port() + "/");
+        for (int i = 0; i < 20_000; i++) {
+            client.send(HttpRequest.newBuilder(uri).build(), HttpResponse.BodyHandlers.discarding());
+        }
+        stub.disposeNow();
+    }
+
+    private static void awaitReady(HttpClient client, String base) throws InterruptedException {
+        HttpRequest readiness = HttpRequest.newBuilder(URI.create(base + "/actuator/health/readiness")).build();
+        while (true) {
+            try {
+                if (client.send(readiness, HttpResponse.BodyHandlers.ofString()).statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException e) {
+                // Not listening yet
+            }
+            Thread.sleep(100);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.evolve.springbootapp;
+
+import com.evolve.batch.BatchLoader;
+import com.evolve.model.Product;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BatchLoaderTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final List<List<Long>> queries = new CopyOnWriteArrayList<>();
+
+    // Products 1-9 exist
+    private BatchLoader<Product> loader(Duration window, int maxBatch) {
+        return new BatchLoader<>("products", ids -> {
+            queries.add(ids);
+            return Flux.fromIterable(ids).filter(id -> id < 10).map(BatchLoaderTest::product);
+        }, Product::getId, window, maxBatch, registry);
+    }
+
+    private static Product product(Long id) {
+        Product product = new Product();
+        product.setId(id);
+        product.setName("Product " + id);
+        product.setPrice(10.0 * id);
+        return product;
+    }
+
+    @Test
+    void lookupsWithinTheWindowShareOneQuery() {
+        BatchLoader<Product> loader = loader(Duration.ofMillis(20), 100);
+
+        List<String> names = Flux.just(3L, 1L, 3L, 2L)
+                .flatMap(id -> loader.load(id).map(Product::getName), 4)
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        assertThat(names).containsExactlyInAnyOrder("Product 3", "Product 1", "Product 3", "Product 2");
+        assertThat(queries).containsExactly(List.of(3L, 1L, 2L));
+        assertThat(registry.get(BatchLoader.SIZE).tag("loader", "products").summary().totalAmount()).isEqualTo(3);
+        // The first id waited out the window; the repeated 3 was counted once
+        assertThat(registry.get(BatchLoader.DELAY).timer().count()).isEqualTo(3);
+        assertThat(registry.get(BatchLoader.DELAY).timer().max(TimeUnit.MILLISECONDS))
+                .isGreaterThanOrEqualTo(15);
+    }
+
+    @Test
+    void aFullBatchIsReadWithoutWaitingAndMissingIdsCompleteEmpty() {
+        BatchLoader<Product> loader = loader(Duration.ofMinutes(1), 2);
+
+        StepVerifier.create(Mono.zip(loader.load(1L), loader.load(42L).defaultIfEmpty(product(0L))))
+                .assertNext(found -> {
+                    assertThat(found.getT1().getName()).isEqualTo("Product 1");
+                    assertThat(found.getT2().getId()).isZero();
+                })
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+
+        // A new batch opens after the full one went out
+        loader.load(2L).subscribe();
+        assertThat(queries).containsExactly(List.of(1L, 42L));
+    }
+
+    @Test
+    void aFailedQueryFailsEveryLookupInTheBatch() {
+        BatchLoader<Product> loader = new BatchLoader<>("products",
+                ids -> Flux.error(new IllegalStateException("database down")),
+                Product::getId, Duration.ofMillis(5), 100, registry);
+
+        StepVerifier.create(Flux.merge(loader.load(1L), loader.load(2L)))
+                .expectErrorMessage("database down")
+                .verify(Duration.ofSeconds(5));
+        StepVerifier.create(loader.load(3L))
+                .expectErrorMessage("database down")
+                .verify(Duration.ofSeconds(5));
+    }
+}
@@ -0,0 +1,78 @@
+package com.evolve.springbootapp;
+
+import com.evolve.model.CartEvent;
+import com.evolve.model.CartEventType;
+import com.evolve.transport.CartEventCodec;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CartEventCodecTest {
+
+    private static CartEvent roundTrip(CartEvent event) {
+        ByteBuffer buffer = ByteBuffer.allocate(CartEventCodec.size(event));
+        CartEventCodec.encode(event, buffer);
+        assertThat(buffer.hasRemaining()).isFalse();
+        return CartEventCodec.decode(buffer.flip());
+    }
+
+    @Test
+    void binaryRecordsRoundTripEveryField() {
+        CartEvent added = new CartEvent(CartEventType.ADD_ITEM, 7L, 3L, 101L, 2, null);
+        CartEvent updated = new CartEvent(CartEventType.UPDATE_CART, 7L, 3L, 0, 0, "active");
+        CartEvent unusual = new CartEvent(CartEventType.UPDATE_CART, 7L, 3L, 0, 0, "on hold – ünusual");
+
+        assertThat(roundTrip(added)).isEqualTo(added);
+        assertThat(roundTrip(updated)).isEqualTo(updated);
+        assertThat(roundTrip(updated).getCartStatus()).isSameAs("active");
+        assertThat(roundTrip(unusual)).isEqualTo(unusual);
+    }
+
+    @Test
+    void recordsOfAnotherVersionOrTypeAreDropped() {
+        ByteBuffer buffer = ByteBuffer.allocate(CartEventCodec.FIXED_BYTES);
+        CartEventCodec.encode(new CartEvent(CartEventType.CLEAR_CART, 1L, 1L, 0, 0, null), buffer);
+
+        assertThat(CartEventCodec.decode(buffer.flip().duplicate().put(0, (byte) 2))).isNull();
+        assertThat(CartEventCodec.decode(buffer.duplicate().put(1, (byte) 99))).isNull();
+        assertThat(CartEventCodec.decode(ByteBuffer.wrap("{\"eventType\":\"CLEAR_CART\"}".getBytes()))).isNull();
+    }
+
+    @Test
+    void truncatedRecordsAreDropped() {
+        CartEvent updated = new CartEvent(CartEventType.UPDATE_CART, 7L, 3L, 0, 0, "checked_out");
+        ByteBuffer buffer = ByteBuffer.allocate(CartEventCodec.size(updated));
+        CartEventCodec.encode(updated, buffer);
+
+        assertThat(CartEventCodec.decode(buffer.flip().duplicate().limit(buffer.limit() - 1))).isNull();
+        assertThat(CartEventCodec.decode(buffer.duplicate().limit(CartEventCodec.FIXED_BYTES))).isNull();
+        assertThat(CartEventCodec.decode(buffer.duplicate().putShort(CartEventCodec.FIXED_BYTES - Short.BYTES,
+                Short.MAX_VALUE))).isNull();
+    }
+
+    @Test
+    void jsonKeepsTheShapeSseClientsRead() throws Exception {
+        CartEvent event = new CartEvent(CartEventType.ADD_ITEM, 7L, 3L, 101L, 2, null, 1_700_000_000_123_456L);
+        CartEvent updated = new CartEvent(CartEventType.UPDATE_CART, 7L, 3L, 0, 0, "say \"hi\"\n", 1_700_000_000_000_000L);
+
+        JsonNode json = new ObjectMapper().readTree(CartEventCodec.appendJson(event, new StringBuilder()).toString());
+        JsonNode updatedJson = new ObjectMapper().readTree(CartEventCodec.appendJson(updated, new StringBuilder()).toString());
+
+        assertThat(json.get("eventType").asText()).isEqualTo("ADD_ITEM");
+        assertThat(json.get("cartId").asLong()).isEqualTo(7);
+        assertThat(json.get("userId").asLong()).isEqualTo(3);
+        assertThat(json.get("productId").asLong()).isEqualTo(101);
+        assertThat(json.get("quantity").asInt()).isEqualTo(2);
+        assertThat(json.get("cartStatus").isNull()).isTrue();
+        assertThat(json.get("timestamp").asText()).isEqualTo("2023-11-14T22:13:20.123456Z");
+        assertThat(json.get("message").asText()).isEqualTo("Item added to cart: productId=101, quantity=2");
+        assertThat(updatedJson.get("productId").isNull()).isTrue();
+        assertThat(updatedJson.get("quantity").isNull()).isTrue();
+        assertThat(updatedJson.get("cartStatus").asText()).isEqualTo("say \"hi\"\n");
+        assertThat(updatedJson.get("message").asText()).isEqualTo("Cart updated: status=say \"hi\"\n");
+    }
+}
@@ -0,0 +1,152 @@
+package com.evolve.springbootapp;
+
+import com.evolve.controller.SseController;
+import com.evolve.metrics.CartEventMetrics;
+import com.evolve.model.CartEvent;
+import com.evolve.model.CartEventType;
+import com.evolve.presence.PresenceTracker;
+import com.evolve.service.CartEventService;
+import com.evolve.transport.CartEventCodec;
+import com.evolve.transport.InJvmCartEventTransport;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEventHttpMessageWriter;
+import org.springframework.mock.http.server.reactive.MockServerHttpResponse;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CartEventServiceTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final CartEventService service =
+            new CartEventService(new InJvmCartEventTransport(), new CartEventMetrics(registry));
+
+    private long count(String metric, String type) {
+        return registry.get(metric).tag("type", type).timer().count();
+    }
+
+    @Test
+    void recordsPublishRoundTripAndDeliveryLagByType() {
+        StepVerifier.create(service.subscribeToCartEvents().take(2))
+                .then(() -> service.publishAddItemEvent(1L, 2L, 101L, 3).block())
+                .then(() -> service.publishClearCartEvent(1L, 2L).block())
+                .expectNextMatches(event -> event.getEventType() == CartEventType.ADD_ITEM)
+                .expectNextMatches(event -> event.getEventType() == CartEventType.CLEAR_CART)
+                .verifyComplete();
+
+        assertThat(count(CartEventMetrics.PUBLISH_RTT, "ADD_ITEM")).isEqualTo(1);
+        assertThat(count(CartEventMetrics.PUBLISH_RTT, "CLEAR_CART")).isEqualTo(1);
+        assertThat(count(CartEventMetrics.DELIVERY_LAG, "ADD_ITEM")).isEqualTo(1);
+        assertThat(count(CartEventMetrics.DELIVERY_LAG, "CLEAR_CART")).isEqualTo(1);
+    }
+
+    @Test
+    void deliveryIsRecordedOncePerNodeHoweverManyConsumers() {
+        List<CartEvent> received = new CopyOnWriteArrayList<>();
+        List<Disposable> consumers = IntStream.range(0, 3)
+                .mapToObj(i -> service.subscribeToCartEvents().subscribe(received::add))
+                .toList();
+
+        service.publishAddItemEvent(1L, 2L, 101L, 3).block();
+        consumers.forEach(Disposable::dispose);
+
+        assertThat(received).hasSize(3);
+        assertThat(count(CartEventMetrics.DELIVERY_LAG, "ADD_ITEM")).isEqualTo(1);
+        // With every consumer gone the next one opens a new subscription
+        StepVerifier.create(service.subscribeToCartEvents().take(1))
+                .then(() -> service.publishClearCartEvent(1L, 2L).block())
+                .expectNextMatches(event -> event.getEventType() == CartEventType.CLEAR_CART)
+                .verifyComplete();
+    }
+
+    @Test
+    void clientWriteRecordsEndToEndLag() {
+        CartEventMetrics metrics = new CartEventMetrics(registry);
+        CartEvent event = new CartEvent(CartEventType.UPDATE_CART, 1L, 2L, 0, 0, "active");
+        event.setTimestamp(event.getTimestamp() - 40_000);
+        event.setReceivedNanos(System.nanoTime());
+
+        metrics.recordClientWrite(event);
+
+        assertThat(count(CartEventMetrics.CLIENT_WRITE_LAG, "UPDATE_CART")).isEqualTo(1);
+        assertThat(registry.get(CartEventMetrics.END_TO_END_LAG).tag("type", "UPDATE_CART").timer()
+                .totalTime(TimeUnit.MILLISECONDS)).isGreaterThanOrEqualTo(40);
+    }
+
+    private SseController sse() {
+        return new SseController(service, new ObjectMapper(),
+                new PresenceTracker(Duration.ofSeconds(1), Duration.ofMillis(100), 1), new CartEventMetrics(registry));
+    }
+
+    private void awaitWrites(long writes) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (registry.find(CartEventMetrics.CLIENT_WRITE_LAG).timers().stream().mapToLong(Timer::count).sum() < writes
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void clientWriteLagGrowsWhileASlowClientHoldsFramesBack() throws Exception {
+        // Like a connection to a slow client: frames queue up and one is sent every 100ms
+        MockServerHttpResponse response = new MockServerHttpResponse() {
+            @Override
+            protected Mono<Void> writeAndFlushWithInternal(Publisher<? extends Publisher<? extends DataBuffer>> frames) {
+                return Flux.from(frames)
+                        .concatMap(frame -> Mono.delay(Duration.ofMillis(100)).then(Mono.from(frame)), 32)
+                        .then();
+            }
+        };
+        Disposable streaming = sse().streamCartEvents(response).subscribe();
+        // The response commits with the first frame; until then only one event is taken
+        service.publishClearCartEvent(1L, 2L).block();
+        awaitWrites(1);
+
+        for (int i = 0; i < 5; i++) {
+            service.publishAddItemEvent(1L, 2L, 100L + i, 1).block();
+        }
+        awaitWrites(6);
+        streaming.dispose();
+
+        assertThat(count(CartEventMetrics.CLIENT_WRITE_LAG, "ADD_ITEM")).isEqualTo(5);
+        assertThat(registry.get(CartEventMetrics.CLIENT_WRITE_LAG).tag("type", "ADD_ITEM").timer()
+                .max(TimeUnit.MILLISECONDS)).isGreaterThanOrEqualTo(200);
+    }
+
+    @Test
+    void framesReadAsTheyDidWhenSpringFramedTheText() {
+        CartEvent event = new CartEvent(CartEventType.ADD_ITEM, 1L, 2L, 101L, 3, null);
+        MockServerHttpResponse before = new MockServerHttpResponse();
+        new ServerSentEventHttpMessageWriter().write(
+                Flux.just("data: " + CartEventCodec.appendJson(event, new StringBuilder()) + "\n\n"),
+                ResolvableType.forClass(String.class), MediaType.TEXT_EVENT_STREAM, before, Map.of()).block();
+        MockServerHttpResponse after = new MockServerHttpResponse();
+        StringBuilder written = new StringBuilder();
+        after.setWriteHandler(frames -> frames.doOnNext(frame -> written.append(frame.toString(StandardCharsets.UTF_8))).then());
+
+        Disposable streaming = sse().streamCartEvents(after).subscribe();
+        service.publishCartEvent(event).block();
+        streaming.dispose();
+
+        assertThat(written.toString()).isEqualTo(before.getBodyAsString().block());
+        assertThat(after.getHeaders().getContentType()).isEqualTo(MediaType.TEXT_EVENT_STREAM);
+    }
+}
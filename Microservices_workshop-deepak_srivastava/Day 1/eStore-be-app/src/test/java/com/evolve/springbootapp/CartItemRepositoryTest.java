@@ -0,0 +1,82 @@
+package com.evolve.springbootapp;
+
+import com.evolve.model.CartItem;
+import com.evolve.repository.CartItemRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class CartItemRepositoryTest {
+
+    private CartItemRepository cartItems;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        TestDatabase database = TestDatabase.create("cart-items");
+        cartItems = database.repositories().getRepository(CartItemRepository.class);
+    }
+
+    @Test
+    void repeatedAddsMergeIntoOneLine() {
+        CartItem first = cartItems.addQuantity(1L, 10L, 2).block();
+        CartItem second = cartItems.addQuantity(1L, 10L, 3).block();
+        cartItems.addQuantity(1L, 11L, 1).block();
+        cartItems.addQuantity(2L, 10L, 1).block();
+
+        assertThat(second.getId()).isEqualTo(first.getId());
+        assertThat(second.getQuantity()).isEqualTo(5);
+        assertThat(second.getVersion()).isEqualTo(first.getVersion() + 1);
+        assertThat(cartItems.findAllByCartId(1L).collectList().block()).hasSize(2);
+    }
+
+    @Test
+    void concurrentAddsToOneLineLoseNothing() {
+        int adds = 100;
+
+        // Each add on its own connection and thread, all racing for the same line
+        List<CartItem> results = Flux.range(1, adds)
+                .flatMap(i -> cartItems.addQuantity(1L, 10L, i % 3 + 1).subscribeOn(Schedulers.boundedElastic()), adds)
+                .collectList()
+                .block();
+
+        int expected = Flux.range(1, adds).map(i -> i % 3 + 1).reduce(0, Integer::sum).block();
+        List<CartItem> stored = cartItems.findAllByCartId(1L).collectList().block();
+        assertThat(stored).hasSize(1);
+        assertThat(stored.get(0).getQuantity()).isEqualTo(expected);
+        // One insert, then one version per increment
+        assertThat(stored.get(0).getVersion()).isEqualTo(adds - 1);
+        // Every add saw a distinct state of the line
+        assertThat(results).extracting(CartItem::getVersion).doesNotHaveDuplicates();
+    }
+
+    @Test
+    void savingAStaleCopyFailsInsteadOfOverwritingAnAdd() {
+        CartItem stale = cartItems.addQuantity(1L, 10L, 1).block();
+        cartItems.addQuantity(1L, 10L, 4).block();
+
+        stale.setQuantity(2);
+
+        assertThatThrownBy(() -> cartItems.save(stale).block()).isInstanceOf(OptimisticLockingFailureException.class);
+        assertThat(cartItems.findById(stale.getId()).block().getQuantity()).isEqualTo(5);
+    }
+
+    @Test
+    void aSecondRowForTheSameProductIsRejected() {
+        cartItems.addQuantity(1L, 10L, 1).block();
+        CartItem duplicate = new CartItem();
+        duplicate.setCartId(1L);
+        duplicate.setProductId(10L);
+        duplicate.setQuantity(1);
+
+        assertThatThrownBy(() -> cartItems.save(duplicate).block()).isInstanceOf(DataIntegrityViolationException.class);
+    }
+}
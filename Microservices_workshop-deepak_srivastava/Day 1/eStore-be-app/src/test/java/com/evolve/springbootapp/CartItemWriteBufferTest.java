@@ -0,0 +1,290 @@
+package com.evolve.springbootapp;
+
+import com.evolve.metrics.CartEventMetrics;
+import com.evolve.model.Cart;
+import com.evolve.model.CartEvent;
+import com.evolve.model.CartEventType;
+import com.evolve.model.CartItem;
+import com.evolve.repository.CartItemRepository;
+import com.evolve.repository.CartRepository;
+import com.evolve.service.CartEventService;
+import com.evolve.transport.InJvmCartEventTransport;
+import com.evolve.writebehind.CartItemWriteBuffer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryMetadata;
+import io.r2dbc.spi.R2dbcNonTransientResourceException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Publisher;
+import org.springframework.data.r2dbc.repository.support.R2dbcRepositoryFactory;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CartItemWriteBufferTest {
+
+    // Fails or holds new connections on demand, so only what goes through it sees the outage
+    private static final class FlakyConnectionFactory implements ConnectionFactory {
+        private final ConnectionFactory delegate;
+        private volatile boolean failing;
+        private volatile Sinks.Empty<Void> held;
+
+        private FlakyConnectionFactory(ConnectionFactory delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Publisher<? extends Connection> create() {
+            if (failing) {
+                return Mono.error(new R2dbcNonTransientResourceException("database down"));
+            }
+            return held != null ? held.asMono().then(Mono.from(delegate.create())) : delegate.create();
+        }
+
+        @Override
+        public ConnectionFactoryMetadata getMetadata() {
+            return delegate.getMetadata();
+        }
+    }
+
+    private DatabaseClient databaseClient;
+    private FlakyConnectionFactory flushConnections;
+    private CartRepository carts;
+    private CartItemRepository cartItems;
+    private CartEventService events;
+    private SimpleMeterRegistry registry;
+    private final List<CartEvent> published = new CopyOnWriteArrayList<>();
+    private Disposable subscription;
+    private CartItemWriteBuffer buffer;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        TestDatabase database = TestDatabase.create("write-behind");
+        databaseClient = database.client();
+        R2dbcRepositoryFactory repositories = database.repositories();
+        carts = repositories.getRepository(CartRepository.class);
+        cartItems = repositories.getRepository(CartItemRepository.class);
+        flushConnections = new FlakyConnectionFactory(database.connectionFactory());
+        events = new CartEventService(new InJvmCartEventTransport(), new CartEventMetrics(new SimpleMeterRegistry()));
+        subscription = events.subscribeToCartEvents()
+                .filter(event -> event.getEventType() == CartEventType.UPDATE_ITEM)
+                .subscribe(published::add);
+    }
+
+    @AfterEach
+    void tearDown() {
+        subscription.dispose();
+    }
+
+    // Only size-triggered and explicit flushes; the timer never fires during a test
+    private CartItemWriteBuffer buffer(int maxPending) {
+        registry = new SimpleMeterRegistry();
+        return new CartItemWriteBuffer(cartItems, carts, events, DatabaseClient.create(flushConnections),
+                TransactionalOperator.create(new R2dbcTransactionManager(flushConnections)), registry,
+                true, Duration.ofHours(1), maxPending, 500);
+    }
+
+    private List<Long> items(int count) {
+        Cart cart = new Cart();
+        cart.setUserId(7L);
+        cart.setStatus("active");
+        Long cartId = carts.save(cart).block().getId();
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            CartItem item = new CartItem();
+            item.setCartId(cartId);
+            item.setProductId(100L + i);
+            item.setQuantity(1);
+            ids.add(cartItems.save(item).block().getId());
+        }
+        return ids;
+    }
+
+    private int storedQuantity(Long itemId) {
+        return cartItems.findById(itemId).block().getQuantity();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condition not met in time").isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void coalescesRepeatedChangesIntoOneWriteAndOneEvent() {
+        buffer = buffer(100);
+        Long itemId = items(1).get(0);
+
+        for (int quantity = 2; quantity <= 50; quantity++) {
+            buffer.updateQuantity(itemId, quantity).block();
+        }
+
+        assertThat(storedQuantity(itemId)).isEqualTo(1);
+        // Reads see the buffered value before it is written
+        assertThat(buffer.overlay(cartItems.findById(itemId).block()).getQuantity()).isEqualTo(50);
+
+        assertThat(buffer.flush().block()).isEqualTo(1);
+        assertThat(storedQuantity(itemId)).isEqualTo(50);
+        assertThat(published).extracting(CartEvent::getQuantity).containsExactly(50);
+        assertThat(registry.counter(CartItemWriteBuffer.CHANGES, "outcome", "coalesced").count()).isEqualTo(48);
+    }
+
+    @Test
+    void addsLandOnTopOfABufferedQuantity() {
+        buffer = buffer(100);
+        CartItem item = cartItems.findById(items(1).get(0)).block();
+        buffer.updateQuantity(item.getId(), 5).block();
+
+        // The add increments the row, which still holds the old quantity of 1
+        CartItem added = buffer.add(item.getCartId(), item.getProductId(), 2).block();
+
+        assertThat(added.getQuantity()).isEqualTo(7);
+        buffer.flush().block();
+        assertThat(storedQuantity(item.getId())).isEqualTo(7);
+    }
+
+    @Test
+    void anAddWaitsForAFlushWritingItsLine() throws Exception {
+        buffer = buffer(100);
+        CartItem item = cartItems.findById(items(1).get(0)).block();
+        buffer.updateQuantity(item.getId(), 5).block();
+        flushConnections.held = Sinks.empty();
+
+        // The flush has taken the quantity of 5 and waits for a connection
+        Disposable flush = buffer.flush().subscribe();
+        CompletableFuture<CartItem> added = buffer.add(item.getCartId(), item.getProductId(), 2).toFuture();
+        Thread.sleep(200);
+
+        assertThat(added).isNotDone();
+        assertThat(storedQuantity(item.getId())).isEqualTo(1);
+        flushConnections.held.tryEmitEmpty();
+        assertThat(added.get(5, TimeUnit.SECONDS).getQuantity()).isEqualTo(7);
+        assertThat(storedQuantity(item.getId())).isEqualTo(7);
+        assertThat(buffer.flush().block()).isZero();
+        flush.dispose();
+    }
+
+    @Test
+    void crashLosesOnlyChangesBufferedSinceTheLastFlush() throws InterruptedException {
+        int maxPending = 4;
+        buffer = buffer(maxPending);
+        List<Long> itemIds = items(10);
+
+        for (Long itemId : itemIds) {
+            buffer.updateQuantity(itemId, 9).block();
+        }
+        await(() -> cartItems.findAll().filter(item -> item.getQuantity() == 9).count().block() >= 8);
+
+        // Crash: the buffer is abandoned without stop(); the database is all that survives
+        long stale = itemIds.stream().filter(itemId -> storedQuantity(itemId) != 9).count();
+        assertThat(stale).isLessThan(maxPending);
+        assertThat(itemIds.subList(0, 8)).allMatch(itemId -> storedQuantity(itemId) == 9);
+    }
+
+    @Test
+    void keepsChangesThroughFailedFlushesAndWritesThroughPastTheCap() {
+        buffer = buffer(2);
+        List<Long> itemIds = items(6);
+        flushConnections.failing = true;
+
+        for (Long itemId : itemIds) {
+            buffer.updateQuantity(itemId, 5).block();
+        }
+        // A newer change made while the database is down must win over the retried one
+        buffer.updateQuantity(itemIds.get(0), 6).block();
+
+        // Four items wait for the database; the two beyond twice max-pending were written directly
+        assertThat(itemIds.subList(0, 4)).allMatch(itemId -> storedQuantity(itemId) == 1);
+        assertThat(itemIds.subList(4, 6)).allMatch(itemId -> storedQuantity(itemId) == 5);
+        assertThat(buffer.flush().block()).isZero();
+
+        flushConnections.failing = false;
+        assertThat(buffer.flush().block()).isEqualTo(4);
+        assertThat(storedQuantity(itemIds.get(0))).isEqualTo(6);
+        assertThat(itemIds.subList(1, 6)).allMatch(itemId -> storedQuantity(itemId) == 5);
+    }
+
+    @Test
+    void shutdownWritesEverythingBuffered() {
+        buffer = buffer(100);
+        List<Long> itemIds = items(20);
+        for (Long itemId : itemIds) {
+            buffer.updateQuantity(itemId, 3).block();
+        }
+
+        buffer.stop();
+
+        assertThat(itemIds).allMatch(itemId -> storedQuantity(itemId) == 3);
+    }
+
+    @Test
+    void dropsOnlyTheRowsTheDatabaseRejects() {
+        databaseClient.sql("ALTER TABLE cart_items ADD CONSTRAINT max_quantity CHECK (quantity < 100)").then().block();
+        buffer = buffer(100);
+        List<Long> itemIds = items(3);
+
+        buffer.updateQuantity(itemIds.get(0), 150).block();
+        buffer.updateQuantity(itemIds.get(1), 4).block();
+        buffer.updateQuantity(itemIds.get(2), 8).block();
+        buffer.flush().block();
+
+        assertThat(storedQuantity(itemIds.get(0))).isEqualTo(1);
+        assertThat(storedQuantity(itemIds.get(1))).isEqualTo(4);
+        assertThat(storedQuantity(itemIds.get(2))).isEqualTo(8);
+        assertThat(registry.counter(CartItemWriteBuffer.CHANGES, "outcome", "dropped").count()).isEqualTo(1);
+        assertThat(buffer.flush().block()).isZero();
+    }
+
+    @Test
+    void deletedItemsAreNotWrittenOrAnnounced() {
+        buffer = buffer(100);
+        Long itemId = items(1).get(0);
+        buffer.updateQuantity(itemId, 4).block();
+
+        cartItems.deleteById(itemId).block();
+        buffer.discard(itemId);
+
+        assertThat(buffer.flush().block()).isZero();
+        assertThat(cartItems.findById(itemId).block()).isNull();
+        assertThat(published).isEmpty();
+    }
+
+    @Test
+    void anItemDeletedDuringAFlushIsForgotten() throws Exception {
+        buffer = buffer(100);
+        Long itemId = items(1).get(0);
+        buffer.updateQuantity(itemId, 4).block();
+        flushConnections.held = Sinks.empty();
+
+        // The flush has taken the quantity of 4 and waits for a connection
+        CompletableFuture<Integer> flush = buffer.flush().toFuture();
+        Thread.sleep(200);
+        cartItems.deleteById(itemId).block();
+        buffer.discard(itemId);
+
+        assertThat(buffer.updateQuantity(itemId, 5).block()).isNull();
+        flushConnections.held.tryEmitEmpty();
+        assertThat(flush.get(5, TimeUnit.SECONDS)).isZero();
+        assertThat(cartItems.findById(itemId).block()).isNull();
+        assertThat(published).isEmpty();
+    }
+}
@@ -0,0 +1,153 @@
+package com.evolve.springbootapp;
+
+import com.evolve.batch.SingleFlight;
+import com.evolve.catalog.ProductCatalog;
+import com.evolve.dto.CartPricing;
+import com.evolve.etag.ResourceVersions;
+import com.evolve.handler.MultiGet;
+import com.evolve.handler.ProductHandler;
+import com.evolve.metrics.CartEventMetrics;
+import com.evolve.model.CartItem;
+import com.evolve.model.Product;
+import com.evolve.pricing.CartPricingService;
+import com.evolve.repository.CartItemRepository;
+import com.evolve.repository.CartRepository;
+import com.evolve.repository.ProductRepository;
+import com.evolve.search.ProductSearchService;
+import com.evolve.service.CartEventService;
+import com.evolve.transport.InJvmCartEventTransport;
+import com.evolve.writebehind.CartItemWriteBuffer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.r2dbc.repository.support.R2dbcRepositoryFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.reactive.function.server.MockServerRequest;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CartPricingServiceTest {
+
+    private CartItemRepository cartItems;
+    private ProductRepository products;
+    private CartEventService events;
+    private CartPricingService pricing;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        TestDatabase database = TestDatabase.create("pricing");
+        DatabaseClient databaseClient = database.client();
+        R2dbcRepositoryFactory repositories = database.repositories();
+        cartItems = repositories.getRepository(CartItemRepository.class);
+        products = repositories.getRepository(ProductRepository.class);
+        events = new CartEventService(new InJvmCartEventTransport(), new CartEventMetrics(new SimpleMeterRegistry()));
+        CartItemWriteBuffer writeThrough = new CartItemWriteBuffer(cartItems,
+                repositories.getRepository(CartRepository.class), events, databaseClient,
+                TransactionalOperator.create(new R2dbcTransactionManager(database.connectionFactory())), new SimpleMeterRegistry(),
+                false, Duration.ofMinutes(1), 1000, 500);
+        pricing = new CartPricingService(cartItems, products, events, writeThrough, "USD", 2, Duration.ofMinutes(5));
+        pricing.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        pricing.stop();
+    }
+
+    private Long product(double price) {
+        Product product = new Product();
+        product.setName("p" + price);
+        product.setPrice(price);
+        return products.save(product).block().getId();
+    }
+
+    private CartItem addItem(Long cartId, Long productId, int quantity) {
+        CartItem item = new CartItem();
+        item.setCartId(cartId);
+        item.setProductId(productId);
+        item.setQuantity(quantity);
+        CartItem saved = cartItems.save(item).block();
+        pricing.itemAdded(saved).block();
+        return saved;
+    }
+
+    @Test
+    void pricesInExactMinorUnits() {
+        Long dime = product(0.1);
+        Long widget = product(19.99);
+        addItem(1L, dime, 3);
+        addItem(1L, widget, 3);
+
+        CartPricing priced = pricing.price(1L, true).block();
+
+        // 0.1 * 3 + 19.99 * 3 in doubles is 60.269999999999996
+        assertThat(priced.getTotal()).isEqualTo(new BigDecimal("60.27"));
+        assertThat(priced.getTotalMinor()).isEqualTo(6027);
+        assertThat(priced.getItemCount()).isEqualTo(6);
+        assertThat(priced.getLines()).extracting(CartPricing.LinePrice::getLineTotal)
+                .containsExactly(new BigDecimal("0.30"), new BigDecimal("59.97"));
+    }
+
+    @Test
+    void keepsCachedTotalsInStepWithAddsAndRemoves() {
+        Long widget = product(19.99);
+        Long gadget = product(19.99);
+        CartItem first = addItem(2L, widget, 1);
+        assertThat(pricing.price(2L, false).block().getTotalMinor()).isEqualTo(1999);
+
+        addItem(2L, gadget, 2);
+        assertThat(pricing.price(2L, false).block().getTotalMinor()).isEqualTo(5997);
+
+        cartItems.deleteById(first.getId()).block();
+        pricing.itemRemoved(first);
+        CartPricing priced = pricing.price(2L, true).block();
+        assertThat(priced.getTotalMinor()).isEqualTo(3998);
+        assertThat(priced.getLines()).hasSize(1);
+    }
+
+    @Test
+    void cachedTotalsAreDroppedOnClearCartEvent() {
+        Long widget = product(5.0);
+        addItem(3L, widget, 1);
+        assertThat(pricing.price(3L, false).block().getTotalMinor()).isEqualTo(500);
+
+        // Change the cart behind the service's back, then announce it
+        cartItems.deleteAll().block();
+        events.publishClearCartEvent(3L, 1L).block();
+
+        assertThat(pricing.price(3L, false).block().getTotalMinor()).isZero();
+    }
+
+    @Test
+    void deletingAProductDropsItsLinesFromCachedTotals() {
+        Long widget = product(5.0);
+        Long gadget = product(7.0);
+        addItem(4L, widget, 1);
+        addItem(4L, gadget, 1);
+        assertThat(pricing.price(4L, false).block().getTotalMinor()).isEqualTo(1200);
+
+        ProductHandler handler = new ProductHandler(products,
+                new ProductSearchService(products, Duration.ofMillis(25), 100, 64, 2, 4), pricing, null,
+                new ResourceVersions(events, Duration.ofMinutes(5), 100_000), new MultiGet(100, 500),
+                new SingleFlight(new SimpleMeterRegistry()),
+                new ProductCatalog(products, false, "", DataSize.ofMegabytes(1), 1000, Duration.ZERO));
+        ServerResponse deleted = handler.delete(MockServerRequest.builder()
+                .pathVariable("id", gadget.toString())
+                .build()).block();
+        assertThat(deleted.statusCode()).isEqualTo(HttpStatus.NO_CONTENT);
+
+        CartPricing priced = pricing.price(4L, true).block();
+        assertThat(priced.getTotalMinor()).isEqualTo(500);
+        assertThat(priced.getLines()).extracting(CartPricing.LinePrice::getProductId).containsExactly(widget);
+    }
+}
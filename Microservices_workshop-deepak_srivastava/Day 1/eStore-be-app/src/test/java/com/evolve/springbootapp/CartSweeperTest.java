@@ -0,0 +1,174 @@
+package com.evolve.springbootapp;
+
+import com.evolve.etag.ResourceVersions;
+import com.evolve.maintenance.CartSweeper;
+import com.evolve.metrics.CartEventMetrics;
+import com.evolve.model.CartEvent;
+import com.evolve.model.CartEventType;
+import com.evolve.service.CartEventService;
+import com.evolve.transport.InJvmCartEventTransport;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CartSweeperTest {
+
+    private ConnectionFactory connectionFactory;
+    private DatabaseClient databaseClient;
+    private CartEventService events;
+    private ResourceVersions versions;
+    private SimpleMeterRegistry registry;
+    private final List<CartEvent> published = new CopyOnWriteArrayList<>();
+    private Disposable subscription;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        TestDatabase database = TestDatabase.create("sweep");
+        connectionFactory = database.connectionFactory();
+        databaseClient = database.client();
+        events = new CartEventService(new InJvmCartEventTransport(), new CartEventMetrics(new SimpleMeterRegistry()));
+        // Not started, so only the sweep itself can change a tag
+        versions = new ResourceVersions(events, Duration.ofMinutes(1), 1000);
+        subscription = events.subscribeToCartEvents()
+                .filter(event -> event.getEventType() == CartEventType.UPDATE_CART)
+                .subscribe(published::add);
+    }
+
+    @AfterEach
+    void tearDown() {
+        subscription.dispose();
+    }
+
+    // Small chunks so every sweep spans several; no resting between them
+    private CartSweeper sweeper(ConnectionFactory connections, Duration busyBackoff) {
+        registry = new SimpleMeterRegistry();
+        return new CartSweeper(DatabaseClient.create(connections), connections, events, versions, registry,
+                false, Duration.ofHours(1), Duration.ofHours(24), 2, 2, 1.0, busyBackoff);
+    }
+
+    private long cart(String status, int idleHours) {
+        long id = databaseClient.sql("SELECT id FROM FINAL TABLE (INSERT INTO carts (user_id, status) VALUES (9, :status))")
+                .bind("status", status)
+                .map(row -> row.get("id", Long.class))
+                .one()
+                .block();
+        databaseClient.sql("UPDATE carts SET updated_at = DATEADD(HOUR, -:hours, LOCALTIMESTAMP) WHERE id = :id")
+                .bind("hours", idleHours)
+                .bind("id", id)
+                .then()
+                .block();
+        return id;
+    }
+
+    private void item(long cartId, long productId, int idleHours) {
+        databaseClient.sql("INSERT INTO cart_items (cart_id, product_id, quantity, updated_at) "
+                        + "VALUES (:cartId, :productId, 1, DATEADD(HOUR, -:hours, LOCALTIMESTAMP))")
+                .bind("cartId", cartId)
+                .bind("productId", productId)
+                .bind("hours", idleHours)
+                .then()
+                .block();
+    }
+
+    private String status(long cartId) {
+        return databaseClient.sql("SELECT status FROM carts WHERE id = :id")
+                .bind("id", cartId)
+                .map(row -> row.get("status", String.class))
+                .one()
+                .block();
+    }
+
+    private long itemCount() {
+        return databaseClient.sql("SELECT COUNT(*) AS n FROM cart_items").map(row -> row.get("n", Long.class)).one().block();
+    }
+
+    @Test
+    void marksOnlyIdleActiveCartsAbandoned() {
+        long idleEmpty = cart("active", 48);
+        long idleWithOldItems = cart("active", 48);
+        item(idleWithOldItems, 1, 30);
+        long idleWithRecentItem = cart("active", 48);
+        item(idleWithRecentItem, 1, 30);
+        item(idleWithRecentItem, 2, 1);
+        long recent = cart("active", 1);
+        long checkedOut = cart("checked_out", 48);
+        String idleTag = versions.etag(ResourceVersions.CARTS, idleEmpty);
+        String recentTag = versions.etag(ResourceVersions.CARTS, recent);
+
+        sweeper(connectionFactory, Duration.ofMillis(10)).sweep().block();
+
+        assertThat(status(idleEmpty)).isEqualTo("abandoned");
+        assertThat(status(idleWithOldItems)).isEqualTo("abandoned");
+        assertThat(status(idleWithRecentItem)).isEqualTo("active");
+        assertThat(status(recent)).isEqualTo("active");
+        assertThat(status(checkedOut)).isEqualTo("checked_out");
+        assertThat(versions.etag(ResourceVersions.CARTS, idleEmpty)).isNotEqualTo(idleTag);
+        assertThat(versions.etag(ResourceVersions.CARTS, recent)).isEqualTo(recentTag);
+        assertThat(published).extracting(CartEvent::getCartId).containsExactlyInAnyOrder(idleEmpty, idleWithOldItems);
+        assertThat(published).extracting(CartEvent::getCartStatus).containsOnly("abandoned");
+        assertThat(registry.counter(CartSweeper.ABANDONED).count()).isEqualTo(2);
+        assertThat(registry.counter(CartSweeper.SCANNED, "table", "carts").count()).isEqualTo(5);
+        assertThat(registry.timer(CartSweeper.CHUNKS).count()).isGreaterThanOrEqualTo(3);
+        assertThat(registry.get(CartSweeper.PROGRESS).gauge().value()).isEqualTo(1.0);
+    }
+
+    @Test
+    void deletesItemsWhoseCartIsGone() {
+        long kept = cart("active", 1);
+        long deleted = cart("active", 1);
+        for (long productId = 1; productId <= 5; productId++) {
+            item(kept, productId, 1);
+            item(deleted, productId, 1);
+        }
+        databaseClient.sql("DELETE FROM carts WHERE id = :id").bind("id", deleted).then().block();
+
+        sweeper(connectionFactory, Duration.ofMillis(10)).sweep().block();
+
+        assertThat(itemCount()).isEqualTo(5);
+        assertThat(registry.counter(CartSweeper.ORPHANS_DELETED).count()).isEqualTo(5);
+        assertThat(registry.counter(CartSweeper.SCANNED, "table", "cart_items").count()).isEqualTo(10);
+        assertThat(status(kept)).isEqualTo("active");
+    }
+
+    @Test
+    void waitsWhileForegroundRequestsQueueForAConnection() throws InterruptedException {
+        long idle = cart("active", 48);
+        ConnectionPool pool = new ConnectionPool(ConnectionPoolConfiguration.builder(connectionFactory).maxSize(1).build());
+        try {
+            Connection held = Mono.from(pool.create()).block();
+            // A foreground request now queues for the only connection
+            Disposable foreground = Mono.from(pool.create())
+                    .flatMap(connection -> Mono.from(connection.close()))
+                    .subscribe();
+            CountDownLatch swept = new CountDownLatch(1);
+            sweeper(pool, Duration.ofMillis(20)).sweep().subscribe(null, e -> { }, swept::countDown);
+
+            assertThat(swept.await(300, TimeUnit.MILLISECONDS)).isFalse();
+            assertThat(registry.counter(CartSweeper.YIELDS).count()).isPositive();
+
+            Mono.from(held.close()).block();
+            assertThat(swept.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(status(idle)).isEqualTo("abandoned");
+            foreground.dispose();
+        } finally {
+            pool.dispose();
+        }
+    }
+}
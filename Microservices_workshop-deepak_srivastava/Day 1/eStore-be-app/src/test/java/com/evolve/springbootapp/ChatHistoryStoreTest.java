@@ -0,0 +1,110 @@
+package com.evolve.springbootapp;
+
+import com.evolve.chat.ChatHistoryStore;
+import com.evolve.grpc.ChatProto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ChatHistoryStoreTest {
+
+    @TempDir
+    Path dir;
+
+    private ChatHistoryStore store;
+
+    @AfterEach
+    void tearDown() {
+        if (store != null) {
+            store.close();
+        }
+    }
+
+    private ChatHistoryStore open(int segmentBytes, int retentionSegments) throws IOException {
+        store = new ChatHistoryStore(dir, segmentBytes, 16, Duration.ofMillis(50),
+                retentionSegments, Duration.ofDays(1), 100);
+        store.open();
+        return store;
+    }
+
+    private static ChatProto.ChatMessage message(String room, String text) {
+        return ChatProto.ChatMessage.newBuilder().setUser("Alice").setText(text).setRoom(room).build();
+    }
+
+    @Test
+    void replaysLastMessagesOfRoomInOrder() throws IOException {
+        ChatHistoryStore history = open(64 * 1024, 4);
+        for (int i = 0; i < 10; i++) {
+            history.append(message("lobby", "lobby-" + i));
+            history.append(message("support", "support-" + i));
+        }
+
+        StepVerifier.create(history.lastMessages("lobby", 3).map(ChatProto.ChatMessage::getText))
+                .expectNext("lobby-7", "lobby-8", "lobby-9")
+                .verifyComplete();
+    }
+
+    @Test
+    void messagesWithoutRoomGoToDefaultRoom() throws IOException {
+        ChatHistoryStore history = open(64 * 1024, 4);
+        history.append(ChatProto.ChatMessage.newBuilder().setUser("Bob").setText("Hi").build());
+
+        StepVerifier.create(history.lastMessages(ChatHistoryStore.DEFAULT_ROOM, 10))
+                .expectNextMatches(m -> m.getText().equals("Hi") && m.getTimestamp() > 0)
+                .verifyComplete();
+    }
+
+    @Test
+    void rollsSegmentsAndReadsAcrossThem() throws IOException {
+        ChatHistoryStore history = open(256, 100);
+        for (int i = 0; i < 50; i++) {
+            history.append(message("lobby", "m-" + i));
+        }
+
+        assertThat(segmentCount()).isGreaterThan(1);
+        StepVerifier.create(history.lastMessages("lobby", 50).count())
+                .expectNext(50L)
+                .verifyComplete();
+    }
+
+    @Test
+    void retentionDropsOldestSegments() throws IOException {
+        ChatHistoryStore history = open(256, 2);
+        for (int i = 0; i < 50; i++) {
+            history.append(message("lobby", "m-" + i));
+        }
+
+        assertThat(segmentCount()).isEqualTo(2);
+        StepVerifier.create(history.lastMessages("lobby", 100).map(ChatProto.ChatMessage::getText).last())
+                .expectNext("m-49")
+                .verifyComplete();
+    }
+
+    @Test
+    void recoversMessagesAfterReopen() throws IOException {
+        open(64 * 1024, 4).append(message("lobby", "before restart"));
+        store.close();
+
+        ChatHistoryStore reopened = open(64 * 1024, 4);
+        reopened.append(message("lobby", "after restart"));
+
+        StepVerifier.create(reopened.lastMessages("lobby", 10).map(ChatProto.ChatMessage::getText))
+                .expectNext("before restart", "after restart")
+                .verifyComplete();
+    }
+
+    private long segmentCount() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.count();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.evolve.springbootapp;
+
+import com.evolve.dto.OrderWithItems;
+import com.evolve.etag.ResourceVersions;
+import com.evolve.exception.OrderException;
+import com.evolve.metrics.CartEventMetrics;
+import com.evolve.model.Cart;
+import com.evolve.model.CartItem;
+import com.evolve.repository.CartItemRepository;
+import com.evolve.repository.CartRepository;
+import com.evolve.repository.OrderItemRepository;
+import com.evolve.repository.OrderRepository;
+import com.evolve.repository.ProductRepository;
+import com.evolve.service.CartEventService;
+import com.evolve.service.CheckoutService;
+import com.evolve.transport.InJvmCartEventTransport;
+import com.evolve.writebehind.CartItemWriteBuffer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.r2dbc.repository.support.R2dbcRepositoryFactory;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CheckoutServiceTest {
+
+    private CartRepository carts;
+    private CartItemRepository cartItems;
+    private OrderRepository orders;
+    private OrderItemRepository orderItems;
+    private ResourceVersions versions;
+    private CheckoutService checkout;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        TestDatabase database = TestDatabase.create("checkout");
+        DatabaseClient databaseClient = database.client();
+        // A second product at the sample product's price, as a cart holds one line per product
+        databaseClient.sql("INSERT INTO products (name, description, price) VALUES ('Mac Mini', 'Desktop', 92000)")
+                .then().block();
+
+        R2dbcRepositoryFactory repositories = database.repositories();
+        carts = repositories.getRepository(CartRepository.class);
+        cartItems = repositories.getRepository(CartItemRepository.class);
+        orders = repositories.getRepository(OrderRepository.class);
+        orderItems = repositories.getRepository(OrderItemRepository.class);
+        TransactionalOperator transactionalOperator = TransactionalOperator.create(new R2dbcTransactionManager(database.connectionFactory()));
+        CartEventService events = new CartEventService(new InJvmCartEventTransport(),
+                new CartEventMetrics(new SimpleMeterRegistry()));
+        CartItemWriteBuffer writeThrough = new CartItemWriteBuffer(cartItems, carts, events, databaseClient,
+                transactionalOperator, new SimpleMeterRegistry(), false, Duration.ofMinutes(1), 1000, 500);
+        // Not started, so only checkout itself can change a tag
+        versions = new ResourceVersions(events, Duration.ofMinutes(1), 1000);
+        checkout = new CheckoutService(carts, cartItems, repositories.getRepository(ProductRepository.class),
+                orders, databaseClient, transactionalOperator, events, writeThrough, versions);
+    }
+
+    private Long activeCart(Long userId, long... productIds) {
+        Cart cart = new Cart();
+        cart.setUserId(userId);
+        cart.setStatus("active");
+        Long cartId = carts.save(cart).block().getId();
+        for (long productId : productIds) {
+            CartItem item = new CartItem();
+            item.setCartId(cartId);
+            item.setProductId(productId);
+            item.setQuantity(2);
+            cartItems.save(item).block();
+        }
+        return cartId;
+    }
+
+    @Test
+    void movesCartLinesIntoOrderAndChecksOutCart() {
+        Long cartId = activeCart(5L, 1, 2);
+
+        OrderWithItems placed = checkout.checkout(5L).block();
+
+        assertThat(placed.getOrder().getCartId()).isEqualTo(cartId);
+        assertThat(placed.getItems()).hasSize(2)
+                .allSatisfy(line -> {
+                    assertThat(line.getId()).isNotNull();
+                    assertThat(line.getUnitPrice()).isEqualTo(92000.0);
+                });
+        assertThat(orderItems.findAllByOrderId(placed.getOrder().getId()).count().block()).isEqualTo(2);
+        assertThat(carts.findById(cartId).block().getStatus()).isEqualTo("checked_out");
+    }
+
+    @Test
+    void checkoutChangesTheCartsTagWithoutWaitingForTheEvent() {
+        Long cartId = activeCart(9L, 1);
+        String before = versions.etag(ResourceVersions.CARTS, cartId);
+
+        checkout.checkout(9L).block();
+
+        assertThat(versions.etag(ResourceVersions.CARTS, cartId)).isNotEqualTo(before);
+    }
+
+    @Test
+    void rejectsMissingOrEmptyCart() {
+        StepVerifier.create(checkout.checkout(6L))
+                .expectErrorSatisfies(e -> assertThat(e).isInstanceOf(OrderException.class).hasMessageContaining("No active cart"))
+                .verify();
+
+        activeCart(6L);
+        StepVerifier.create(checkout.checkout(6L))
+                .expectErrorSatisfies(e -> assertThat(e).isInstanceOf(OrderException.class).hasMessageContaining("is empty"))
+                .verify();
+    }
+
+    @Test
+    void rollsBackCartClaimWhenAnyLineFails() {
+        Long cartId = activeCart(7L, 1, 999);
+
+        StepVerifier.create(checkout.checkout(7L))
+                .expectErrorSatisfies(e -> assertThat(e).isInstanceOf(OrderException.class).hasMessageContaining("999"))
+                .verify();
+
+        assertThat(carts.findById(cartId).block().getStatus()).isEqualTo("active");
+        assertThat(orders.count().block()).isZero();
+        assertThat(orderItems.count().block()).isZero();
+    }
+
+    @Test
+    void concurrentCheckoutsOfSameCartPlaceOneOrder() {
+        activeCart(8L, 1);
+
+        long placed = Flux.range(0, 4)
+                .flatMap(i -> checkout.checkout(8L).onErrorResume(OrderException.class, e -> Mono.empty()))
+                .count()
+                .block();
+
+        assertThat(placed).isEqualTo(1);
+        assertThat(orders.count().block()).isEqualTo(1);
+    }
+}
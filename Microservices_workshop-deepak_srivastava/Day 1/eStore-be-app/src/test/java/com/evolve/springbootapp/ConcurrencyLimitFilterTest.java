@@ -0,0 +1,257 @@
+package com.evolve.springbootapp;
+
+import com.evolve.concurrency.AdaptiveConcurrencyLimit;
+import com.evolve.filter.ConcurrencyLimitFilter;
+import com.evolve.warmup.WarmUp;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.codec.HttpMessageWriter;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.reactive.function.server.HandlerFilterFunction;
+import org.springframework.web.reactive.function.server.HandlerFunction;
+import org.springframework.web.reactive.function.server.HandlerStrategies;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.reactive.result.view.ViewResolver;
+import org.springframework.web.util.pattern.PathPatternParser;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ConcurrencyLimitFilterTest {
+
+    private static final long MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final ServerResponse.Context CONTEXT = new ServerResponse.Context() {
+        @Override
+        public List<HttpMessageWriter<?>> messageWriters() {
+            return HandlerStrategies.withDefaults().messageWriters();
+        }
+
+        @Override
+        public List<ViewResolver> viewResolvers() {
+            return List.of();
+        }
+    };
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final List<Sinks.One<ServerResponse>> pending = new ArrayList<>();
+
+    // Each request stays in flight until its sink is completed
+    private final HandlerFunction<ServerResponse> handler = request -> {
+        Sinks.One<ServerResponse> sink = Sinks.one();
+        pending.add(sink);
+        return sink.asMono();
+    };
+
+    private ConcurrencyLimitFilter filter(int limit) {
+        return new ConcurrencyLimitFilter(registry, limit, limit, limit, 1.5, 0.2, 0.5, 0.8);
+    }
+
+    // As routed: with the route template the router matched
+    private static ServerRequest request(HttpMethod method, String pattern, String path) {
+        return request(MockServerHttpRequest.method(method, path).build(), pattern);
+    }
+
+    private static ServerRequest request(MockServerHttpRequest httpRequest, String pattern) {
+        ServerRequest request = ServerRequest.create(MockServerWebExchange.from(httpRequest), HandlerStrategies.withDefaults().messageReaders());
+        request.attributes().put(RouterFunctions.MATCHING_PATTERN_ATTRIBUTE, PathPatternParser.defaultInstance.parse(pattern));
+        return request;
+    }
+
+    private static HttpStatus status(Mono<ServerResponse> response) {
+        return HttpStatus.valueOf(response.block().statusCode().value());
+    }
+
+    // As the server does: the request stays in flight until its response has been written
+    private static Disposable serve(HandlerFilterFunction<ServerResponse, ServerResponse> filter, ServerRequest request,
+                                    HandlerFunction<ServerResponse> handler) {
+        return filter.filter(request, handler)
+                .flatMap(response -> response.writeTo(request.exchange(), CONTEXT))
+                .subscribe();
+    }
+
+    private void completeOne() {
+        pending.remove(0).tryEmitValue(ServerResponse.ok().build().block());
+    }
+
+    @Test
+    void failsFastAtTheLimitAndAdmitsAgainOnceARequestCompletes() {
+        // Writes may fill 80% of the limit: 4 of 5
+        ConcurrencyLimitFilter filter = filter(5);
+        for (int i = 0; i < 4; i++) {
+            serve(filter, request(HttpMethod.POST, "/carts/user/{userId}", "/carts/user/" + i), handler);
+        }
+
+        ServerResponse shed = filter.filter(request(HttpMethod.POST, "/carts/user/{userId}", "/carts/user/9"), handler).block();
+
+        assertThat(shed.statusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(shed.headers().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+        assertThat(pending).hasSize(4);
+
+        completeOne();
+        serve(filter, request(HttpMethod.POST, "/carts/user/{userId}", "/carts/user/9"), handler);
+        assertThat(pending).hasSize(4);
+        assertThat(registry.get(ConcurrencyLimitFilter.METRIC).tag("priority", "write").tag("outcome", "shed")
+                .counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void shedsReadsBeforeCheckout() {
+        ConcurrencyLimitFilter filter = filter(10);
+        HandlerFilterFunction<ServerResponse, ServerResponse> orders =
+                filter.withCritical(HttpMethod.POST, "/orders/user/{userId}");
+        for (int i = 0; i < 5; i++) {
+            serve(orders, request(HttpMethod.GET, "/orders/{id}", "/orders/" + i), handler);
+        }
+
+        // Reads may fill half the limit, other writes 80%, checkout all of it
+        assertThat(status(filter.filter(request(HttpMethod.GET, "/carts/{id}", "/carts/1"), handler)))
+                .isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        // A multi-get is a read, though it is a POST
+        assertThat(status(filter.filter(request(HttpMethod.POST, "/carts/batch", "/carts/batch"), handler)))
+                .isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        for (int i = 0; i < 3; i++) {
+            serve(orders, request(HttpMethod.PUT, "/orders/{id}", "/orders/" + i), handler);
+        }
+        assertThat(status(orders.filter(request(HttpMethod.PUT, "/orders/{id}", "/orders/9"), handler)))
+                .isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        serve(orders, request(HttpMethod.POST, "/orders/user/{userId}", "/orders/user/1"), handler);
+        serve(orders, request(HttpMethod.POST, "/orders/user/{userId}", "/orders/user/2"), handler);
+        assertThat(pending).hasSize(10);
+        assertThat(status(orders.filter(request(HttpMethod.POST, "/orders/user/{userId}", "/orders/user/3"), handler)))
+                .isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    @Test
+    void cancelledRequestsGiveBackTheirSlot() {
+        ConcurrencyLimitFilter filter = filter(1);
+        Disposable abandoned = serve(filter, request(HttpMethod.GET, "/carts/{id}", "/carts/1"), handler);
+        assertThat(status(filter.filter(request(HttpMethod.GET, "/carts/{id}", "/carts/1"), handler)))
+                .isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+
+        abandoned.dispose();
+
+        serve(filter, request(HttpMethod.GET, "/carts/{id}", "/carts/1"), handler);
+        assertThat(pending).hasSize(2);
+    }
+
+    @Test
+    void aStreamedBodyHoldsItsSlotUntilItIsWritten() {
+        ConcurrencyLimitFilter filter = filter(1);
+        Sinks.Many<String> rows = Sinks.many().unicast().onBackpressureBuffer();
+        serve(filter, request(HttpMethod.GET, "/carts", "/carts"), request -> ServerResponse.ok().body(rows.asFlux(), String.class));
+
+        // The response is out but its query is still running
+        assertThat(status(filter.filter(request(HttpMethod.GET, "/carts/{id}", "/carts/1"), handler)))
+                .isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+
+        rows.tryEmitNext("cart 1");
+        rows.tryEmitComplete();
+        serve(filter, request(HttpMethod.GET, "/carts/{id}", "/carts/1"), handler);
+        assertThat(pending).hasSize(1);
+    }
+
+    @Test
+    void warmUpRequestsBypassTheLimit() {
+        ConcurrencyLimitFilter filter = filter(1);
+        serve(filter, request(HttpMethod.GET, "/carts/{id}", "/carts/1"), handler);
+        HttpHeaders marked = new HttpHeaders();
+        WarmUp.mark(marked);
+        MockServerHttpRequest warmUp = MockServerHttpRequest.get("/carts/2").headers(marked).build();
+        MockServerHttpRequest spoofed = MockServerHttpRequest.get("/carts/3").header(WarmUp.HEADER, "true").build();
+
+        serve(filter, request(warmUp, "/carts/{id}"), handler);
+
+        assertThat(pending).hasSize(2);
+        assertThat(status(filter.filter(request(spoofed, "/carts/{id}"), handler)))
+                .isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(registry.get(ConcurrencyLimitFilter.METRIC).tag("priority", "read").tag("outcome", "admitted")
+                .counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void aLongImportDoesNotMoveTheLimit() throws InterruptedException {
+        ConcurrencyLimitFilter plain = new ConcurrencyLimitFilter(new SimpleMeterRegistry(), 40, 4, 40, 1.5, 0.2, 0.5, 0.8);
+        ConcurrencyLimitFilter marked = new ConcurrencyLimitFilter(new SimpleMeterRegistry(), 40, 4, 40, 1.5, 0.2, 0.5, 0.8);
+
+        assertThat(afterAnImport(plain, plain)).isLessThan(40);
+        assertThat(afterAnImport(marked, marked.withLongRunning(HttpMethod.POST, "/products/import"))).isEqualTo(40);
+    }
+
+    // Fast reads, then an import many times slower finishing while the limit is half in use
+    private int afterAnImport(ConcurrencyLimitFilter limit, HandlerFilterFunction<ServerResponse, ServerResponse> products)
+            throws InterruptedException {
+        serve(products, request(HttpMethod.POST, "/products/import", "/products/import"), handler);
+        for (int i = 0; i < 19; i++) {
+            serve(products, request(HttpMethod.GET, "/products/{id}", "/products/" + i), handler);
+        }
+        while (pending.size() > 1) {
+            pending.remove(1).tryEmitValue(ServerResponse.ok().build().block());
+        }
+        Thread.sleep(200);
+        for (int i = 0; i < 19; i++) {
+            serve(products, request(HttpMethod.GET, "/products/{id}", "/products/" + i), handler);
+        }
+
+        completeOne();
+        int after = limit.currentLimit();
+        while (!pending.isEmpty()) {
+            completeOne();
+        }
+        return after;
+    }
+
+    @Test
+    void limitFollowsLatency() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(20, 4, 200, 1.5, 0.2);
+
+        // Busy and fast: room to grow
+        run(limit, 200, 10 * MILLI);
+        int grown = limit.limit();
+        assertThat(grown).isGreaterThan(20);
+
+        // Latency triples as requests queue downstream: back off
+        run(limit, 50, 30 * MILLI);
+        int shrunk = limit.limit();
+        assertThat(shrunk).isLessThan(grown / 2);
+
+        // Queue drained: grow again
+        run(limit, 300, 10 * MILLI);
+        assertThat(limit.limit()).isGreaterThan(shrunk);
+    }
+
+    @Test
+    void limitDoesNotGrowWhileMostlyIdle() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(20, 4, 200, 1.5, 0.2);
+
+        for (int i = 0; i < 500; i++) {
+            assertThat(limit.tryAcquire(1.0)).isTrue();
+            limit.release(10 * MILLI);
+        }
+
+        assertThat(limit.limit()).isEqualTo(20);
+    }
+
+    // Keeps the whole limit in flight and completes requests with the given latency
+    private static void run(AdaptiveConcurrencyLimit limit, int samples, long rttNanos) {
+        for (int i = 0; i < samples; i++) {
+            while (limit.tryAcquire(1.0)) {
+            }
+            limit.release(rttNanos);
+        }
+        while (limit.inFlight() > 0) {
+            limit.release(-1);
+        }
+    }
+}
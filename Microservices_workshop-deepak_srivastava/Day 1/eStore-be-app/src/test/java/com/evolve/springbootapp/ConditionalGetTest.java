@@ -0,0 +1,164 @@
+package com.evolve.springbootapp;
+
+import com.evolve.batch.SingleFlight;
+import com.evolve.etag.ResourceVersions;
+import com.evolve.handler.MultiGet;
+import com.evolve.handler.UserHandler;
+import com.evolve.metrics.CartEventMetrics;
+import com.evolve.model.CartEvent;
+import com.evolve.model.CartEventType;
+import com.evolve.model.Usr;
+import com.evolve.repository.UserRepository;
+import com.evolve.service.CartEventService;
+import com.evolve.service.UserOverviewService;
+import com.evolve.transport.InJvmCartEventTransport;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.reactive.server.EntityExchangeResult;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.server.RequestPredicates;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ConditionalGetTest {
+
+    private final UserRepository users = mock(UserRepository.class);
+    private final CartEventService events =
+            new CartEventService(new InJvmCartEventTransport(), new CartEventMetrics(new SimpleMeterRegistry()));
+    private ResourceVersions versions;
+    private WebTestClient client;
+
+    @BeforeEach
+    void setUp() {
+        versions = new ResourceVersions(events, Duration.ofMinutes(1), 1000);
+        versions.start();
+        UserHandler handler = new UserHandler(users, versions, new MultiGet(100, 500),
+                mock(UserOverviewService.class), new SingleFlight(new SimpleMeterRegistry()));
+        client = WebTestClient.bindToRouterFunction(RouterFunctions
+                        .route(RequestPredicates.GET("/users/{id}"), handler::getById)
+                        .andRoute(RequestPredicates.PUT("/users/{id}"), handler::update))
+                .build();
+        when(users.findById(1L)).thenReturn(Mono.just(user("Asha")));
+        when(users.save(any(Usr.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+    }
+
+    private static Usr user(String name) {
+        Usr user = new Usr();
+        user.setId(1L);
+        user.setName(name);
+        user.setEmail("asha@example.com");
+        return user;
+    }
+
+    @AfterEach
+    void tearDown() {
+        versions.stop();
+    }
+
+    private String get() {
+        return client.get().uri("/users/1").exchange()
+                .expectStatus().isOk()
+                .returnResult(String.class).getResponseHeaders().getETag();
+    }
+
+    @Test
+    void repeatedPollIsAnswered304WithoutReadingTheUser() {
+        String etag = get();
+
+        for (int i = 0; i < 5; i++) {
+            client.get().uri("/users/1").header(HttpHeaders.IF_NONE_MATCH, etag).exchange()
+                    .expectStatus().isNotModified()
+                    .expectHeader().valueEquals(HttpHeaders.ETAG, etag)
+                    .expectBody().isEmpty();
+        }
+
+        verify(users, times(1)).findById(1L);
+    }
+
+    @Test
+    void anUpdateChangesTheTag() {
+        String before = get();
+
+        client.put().uri("/users/1").bodyValue("{\"name\":\"Asha R\",\"email\":\"asha@example.com\"}")
+                .header(HttpHeaders.CONTENT_TYPE, "application/json")
+                .exchange()
+                .expectStatus().isOk();
+
+        String after = client.get().uri("/users/1").header(HttpHeaders.IF_NONE_MATCH, before).exchange()
+                .expectStatus().isOk()
+                .returnResult(String.class).getResponseHeaders().getETag();
+        assertThat(after).isNotEqualTo(before);
+    }
+
+    @Test
+    void aReadAfterAWriteDoesNotJoinTheReadInFlightBeforeIt() throws Exception {
+        Sinks.One<Usr> slowRead = Sinks.one();
+        // The first GET, then the PUT, which renames what it read, then the second GET
+        when(users.findById(1L)).thenReturn(slowRead.asMono())
+                .thenReturn(Mono.just(user("Asha")))
+                .thenReturn(Mono.just(user("Asha R")));
+        CompletableFuture<EntityExchangeResult<Usr>> first = CompletableFuture.supplyAsync(() ->
+                client.get().uri("/users/1").exchange().expectStatus().isOk().expectBody(Usr.class).returnResult());
+        verify(users, timeout(5000)).findById(1L);
+
+        client.put().uri("/users/1").bodyValue("{\"name\":\"Asha R\",\"email\":\"asha@example.com\"}")
+                .header(HttpHeaders.CONTENT_TYPE, "application/json")
+                .exchange()
+                .expectStatus().isOk();
+        EntityExchangeResult<Usr> second = client.get().uri("/users/1").exchange()
+                .expectStatus().isOk().expectBody(Usr.class).returnResult();
+        slowRead.tryEmitValue(user("Asha"));
+
+        assertThat(second.getResponseBody().getName()).isEqualTo("Asha R");
+        assertThat(first.get(5, TimeUnit.SECONDS).getResponseBody().getName()).isEqualTo("Asha");
+        assertThat(first.get().getResponseHeaders().getETag()).isNotEqualTo(second.getResponseHeaders().getETag());
+        verify(users, times(3)).findById(1L);
+    }
+
+    @Test
+    void cartEventsChangeCartAndItemTags() {
+        String items = versions.etag(ResourceVersions.CART_ITEMS, 7L);
+        String cart = versions.etag(ResourceVersions.CARTS, 7L);
+
+        // As published by another node or by the sweeper
+        events.publishCartEvent(new CartEvent(CartEventType.ADD_ITEM, 7L, 1L, 3L, 1, null)).block();
+
+        assertThat(versions.etag(ResourceVersions.CART_ITEMS, 7L)).isNotEqualTo(items);
+        assertThat(versions.etag(ResourceVersions.CARTS, 7L)).isEqualTo(cart);
+
+        events.publishUpdateCartEvent(7L, 1L, "checked_out").block();
+
+        assertThat(versions.etag(ResourceVersions.CARTS, 7L)).isNotEqualTo(cart);
+    }
+
+    @Test
+    void droppedEntriesNeverMatchAnOldTag() {
+        ResourceVersions small = new ResourceVersions(events, Duration.ofMinutes(1), 2);
+        String first = small.etag(ResourceVersions.USERS, 1L);
+
+        for (long id = 2; id < 100; id++) {
+            small.etag(ResourceVersions.USERS, id);
+        }
+        ResourceVersions expiring = new ResourceVersions(events, Duration.ZERO, 1000);
+        String once = expiring.etag(ResourceVersions.USERS, 1L);
+
+        assertThat(small.etag(ResourceVersions.USERS, 1L)).isNotEqualTo(first);
+        assertThat(expiring.etag(ResourceVersions.USERS, 1L)).isNotEqualTo(once);
+    }
+}
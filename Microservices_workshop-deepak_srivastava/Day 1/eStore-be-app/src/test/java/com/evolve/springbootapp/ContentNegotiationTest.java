@@ -0,0 +1,185 @@
+package com.evolve.springbootapp;
+
+import com.evolve.batch.SingleFlight;
+import com.evolve.codec.ModelProto;
+import com.evolve.config.WebFluxConfig;
+import com.evolve.dto.OrderWithItems;
+import com.evolve.etag.ResourceVersions;
+import com.evolve.filter.ContentNegotiationFilter;
+import com.evolve.handler.MultiGet;
+import com.evolve.handler.UserHandler;
+import com.evolve.metrics.CartEventMetrics;
+import com.evolve.model.Cart;
+import com.evolve.model.Order;
+import com.evolve.model.OrderItem;
+import com.evolve.model.Usr;
+import com.evolve.repository.UserRepository;
+import com.evolve.service.CartEventService;
+import com.evolve.service.UserOverviewService;
+import com.evolve.transport.InJvmCartEventTransport;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.EntityExchangeResult;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.server.HandlerStrategies;
+import org.springframework.web.reactive.function.server.RequestPredicates;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ContentNegotiationTest {
+
+    private static final MediaType PROTOBUF = MediaType.parseMediaType("application/x-protobuf");
+
+    private final UserRepository users = mock(UserRepository.class);
+    private final ObjectMapper cbor = WebFluxConfig.cborObjectMapper();
+    private WebTestClient client;
+
+    @BeforeEach
+    void setUp() {
+        CartEventService events = new CartEventService(new InJvmCartEventTransport(), new CartEventMetrics(new SimpleMeterRegistry()));
+        UserHandler handler = new UserHandler(users, new ResourceVersions(events, Duration.ofMinutes(1), 1000),
+                new MultiGet(100, 500), mock(UserOverviewService.class),
+                new SingleFlight(new SimpleMeterRegistry()));
+        client = WebTestClient.bindToRouterFunction(RouterFunctions
+                        .route(RequestPredicates.GET("/users"), handler::getAll)
+                        .andRoute(RequestPredicates.GET("/users/{id}"), handler::getById)
+                        .andRoute(RequestPredicates.POST("/users"), handler::create)
+                        .andRoute(RequestPredicates.GET("/carts"), request ->
+                                ServerResponse.ok().body(Flux.just(cart(1L), cart(2L)), Cart.class))
+                        .andRoute(RequestPredicates.GET("/orders/1"), request ->
+                                ServerResponse.ok().bodyValue(order()))
+                        .andRoute(RequestPredicates.GET("/health"), request ->
+                                ServerResponse.ok().bodyValue(Map.of("status", "UP")))
+                        .filter(new ContentNegotiationFilter()))
+                .handlerStrategies(HandlerStrategies.builder().codecs(new WebFluxConfig()::configureHttpMessageCodecs).build())
+                .build();
+        when(users.findById(1L)).thenReturn(Mono.just(user(1L)));
+        when(users.findAll()).thenReturn(Flux.just(user(1L), user(2L)));
+        when(users.save(any(Usr.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+    }
+
+    private static Usr user(Long id) {
+        Usr user = new Usr();
+        user.setId(id);
+        user.setName("User " + id);
+        user.setEmail("user" + id + "@example.com");
+        return user;
+    }
+
+    private static Cart cart(Long id) {
+        Cart cart = new Cart();
+        cart.setId(id);
+        cart.setUserId(7L);
+        cart.setStatus("active");
+        return cart;
+    }
+
+    private static OrderWithItems order() {
+        Order order = new Order();
+        order.setId(1L);
+        order.setStatus("CREATED");
+        order.setUserId(7L);
+        OrderItem item = new OrderItem();
+        item.setId(3L);
+        item.setOrderId(1L);
+        item.setProductId(11L);
+        item.setQuantity(2);
+        item.setUnitPrice(149.5);
+        return new OrderWithItems(order, List.of(item));
+    }
+
+    private EntityExchangeResult<byte[]> get(String uri, String accept) {
+        return client.get().uri(uri).header(HttpHeaders.ACCEPT, accept).exchange()
+                .expectStatus().isOk()
+                .expectBody().returnResult();
+    }
+
+    @Test
+    void cborFluxIsOneArrayAndUserRulesHold() throws IOException {
+        EntityExchangeResult<byte[]> carts = get("/carts", "application/cbor");
+        assertThat(carts.getResponseHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_CBOR);
+        assertThat(carts.getResponseHeaders().getVary()).contains(HttpHeaders.ACCEPT);
+        assertThat(cbor.readValue(carts.getResponseBody(), Cart[].class)).containsExactly(cart(1L), cart(2L));
+
+        // As UserSerializer writes it: email and name, no id
+        JsonNode user = cbor.readTree(get("/users/1", "application/cbor").getResponseBody());
+        assertThat(user.get("email").asText()).isEqualTo("user1@example.com");
+        assertThat(user.get("name").asText()).isEqualTo("User 1");
+        assertThat(user.has("id")).isFalse();
+    }
+
+    @Test
+    void protobufWritesOneMessageOrDelimitedMessages() throws IOException {
+        EntityExchangeResult<byte[]> one = get("/users/1", "application/x-protobuf");
+        assertThat(one.getResponseHeaders().getContentType()).isEqualTo(PROTOBUF);
+        ModelProto.User user = ModelProto.User.parseFrom(one.getResponseBody());
+        assertThat(user.getEmail()).isEqualTo("user1@example.com");
+        assertThat(user.getName()).isEqualTo("User 1");
+
+        ByteArrayInputStream all = new ByteArrayInputStream(get("/users", "application/x-protobuf").getResponseBody());
+        List<String> emails = new ArrayList<>();
+        ModelProto.User next;
+        while ((next = ModelProto.User.parseDelimitedFrom(all)) != null) {
+            emails.add(next.getEmail());
+        }
+        assertThat(emails).containsExactly("user1@example.com", "user2@example.com");
+
+        ModelProto.OrderWithItems order = ModelProto.OrderWithItems.parseFrom(get("/orders/1", "application/x-protobuf").getResponseBody());
+        assertThat(order.getOrder().getStatus()).isEqualTo("CREATED");
+        assertThat(order.getOrder().hasCartId()).isFalse();
+        assertThat(order.getItems(0).getUnitPrice()).isEqualTo(149.5);
+    }
+
+    @Test
+    void protobufRequestBodyIsReadLikeJson() {
+        client.post().uri("/users").contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"name\":\"asha@example.com\",\"email\":\"Asha\"}")
+                .exchange().expectStatus().isOk();
+        client.post().uri("/users").contentType(PROTOBUF)
+                .bodyValue(ModelProto.User.newBuilder().setName("asha@example.com").setEmail("Asha").build().toByteArray())
+                .exchange().expectStatus().isOk();
+
+        // UserDeserializer's swap applies to both
+        ArgumentCaptor<Usr> saved = ArgumentCaptor.forClass(Usr.class);
+        verify(users, times(2)).save(saved.capture());
+        assertThat(saved.getAllValues().get(1)).isEqualTo(saved.getAllValues().get(0));
+        assertThat(saved.getAllValues().get(1).getEmail()).isEqualTo("asha@example.com");
+    }
+
+    @Test
+    void jsonStaysTheDefaultAndTheFallback() {
+        for (String accept : new String[] {"*/*", "application/json", "application/json, application/cbor;q=0.9"}) {
+            assertThat(get("/carts", accept).getResponseHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_JSON);
+        }
+        assertThat(client.get().uri("/carts").exchange().expectBody().returnResult().getResponseHeaders().getContentType())
+                .isEqualTo(MediaType.APPLICATION_JSON);
+
+        // No protobuf mapping for a map: the next type the caller accepts
+        assertThat(get("/health", "application/x-protobuf, application/json;q=0.5").getResponseHeaders().getContentType())
+                .isEqualTo(MediaType.APPLICATION_JSON);
+        assertThat(get("/health", "application/x-protobuf, application/cbor;q=0.8").getResponseHeaders().getContentType())
+                .isEqualTo(MediaType.APPLICATION_CBOR);
+    }
+}
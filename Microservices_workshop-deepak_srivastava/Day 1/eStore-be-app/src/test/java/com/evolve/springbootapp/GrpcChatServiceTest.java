@@ -1,19 +1,53 @@
 package com.evolve.springbootapp;
 
+import com.evolve.chat.ChatHistoryStore;
 import com.evolve.grpc.ChatProto;
 import com.evolve.grpc.ChatServiceImpl;
+import com.evolve.presence.PresenceTracker;
 import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 public class GrpcChatServiceTest {
+
+    @TempDir
+    Path dir;
+
+    // Not started: the wheel only turns when a test advances it
+    private final PresenceTracker presence = new PresenceTracker(Duration.ofSeconds(1), Duration.ofMillis(100), 1);
+    private ChatHistoryStore history;
+    private ChatServiceImpl service;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        history = new ChatHistoryStore(dir, 64 * 1024, 16, Duration.ofMillis(50), 4, Duration.ofDays(1), 100);
+        history.open();
+        service = new ChatServiceImpl(history, presence);
+    }
+
+    @AfterEach
+    void tearDown() {
+        history.close();
+    }
+
+    private static ChatProto.ChatMessage message(String user, String text) {
+        return ChatProto.ChatMessage.newBuilder().setUser(user).setText(text).setRoom("lobby").build();
+    }
+
     @Test
     void chat_echoesMessage() {
-        ChatServiceImpl service = new ChatServiceImpl();
         AtomicReference<ChatProto.ChatMessage> response = new AtomicReference<>();
         StreamObserver<ChatProto.ChatMessage> responseObserver = new StreamObserver<>() {
             @Override
@@ -24,8 +58,7 @@ public class GrpcChatServiceTest {
             @Override public void onCompleted() { }
         };
         StreamObserver<ChatProto.ChatMessage> requestObserver = service.chat(responseObserver);
-        ChatProto.ChatMessage msg = ChatProto.ChatMessage.newBuilder().setUser("Alice").setText("Hello").build();
-        requestObserver.onNext(msg);
+        requestObserver.onNext(message("Alice", "Hello"));
         assertNotNull(response.get());
         assertEquals("Server", response.get().getUser());
         assertTrue(response.get().getText().contains("Echo: Hello"));
@@ -33,7 +66,6 @@ public class GrpcChatServiceTest {
 
     @Test
     void chat_onCompleted_callsResponseCompleted() {
-        ChatServiceImpl service = new ChatServiceImpl();
         AtomicBoolean completed = new AtomicBoolean(false);
         StreamObserver<ChatProto.ChatMessage> responseObserver = new StreamObserver<>() {
             @Override public void onNext(ChatProto.ChatMessage value) { }
@@ -47,7 +79,6 @@ public class GrpcChatServiceTest {
 
     @Test
     void chat_onError_doesNotThrow() {
-        ChatServiceImpl service = new ChatServiceImpl();
         StreamObserver<ChatProto.ChatMessage> responseObserver = new StreamObserver<>() {
             @Override public void onNext(ChatProto.ChatMessage value) { }
             @Override public void onError(Throwable t) { }
@@ -56,4 +87,30 @@ public class GrpcChatServiceTest {
         StreamObserver<ChatProto.ChatMessage> requestObserver = service.chat(responseObserver);
         assertDoesNotThrow(() -> requestObserver.onError(new RuntimeException("test error")));
     }
-} 
\ No newline at end of file
+
+    @Test
+    void chat_tracksPresenceAndKeepsHistory() {
+        StreamObserver<ChatProto.ChatMessage> responseObserver = new StreamObserver<>() {
+            @Override public void onNext(ChatProto.ChatMessage value) { }
+            @Override public void onError(Throwable t) { }
+            @Override public void onCompleted() { }
+        };
+        StreamObserver<ChatProto.ChatMessage> requestObserver = service.chat(responseObserver);
+
+        requestObserver.onNext(message("Alice", "Hello"));
+        requestObserver.onNext(message("Alice", "Anyone here?"));
+        assertTrue(presence.isOnline("Alice"));
+        requestObserver.onCompleted();
+        assertFalse(presence.isOnline("Alice"));
+
+        List<String> replayed = new CopyOnWriteArrayList<>();
+        AtomicBoolean completed = new AtomicBoolean(false);
+        service.history(ChatProto.HistoryRequest.newBuilder().setRoom("lobby").build(), new StreamObserver<>() {
+            @Override public void onNext(ChatProto.ChatMessage value) { replayed.add(value.getText()); }
+            @Override public void onError(Throwable t) { }
+            @Override public void onCompleted() { completed.set(true); }
+        });
+        assertTrue(completed.get());
+        assertEquals(List.of("Hello", "Anyone here?"), replayed);
+    }
+}
@@ -0,0 +1,127 @@
+package com.evolve.springbootapp;
+
+import com.evolve.filter.IdempotencyFilter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ReactiveValueOperations;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.reactive.function.server.HandlerFunction;
+import org.springframework.web.reactive.function.server.HandlerStrategies;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class IdempotencyFilterTest {
+
+    private final Map<String, String> redis = new ConcurrentHashMap<>();
+    private final AtomicInteger executions = new AtomicInteger();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    @SuppressWarnings("unchecked")
+    private final ReactiveRedisTemplate<String, String> template = mock(ReactiveRedisTemplate.class);
+    @SuppressWarnings("unchecked")
+    private final ReactiveValueOperations<String, String> values = mock(ReactiveValueOperations.class);
+    private IdempotencyFilter filter;
+
+    private final HandlerFunction<ServerResponse> handler = request -> request.bodyToMono(String.class)
+            .delayElement(Duration.ofMillis(50))
+            .flatMap(body -> ServerResponse.ok().bodyValue(Map.of("execution", executions.incrementAndGet())));
+
+    @BeforeEach
+    void setUp() {
+        when(template.opsForValue()).thenReturn(values);
+        when(values.setIfAbsent(anyString(), anyString(), any(Duration.class)))
+                .thenAnswer(i -> Mono.fromSupplier(() -> redis.putIfAbsent(i.getArgument(0), i.getArgument(1)) == null));
+        when(values.get(anyString())).thenAnswer(i -> Mono.fromSupplier(() -> redis.get(i.<String>getArgument(0))));
+        when(values.set(anyString(), anyString(), any(Duration.class)))
+                .thenAnswer(i -> Mono.fromSupplier(() -> redis.put(i.getArgument(0), i.getArgument(1)) != null));
+        when(template.delete(anyString())).thenAnswer(i -> Mono.fromSupplier(() -> redis.remove(i.<String>getArgument(0)) != null ? 1L : 0L));
+        filter = new IdempotencyFilter(template, new ObjectMapper(), registry,
+                Duration.ofHours(1), Duration.ofSeconds(30), Duration.ofMillis(200));
+    }
+
+    private static ServerRequest request(String key, String body) {
+        MockServerHttpRequest.BodyBuilder builder = MockServerHttpRequest.post("/carts/1/items")
+                .header("Content-Type", "application/json");
+        if (key != null) {
+            builder.header(IdempotencyFilter.HEADER, key);
+        }
+        return ServerRequest.create(MockServerWebExchange.from(builder.body(body)),
+                HandlerStrategies.withDefaults().messageReaders());
+    }
+
+    private double outcomes(String outcome) {
+        return registry.get(IdempotencyFilter.METRIC).tag("outcome", outcome).counter().count();
+    }
+
+    @Test
+    void retryReplaysStoredResponseWithoutRunningHandler() {
+        ServerResponse first = filter.filter(request("k1", "{\"productId\":1}"), handler).block();
+        ServerResponse retry = filter.filter(request("k1", "{\"productId\":1}"), handler).block();
+
+        assertThat(first.statusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(retry.statusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(retry.headers().getFirst(IdempotencyFilter.HEADER + "-Replayed")).isEqualTo("true");
+        assertThat(executions).hasValue(1);
+        assertThat(outcomes("executed")).isEqualTo(1);
+        assertThat(outcomes("replayed")).isEqualTo(1);
+    }
+
+    @Test
+    void concurrentRetriesJoinTheInFlightOriginal() {
+        List<ServerResponse> responses = Flux.range(0, 5)
+                .flatMap(i -> filter.filter(request("k2", "{\"productId\":1}"), handler))
+                .collectList()
+                .block();
+
+        assertThat(responses).hasSize(5).allSatisfy(r -> assertThat(r.statusCode()).isEqualTo(HttpStatus.OK));
+        assertThat(executions).hasValue(1);
+        assertThat(outcomes("joined")).isEqualTo(4);
+    }
+
+    @Test
+    void reusingKeyWithDifferentBodyIsRejected() {
+        filter.filter(request("k3", "{\"productId\":1}"), handler).block();
+        ServerResponse reused = filter.filter(request("k3", "{\"productId\":2}"), handler).block();
+
+        assertThat(reused.statusCode()).isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY);
+        assertThat(executions).hasValue(1);
+    }
+
+    @Test
+    void failsOpenWhenRedisIsUnavailable() {
+        when(values.setIfAbsent(anyString(), anyString(), any(Duration.class)))
+                .thenReturn(Mono.error(new IllegalStateException("connection refused")));
+
+        filter.filter(request("k4", "{}"), handler).block();
+        filter.filter(request("k4", "{}"), handler).block();
+
+        assertThat(executions).hasValue(2);
+    }
+
+    @Test
+    void requestsWithoutKeyPassThrough() {
+        filter.filter(request(null, "{}"), handler).block();
+        filter.filter(request(null, "{}"), handler).block();
+
+        assertThat(executions).hasValue(2);
+        assertThat(redis).isEmpty();
+    }
+}
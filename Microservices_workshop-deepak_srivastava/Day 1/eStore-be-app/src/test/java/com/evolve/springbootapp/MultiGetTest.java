@@ -0,0 +1,99 @@
+package com.evolve.springbootapp;
+
+import com.evolve.batch.SingleFlight;
+import com.evolve.etag.ResourceVersions;
+import com.evolve.handler.MultiGet;
+import com.evolve.handler.UserHandler;
+import com.evolve.metrics.CartEventMetrics;
+import com.evolve.model.Usr;
+import com.evolve.repository.UserRepository;
+import com.evolve.service.CartEventService;
+import com.evolve.service.UserOverviewService;
+import com.evolve.transport.InJvmCartEventTransport;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.server.RequestPredicates;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.StreamSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class MultiGetTest {
+
+    private final UserRepository users = mock(UserRepository.class);
+    private final List<List<Long>> queries = new ArrayList<>();
+    private WebTestClient client;
+
+    @BeforeEach
+    void setUp() {
+        CartEventService events = new CartEventService(new InJvmCartEventTransport(), new CartEventMetrics(new SimpleMeterRegistry()));
+        UserHandler handler = new UserHandler(users, new ResourceVersions(events, Duration.ofMinutes(1), 1000),
+                new MultiGet(2, 6), mock(UserOverviewService.class), new SingleFlight(new SimpleMeterRegistry()));
+        client = WebTestClient.bindToRouterFunction(RouterFunctions
+                        .route(RequestPredicates.GET("/users").and(RequestPredicates.queryParam(MultiGet.IDS, ids -> true)),
+                                handler::getByIds)
+                        .andRoute(RequestPredicates.POST("/users/batch"), handler::getByIds))
+                .build();
+        // Users 1-9 exist; returned in id order, as the database would
+        when(users.findAllById(anyIterable())).thenAnswer(invocation -> {
+            Iterable<Long> ids = invocation.getArgument(0);
+            List<Long> batch = StreamSupport.stream(ids.spliterator(), false).toList();
+            queries.add(batch);
+            return Flux.fromIterable(batch).filter(id -> id < 10).sort().map(MultiGetTest::user);
+        });
+    }
+
+    private static Usr user(Long id) {
+        Usr user = new Usr();
+        user.setId(id);
+        user.setName("User " + id);
+        user.setEmail("user" + id + "@example.com");
+        return user;
+    }
+
+    private static List<String> names(WebTestClient.ResponseSpec response) {
+        return response.expectStatus().isOk()
+                .expectBody(new ParameterizedTypeReference<List<Map<String, String>>>() {
+                })
+                .returnResult().getResponseBody()
+                .stream().map(user -> user.get("name")).toList();
+    }
+
+    @Test
+    void keepsTheOrderGivenAndReadsInBoundedBatches() {
+        WebTestClient.ResponseSpec response = client.get().uri("/users?ids=5,1,42,3,1,4").exchange()
+                .expectHeader().valueEquals(MultiGet.MISSING_HEADER, "42");
+
+        assertThat(names(response)).containsExactly("User 5", "User 1", "User 3", "User 4");
+        // The repeated 1 is read once, at most two ids a query
+        assertThat(queries).containsExactly(List.of(5L, 1L), List.of(42L, 3L), List.of(4L));
+    }
+
+    @Test
+    void postTakesTheIdsAsAJsonArray() {
+        assertThat(names(client.post().uri("/users/batch").bodyValue(List.of(9, 2)).exchange()))
+                .containsExactly("User 9", "User 2");
+        assertThat(names(client.get().uri("/users?ids=7&ids=6").exchange()))
+                .containsExactly("User 7", "User 6");
+    }
+
+    @Test
+    void rejectsBadOrTooManyIds() {
+        client.get().uri("/users?ids=1,x").exchange().expectStatus().isBadRequest();
+        client.post().uri("/users/batch").bodyValue(List.of(1, 2, 3, 4, 5, 6, 7)).exchange()
+                .expectStatus().isBadRequest();
+        assertThat(queries).isEmpty();
+    }
+}
@@ -0,0 +1,172 @@
+package com.evolve.springbootapp;
+
+import com.evolve.catalog.OffHeapProductStore;
+import com.evolve.catalog.ProductCatalog;
+import com.evolve.model.Product;
+import com.evolve.repository.ProductRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class OffHeapProductStoreTest {
+
+    @TempDir
+    Path directory;
+
+    private static Product product(long id, String name, Double price) {
+        Product product = new Product();
+        product.setId(id);
+        product.setName(name);
+        product.setDescription(name == null ? null : "About " + name);
+        product.setPrice(price);
+        return product;
+    }
+
+    @Test
+    void storesReplacesAndRemovesProducts() {
+        try (OffHeapProductStore store = new OffHeapProductStore(directory.resolve("store"), 1024, 10)) {
+            store.put(product(1, "Mac Mini", 92000.0));
+            store.put(product(2, "Café ☕ Grinder", 4500.5));
+            store.put(product(3, null, null));
+
+            assertThat(store.get(1)).isEqualTo(product(1, "Mac Mini", 92000.0));
+            assertThat(store.get(2).getName()).isEqualTo("Café ☕ Grinder");
+            assertThat(store.get(3)).isEqualTo(product(3, null, null));
+            assertThat(store.get(4)).isNull();
+            assertThat(store.size()).isEqualTo(3);
+            assertThat(store.garbageBytes()).isZero();
+
+            long before = store.dataBytes();
+            store.put(product(1, "Mac Mini M4", 99000.0));
+            assertThat(store.get(1).getName()).isEqualTo("Mac Mini M4");
+            assertThat(store.putIfAbsent(product(1, "Stale row", 1.0))).isFalse();
+            assertThat(store.get(1).getName()).isEqualTo("Mac Mini M4");
+            // The replaced record is left behind as garbage
+            assertThat(store.garbageBytes()).isPositive().isLessThanOrEqualTo(store.dataBytes() - before);
+
+            store.remove(2);
+            store.remove(42);
+            assertThat(store.contains(2)).isFalse();
+            assertThat(store.get(2)).isNull();
+            assertThat(store.size()).isEqualTo(2);
+        }
+        assertThat(Files.exists(directory.resolve("store"))).isFalse();
+    }
+
+    @Test
+    void growsTheIndexAndSpillsIntoNewSegments() {
+        try (OffHeapProductStore store = new OffHeapProductStore(directory, 256, 4)) {
+            long indexBytes = store.indexBytes();
+            for (long id = 1; id <= 1000; id++) {
+                store.put(product(id, "Product " + id, (double) id));
+            }
+            // Remove every third, so later probes cross slots shifted back by the removals
+            for (long id = 3; id <= 1000; id += 3) {
+                store.remove(id);
+            }
+
+            assertThat(store.indexBytes()).isGreaterThan(indexBytes);
+            assertThat(store.dataBytes()).isGreaterThan(256 * 10);
+            assertThat(store.size()).isEqualTo(1000 - 333);
+            for (long id = 1; id <= 1000; id++) {
+                if (id % 3 == 0) {
+                    assertThat(store.get(id)).isNull();
+                } else {
+                    assertThat(store.get(id)).isEqualTo(product(id, "Product " + id, (double) id));
+                }
+            }
+        }
+    }
+
+    @Test
+    void catalogReadsTheDatabaseUntilLoadedAndFollowsWrites() {
+        ProductRepository products = mock(ProductRepository.class);
+        Sinks.Many<Product> rows = Sinks.many().unicast().onBackpressureBuffer();
+        when(products.findAll()).thenReturn(rows.asFlux());
+        when(products.findById(anyLong())).thenReturn(Mono.just(product(1, "From the database", 1.0)));
+        ProductCatalog catalog = new ProductCatalog(products, true, directory.toString(), DataSize.ofKilobytes(4), 10, Duration.ZERO);
+        try {
+            catalog.load();
+            assertThat(catalog.isReady()).isFalse();
+            assertThat(catalog.findById(1L).block().getName()).isEqualTo("From the database");
+
+            // Written and deleted while the load runs: the rows it reads later lose
+            catalog.productSaved(product(1, "Renamed", 2.0));
+            catalog.productDeleted(2L);
+            rows.tryEmitNext(product(1, "Mac Mini", 1.0));
+            rows.tryEmitNext(product(2, "Keyboard", 3.0));
+            rows.tryEmitNext(product(3, "Mouse", 4.0));
+            rows.tryEmitComplete();
+
+            assertThat(catalog.isReady()).isTrue();
+            assertThat(catalog.findById(1L).block().getName()).isEqualTo("Renamed");
+            assertThat(catalog.findById(2L).blockOptional()).isEmpty();
+            assertThat(catalog.findAllById(List.of(1L, 2L, 3L)).map(Product::getName).collectList().block())
+                    .containsExactly("Renamed", "Mouse");
+            verify(products, never()).findAllById(List.of(1L, 2L, 3L));
+        } finally {
+            catalog.close();
+        }
+    }
+
+    @Test
+    void refreshPicksUpChangesMadeThroughOtherNodes() {
+        ProductRepository products = mock(ProductRepository.class);
+        Sinks.Many<Product> rows = Sinks.many().unicast().onBackpressureBuffer();
+        when(products.findAll()).thenReturn(Flux.just(product(1, "Mac Mini", 1.0), product(2, "Keyboard", 3.0)))
+                .thenReturn(rows.asFlux());
+        ProductCatalog catalog = new ProductCatalog(products, true, directory.toString(), DataSize.ofKilobytes(4), 10,
+                Duration.ZERO);
+        try {
+            catalog.load();
+            assertThat(catalog.findById(1L).block().getName()).isEqualTo("Mac Mini");
+
+            // Another node renamed 1 and deleted 2; this node writes 3 while the refresh runs
+            Mono<Long> refreshed = catalog.refresh().cache();
+            refreshed.subscribe();
+            catalog.productSaved(product(3, "Mouse", 4.0));
+            assertThat(catalog.findById(1L).block().getName()).isEqualTo("Mac Mini");
+            assertThat(catalog.findById(3L).block().getName()).isEqualTo("Mouse");
+            rows.tryEmitNext(product(1, "Mac Mini M4", 2.0));
+            rows.tryEmitComplete();
+
+            assertThat(refreshed.block()).isEqualTo(1);
+            assertThat(catalog.findAllById(List.of(1L, 2L, 3L)).map(Product::getName).collectList().block())
+                    .containsExactly("Mac Mini M4", "Mouse");
+        } finally {
+            catalog.close();
+        }
+        assertThat(Files.exists(directory)).isFalse();
+    }
+
+    @Test
+    void disabledCatalogAlwaysReadsTheDatabase() {
+        ProductRepository products = mock(ProductRepository.class);
+        when(products.findAllById(List.of(1L))).thenReturn(Flux.just(product(1, "Mac Mini", 1.0)));
+        ProductCatalog catalog = new ProductCatalog(products, false, directory.toString(), DataSize.ofKilobytes(4), 10, Duration.ZERO);
+
+        catalog.load();
+        catalog.productSaved(product(1, "Ignored", 2.0));
+
+        assertThat(catalog.isReady()).isFalse();
+        assertThat(catalog.findAllById(List.of(1L)).map(Product::getName).collectList().block())
+                .containsExactly("Mac Mini");
+        verify(products, never()).findAll();
+        catalog.close();
+    }
+}
@@ -0,0 +1,106 @@
+package com.evolve.springbootapp;
+
+import com.evolve.model.PresenceEvent;
+import com.evolve.presence.HashedWheel;
+import com.evolve.presence.PresenceTracker;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PresenceTrackerTest {
+
+    // 1s timeout at 100ms ticks; ticks are driven by hand, the ticker is never started
+    private final PresenceTracker tracker = new PresenceTracker(Duration.ofSeconds(1), Duration.ofMillis(100), 2);
+    private final List<List<PresenceEvent>> batches = new CopyOnWriteArrayList<>();
+
+    {
+        tracker.changes().subscribe(batches::add);
+    }
+
+    private void advance(int ticks) {
+        for (int i = 0; i < ticks; i++) {
+            tracker.advance();
+        }
+    }
+
+    @Test
+    void connectPublishesOnlineInOneBatch() {
+        tracker.connect("alice");
+        tracker.connect("bob");
+        tracker.connect("alice");
+        advance(1);
+
+        assertThat(batches).hasSize(1);
+        assertThat(batches.get(0)).extracting(PresenceEvent::getUser).containsExactlyInAnyOrder("alice", "bob");
+        assertThat(batches.get(0)).extracting(PresenceEvent::getStatus).containsOnly(PresenceEvent.ONLINE);
+    }
+
+    @Test
+    void missingHeartbeatsExpireConnection() {
+        tracker.connect("alice");
+        advance(9);
+        assertThat(tracker.isOnline("alice")).isTrue();
+
+        advance(1);
+        assertThat(tracker.isOnline("alice")).isFalse();
+        assertThat(batches.get(batches.size() - 1))
+                .containsExactly(new PresenceEvent("alice", PresenceEvent.OFFLINE, batches.get(batches.size() - 1).get(0).getTimestamp()));
+    }
+
+    @Test
+    void heartbeatsKeepUserOnlineAndRevive() {
+        PresenceTracker.Connection connection = tracker.connect("alice");
+        for (int i = 0; i < 5; i++) {
+            advance(8);
+            tracker.heartbeat(connection);
+        }
+        assertThat(tracker.isOnline("alice")).isTrue();
+
+        advance(10);
+        assertThat(tracker.isOnline("alice")).isFalse();
+
+        tracker.heartbeat(connection);
+        assertThat(tracker.isOnline("alice")).isTrue();
+    }
+
+    @Test
+    void userStaysOnlineUntilLastConnectionCloses() {
+        PresenceTracker.Connection first = tracker.connect("alice");
+        PresenceTracker.Connection second = tracker.connect("alice");
+
+        tracker.disconnect(first);
+        assertThat(tracker.isOnline("alice")).isTrue();
+        tracker.disconnect(second);
+        assertThat(tracker.isOnline("alice")).isFalse();
+
+        // Closed connections ignore late heartbeats
+        tracker.heartbeat(first);
+        assertThat(tracker.isOnline("alice")).isFalse();
+    }
+
+    @Test
+    void onlineThenOfflineWithinOneTickIsCoalesced() {
+        tracker.disconnect(tracker.connect("alice"));
+        advance(1);
+
+        assertThat(batches).hasSize(1);
+        assertThat(batches.get(0)).extracting(PresenceEvent::getStatus).containsExactly(PresenceEvent.OFFLINE);
+    }
+
+    @Test
+    void wheelHandlesDeadlinesBeyondOneRevolution() {
+        HashedWheel wheel = new HashedWheel(4);
+        HashedWheel.Node node = new HashedWheel.Node();
+        wheel.schedule(node, 10);
+
+        for (int i = 0; i < 9; i++) {
+            assertThat(wheel.advance()).isEmpty();
+        }
+        assertThat(wheel.advance()).containsExactly(node);
+        assertThat(node.isScheduled()).isFalse();
+    }
+}
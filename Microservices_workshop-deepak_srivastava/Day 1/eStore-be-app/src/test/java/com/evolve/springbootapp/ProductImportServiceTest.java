@@ -0,0 +1,137 @@
+package com.evolve.springbootapp;
+
+import com.evolve.catalog.ProductCatalog;
+import com.evolve.dto.ImportProgress;
+import com.evolve.model.Product;
+import com.evolve.repository.ProductRepository;
+import com.evolve.search.ProductSearchService;
+import com.evolve.service.ProductImportService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ProductImportServiceTest {
+
+    @TempDir
+    Path importDirectory;
+
+    private ProductRepository products;
+    private ProductSearchService search;
+    private ProductImportService importer;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        TestDatabase database = TestDatabase.create("import");
+        DatabaseClient databaseClient = database.client();
+        // Only imported products, not the sample one from schema.sql
+        databaseClient.sql("DELETE FROM products").then().block();
+
+        products = database.repositories().getRepository(ProductRepository.class);
+        search = new ProductSearchService(products, Duration.ofSeconds(1), 100, 64, 2, 4);
+        importer = new ProductImportService(databaseClient,
+                TransactionalOperator.create(new R2dbcTransactionManager(database.connectionFactory())),
+                search, new ProductCatalog(products, false, "", DataSize.ofMegabytes(1), 1000, Duration.ZERO), new ObjectMapper(), 2, 2, 2, 1024, Duration.ofMinutes(1), importDirectory.toString());
+    }
+
+    // Split into small buffers so lines straddle buffer boundaries
+    private static Flux<DataBuffer> chunked(String content) {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        return Flux.range(0, (bytes.length + 6) / 7)
+                .map(i -> DefaultDataBufferFactory.sharedInstance.wrap(
+                        Arrays.copyOfRange(bytes, i * 7, Math.min(bytes.length, i * 7 + 7))));
+    }
+
+    private ImportProgress run(Flux<ImportProgress> progress) {
+        List<ImportProgress> reports = progress.collectList().block();
+        ImportProgress last = reports.get(reports.size() - 1);
+        assertThat(last.isDone()).isTrue();
+        return last;
+    }
+
+    @Test
+    void importsCsvInBatchesAndReportsRejects() {
+        String csv = """
+                price,name,description,sku
+                10.5,Desk Lamp,"Warm, dimmable",L1
+                not-a-price,Broken,,B1
+
+                3,"Mug ""XL""\",,M1
+                ,No Price,,N1
+                7,Pen
+                """;
+
+        ImportProgress report = run(importer.importProducts(chunked(csv), ProductImportService.Format.CSV));
+
+        assertThat(report.getParsed()).isEqualTo(5);
+        assertThat(report.getInserted()).isEqualTo(3);
+        assertThat(report.getRejected()).isEqualTo(2);
+        assertThat(report.getBatches()).isEqualTo(2);
+        assertThat(report.getRejects()).extracting(ImportProgress.Reject::getLine).containsExactly(3L, 6L);
+        assertThat(report.getRejects().get(0).getReason()).contains("Invalid price");
+        assertThat(products.findAll().map(Product::getName).collectList().block())
+                .containsExactlyInAnyOrder("Desk Lamp", "Mug \"XL\"", "Pen");
+        assertThat(products.findAll().filter(p -> p.getName().equals("Desk Lamp")).blockFirst().getDescription())
+                .isEqualTo("Warm, dimmable");
+        // Imported products are searchable right away
+        assertThat(search.search("lamp", 10).block().getHits()).hasSize(1);
+    }
+
+    @Test
+    void importsNdjsonAndKeepsOnlyTheFirstRejects() {
+        String ndjson = """
+                {"name":"Cable","price":4.99}
+                {"name":"","price":1}
+                [1,2]
+                {broken
+                {"name":"Adapter","description":"USB-C","price":"12"}
+                """;
+
+        ImportProgress report = run(importer.importProducts(chunked(ndjson), ProductImportService.Format.NDJSON));
+
+        assertThat(report.getInserted()).isEqualTo(2);
+        assertThat(report.getRejected()).isEqualTo(3);
+        assertThat(report.getRejects()).hasSize(2);
+        assertThat(products.count().block()).isEqualTo(2);
+    }
+
+    @Test
+    void stopsWithAnErrorReportOnAMissingCsvColumn() {
+        ImportProgress report = run(importer.importProducts(chunked("name,description\nLamp,Desk\n"),
+                ProductImportService.Format.CSV));
+
+        assertThat(report.getError()).contains("name and price");
+        assertThat(report.getInserted()).isZero();
+    }
+
+    @Test
+    void importsFilesOnlyFromTheImportDirectory() throws IOException {
+        Files.writeString(importDirectory.resolve("catalog.csv"), "name,price\nLamp,10\nMug,3\nPen,1\n");
+
+        ImportProgress report = run(importer.importFile("catalog.csv", null));
+
+        assertThat(report.getInserted()).isEqualTo(3);
+        assertThatThrownBy(() -> importer.importFile("../outside.csv", null))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> importer.importFile("catalog.txt", null))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
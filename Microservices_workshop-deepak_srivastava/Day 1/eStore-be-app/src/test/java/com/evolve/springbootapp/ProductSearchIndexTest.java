@@ -0,0 +1,87 @@
+package com.evolve.springbootapp;
+
+import com.evolve.search.ProductSearchIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ProductSearchIndexTest {
+
+    private static final Duration BUDGET = Duration.ofSeconds(1);
+
+    private ProductSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new ProductSearchIndex(64, 2, 4);
+        index.add(1, "Apple MacBook Pro", "Laptop with M3 chip");
+        index.add(2, "Apple iPhone 15", "Smartphone");
+        index.add(3, "Dell XPS 13", "Laptop, Café edition");
+        index.add(4, "Laptop Sleeve", "Fits MacBook and XPS");
+    }
+
+    private long[] ids(String query) {
+        return index.search(query, 10, BUDGET).hits().stream().mapToLong(ProductSearchIndex.Hit::productId).toArray();
+    }
+
+    @Test
+    void allWordsMustMatchAndNameMatchesRankFirst() {
+        assertThat(ids("laptop")).containsExactly(4, 1, 3);
+        assertThat(ids("apple laptop")).containsExactly(1);
+    }
+
+    @Test
+    void lastWordMatchesAsPrefix() {
+        assertThat(ids("macb")).containsExactly(1, 4);
+        assertThat(ids("apple iph")).containsExactly(2);
+    }
+
+    @Test
+    void toleratesOneTypoAndIgnoresCaseAndAccents() {
+        assertThat(ids("lpatop sleeve")).containsExactly(4);
+        assertThat(ids("smartphnoe")).containsExactly(2);
+        assertThat(ids("CAFE")).containsExactly(3);
+    }
+
+    @Test
+    void updatesAndRemovalsAreVisibleImmediately() {
+        index.remove(2, "Apple iPhone 15", "Smartphone");
+        index.add(2, "Apple iPhone 16", "Smartphone");
+        assertThat(ids("iphone 16")).containsExactly(2);
+        assertThat(ids("iphone 15")).isEmpty();
+
+        index.remove(4, "Laptop Sleeve", "Fits MacBook and XPS");
+        assertThat(ids("sleeve")).isEmpty();
+        assertThat(index.size()).isEqualTo(3);
+    }
+
+    @Test
+    void stopsOnceRemainingProductsCannotOutrankTheHitsFound() {
+        for (int id = 10; id < 50_000; id++) {
+            index.add(id, "Generic laptop " + id, "");
+        }
+
+        ProductSearchIndex.Result result = index.search("laptop", 3, BUDGET);
+
+        assertThat(result.hits()).extracting(ProductSearchIndex.Hit::productId).containsExactly(4L, 10L, 11L);
+        assertThat(result.partial()).isFalse();
+        assertThat(result.candidates()).isLessThan(10);
+    }
+
+    @Test
+    void stopsAtDeadlineAndReportsPartialResult() {
+        // No product has both words, so every candidate has to be probed
+        for (int id = 10; id < 50_000; id++) {
+            index.add(id, "Generic laptop " + id, "");
+            index.add(id + 50_000, "Generic sleeve " + id, "");
+        }
+
+        ProductSearchIndex.Result result = index.search("generic laptop sleeve", 10, Duration.ZERO);
+
+        assertThat(result.partial()).isTrue();
+        assertThat(result.candidates()).isLessThan(50_000);
+    }
+}
@@ -0,0 +1,166 @@
+package com.evolve.springbootapp;
+
+import com.evolve.filter.RateLimitFilter;
+import com.evolve.ratelimit.TokenBuckets;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.reactive.function.server.HandlerFunction;
+import org.springframework.web.reactive.function.server.HandlerStrategies;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Flux;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class RateLimitFilterTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final AtomicInteger executions = new AtomicInteger();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    @SuppressWarnings("unchecked")
+    private final ReactiveRedisTemplate<String, String> template = mock(ReactiveRedisTemplate.class);
+
+    private final HandlerFunction<ServerResponse> handler = request -> {
+        executions.incrementAndGet();
+        return ServerResponse.ok().build();
+    };
+
+    private RateLimitFilter filter(boolean redisEnabled) {
+        return filter(1, redisEnabled);
+    }
+
+    private RateLimitFilter filter(int trustedProxies, boolean redisEnabled) {
+        return new RateLimitFilter(template, registry, 1, 3, 1000, 4, trustedProxies, redisEnabled, Duration.ofMillis(50));
+    }
+
+    // As received from the proxy at 10.0.0.9, which appended the address it saw to what the caller sent
+    private static ServerRequest request(String forwardedFor) {
+        MockServerHttpRequest httpRequest = MockServerHttpRequest.post("/carts/1/items")
+                .remoteAddress(new InetSocketAddress("10.0.0.9", 4000))
+                .header("X-Forwarded-For", forwardedFor)
+                .build();
+        return ServerRequest.create(MockServerWebExchange.from(httpRequest), HandlerStrategies.withDefaults().messageReaders());
+    }
+
+    private List<HttpStatus> statuses(RateLimitFilter filter, String client, int requests) {
+        return IntStream.range(0, requests)
+                .mapToObj(i -> HttpStatus.valueOf(filter.filter(request(client), handler).block().statusCode().value()))
+                .toList();
+    }
+
+    @Test
+    void allowsTheBurstThenAnswers429WithRetryAfter() {
+        RateLimitFilter filter = filter(false);
+        for (int i = 0; i < 3; i++) {
+            assertThat(filter.filter(request("1.1.1.1"), handler).block().statusCode()).isEqualTo(HttpStatus.OK);
+        }
+
+        ServerResponse limited = filter.filter(request("1.1.1.1"), handler).block();
+
+        assertThat(limited.statusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        assertThat(limited.headers().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+        assertThat(executions).hasValue(3);
+        // Another client has its own budget
+        assertThat(statuses(filter, "2.2.2.2", 3)).containsOnly(HttpStatus.OK);
+        assertThat(registry.get(RateLimitFilter.METRIC).tag("outcome", "limited").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void spoofedForwardedForHopsDoNotChangeTheClient() {
+        RateLimitFilter oneProxy = filter(false);
+        RateLimitFilter twoProxies = filter(2, false);
+
+        assertThat(IntStream.range(0, 4)
+                .mapToObj(i -> oneProxy.filter(request("6.6.6." + i + ", 1.1.1.1"), handler).block().statusCode())
+                .toList())
+                .containsExactly(HttpStatus.OK, HttpStatus.OK, HttpStatus.OK, HttpStatus.TOO_MANY_REQUESTS);
+        // Behind two proxies the client is the second hop from the right; the inner proxy's own hop is not it
+        assertThat(IntStream.range(0, 4)
+                .mapToObj(i -> twoProxies.filter(request("6.6.6." + i + ", 2.2.2.2, 10.0.0.5"), handler).block().statusCode())
+                .toList())
+                .containsExactly(HttpStatus.OK, HttpStatus.OK, HttpStatus.OK, HttpStatus.TOO_MANY_REQUESTS);
+        assertThat(twoProxies.filter(request("3.3.3.3, 10.0.0.5"), handler).block().statusCode()).isEqualTo(HttpStatus.OK);
+    }
+
+    @Test
+    void sharedBudgetInRedisCanRefuseWhatTheNodeAllows() {
+        when(template.execute(ArgumentMatchers.<RedisScript<List>>any(), anyList(), anyList()))
+                .thenReturn(Flux.<List>just(List.of(0L, 2_500_000L)));
+
+        ServerResponse limited = filter(true).filter(request("1.1.1.1"), handler).block();
+
+        assertThat(limited.statusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        assertThat(limited.headers().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("3");
+        assertThat(executions).hasValue(0);
+    }
+
+    @Test
+    void fallsBackToTheNodeBudgetWhenRedisFails() {
+        when(template.execute(ArgumentMatchers.<RedisScript<List>>any(), anyList(), anyList()))
+                .thenReturn(Flux.error(new IllegalStateException("connection refused")));
+
+        assertThat(statuses(filter(true), "1.1.1.1", 4))
+                .containsExactly(HttpStatus.OK, HttpStatus.OK, HttpStatus.OK, HttpStatus.TOO_MANY_REQUESTS);
+    }
+
+    @Test
+    void bucketsRefillAtTheConfiguredRate() {
+        TokenBuckets buckets = new TokenBuckets(2, 4, 100, 1);
+        long now = System.nanoTime();
+
+        for (int i = 0; i < 4; i++) {
+            assertThat(buckets.acquire("k", now)).isZero();
+        }
+        assertThat(buckets.acquire("k", now)).isEqualTo(SECOND / 2);
+
+        // Half a second brings back one token, not a burst
+        assertThat(buckets.acquire("k", now + SECOND / 2)).isZero();
+        assertThat(buckets.acquire("k", now + SECOND / 2)).isPositive();
+        // Idle long enough, the bucket is full again but holds no more than its capacity
+        long later = now + 10 * SECOND;
+        for (int i = 0; i < 4; i++) {
+            assertThat(buckets.acquire("k", later)).isZero();
+        }
+        assertThat(buckets.acquire("k", later)).isPositive();
+    }
+
+    @Test
+    void staysBoundedUnderAFloodOfDistinctKeys() {
+        TokenBuckets buckets = new TokenBuckets(1, 2, 64, 4);
+        long now = System.nanoTime();
+
+        for (int i = 0; i < 10_000; i++) {
+            buckets.acquire("flood-" + i, now);
+        }
+
+        assertThat(buckets.size()).isLessThanOrEqualTo(64);
+        // Keys past the bound share their stripe's overflow bucket, so the flood itself is limited
+        long granted = IntStream.range(10_000, 10_100).filter(i -> buckets.acquire("flood-" + i, now) == 0).count();
+        assertThat(granted).isZero();
+
+        // Once the flood's buckets are full again they are dropped to make room
+        long later = now + 10 * SECOND;
+        assertThat(buckets.acquire("newcomer", later)).isZero();
+        assertThat(buckets.acquire("newcomer", later)).isZero();
+        assertThat(buckets.acquire("newcomer", later)).isPositive();
+        assertThat(buckets.size()).isLessThanOrEqualTo(64);
+    }
+}
@@ -0,0 +1,66 @@
+package com.evolve.springbootapp;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.core.spi.FilterReply;
+import com.evolve.logging.RateLimitingTurboFilter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RateLimitingTurboFilterTest {
+
+    private final LoggerContext context = new LoggerContext();
+    private RateLimitingTurboFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        filter = new RateLimitingTurboFilter();
+        filter.addLogger("com.evolve.transport");
+        filter.setEventsPerSecond(5);
+        filter.start();
+    }
+
+    private FilterReply decide(Logger logger, Level level) {
+        return filter.decide(null, logger, level, "Publishing cart event: {}", null, null);
+    }
+
+    @Test
+    void deniesInfoBeyondBudgetOfConfiguredLoggers() {
+        Logger logger = context.getLogger("com.evolve.transport.RedisCartEventTransport");
+        int allowed = 0;
+        for (int i = 0; i < 100; i++) {
+            if (decide(logger, Level.INFO) == FilterReply.NEUTRAL) {
+                allowed++;
+            }
+        }
+
+        // The budget may straddle a second boundary
+        assertThat(allowed).isBetween(5, 10);
+        assertThat(filter.suppressed(logger.getName())).isEqualTo(100 - allowed);
+    }
+
+    @Test
+    void callsBelowTheLoggersLevelDoNotSpendTheBudget() {
+        Logger logger = context.getLogger("com.evolve.transport.InJvmCartEventTransport");
+        logger.setLevel(Level.INFO);
+        for (int i = 0; i < 100; i++) {
+            assertThat(decide(logger, Level.DEBUG)).isEqualTo(FilterReply.NEUTRAL);
+        }
+
+        assertThat(decide(logger, Level.INFO)).isEqualTo(FilterReply.NEUTRAL);
+        assertThat(filter.suppressed(logger.getName())).isZero();
+    }
+
+    @Test
+    void warningsAndOtherLoggersAreNeverLimited() {
+        Logger hot = context.getLogger("com.evolve.transport.InJvmCartEventTransport");
+        Logger other = context.getLogger("com.evolve.transportation.Other");
+        for (int i = 0; i < 100; i++) {
+            assertThat(decide(hot, Level.WARN)).isEqualTo(FilterReply.NEUTRAL);
+            assertThat(decide(other, Level.INFO)).isEqualTo(FilterReply.NEUTRAL);
+        }
+    }
+}
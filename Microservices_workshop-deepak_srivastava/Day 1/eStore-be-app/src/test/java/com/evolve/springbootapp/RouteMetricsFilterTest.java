@@ -0,0 +1,131 @@
+package com.evolve.springbootapp;
+
+import com.evolve.filter.RouteMetricsFilter;
+import com.evolve.warmup.WarmUp;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.codec.HttpMessageWriter;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.reactive.function.server.MockServerRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.reactive.function.server.HandlerFunction;
+import org.springframework.web.reactive.function.server.HandlerStrategies;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.reactive.result.view.ViewResolver;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.util.pattern.PathPatternParser;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RouteMetricsFilterTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final RouteMetricsFilter filter = new RouteMetricsFilter(registry);
+
+    private static final ServerResponse.Context CONTEXT = new ServerResponse.Context() {
+        @Override
+        public List<HttpMessageWriter<?>> messageWriters() {
+            return HandlerStrategies.withDefaults().messageWriters();
+        }
+
+        @Override
+        public List<ViewResolver> viewResolvers() {
+            return List.of();
+        }
+    };
+
+    // As routed: with the route template the router matched
+    private static ServerRequest request(HttpMethod method, String pattern, String path) {
+        ServerRequest request = ServerRequest.create(MockServerWebExchange.from(MockServerHttpRequest.method(method, path)),
+                HandlerStrategies.withDefaults().messageReaders());
+        request.attributes().put(RouterFunctions.MATCHING_PATTERN_ATTRIBUTE, PathPatternParser.defaultInstance.parse(pattern));
+        return request;
+    }
+
+    // As the server does: filter, then write the response
+    private Mono<Void> serve(ServerRequest request, HandlerFunction<ServerResponse> handler) {
+        return filter.filter(request, handler).flatMap(response -> response.writeTo(request.exchange(), CONTEXT));
+    }
+
+    private Timer timer(String route, String method, String status) {
+        return registry.find(RouteMetricsFilter.METRIC)
+                .tags("route", route, "method", method, "status", status)
+                .timer();
+    }
+
+    @Test
+    void recordsRouteTemplateMethodAndStatus() {
+        serve(request(HttpMethod.GET, "/carts/{id}", "/carts/1"), req -> ServerResponse.ok().build()).block();
+        serve(request(HttpMethod.GET, "/carts/{id}", "/carts/2"), req -> ServerResponse.notFound().build()).block();
+
+        assertThat(timer("/carts/{id}", "GET", "200").count()).isEqualTo(1);
+        assertThat(timer("/carts/{id}", "GET", "404").count()).isEqualTo(1);
+    }
+
+    @Test
+    void timesAStreamedBodyUntilItIsWritten() {
+        Sinks.Many<String> rows = Sinks.many().unicast().onBackpressureBuffer();
+        ServerRequest request = request(HttpMethod.GET, "/carts", "/carts");
+
+        StepVerifier.create(serve(request, req -> ServerResponse.ok().body(rows.asFlux(), String.class)))
+                // The response is out but its query is still running
+                .then(() -> assertThat(timer("/carts", "GET", "200")).isNull())
+                .thenAwait(Duration.ofMillis(100))
+                .then(() -> {
+                    rows.tryEmitNext("cart 1");
+                    rows.tryEmitComplete();
+                })
+                .verifyComplete();
+
+        assertThat(timer("/carts", "GET", "200").count()).isEqualTo(1);
+        assertThat(timer("/carts", "GET", "200").totalTime(TimeUnit.MILLISECONDS)).isGreaterThanOrEqualTo(100);
+    }
+
+    @Test
+    void leavesWarmUpRequestsOutAndMarksThemForTheHandler() {
+        HttpHeaders headers = new HttpHeaders();
+        WarmUp.mark(headers);
+        ServerRequest warmUp = MockServerRequest.builder()
+                .method(HttpMethod.GET)
+                .uri(URI.create("/carts/1"))
+                .headers(headers)
+                .attribute(RouterFunctions.MATCHING_PATTERN_ATTRIBUTE, PathPatternParser.defaultInstance.parse("/carts/{id}"))
+                .build();
+
+        StepVerifier.create(filter.filter(warmUp, req -> Mono.deferContextual(context -> WarmUp.isWarmUp(context)
+                        ? ServerResponse.ok().build() : ServerResponse.badRequest().build())))
+                .assertNext(response -> assertThat(response.statusCode()).isEqualTo(HttpStatus.OK))
+                .verifyComplete();
+
+        assertThat(registry.find(RouteMetricsFilter.METRIC).timers()).isEmpty();
+    }
+
+    @Test
+    void recordsErrorsWithTheirStatus() {
+        StepVerifier.create(filter.filter(request(HttpMethod.POST, "/orders/user/{userId}", "/orders/user/1"),
+                        req -> Mono.error(new ResponseStatusException(HttpStatus.CONFLICT))))
+                .expectError(ResponseStatusException.class)
+                .verify();
+        StepVerifier.create(filter.filter(request(HttpMethod.POST, "/orders/user/{userId}", "/orders/user/1"),
+                        req -> Mono.error(new IllegalStateException())))
+                .expectError(IllegalStateException.class)
+                .verify();
+
+        assertThat(timer("/orders/user/{userId}", "POST", "409").count()).isEqualTo(1);
+        assertThat(timer("/orders/user/{userId}", "POST", "500").count()).isEqualTo(1);
+    }
+}
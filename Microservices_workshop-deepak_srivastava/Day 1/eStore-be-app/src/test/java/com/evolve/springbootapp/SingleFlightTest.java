@@ -0,0 +1,89 @@
+package com.evolve.springbootapp;
+
+import com.evolve.batch.SingleFlight;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SingleFlightTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final SingleFlight singleFlight = new SingleFlight(registry);
+    private final AtomicInteger queries = new AtomicInteger();
+
+    private Mono<String> slowQuery(String value) {
+        return Mono.defer(() -> {
+            queries.incrementAndGet();
+            return Mono.delay(Duration.ofMillis(50)).thenReturn(value);
+        });
+    }
+
+    private double reads(String repository, String outcome) {
+        return registry.get(SingleFlight.READS).tag("repository", repository).tag("outcome", outcome).counter().count();
+    }
+
+    private double inFlight() {
+        return registry.get(SingleFlight.IN_FLIGHT).gauge().value();
+    }
+
+    @Test
+    void concurrentReadsOfAKeyShareOneQuery() {
+        Flux<String> reads = Flux.merge(
+                singleFlight.read("carts", 1L, () -> slowQuery("cart 1")),
+                singleFlight.read("carts", 1L, () -> slowQuery("cart 1")),
+                singleFlight.read("carts", 1L, () -> slowQuery("cart 1")),
+                singleFlight.read("carts", 2L, () -> slowQuery("cart 2")),
+                singleFlight.read("users", 1L, () -> slowQuery("user 1")));
+
+        assertThat(reads.collectList().block(Duration.ofSeconds(5)))
+                .containsExactlyInAnyOrder("cart 1", "cart 1", "cart 1", "cart 2", "user 1");
+        assertThat(queries).hasValue(3);
+        assertThat(reads("carts", "executed")).isEqualTo(2);
+        assertThat(reads("carts", "joined")).isEqualTo(2);
+        assertThat(inFlight()).isZero();
+
+        // Once done, the next read queries again
+        assertThat(singleFlight.read("carts", 1L, () -> slowQuery("cart 1 again")).block(Duration.ofSeconds(5)))
+                .isEqualTo("cart 1 again");
+        assertThat(queries).hasValue(4);
+    }
+
+    @Test
+    void emptyAndFailedReadsReachEveryCaller() {
+        Mono<String> missing = singleFlight.read("products", 9L, () -> Mono.delay(Duration.ofMillis(20)).then(Mono.empty()));
+        assertThat(Flux.merge(missing, missing).collectList().block(Duration.ofSeconds(5))).isEmpty();
+
+        Mono<String> failing = singleFlight.read("products", 9L,
+                () -> Mono.delay(Duration.ofMillis(20)).then(Mono.error(new IllegalStateException("database down"))));
+        assertThat(Flux.merge(failing.onErrorReturn("failed"), failing.onErrorReturn("failed")).collectList()
+                .block(Duration.ofSeconds(5))).containsExactly("failed", "failed");
+        assertThat(inFlight()).isZero();
+    }
+
+    @Test
+    void theQueryIsCancelledOnlyWhenItsLastCallerLeaves() {
+        Sinks.One<String> never = Sinks.one();
+        AtomicInteger cancelled = new AtomicInteger();
+        Mono<String> read = singleFlight.read("carts", 1L, () -> never.asMono().doOnCancel(cancelled::incrementAndGet));
+
+        Disposable first = read.subscribe();
+        Disposable second = read.subscribe();
+        assertThat(inFlight()).isEqualTo(1);
+
+        first.dispose();
+        assertThat(cancelled).hasValue(0);
+        assertThat(inFlight()).isEqualTo(1);
+
+        second.dispose();
+        assertThat(cancelled).hasValue(1);
+        assertThat(inFlight()).isZero();
+    }
+}
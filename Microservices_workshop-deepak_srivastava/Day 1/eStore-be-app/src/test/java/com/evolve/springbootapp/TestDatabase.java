@@ -0,0 +1,64 @@
+package com.evolve.springbootapp;
+
+import io.r2dbc.h2.H2ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactory;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.r2dbc.dialect.H2Dialect;
+import org.springframework.data.r2dbc.repository.support.R2dbcRepositoryFactory;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * An H2 database with the application's schema.sql applied, and
+ * repositories over it, for tests and benchmarks that run without Spring.
+ */
+public final class TestDatabase {
+
+    private final ConnectionFactory connectionFactory;
+    private final DatabaseClient client;
+    private final R2dbcRepositoryFactory repositories;
+
+    private TestDatabase(ConnectionFactory connectionFactory) {
+        this.connectionFactory = connectionFactory;
+        this.client = DatabaseClient.create(connectionFactory);
+        this.repositories = new R2dbcRepositoryFactory(new R2dbcEntityTemplate(client, H2Dialect.INSTANCE));
+    }
+
+    /**
+     * A new in-memory database, named so each call gets its own.
+     */
+    public static TestDatabase create(String name) throws IOException {
+        return create(H2ConnectionFactory.inMemory(name + "-" + UUID.randomUUID()));
+    }
+
+    /**
+     * Applies the schema through the given connections, for a file-backed,
+     * pooled or instrumented database.
+     */
+    public static TestDatabase create(ConnectionFactory connectionFactory) throws IOException {
+        TestDatabase database = new TestDatabase(connectionFactory);
+        String schema = new ClassPathResource("schema.sql").getContentAsString(StandardCharsets.UTF_8);
+        Flux.fromArray(schema.split(";"))
+                .filter(sql -> !sql.isBlank())
+                .concatMap(sql -> database.client.sql(sql).then())
+                .blockLast();
+        return database;
+    }
+
+    public ConnectionFactory connectionFactory() {
+        return connectionFactory;
+    }
+
+    public DatabaseClient client() {
+        return client;
+    }
+
+    public R2dbcRepositoryFactory repositories() {
+        return repositories;
+    }
+}
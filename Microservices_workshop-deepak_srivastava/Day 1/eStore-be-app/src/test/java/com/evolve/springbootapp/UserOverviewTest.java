@@ -0,0 +1,179 @@
+package com.evolve.springbootapp;
+
+import com.evolve.batch.SingleFlight;
+import com.evolve.dto.CartWithItems;
+import com.evolve.dto.UserOverview;
+import com.evolve.etag.ResourceVersions;
+import com.evolve.handler.MultiGet;
+import com.evolve.handler.UserHandler;
+import com.evolve.metrics.CartEventMetrics;
+import com.evolve.model.Cart;
+import com.evolve.model.CartItem;
+import com.evolve.model.Order;
+import com.evolve.model.Product;
+import com.evolve.model.Usr;
+import com.evolve.repository.CartItemRepository;
+import com.evolve.repository.CartRepository;
+import com.evolve.repository.OrderRepository;
+import com.evolve.repository.ProductRepository;
+import com.evolve.repository.UserRepository;
+import com.evolve.service.CartEventService;
+import com.evolve.service.UserOverviewService;
+import com.evolve.transport.InJvmCartEventTransport;
+import com.evolve.writebehind.CartItemWriteBuffer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.server.RequestPredicates;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.StreamSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class UserOverviewTest {
+
+    private final UserRepository users = mock(UserRepository.class);
+    private final CartRepository carts = mock(CartRepository.class);
+    private final CartItemRepository cartItems = mock(CartItemRepository.class);
+    private final ProductRepository products = mock(ProductRepository.class);
+    private final OrderRepository orders = mock(OrderRepository.class);
+    private final CartItemWriteBuffer writeBuffer = mock(CartItemWriteBuffer.class);
+    private final List<List<Long>> itemQueries = new ArrayList<>();
+    private final List<List<Long>> productQueries = new ArrayList<>();
+    private UserOverviewService overviews;
+
+    @BeforeEach
+    void setUp() {
+        // At most two cart or product ids a query
+        overviews = new UserOverviewService(users, carts, cartItems, products, orders, writeBuffer, 2, 4);
+        when(writeBuffer.overlay(any(CartItem.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(users.findById(7L)).thenReturn(Mono.just(user()));
+        when(users.findById(8L)).thenReturn(Mono.empty());
+        when(carts.findAllByUserId(anyLong())).thenReturn(Flux.empty());
+        when(carts.findAllByUserId(7L)).thenReturn(Flux.just(cart(1L, "checked_out"), cart(2L, "abandoned"), cart(3L, "active")));
+        when(orders.findAllByUserId(anyLong())).thenReturn(Flux.empty());
+        when(orders.findAllByUserId(7L)).thenReturn(Flux.just(order()));
+        // Each cart holds product 11; cart 3 also holds product 12, which is gone
+        when(cartItems.findAllByCartIdIn(anyCollection())).thenAnswer(invocation -> {
+            List<Long> cartIds = List.copyOf(invocation.<Collection<Long>>getArgument(0));
+            itemQueries.add(cartIds);
+            return Flux.fromIterable(cartIds).flatMap(cartId -> cartId == 3L
+                    ? Flux.just(item(30L, cartId, 11L), item(31L, cartId, 12L))
+                    : Flux.just(item(cartId * 10, cartId, 11L)));
+        });
+        when(products.findAllById(anyIterable())).thenAnswer(invocation -> {
+            Iterable<Long> ids = invocation.getArgument(0);
+            List<Long> batch = StreamSupport.stream(ids.spliterator(), false).toList();
+            productQueries.add(batch);
+            return Flux.fromIterable(batch).filter(id -> id == 11L).map(UserOverviewTest::product);
+        });
+    }
+
+    private static Usr user() {
+        Usr user = new Usr();
+        user.setId(7L);
+        user.setName("Asha");
+        user.setEmail("asha@example.com");
+        return user;
+    }
+
+    private static Cart cart(Long id, String status) {
+        Cart cart = new Cart();
+        cart.setId(id);
+        cart.setUserId(7L);
+        cart.setStatus(status);
+        return cart;
+    }
+
+    private static CartItem item(Long id, Long cartId, Long productId) {
+        CartItem item = new CartItem();
+        item.setId(id);
+        item.setCartId(cartId);
+        item.setProductId(productId);
+        item.setQuantity(2);
+        return item;
+    }
+
+    private static Product product(Long id) {
+        Product product = new Product();
+        product.setId(id);
+        product.setName("Mac Mini");
+        product.setPrice(92000.0);
+        return product;
+    }
+
+    private static Order order() {
+        Order order = new Order();
+        order.setId(5L);
+        order.setUserId(7L);
+        order.setCartId(1L);
+        order.setStatus("PLACED");
+        return order;
+    }
+
+    @Test
+    void batchesItemsAndProductsAcrossAllCarts() {
+        UserOverview overview = overviews.overview(7L).block();
+
+        assertThat(overview.getUser().getName()).isEqualTo("Asha");
+        assertThat(overview.getOrders()).containsExactly(order());
+        assertThat(overview.getCarts()).extracting(cart -> cart.getCart().getId()).containsExactly(1L, 2L, 3L);
+        // The line whose product is gone is left out
+        for (CartWithItems cart : overview.getCarts()) {
+            assertThat(cart.getItems()).hasSize(1).allSatisfy(line -> {
+                assertThat(line.getCartId()).isEqualTo(cart.getCart().getId());
+                assertThat(line.getProduct()).isEqualTo(product(11L));
+            });
+        }
+        // Three carts in two queries, and each product read once
+        assertThat(itemQueries).containsExactlyInAnyOrder(List.of(1L, 2L), List.of(3L));
+        assertThat(productQueries).containsExactly(List.of(11L, 12L));
+    }
+
+    @Test
+    void userWithoutCartsSkipsTheItemReads() {
+        when(users.findById(9L)).thenReturn(Mono.just(user()));
+
+        UserOverview overview = overviews.overview(9L).block();
+
+        assertThat(overview.getCarts()).isEmpty();
+        assertThat(overview.getOrders()).isEmpty();
+        verify(cartItems, never()).findAllByCartIdIn(anyCollection());
+        verify(products, never()).findAllById(anyIterable());
+    }
+
+    @Test
+    void routeAnswersNotFoundForAnUnknownUser() {
+        CartEventService events = new CartEventService(new InJvmCartEventTransport(), new CartEventMetrics(new SimpleMeterRegistry()));
+        UserHandler handler = new UserHandler(users, new ResourceVersions(events, Duration.ofMinutes(1), 1000),
+                new MultiGet(100, 500), overviews, new SingleFlight(new SimpleMeterRegistry()));
+        WebTestClient client = WebTestClient.bindToRouterFunction(RouterFunctions
+                        .route(RequestPredicates.GET("/users/{id}/overview"), handler::getOverview))
+                .build();
+
+        client.get().uri("/users/8/overview").exchange().expectStatus().isNotFound();
+        client.get().uri("/users/7/overview").exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.user.email").isEqualTo("asha@example.com")
+                .jsonPath("$.carts[2].cart.status").isEqualTo("active")
+                .jsonPath("$.carts[2].items[0].product.name").isEqualTo("Mac Mini")
+                .jsonPath("$.orders[0].status").isEqualTo("PLACED");
+    }
+}
@@ -0,0 +1,89 @@
+package com.evolve.springbootapp;
+
+import com.evolve.config.WebFluxConfig;
+import com.evolve.warmup.WarmUp;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.http.server.reactive.ReactorHttpHandlerAdapter;
+import org.springframework.web.reactive.function.server.RequestPredicates;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class WarmUpTest {
+
+    private final Queue<String> received = new ConcurrentLinkedQueue<>();
+    private final Queue<Object> readiness = new ConcurrentLinkedQueue<>();
+    private final ApplicationEventPublisher publisher = event ->
+            readiness.add(((AvailabilityChangeEvent<?>) event).getState());
+    private DisposableServer server;
+
+    private ServerCodecConfigurer codecs() {
+        ServerCodecConfigurer codecs = ServerCodecConfigurer.create();
+        new WebFluxConfig().configureHttpMessageCodecs(codecs);
+        return codecs;
+    }
+
+    // Records only requests marked as warm-up
+    private void serve(Mono<ServerResponse> response) {
+        server = HttpServer.create()
+                .port(0)
+                .handle(new ReactorHttpHandlerAdapter(RouterFunctions.toHttpHandler(RouterFunctions.route(
+                        RequestPredicates.all(), request -> {
+                            if (WarmUp.isWarmUp(request)) {
+                                received.add(request.path() + " " + request.headers().firstHeader(HttpHeaders.ACCEPT));
+                            }
+                            return response;
+                        }))))
+                .bindNow();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (server != null) {
+            server.disposeNow();
+        }
+    }
+
+    @Test
+    void sendsEachPathInEveryFormatThenReportsReady() {
+        serve(ServerResponse.ok().bodyValue("{}"));
+        WarmUp warmUp = new WarmUp(publisher, codecs(), true, List.of("/products/1", "/carts/1/items"),
+                12, 2, 3, Duration.ofSeconds(30));
+
+        warmUp.warmUp(server.port()).block(Duration.ofSeconds(30));
+
+        assertThat(received).hasSize(12).containsOnly(
+                "/products/1 application/json", "/carts/1/items application/json",
+                "/products/1 application/cbor", "/carts/1/items application/cbor",
+                "/products/1 application/x-protobuf", "/carts/1/items application/x-protobuf");
+        assertThat(readiness).containsExactly(ReadinessState.ACCEPTING_TRAFFIC);
+    }
+
+    @Test
+    void reportsReadyWhenTheServerIsDownOrTooSlow() {
+        WarmUp unreachable = new WarmUp(publisher, codecs(), true, List.of("/products/1"), 3, 1, 1, Duration.ofSeconds(30));
+        unreachable.warmUp(1).block(Duration.ofSeconds(30));
+
+        serve(Mono.never());
+        WarmUp slow = new WarmUp(publisher, codecs(), true, List.of("/products/1"), 3, 1, 1, Duration.ofMillis(300));
+        slow.warmUp(server.port()).block(Duration.ofSeconds(30));
+
+        assertThat(received).hasSize(1);
+        assertThat(readiness).containsExactly(ReadinessState.ACCEPTING_TRAFFIC, ReadinessState.ACCEPTING_TRAFFIC);
+    }
+}